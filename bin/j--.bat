@@ -2,7 +2,8 @@
 
 REM Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
 REM
-REM Wrapper script for running jminusminus.Main program.
+REM Wrapper script for running jminusminus.Main program. The program is run by the compile server
+REM (see j--d) if one is running, and otherwise in a JVM of its own.
 
 set BASE_DIR=%~dp0
 set j="%BASE_DIR%\..\..\"
@@ -12,7 +13,7 @@ if "%CLASSPATH%" == "" goto runApp
 set CPATH=%CPATH%;"%CLASSPATH%"
 
 :runApp
-%JAVA% -classpath %CPATH% jminusminus.Main "j--" %*
+%JAVA% -classpath %CPATH% jminusminus.CompileClient "j--" %*
 
 set JAVA=
 set BASE_DIR=
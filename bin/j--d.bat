@@ -0,0 +1,20 @@
+@echo off
+
+REM Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+REM
+REM Wrapper script for running the j-- compile server, which keeps the compiler loaded in a JVM that
+REM serves the compile requests made with j--.
+
+set BASE_DIR=%~dp0
+set j="%BASE_DIR%\..\..\"
+set JAVA=java
+set CPATH="%BASE_DIR%\..\lib\j--.jar;%BASE_DIR%\..\lib\spim.jar"
+if "%CLASSPATH%" == "" goto runApp
+set CPATH=%CPATH%;"%CLASSPATH%"
+
+:runApp
+%JAVA% -classpath %CPATH% jminusminus.CompileServer %*
+
+set JAVA=
+set BASE_DIR=
+set CPATH=
@@ -0,0 +1,411 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * An on-disk cache of the outputs of compiling j-- source files, used for incremental
+ * compilation. The cache lives in the .j--cache directory under the output directory, and has an
+ * entry for each source file compiled (successfully) with it. An entry records:
+ * <ul>
+ *   <li>a content hash of the source file (and of the options that affect the output),</li>
+ *
+ *   <li>the types declared in the file, with their class files and the hashes of their
+ *   signatures (the non-private parts of their declarations),</li>
+ *
+ *   <li>the types that the file refers to by name (imported types, and types declared in the
+ *   other files compiled along with it), with the hashes of their signatures, and</li>
+ *
+ *   <li>the SPIM (.s) output for the file, if SPIM code was generated.</li>
+ * </ul>
+ * An entry is up to date if the content hash matches, and the signature of every type that the
+ * file refers to is as recorded. The outputs of an up-to-date file are copied from the cache to
+ * the output directory, and the file is not compiled.
+ * <p>
+ * The cache is only an optimization: a missing or unreadable entry is treated as out of date, and
+ * a failure to write an entry is ignored.
+ */
+class BuildCache {
+    // Directory holding the cache entries.
+    private File cacheDir;
+
+    // Directory where the outputs go.
+    private String outputDir;
+
+    // The options that affect the output.
+    private String options;
+
+    /**
+     * Constructs a build cache for the specified output directory.
+     *
+     * @param outputDir the output directory.
+     * @param options   the options that affect the output (for example, the register allocation
+     *                  scheme for SPIM code).
+     */
+    public BuildCache(String outputDir, String options) {
+        this.outputDir = outputDir;
+        this.options = options;
+        cacheDir = new File(outputDir, ".j--cache");
+    }
+
+    /**
+     * Returns the entry for the specified source file if there is one whose content hash matches
+     * the file, and null otherwise. The returned entry is up to date only if the signatures of
+     * the types it depends on have not changed; see Entry.dependencies().
+     *
+     * @param sourceFile the source file.
+     * @return the entry for the source file, or null.
+     */
+    public Entry lookup(String sourceFile) {
+        try {
+            String hash = contentHash(sourceFile);
+            File file = entryFile(sourceFile);
+            if (!file.exists()) {
+                return null;
+            }
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                Entry entry = new Entry(hash);
+                if (!in.readUTF().equals(hash)) {
+                    return null;
+                }
+                entry.read(in);
+                return entry;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a new (empty) entry for the specified source file, to be filled in and stored
+     * after the file is compiled.
+     *
+     * @param sourceFile the source file.
+     * @return a new entry for the source file, or null if the file can't be read.
+     */
+    public Entry newEntry(String sourceFile) {
+        try {
+            return new Entry(contentHash(sourceFile));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the entry for the specified source file.
+     *
+     * @param sourceFile the source file.
+     * @param entry      the entry.
+     */
+    public void store(String sourceFile, Entry entry) {
+        try {
+            cacheDir.mkdirs();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(entryFile(sourceFile))));
+            try {
+                out.writeUTF(entry.hash);
+                entry.write(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            // Ignore; the file will be compiled again the next time.
+        }
+    }
+
+    /**
+     * Copies the outputs recorded in the entry to the output directory: the class files, or the
+     * SPIM files if SPIM code is being generated.
+     *
+     * @param entry      the entry.
+     * @param spimOutput whether SPIM code is being generated.
+     * @return true if the outputs were copied, and false otherwise.
+     */
+    public boolean restore(Entry entry, boolean spimOutput) {
+        try {
+            if (spimOutput) {
+                for (Map.Entry<String, byte[]> spimFile : entry.spimFiles.entrySet()) {
+                    writeFile(spimFile.getKey(), spimFile.getValue());
+                }
+            } else {
+                for (Map.Entry<String, byte[]> classFile : entry.classFiles.entrySet()) {
+                    writeFile(classFile.getKey() + ".class", classFile.getValue());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the SPIM file (in the output directory) that is generated for the specified source
+     * file.
+     *
+     * @param sourceFile the source file.
+     * @return the SPIM file generated for the source file.
+     */
+    public File spimFile(String sourceFile) {
+        String name = new File(sourceFile).getName().replace(".java", ".s");
+        return new File(outputDir, name);
+    }
+
+    /**
+     * Returns a hash of the signature of the specified class type: its access flags, name, and
+     * interfaces, and the non-private fields, constructors, and methods that it declares or
+     * inherits from its superclasses, as found in the symbols of the classes. Two versions of a
+     * class with the same signature can be used interchangeably by the classes that refer to it.
+     *
+     * @param type the class type.
+     * @return a hash of the signature of the class.
+     */
+    public static String signature(Type type) {
+        StringBuffer s = new StringBuffer();
+        if (type.symbol() != null) {
+            CLClassSymbol c = type.symbol();
+            s.append(Integer.toHexString(c.accessFlags & ~ACC_SUPER) + " " + c.name);
+            for (String superInterface : c.interfaceNames) {
+                s.append(" " + superInterface);
+            }
+        }
+        s.append("\n");
+        for (Type k = type; k != null && k.symbol() != null; k = k.superClass()) {
+            ArrayList<String> members = new ArrayList<String>();
+            for (CLMemberSymbol field : k.symbol().fields()) {
+                if (isVisible(field)) {
+                    members.add(Integer.toHexString(field.accessFlags) + " " + field.name + " " +
+                            field.descriptor);
+                }
+            }
+            for (CLMemberSymbol method : k.symbol().methods()) {
+                if (isVisible(method) && !method.name.equals("<clinit>")) {
+                    members.add(Integer.toHexString(method.accessFlags) + " " + method.name +
+                            method.descriptor);
+                }
+            }
+            Collections.sort(members);
+            s.append("class " + k.symbol().name + "\n");
+            for (String member : members) {
+                s.append(member + "\n");
+            }
+        }
+        return hash(s.toString().getBytes());
+    }
+
+    // Returns the content hash of the source file and the options.
+    private String contentHash(String sourceFile) throws IOException {
+        byte[] source = Files.readAllBytes(new File(sourceFile).toPath());
+        byte[] opts = (options + "\n").getBytes();
+        byte[] bytes = new byte[source.length + opts.length];
+        System.arraycopy(source, 0, bytes, 0, source.length);
+        System.arraycopy(opts, 0, bytes, source.length, opts.length);
+        return hash(bytes);
+    }
+
+    // Returns the file holding the entry for the specified source file.
+    private File entryFile(String sourceFile) throws IOException {
+        return new File(cacheDir, hash(new File(sourceFile).getCanonicalPath().getBytes()));
+    }
+
+    // Writes the bytes to the file with the specified name (relative to the output directory).
+    private void writeFile(String name, byte[] bytes) throws IOException {
+        File file = new File(outputDir, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes);
+    }
+
+    // Returns true if the member is part of the signature of its class, ie, it is neither private
+    // nor synthetic, and false otherwise.
+    private static boolean isVisible(CLMemberSymbol member) {
+        return (member.accessFlags & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0;
+    }
+
+    // Returns the (hexadecimal) SHA-256 hash of the bytes.
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuffer s = new StringBuffer();
+            for (byte b : digest) {
+                s.append(String.format("%02x", b));
+            }
+            return s.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256.
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * An entry in the build cache, for one source file.
+     */
+    public static class Entry {
+        // Content hash of the source file.
+        private String hash;
+
+        // Maps the (binary) names of the types declared in the source file to the hashes of
+        // their signatures.
+        private LinkedHashMap<String, String> declaredTypes;
+
+        // Maps the internal names of the types declared in the source file to their class files.
+        private LinkedHashMap<String, byte[]> classFiles;
+
+        // Maps the (binary) names of the types the source file refers to, to the hashes of their
+        // signatures.
+        private LinkedHashMap<String, String> dependencies;
+
+        // Maps the names of the SPIM files generated for the source file to their contents.
+        private LinkedHashMap<String, byte[]> spimFiles;
+
+        // Constructs an empty entry for a source file with the specified content hash.
+        private Entry(String hash) {
+            this.hash = hash;
+            declaredTypes = new LinkedHashMap<String, String>();
+            classFiles = new LinkedHashMap<String, byte[]>();
+            dependencies = new LinkedHashMap<String, String>();
+            spimFiles = new LinkedHashMap<String, byte[]>();
+        }
+
+        /**
+         * Returns a map from the (binary) names of the types declared in the source file to the
+         * hashes of their signatures.
+         *
+         * @return the types declared in the source file.
+         */
+        public Map<String, String> declaredTypes() {
+            return declaredTypes;
+        }
+
+        /**
+         * Returns a map from the internal names of the types declared in the source file to
+         * their class files.
+         *
+         * @return the class files for the types declared in the source file.
+         */
+        public Map<String, byte[]> classFiles() {
+            return classFiles;
+        }
+
+        /**
+         * Returns a map from the (binary) names of the types the source file refers to, to the
+         * hashes of their signatures when the source file was compiled.
+         *
+         * @return the types the source file depends on.
+         */
+        public Map<String, String> dependencies() {
+            return dependencies;
+        }
+
+        /**
+         * Adds a type declared in the source file.
+         *
+         * @param type      the type.
+         * @param signature hash of the type's signature.
+         * @param classFile the class file for the type.
+         */
+        public void addDeclaredType(Type type, String signature, byte[] classFile) {
+            declaredTypes.put(type.toString(), signature);
+            classFiles.put(type.jvmName(), classFile);
+        }
+
+        /**
+         * Adds a type the source file refers to.
+         *
+         * @param name      the (binary) name of the type.
+         * @param signature hash of the type's signature.
+         */
+        public void addDependency(String name, String signature) {
+            dependencies.put(name, signature);
+        }
+
+        /**
+         * Adds a SPIM file generated for the source file.
+         *
+         * @param file the SPIM file.
+         * @throws IOException if the file can't be read.
+         */
+        public void addSpimFile(File file) throws IOException {
+            spimFiles.put(file.getName(), Files.readAllBytes(file.toPath()));
+        }
+
+        // Reads the entry (except for its hash) from the stream.
+        private void read(DataInputStream in) throws IOException {
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                declaredTypes.put(name, in.readUTF());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                classFiles.put(name, readBytes(in));
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                dependencies.put(name, in.readUTF());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                spimFiles.put(name, readBytes(in));
+            }
+        }
+
+        // Writes the entry (except for its hash) to the stream.
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(declaredTypes.size());
+            for (Map.Entry<String, String> type : declaredTypes.entrySet()) {
+                out.writeUTF(type.getKey());
+                out.writeUTF(type.getValue());
+            }
+            out.writeInt(classFiles.size());
+            for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+                out.writeUTF(classFile.getKey());
+                writeBytes(out, classFile.getValue());
+            }
+            out.writeInt(dependencies.size());
+            for (Map.Entry<String, String> type : dependencies.entrySet()) {
+                out.writeUTF(type.getKey());
+                out.writeUTF(type.getValue());
+            }
+            out.writeInt(spimFiles.size());
+            for (Map.Entry<String, byte[]> spimFile : spimFiles.entrySet()) {
+                out.writeUTF(spimFile.getKey());
+                writeBytes(out, spimFile.getValue());
+            }
+        }
+
+        // Reads a length-prefixed array of bytes from the stream.
+        private static byte[] readBytes(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        // Writes a length-prefixed array of bytes to the stream.
+        private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -17,8 +17,10 @@ import static jminusminus.CLConstants.*;
  * include:
  * <ul>
  *   <li> InnerClasses_attribute (class attribute)</li>
+ *   <li> BootstrapMethods_attribute (class attribute)</li>
  *   <li> Synthetic_attribute (class, field, and method attribute)</li>
  *   <li> Code_attribute (method attribute)</li>
+ *   <li> StackMapTable_attribute (code attribute, for class files of version 50 and later)</li>
  *   <li> Exceptions_attribute (method attribute)</li>
  * </ul>
  * <p>
@@ -167,7 +169,7 @@ class CLCodeAttribute extends CLAttributeInfo {
     /**
      * Code_attribute.code item.
      */
-    public ArrayList<Integer> code;
+    public CLByteBuffer code;
 
     /**
      * Code_attribute.exception_table_length item.
@@ -204,7 +206,7 @@ class CLCodeAttribute extends CLAttributeInfo {
      * @param attributes           Code_attribute.attributes item.
      */
     public CLCodeAttribute(int attributeNameIndex, long attributeLength, int maxStack,
-                           int maxLocals, long codeLength, ArrayList<Integer> code,
+                           int maxLocals, long codeLength, CLByteBuffer code,
                            int exceptionTableLength, ArrayList<CLExceptionInfo> exceptionTable,
                            int attributesCount, ArrayList<CLAttributeInfo> attributes) {
         super(attributeNameIndex, attributeLength);
@@ -226,9 +228,7 @@ class CLCodeAttribute extends CLAttributeInfo {
         out.writeShort(maxStack);
         out.writeShort(maxLocals);
         out.writeInt(codeLength);
-        for (int info : code) {
-            out.writeByte(info);
-        }
+        code.writeTo(out);
         out.writeShort(exceptionTableLength);
         for (CLExceptionInfo info : exceptionTable) {
             info.write(out);
@@ -379,6 +379,335 @@ class CLInnerClassesAttribute extends CLAttributeInfo {
     }
 }
 
+/**
+ * Representation of bootstrap_methods table entry structure.
+ */
+class CLBootstrapMethodInfo {
+    /**
+     * bootstrap_methods_table_entry.bootstrap_method_ref item.
+     */
+    public int bootstrapMethodRef;
+
+    /**
+     * bootstrap_methods_table_entry.bootstrap_arguments item.
+     */
+    public ArrayList<Integer> bootstrapArguments;
+
+    /**
+     * Construct a CLBootstrapMethodInfo object.
+     *
+     * @param bootstrapMethodRef bootstrap_methods_table_entry.bootstrap_method_ref item.
+     * @param bootstrapArguments bootstrap_methods_table_entry.bootstrap_arguments item.
+     */
+    public CLBootstrapMethodInfo(int bootstrapMethodRef, ArrayList<Integer> bootstrapArguments) {
+        this.bootstrapMethodRef = bootstrapMethodRef;
+        this.bootstrapArguments = bootstrapArguments;
+    }
+
+    /**
+     * Returns the number of bytes taken by this entry in the BootstrapMethods attribute.
+     *
+     * @return the number of bytes taken by this entry.
+     */
+    public int length() {
+        return 4 + 2 * bootstrapArguments.size();
+    }
+
+    /**
+     * Return true if this entry is the same as other (refers to the same method with the same
+     * arguments), and false otherwise.
+     *
+     * @param other the reference object with which to compare.
+     * @return true if this entry is the same as other, and false otherwise.
+     */
+    public boolean equals(Object other) {
+        if (other instanceof CLBootstrapMethodInfo) {
+            CLBootstrapMethodInfo c = (CLBootstrapMethodInfo) other;
+            return c.bootstrapMethodRef == bootstrapMethodRef &&
+                    c.bootstrapArguments.equals(bootstrapArguments);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a hash code for this entry, computed from its content.
+     *
+     * @return a hash code for this entry.
+     */
+    public int hashCode() {
+        return 31 * bootstrapMethodRef + bootstrapArguments.hashCode();
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     *
+     * @param out output stream.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void write(CLOutputStream out) throws IOException {
+        out.writeShort(bootstrapMethodRef);
+        out.writeShort(bootstrapArguments.size());
+        for (int argument : bootstrapArguments) {
+            out.writeShort(argument);
+        }
+    }
+}
+
+/**
+ * Representation of BootstrapMethods_attribute structure.
+ */
+class CLBootstrapMethodsAttribute extends CLAttributeInfo {
+    /**
+     * BootstrapMethods_attribute.num_bootstrap_methods item.
+     */
+    public int numBootstrapMethods;
+
+    /**
+     * BootstrapMethods_attribute.bootstrap_methods item.
+     */
+    public ArrayList<CLBootstrapMethodInfo> bootstrapMethods;
+
+    /**
+     * Construct a CLBootstrapMethodsAttribute object.
+     *
+     * @param attributeNameIndex  BootstrapMethods_attribute.attribute_name_index item.
+     * @param attributeLength     BootstrapMethods_attribute.attribute_length item.
+     * @param numBootstrapMethods BootstrapMethods_attribute.num_bootstrap_methods item.
+     * @param bootstrapMethods    BootstrapMethods_attribute.bootstrap_methods item.
+     */
+    public CLBootstrapMethodsAttribute(int attributeNameIndex, long attributeLength,
+                                       int numBootstrapMethods,
+                                       ArrayList<CLBootstrapMethodInfo> bootstrapMethods) {
+        super(attributeNameIndex, attributeLength);
+        this.numBootstrapMethods = numBootstrapMethods;
+        this.bootstrapMethods = bootstrapMethods;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(numBootstrapMethods);
+        for (CLBootstrapMethodInfo info : bootstrapMethods) {
+            info.write(out);
+        }
+    }
+}
+
+/**
+ * Representation of verification_type_info structure.
+ */
+class CLVerificationTypeInfo {
+    /**
+     * verification_type_info.tag item.
+     */
+    public int tag;
+
+    /**
+     * Object_variable_info.cpool_index item (for the ITEM_Object tag), or
+     * Uninitialized_variable_info.offset item (for the ITEM_Uninitialized tag).
+     */
+    public int index;
+
+    /**
+     * Construct a CLVerificationTypeInfo object.
+     *
+     * @param tag   verification_type_info.tag item.
+     * @param index Object_variable_info.cpool_index or Uninitialized_variable_info.offset item;
+     *              ignored for the other tags.
+     */
+    public CLVerificationTypeInfo(int tag, int index) {
+        this.tag = tag;
+        this.index = index;
+    }
+
+    /**
+     * Returns the number of bytes taken by this structure in a stack map frame.
+     *
+     * @return the number of bytes taken by this structure.
+     */
+    public int length() {
+        return tag == ITEM_Object || tag == ITEM_Uninitialized ? 3 : 1;
+    }
+
+    /**
+     * Return true if this verification type is the same as other, and false otherwise.
+     *
+     * @param other the reference object with which to compare.
+     * @return true if this verification type is the same as other, and false otherwise.
+     */
+    public boolean equals(Object other) {
+        if (other instanceof CLVerificationTypeInfo) {
+            CLVerificationTypeInfo c = (CLVerificationTypeInfo) other;
+            return c.tag == tag && (length() == 1 || c.index == index);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a hash code for this verification type, computed from its content.
+     *
+     * @return a hash code for this verification type.
+     */
+    public int hashCode() {
+        return length() == 1 ? tag : 31 * tag + index;
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     *
+     * @param out output stream.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void write(CLOutputStream out) throws IOException {
+        out.writeByte(tag);
+        if (length() == 3) {
+            out.writeShort(index);
+        }
+    }
+}
+
+/**
+ * Representation of stack_map_frame structure. Which of the locals and the stack items are
+ * written depends on the frame type: none for same_frame, same_frame_extended and chop_frame;
+ * the one stack item for same_locals_1_stack_item_frame(_extended); the appended locals for
+ * append_frame; and all the locals and stack items for full_frame.
+ */
+class CLStackMapFrame {
+    /**
+     * stack_map_frame.frame_type item.
+     */
+    public int frameType;
+
+    /**
+     * stack_map_frame.offset_delta item; implicit (frame_type or frame_type - 64) for
+     * same_frame and same_locals_1_stack_item_frame.
+     */
+    public int offsetDelta;
+
+    /**
+     * stack_map_frame.locals item.
+     */
+    public ArrayList<CLVerificationTypeInfo> locals;
+
+    /**
+     * stack_map_frame.stack item.
+     */
+    public ArrayList<CLVerificationTypeInfo> stack;
+
+    /**
+     * Construct a CLStackMapFrame object.
+     *
+     * @param frameType   stack_map_frame.frame_type item.
+     * @param offsetDelta stack_map_frame.offset_delta item.
+     * @param locals      stack_map_frame.locals item.
+     * @param stack       stack_map_frame.stack item.
+     */
+    public CLStackMapFrame(int frameType, int offsetDelta, ArrayList<CLVerificationTypeInfo> locals,
+                           ArrayList<CLVerificationTypeInfo> stack) {
+        this.frameType = frameType;
+        this.offsetDelta = offsetDelta;
+        this.locals = locals;
+        this.stack = stack;
+    }
+
+    /**
+     * Returns the number of bytes taken by this frame in the StackMapTable attribute.
+     *
+     * @return the number of bytes taken by this frame.
+     */
+    public int length() {
+        int length = frameType < 128 ? 1 : 3;
+        if (frameType == FULL_FRAME) {
+            length += 4;
+        }
+        if (frameType > SAME_FRAME_EXTENDED) {
+            for (CLVerificationTypeInfo info : locals) {
+                length += info.length();
+            }
+        }
+        if (frameType >= 64 && frameType <= SAME_LOCALS_1_STACK_ITEM_EXTENDED ||
+                frameType == FULL_FRAME) {
+            for (CLVerificationTypeInfo info : stack) {
+                length += info.length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     *
+     * @param out output stream.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void write(CLOutputStream out) throws IOException {
+        out.writeByte(frameType);
+        if (frameType >= SAME_LOCALS_1_STACK_ITEM_EXTENDED) {
+            out.writeShort(offsetDelta);
+        }
+        if (frameType == FULL_FRAME) {
+            out.writeShort(locals.size());
+        }
+        if (frameType > SAME_FRAME_EXTENDED) {
+            for (CLVerificationTypeInfo info : locals) {
+                info.write(out);
+            }
+        }
+        if (frameType == FULL_FRAME) {
+            out.writeShort(stack.size());
+        }
+        if (frameType >= 64 && frameType <= SAME_LOCALS_1_STACK_ITEM_EXTENDED ||
+                frameType == FULL_FRAME) {
+            for (CLVerificationTypeInfo info : stack) {
+                info.write(out);
+            }
+        }
+    }
+}
+
+/**
+ * Representation of StackMapTable_attribute structure.
+ */
+class CLStackMapTableAttribute extends CLAttributeInfo {
+    /**
+     * StackMapTable_attribute.number_of_entries item.
+     */
+    public int numberOfEntries;
+
+    /**
+     * StackMapTable_attribute.entries item.
+     */
+    public ArrayList<CLStackMapFrame> entries;
+
+    /**
+     * Construct a CLStackMapTableAttribute object.
+     *
+     * @param attributeNameIndex StackMapTable_attribute.attribute_name_index item.
+     * @param attributeLength    StackMapTable_attribute.attribute_length item.
+     * @param numberOfEntries    StackMapTable_attribute.number_of_entries item.
+     * @param entries            StackMapTable_attribute.entries item.
+     */
+    public CLStackMapTableAttribute(int attributeNameIndex, long attributeLength,
+                                    int numberOfEntries, ArrayList<CLStackMapFrame> entries) {
+        super(attributeNameIndex, attributeLength);
+        this.numberOfEntries = numberOfEntries;
+        this.entries = entries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(numberOfEntries);
+        for (CLStackMapFrame frame : entries) {
+            frame.write(out);
+        }
+    }
+}
+
 /**
  * Representation of EnclosingMethod_attribute structure.
  */
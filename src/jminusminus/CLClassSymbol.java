@@ -0,0 +1,428 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class provides the symbols of a class that the compiler needs in order to refer to it: its
+ * header (access flags, name, superclass, and interfaces), and the names, access flags, and
+ * descriptors of its fields and methods. The symbols are read from the class file, and only so
+ * much of the class file is parsed as is needed: the code and the other attributes are skipped,
+ * the fields and methods are only decoded when they are first asked for, and the class is never
+ * defined (or initialized) in the compiler's JVM.
+ * <p>
+ * The symbols of a class of the Java runtime image are not read from its class file, but taken
+ * (through reflection) from the class itself, which is loaded, but not initialized, by the JVM:
+ * most of these classes are in the JVM's shared archive already, so this is much cheaper than
+ * opening the runtime image and parsing the class file.
+ */
+class CLClassSymbol {
+    /**
+     * ClassFile.access_flags item.
+     */
+    public int accessFlags;
+
+    /**
+     * Fully qualified internal form of the class name (eg, java/lang/String).
+     */
+    public String name;
+
+    /**
+     * Fully qualified internal form of the superclass name, or null for java/lang/Object.
+     */
+    public String superName;
+
+    /**
+     * Fully qualified internal forms of the names of the direct superinterfaces.
+     */
+    public ArrayList<String> interfaceNames;
+
+    // The bytes of the class file, where each entry of its constant pool starts, and the strings
+    // of the constant pool that have been decoded; dropped once the members have been decoded.
+    private byte[] bytes;
+    private int[] offsets;
+    private String[] utf8;
+
+    // Position of the fields_count item in the class file.
+    private int membersPos;
+
+    // The class, for the symbols of a class of the runtime image; dropped once the members have
+    // been decoded.
+    private Class<?> loaded;
+
+    // Fields and methods declared by the class; null until they are decoded.
+    private ArrayList<CLMemberSymbol> fields;
+    private ArrayList<CLMemberSymbol> methods;
+
+    /**
+     * Constructs the symbols of a class by reading them from the specified class file. The
+     * stream is read to the end, and is not closed.
+     *
+     * @param in the class file.
+     * @throws IOException if the class file can't be read, or is not a class file.
+     */
+    public CLClassSymbol(CLInputStream in) throws IOException {
+        this(in.readAllBytes());
+    }
+
+    /**
+     * Constructs the symbols of a class by reading them from the specified bytes of its class
+     * file.
+     *
+     * @param bytes bytes representing the class.
+     * @throws IOException if the bytes are not those of a class file.
+     */
+    public CLClassSymbol(byte[] bytes) throws IOException {
+        try {
+            if (u4(bytes, 0) != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+
+            // Record where each entry of the constant pool (which follows the minor_version,
+            // major_version, and constant_pool_count items) starts; only the strings that are
+            // needed are decoded, when they are first asked for.
+            int constantPoolCount = u2(bytes, 8);
+            int[] offsets = new int[constantPoolCount];
+            String[] utf8 = new String[constantPoolCount];
+            int pos = 10;
+            for (int i = 1; i < constantPoolCount; i++) {
+                offsets[i] = pos;
+                int tag = bytes[pos] & 0xFF;
+                switch (tag) {
+                    case CONSTANT_Utf8:
+                        pos += 3 + u2(bytes, pos + 1);
+                        break;
+                    case CONSTANT_Class:
+                    case CONSTANT_String:
+                    case CONSTANT_MethodType:
+                    case CONSTANT_Module:
+                    case CONSTANT_Package:
+                        pos += 3;
+                        break;
+                    case CONSTANT_MethodHandle:
+                        pos += 4;
+                        break;
+                    case CONSTANT_Integer:
+                    case CONSTANT_Float:
+                    case CONSTANT_Fieldref:
+                    case CONSTANT_Methodref:
+                    case CONSTANT_InterfaceMethodref:
+                    case CONSTANT_NameAndType:
+                    case CONSTANT_Dynamic:
+                    case CONSTANT_InvokeDynamic:
+                        pos += 5;
+                        break;
+                    case CONSTANT_Long:
+                    case CONSTANT_Double:
+                        // These take up two entries of the constant pool.
+                        pos += 9;
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Bad constant pool tag " + tag);
+                }
+            }
+
+            accessFlags = u2(bytes, pos);
+            name = className(bytes, offsets, utf8, u2(bytes, pos + 2));
+            int superClass = u2(bytes, pos + 4);
+            superName = superClass == 0 ? null : className(bytes, offsets, utf8, superClass);
+            interfaceNames = new ArrayList<String>();
+            int interfacesCount = u2(bytes, pos + 6);
+            pos += 8;
+            for (int i = 0; i < interfacesCount; i++, pos += 2) {
+                interfaceNames.add(className(bytes, offsets, utf8, u2(bytes, pos)));
+            }
+
+            // Check the fields and methods, so that decoding them later can't fail.
+            membersPos = pos;
+            pos = skipMembers(bytes, pos, offsets);
+            skipMembers(bytes, pos, offsets);
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.utf8 = utf8;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated class file");
+        }
+    }
+
+    /**
+     * Constructs the symbols of a class from the (loaded) class itself.
+     *
+     * @param loaded the class.
+     */
+    public CLClassSymbol(Class<?> loaded) {
+        // A nested class is public in its class file if it is public or protected.
+        int modifiers = loaded.getModifiers();
+        accessFlags = modifiers & (ACC_FINAL | ACC_INTERFACE | ACC_ABSTRACT);
+        if (Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)) {
+            accessFlags |= ACC_PUBLIC;
+        }
+        name = internalName(loaded);
+        superName = loaded.getSuperclass() == null ? null : internalName(loaded.getSuperclass());
+        interfaceNames = new ArrayList<String>();
+        for (Class<?> superInterface : loaded.getInterfaces()) {
+            interfaceNames.add(internalName(superInterface));
+        }
+        this.loaded = loaded;
+    }
+
+    /**
+     * Returns the fields declared by the class.
+     *
+     * @return the fields declared by the class.
+     */
+    public ArrayList<CLMemberSymbol> fields() {
+        decodeMembers();
+        return fields;
+    }
+
+    /**
+     * Returns the methods (including constructors and, unless the symbols were taken from the
+     * class itself, the class initializer) declared by the class.
+     *
+     * @return the methods declared by the class.
+     */
+    public ArrayList<CLMemberSymbol> methods() {
+        decodeMembers();
+        return methods;
+    }
+
+    /**
+     * Reads the symbols of the class with the specified name from the specified class path (or,
+     * for a class of the Java runtime image, takes them from the class), and returns them, or null
+     * if the class is not found on the class path, or its class file can't be read.
+     *
+     * @param classPath the class path.
+     * @param name      fully qualified internal form of the class name.
+     * @return the symbols of the class, or null.
+     */
+    public static CLClassSymbol read(CLPath classPath, String name) {
+        if (CLPath.isInRuntimeImage(name)) {
+            Class<?> loaded = CLPath.loadRuntimeClass(name);
+            return loaded == null ? null : new CLClassSymbol(loaded);
+        }
+        CLInputStream in = classPath.loadClass(name);
+        if (in == null) {
+            return null;
+        }
+        try {
+            try {
+                return new CLClassSymbol(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Decodes the fields and methods of the class, unless they have been decoded already.
+    private synchronized void decodeMembers() {
+        if (fields != null) {
+            return;
+        }
+        ArrayList<CLMemberSymbol> fields = new ArrayList<CLMemberSymbol>();
+        ArrayList<CLMemberSymbol> methods = new ArrayList<CLMemberSymbol>();
+        if (loaded != null) {
+            reflectMembers(fields, methods);
+            this.methods = methods;
+            this.fields = fields;
+            loaded = null;
+            return;
+        }
+        try {
+            int pos = decodeMembers(membersPos, fields);
+            decodeMembers(pos, methods);
+        } catch (IOException e) {
+            // Can't happen, since the members were checked when the class file was read.
+        }
+        this.methods = methods;
+        this.fields = fields;
+        bytes = null;
+        offsets = null;
+        utf8 = null;
+    }
+
+    // Takes the fields and methods of the class from the class itself, into the lists of members.
+    private void reflectMembers(ArrayList<CLMemberSymbol> fields,
+                                ArrayList<CLMemberSymbol> methods) {
+        for (Field field : loaded.getDeclaredFields()) {
+            fields.add(new CLMemberSymbol(field.getModifiers(), field.getName(),
+                    field.getType().descriptorString()));
+        }
+        for (Constructor<?> constructor : loaded.getDeclaredConstructors()) {
+            methods.add(new CLMemberSymbol(constructor.getModifiers(), "<init>",
+                    descriptor(constructor.getParameterTypes(), void.class)));
+        }
+        for (Method method : loaded.getDeclaredMethods()) {
+            methods.add(new CLMemberSymbol(method.getModifiers(), method.getName(),
+                    descriptor(method.getParameterTypes(), method.getReturnType())));
+        }
+    }
+
+    // Decodes the fields_count and fields items (or the methods_count and methods items) of the
+    // class file, starting at the specified position, into the list of members, and returns the
+    // position after them.
+    private int decodeMembers(int pos, ArrayList<CLMemberSymbol> members) throws IOException {
+        int count = u2(bytes, pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            int accessFlags = u2(bytes, pos);
+            String name = utf8(bytes, offsets, utf8, u2(bytes, pos + 2));
+            String descriptor = utf8(bytes, offsets, utf8, u2(bytes, pos + 4));
+            members.add(new CLMemberSymbol(accessFlags, name, descriptor));
+            pos = skipAttributes(bytes, pos + 6);
+        }
+        return pos;
+    }
+
+    // Checks the fields_count and fields items (or the methods_count and methods items) of a
+    // class file, starting at the specified position, without decoding them, and returns the
+    // position after them.
+    private static int skipMembers(byte[] bytes, int pos, int[] offsets) throws IOException {
+        int count = u2(bytes, pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            checkUtf8(bytes, offsets, u2(bytes, pos + 2));
+            checkUtf8(bytes, offsets, u2(bytes, pos + 4));
+            pos = skipAttributes(bytes, pos + 6);
+        }
+        if (pos > bytes.length) {
+            throw new IOException("Truncated class file");
+        }
+        return pos;
+    }
+
+    // Returns the position after the attributes_count and attributes items that start at the
+    // specified position.
+    private static int skipAttributes(byte[] bytes, int pos) {
+        int count = u2(bytes, pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            // The attribute_name_index and attribute_length items, and the info.
+            pos += 6 + u4(bytes, pos + 2);
+        }
+        return pos;
+    }
+
+    // Checks that the entry at the specified index of the constant pool is a string, which can
+    // be decoded.
+    private static void checkUtf8(byte[] bytes, int[] offsets, int index) throws IOException {
+        if ((bytes[offsets[index]] & 0xFF) != CONSTANT_Utf8) {
+            throw new IOException("Bad constant pool index " + index);
+        }
+    }
+
+    // Returns the name of the class at the specified index of the constant pool.
+    private static String className(byte[] bytes, int[] offsets, String[] utf8, int index)
+            throws IOException {
+        if ((bytes[offsets[index]] & 0xFF) != CONSTANT_Class) {
+            throw new IOException("Bad constant pool index " + index);
+        }
+        return utf8(bytes, offsets, utf8, u2(bytes, offsets[index] + 1));
+    }
+
+    // Returns the string at the specified index of the constant pool, decoding it (from modified
+    // UTF-8) the first time it is asked for. A string that is not well-formed modified UTF-8 is
+    // decoded as (standard) UTF-8, with replacement characters.
+    private static String utf8(byte[] bytes, int[] offsets, String[] utf8, int index)
+            throws IOException {
+        if (utf8[index] == null) {
+            int offset = offsets[index];
+            if ((bytes[offset] & 0xFF) != CONSTANT_Utf8) {
+                throw new IOException("Bad constant pool index " + index);
+            }
+            int length = u2(bytes, offset + 1);
+            boolean ascii = true;
+            for (int i = offset + 3; i < offset + 3 + length && ascii; i++) {
+                ascii = bytes[i] > 0;
+            }
+            if (ascii) {
+                utf8[index] = new String(bytes, offset + 3, length, StandardCharsets.ISO_8859_1);
+            } else {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset + 1,
+                        length + 2));
+                try {
+                    utf8[index] = in.readUTF();
+                } catch (IOException e) {
+                    utf8[index] = new String(bytes, offset + 3, length, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return utf8[index];
+    }
+
+    // Returns the fully qualified internal form of the name of the specified class.
+    private static String internalName(Class<?> c) {
+        return c.getName().replace('.', '/');
+    }
+
+    // Returns the descriptor of a method with the specified parameter types and return type.
+    private static String descriptor(Class<?>[] parameterTypes, Class<?> returnType) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class<?> parameterType : parameterTypes) {
+            descriptor.append(parameterType.descriptorString());
+        }
+        descriptor.append(')').append(returnType.descriptorString());
+        return descriptor.toString();
+    }
+
+    // Returns the unsigned two-byte value at the specified position.
+    private static int u2(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xFF) << 8) | (bytes[pos + 1] & 0xFF);
+    }
+
+    // Returns the four-byte value at the specified position.
+    private static int u4(byte[] bytes, int pos) {
+        return (u2(bytes, pos) << 16) | u2(bytes, pos + 2);
+    }
+}
+
+/**
+ * This class provides the symbols of a field or method of a class: its access flags, name, and
+ * descriptor.
+ */
+class CLMemberSymbol {
+    /**
+     * field_info.access_flags (or method_info.access_flags) item.
+     */
+    public int accessFlags;
+
+    /**
+     * The (simple) name of the member.
+     */
+    public String name;
+
+    /**
+     * The descriptor of the member.
+     */
+    public String descriptor;
+
+    /**
+     * Constructs the symbols of a member.
+     *
+     * @param accessFlags access flags for the member.
+     * @param name        the name of the member.
+     * @param descriptor  the descriptor of the member.
+     */
+    public CLMemberSymbol(int accessFlags, String name, String descriptor) {
+        this.accessFlags = accessFlags;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+}
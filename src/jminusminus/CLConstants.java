@@ -12,15 +12,28 @@ public class CLConstants {
     public static final long MAGIC = 3405691582L;
 
     /**
-     * Major version for the class files that j-- compiles.
+     * Major version (that of Java 8) for the class files that j-- compiles; CLEmitter computes the
+     * stack map frames that class files of this version must have.
      */
-    public static final int MAJOR_VERSION = 49;
+    public static final int MAJOR_VERSION = 52;
 
     /**
      * Minor version for the class files that j-- compiles.
      */
     public static final int MINOR_VERSION = 0;
 
+    /**
+     * Major version (that of Java 9) for the class files that j-- compiles when string
+     * concatenation is done by invokedynamic (with java.lang.invoke.StringConcatFactory).
+     */
+    public static final int INDY_MAJOR_VERSION = 53;
+
+    /**
+     * Major version (that of Java 6) from which the code section of each method in a class file
+     * carries a StackMapTable attribute, which is what the type checking verifier checks against.
+     */
+    public static final int FRAMES_MAJOR_VERSION = 50;
+
     /**
      * public access flag.
      */
@@ -166,6 +179,41 @@ public class CLConstants {
      */
     public static final short CONSTANT_NameAndType = 12;
 
+    /**
+     * Identifies CONSTANT_MethodHandle_info constant pool structure.
+     */
+    public static final short CONSTANT_MethodHandle = 15;
+
+    /**
+     * Identifies CONSTANT_MethodType_info constant pool structure.
+     */
+    public static final short CONSTANT_MethodType = 16;
+
+    /**
+     * Identifies CONSTANT_Dynamic_info constant pool structure.
+     */
+    public static final short CONSTANT_Dynamic = 17;
+
+    /**
+     * Identifies CONSTANT_InvokeDynamic_info constant pool structure.
+     */
+    public static final short CONSTANT_InvokeDynamic = 18;
+
+    /**
+     * Identifies CONSTANT_Module_info constant pool structure.
+     */
+    public static final short CONSTANT_Module = 19;
+
+    /**
+     * Identifies CONSTANT_Package_info constant pool structure.
+     */
+    public static final short CONSTANT_Package = 20;
+
+    /**
+     * Identifies the REF_invokeStatic kind of method handle.
+     */
+    public static final int REF_invokeStatic = 6;
+
     /**
      * Identifies ConstantValue attribute.
      */
@@ -258,6 +306,79 @@ public class CLConstants {
      */
     public static final String ATT_ANNOTATION_DEFAULT = "AnnotationDefault";
 
+    /**
+     * Identifies BootstrapMethods attribute.
+     */
+    public static final String ATT_BOOTSTRAP_METHODS = "BootstrapMethods";
+
+    /**
+     * Identifies StackMapTable attribute.
+     */
+    public static final String ATT_STACK_MAP_TABLE = "StackMapTable";
+
+    /**
+     * Identifies the Top verification type in a stack map frame.
+     */
+    public static final short ITEM_Top = 0;
+
+    /**
+     * Identifies the Integer verification type in a stack map frame.
+     */
+    public static final short ITEM_Integer = 1;
+
+    /**
+     * Identifies the Float verification type in a stack map frame.
+     */
+    public static final short ITEM_Float = 2;
+
+    /**
+     * Identifies the Double verification type in a stack map frame.
+     */
+    public static final short ITEM_Double = 3;
+
+    /**
+     * Identifies the Long verification type in a stack map frame.
+     */
+    public static final short ITEM_Long = 4;
+
+    /**
+     * Identifies the Null verification type in a stack map frame.
+     */
+    public static final short ITEM_Null = 5;
+
+    /**
+     * Identifies the UninitializedThis verification type in a stack map frame.
+     */
+    public static final short ITEM_UninitializedThis = 6;
+
+    /**
+     * Identifies the Object verification type in a stack map frame.
+     */
+    public static final short ITEM_Object = 7;
+
+    /**
+     * Identifies the Uninitialized verification type in a stack map frame.
+     */
+    public static final short ITEM_Uninitialized = 8;
+
+    /**
+     * Frame type of same_locals_1_stack_item_frame_extended stack map frame; frame types 0 to 63
+     * are those of same_frame and 64 to 127 are those of same_locals_1_stack_item_frame.
+     */
+    public static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+
+    /**
+     * Frame type of same_frame_extended stack map frame; frame types 248 to 250 are those of
+     * chop_frame (with 3 to 1 locals chopped) and 252 to 254 are those of append_frame (with 1 to 3
+     * locals appended).
+     */
+    public static final int SAME_FRAME_EXTENDED = 251;
+
+    /**
+     * Frame type of full_frame stack map frame.
+     */
+    public static final int FULL_FRAME = 255;
+
     /**
      * Identifies boolean type of annotation element value.
      */
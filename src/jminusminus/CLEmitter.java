@@ -2,8 +2,6 @@
 
 package jminusminus;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -12,8 +10,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 
@@ -32,6 +31,9 @@ public class CLEmitter {
     // Name of the class.
     private String name;
 
+    // Name of the superclass of the class.
+    private String superClassName;
+
     // If true, the in-memory representation of the class will be written to the file system.
     // Otherwise, it won't be saved as a file.
     private boolean toFile;
@@ -66,6 +68,9 @@ public class CLEmitter {
     // Inner classes of the class.
     private ArrayList<CLInnerClassInfo> innerClasses;
 
+    // Bootstrap methods of the invokedynamic call sites in the class.
+    private ArrayList<CLBootstrapMethodInfo> bootstrapMethods;
+
     // Code (instruction) section of the method last added.
     private ArrayList<CLInstruction> mCode;
 
@@ -91,12 +96,21 @@ public class CLEmitter {
     // Whether the method last added needs closing.
     private boolean isMethodOpen;
 
-    // Stores jump labels for the method last added. When a label is created, a mapping from the
-    // label to an Integer representing the pc of the next instruction is created. Later on, when
-    // the label is added, its Integer value is replaced by the value of pc then.
-    private Hashtable<String, Integer> mLabels;
+    // Stores the pcs of the jump labels for the method last added, indexed by label (labels are
+    // integer handles, numbered from 0 in each method). When a label is added, its entry is set
+    // to the value of pc then; it is -1 until then.
+    private int[] mLabelPCs;
+
+    // Maps the names of the jump labels given as strings (see createLabel()) to their handles;
+    // null until such a label is used in the method.
+    private HashMap<String, Integer> mLabelNames;
 
-    // Counter for creating unique jump labels.
+    // Maps the pc of each instruction in the code section of the method last added to the index
+    // of that instruction in mCode, or to -1 if no instruction starts at that pc. Built once, when
+    // the method is closed.
+    private int[] mPCToIndex;
+
+    // Counter for creating unique jump labels; it is also the number of labels in mLabelPCs.
     private int mLabelCount;
 
     // Whether there was an instruction added after the last call to addLabel( String label). If
@@ -109,15 +123,19 @@ public class CLEmitter {
     // added.
     private int mPC;
 
+    // Whether the code section of each method is run through the peephole optimizer (see
+    // CLOptimizer) when the method is closed.
+    private boolean optimize;
+
+    // Major version of the class files.
+    private int majorVersion;
+
     // Name of the method last added; used for error reporting.
     private String eCurrentMethod;
 
     // Whether an error occurred while creating/writing the class.
     private boolean errorHasOccurred;
 
-    // Class loader to use for creating in-memory representation of classes from byte streams.
-    private static ByteClassLoader byteClassLoader;
-
     /**
      * Constructs a CLEmitter instance given a boolean on whether or not the class file will be
      * written to the file system.
@@ -128,6 +146,7 @@ public class CLEmitter {
     public CLEmitter(boolean toFile) {
         destDir = ".";
         this.toFile = toFile;
+        majorVersion = MAJOR_VERSION;
     }
 
     /**
@@ -139,6 +158,35 @@ public class CLEmitter {
         this.destDir = destDir;
     }
 
+    /**
+     * Sets whether the code section of each method is run through a peephole optimizer before
+     * its jump labels are resolved; the default is false.
+     *
+     * @param optimize whether to optimize the code.
+     */
+    public void optimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    /**
+     * Sets the major version of the class files; the default is MAJOR_VERSION. From version 50
+     * (FRAMES_MAJOR_VERSION) on, the code of each method gets a StackMapTable attribute.
+     *
+     * @param majorVersion the major version.
+     */
+    public void majorVersion(int majorVersion) {
+        this.majorVersion = majorVersion;
+    }
+
+    /**
+     * Returns the major version of the class files.
+     *
+     * @return the major version of the class files.
+     */
+    public int majorVersion() {
+        return majorVersion;
+    }
+
     /**
      * Returns true if an emitter error has occurred up to now, and false otherwise.
      *
@@ -171,9 +219,10 @@ public class CLEmitter {
         methods = new ArrayList<CLMethodInfo>();
         attributes = new ArrayList<CLAttributeInfo>();
         innerClasses = new ArrayList<CLInnerClassInfo>();
+        bootstrapMethods = new ArrayList<CLBootstrapMethodInfo>();
         errorHasOccurred = false;
         clFile.magic = MAGIC;
-        clFile.majorVersion = MAJOR_VERSION;
+        clFile.majorVersion = majorVersion;
         clFile.minorVersion = MINOR_VERSION;
         if (!validInternalForm(thisClass)) {
             reportEmitterError("'%s' is not in internal form", thisClass);
@@ -187,6 +236,7 @@ public class CLEmitter {
             }
         }
         name = thisClass;
+        superClassName = superClass;
         clFile.thisClass = constantPool.constantClassInfo(thisClass);
         clFile.superClass = constantPool.constantClassInfo(superClass);
         if (superInterfaces != null) {
@@ -364,6 +414,26 @@ public class CLEmitter {
      */
     public void addExceptionHandler(String startLabel, String endLabel, String handlerLabel,
                                     String catchType) {
+        addExceptionHandler(labelFor(startLabel), labelFor(endLabel), labelFor(handlerLabel),
+                catchType);
+    }
+
+    /**
+     * Adds an exception handler, given its labels as integer handles (see newLabel()).
+     *
+     * @param startLabel   the exception handler is active from the instruction following this
+     *                     label in the code section of the current method being added ...
+     * @param endLabel     to the instruction following this label. Formally, the handler is
+     *                     active while the program counter is within the interval [startLabel,
+     *                     endLabel).
+     * @param handlerLabel the handler begins with instruction following this label.
+     * @param catchType    the exception type that this exception handler is designated to catch,
+     *                     as a fully qualified name in internal form. If null, this exception
+     *                     handler is called for all exceptions; this is used to implement
+     *                     "finally".
+     */
+    public void addExceptionHandler(int startLabel, int endLabel, int handlerLabel,
+                                    String catchType) {
         if (catchType != null && !validInternalForm(catchType)) {
             reportEmitterError("'%s' is not in internal form", catchType);
         }
@@ -583,10 +653,11 @@ public class CLEmitter {
      * Method Instructions:
      *
      * <pre>
-     *   INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE, INVOKEDYNAMIC
+     *   INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE
      * </pre>
      * <p>
-     * The opcodes for instructions are defined in CLConstants class.
+     * (INVOKEDYNAMIC is added using addInvokeDynamicInstruction().) The opcodes for instructions
+     * are defined in CLConstants class.
      *
      * @param opcode opcode of the instruction.
      * @param target fully qualified name in internal form of the class to which the member belongs.
@@ -615,6 +686,10 @@ public class CLEmitter {
                 instr = new CLFieldInstruction(opcode, mPC++, index, stackUnits);
                 break;
             case METHOD1:
+                if (opcode == INVOKEDYNAMIC) {
+                    reportOpcodeError(opcode);
+                    break;
+                }
                 if (!validMethodDescriptor(type)) {
                     reportEmitterError("%s: '%s' is not a valid type descriptor for method",
                             eCurrentMethod, type);
@@ -648,6 +723,53 @@ public class CLEmitter {
         }
     }
 
+    /**
+     * Adds an INVOKEDYNAMIC instruction. The call site is linked by calling the specified
+     * bootstrap method (a static method) with the specified static arguments, which are strings.
+     * The bootstrap method is recorded in the BootstrapMethods attribute of the class.
+     *
+     * @param name               name of the method invoked.
+     * @param type               type descriptor of the method invoked.
+     * @param bootstrapClass     fully qualified name in internal form of the class to which the
+     *                           bootstrap method belongs.
+     * @param bootstrapName      name of the bootstrap method.
+     * @param bootstrapType      type descriptor of the bootstrap method.
+     * @param bootstrapArguments static arguments of the bootstrap method.
+     */
+    public void addInvokeDynamicInstruction(String name, String type, String bootstrapClass,
+                                            String bootstrapName, String bootstrapType,
+                                            String... bootstrapArguments) {
+        if (!validInternalForm(bootstrapClass)) {
+            reportEmitterError("%s: '%s' is not in internal form", eCurrentMethod,
+                    bootstrapClass);
+        }
+        if (!validMethodDescriptor(type)) {
+            reportEmitterError("%s: '%s' is not a valid type descriptor for method",
+                    eCurrentMethod, type);
+        }
+        if (!validMethodDescriptor(bootstrapType)) {
+            reportEmitterError("%s: '%s' is not a valid type descriptor for method",
+                    eCurrentMethod, bootstrapType);
+        }
+        ArrayList<Integer> arguments = new ArrayList<Integer>();
+        for (String argument : bootstrapArguments) {
+            arguments.add(constantPool.constantStringInfo(argument));
+        }
+        CLBootstrapMethodInfo bootstrapMethod = new CLBootstrapMethodInfo(
+                constantPool.constantMethodHandleInfo(REF_invokeStatic, bootstrapClass,
+                        bootstrapName, bootstrapType), arguments);
+        int bootstrapIndex = bootstrapMethods.indexOf(bootstrapMethod);
+        if (bootstrapIndex == -1) {
+            bootstrapIndex = bootstrapMethods.size();
+            bootstrapMethods.add(bootstrapMethod);
+        }
+        int index = constantPool.constantInvokeDynamicInfo(bootstrapIndex, name, type);
+        CLInstruction instr = new CLMethodInstruction(INVOKEDYNAMIC, mPC++, index,
+                methodStackResidue(type));
+        mPC += instr.operandCount();
+        mCode.add(instr);
+    }
+
     /**
      * Adds a reference (object) instruction. The following instructions can be added using this
      * method:
@@ -774,6 +896,17 @@ public class CLEmitter {
      * @param label  branch label.
      */
     public void addBranchInstruction(int opcode, String label) {
+        addBranchInstruction(opcode, labelFor(label));
+    }
+
+    /**
+     * Adds a branch instruction, given its label as an integer handle (see newLabel()). The
+     * instructions that can be added are those of addBranchInstruction(int, String).
+     *
+     * @param opcode opcode of the instruction.
+     * @param label  branch label.
+     */
+    public void addBranchInstruction(int opcode, int label) {
         CLInstruction instr = null;
         switch (CLInstruction.instructionInfo[opcode].category) {
             case FLOW_CONTROL1:
@@ -800,6 +933,24 @@ public class CLEmitter {
      */
     public void addTABLESWITCHInstruction(String defaultLabel, int low, int high,
                                           ArrayList<String> labels) {
+        int[] handles = new int[labels.size()];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = labelFor(labels.get(i));
+        }
+        addTABLESWITCHInstruction(labelFor(defaultLabel), low, high, handles);
+    }
+
+    /**
+     * Adds a TABLESWITCH instruction (used for switch statements), given its labels as integer
+     * handles (see newLabel()).
+     *
+     * @param defaultLabel jump label for default value.
+     * @param low          smallest value of index.
+     * @param high         highest value of index.
+     * @param labels       jump labels for each index value from low to high, end values
+     *                     included.
+     */
+    public void addTABLESWITCHInstruction(int defaultLabel, int low, int high, int[] labels) {
         CLFlowControlInstruction instr = new CLFlowControlInstruction(TABLESWITCH, mPC++,
                 defaultLabel, low, high, labels);
         mPC += instr.operandCount();
@@ -816,6 +967,23 @@ public class CLEmitter {
      */
     public void addLOOKUPSWITCHInstruction(String defaultLabel, int numPairs, TreeMap<Integer,
             String> matchLabelPairs) {
+        TreeMap<Integer, Integer> handles = new TreeMap<Integer, Integer>();
+        for (Map.Entry<Integer, String> pair : matchLabelPairs.entrySet()) {
+            handles.put(pair.getKey(), labelFor(pair.getValue()));
+        }
+        addLOOKUPSWITCHInstruction(labelFor(defaultLabel), numPairs, handles);
+    }
+
+    /**
+     * Adds a LOOKUPSWITCH instruction (used for switch statements), given its labels as integer
+     * handles (see newLabel()).
+     *
+     * @param defaultLabel    jump label for default value.
+     * @param numPairs        number of pairs in the match table.
+     * @param matchLabelPairs key match table.
+     */
+    public void addLOOKUPSWITCHInstruction(int defaultLabel, int numPairs,
+                                           TreeMap<Integer, Integer> matchLabelPairs) {
         CLFlowControlInstruction instr = new CLFlowControlInstruction(LOOKUPSWITCH, mPC++,
                 defaultLabel, numPairs, matchLabelPairs);
         mPC += instr.operandCount();
@@ -921,7 +1089,17 @@ public class CLEmitter {
      * @param label jump label.
      */
     public void addLabel(String label) {
-        mLabels.put(label, mPC);
+        addLabel(labelFor(label));
+    }
+
+    /**
+     * Adds a jump label, given as an integer handle (see newLabel()), to the code section of the
+     * method being added.
+     *
+     * @param label jump label.
+     */
+    public void addLabel(int label) {
+        mLabelPCs[label] = mPC;
         mInstructionAfterLabel = false;
     }
 
@@ -931,7 +1109,28 @@ public class CLEmitter {
      * @return unique jump label.
      */
     public String createLabel() {
-        return "Label" + mLabelCount++;
+        int label = newLabel();
+        String name = "Label" + label;
+        if (mLabelNames == null) {
+            mLabelNames = new HashMap<String, Integer>();
+        }
+        mLabelNames.put(name, label);
+        return name;
+    }
+
+    /**
+     * Constructs and returns a unique jump label, as an integer handle. The methods that take
+     * labels all have a variant taking such handles, which (unlike the variants taking strings)
+     * don't have to look the labels up.
+     *
+     * @return unique jump label.
+     */
+    public int newLabel() {
+        if (mLabelCount == mLabelPCs.length) {
+            mLabelPCs = Arrays.copyOf(mLabelPCs, mLabelCount * 2);
+        }
+        mLabelPCs[mLabelCount] = -1;
+        return mLabelCount++;
     }
 
     /**
@@ -952,13 +1151,6 @@ public class CLEmitter {
         return constantPool;
     }
 
-    /**
-     * Sets a new ByteClassLoader for loading classes from byte streams.
-     */
-    public static void initializeByteClassLoader() {
-        byteClassLoader = new ByteClassLoader();
-    }
-
     /**
      * Returns the CLFile instance corresponding to the class built by this emitter.
      *
@@ -969,31 +1161,24 @@ public class CLEmitter {
     }
 
     /**
-     * Returns the class being constructed as a Java Class instance.
+     * Returns the symbols of the class being constructed, as they are read from its class file.
      *
-     * @return Java Class instance.
+     * @return the symbols of the class.
      */
-    public Class toClass() {
+    public CLClassSymbol toSymbol() {
         endOpenMethodIfAny();
-        Class theClass = null;
+        CLClassSymbol symbol = null;
         try {
             // Extract the bytes from the class representation in memory into an array of bytes.
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            CLOutputStream out = new CLOutputStream(new BufferedOutputStream(byteStream));
-            clFile.write(out);
-            out.close();
-            byte[] classBytes = byteStream.toByteArray();
-            byteStream.close();
+            CLByteBuffer byteBuffer = new CLByteBuffer();
+            clFile.write(byteBuffer);
 
-            // Load a Java Class instance from its byte representation.
-            byteClassLoader.setClassBytes(classBytes);
-            theClass = byteClassLoader.loadClass(name, true);
+            // Read the symbols back from the bytes.
+            symbol = new CLClassSymbol(byteBuffer.toByteArray());
         } catch (IOException e) {
             reportEmitterError("Cannot write class to byte stream");
-        } catch (ClassNotFoundException e) {
-            reportEmitterError("Cannot load class from byte stream");
         }
-        return theClass;
+        return symbol;
     }
 
     /**
@@ -1010,9 +1195,10 @@ public class CLEmitter {
             File file = new File(destDir + File.separator +
                     name.substring(0, name.lastIndexOf("/") + 1));
             file.mkdirs();
-            CLOutputStream out =
-                    new CLOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)));
-            clFile.write(out);
+            CLByteBuffer byteBuffer = new CLByteBuffer();
+            clFile.write(byteBuffer);
+            OutputStream out = new FileOutputStream(outFile);
+            byteBuffer.writeTo(out);
             out.close();
         } catch (FileNotFoundException e) {
             reportEmitterError("File %s not found", outFile);
@@ -1033,11 +1219,26 @@ public class CLEmitter {
         mExceptionHandlers = new ArrayList<CLException>();
         mCode = new ArrayList<CLInstruction>();
         mCodeAttributes = new ArrayList<CLAttributeInfo>();
-        mLabels = new Hashtable<String, Integer>();
-        mLabelCount = 1;
+        mLabelPCs = new int[16];
+        mLabelNames = null;
+        mLabelCount = 0;
         mInstructionAfterLabel = false;
     }
 
+    // Returns the handle of the jump label with the specified name, creating a label for the name
+    // if there isn't one.
+    private int labelFor(String name) {
+        if (mLabelNames == null) {
+            mLabelNames = new HashMap<String, Integer>();
+        }
+        Integer label = mLabelNames.get(name);
+        if (label == null) {
+            label = newLabel();
+            mLabelNames.put(name, label);
+        }
+        return label;
+    }
+
     // Adds the method created using addMethod() to the ClassFile structure. This involves adding
     // an instance of CLMethodInfo to ClassFile.methods for the method.
     private void endOpenMethodIfAny() {
@@ -1048,12 +1249,26 @@ public class CLEmitter {
                 addNoArgInstruction(NOP);
             }
 
+            if (optimize) {
+                mPC = CLOptimizer.optimize(mCode, mLabelPCs, mLabelCount);
+            }
+
+            // Index the instructions by their pc.
+            mPCToIndex = new int[mPC];
+            Arrays.fill(mPCToIndex, -1);
+            for (int i = 0; i < mCode.size(); i++) {
+                mPCToIndex[mCode.get(i).pc()] = i;
+            }
+
             // Resolve jump labels in exception handlers.
             ArrayList<CLExceptionInfo> exceptionTable = new ArrayList<CLExceptionInfo>();
             for (CLException e : mExceptionHandlers) {
-                if (!e.resolveLabels(mLabels)) {
+                if (!e.resolveLabels(mLabelPCs)) {
                     reportEmitterError("%s: Unable to resolve exception handler label(s)",
                             eCurrentMethod);
+                } else if (e.startPC == e.endPC) {
+                    // The optimizer removed all the code the handler covered.
+                    continue;
                 }
 
                 // We allow catchType to be null (mapping to index 0), implying this exception
@@ -1065,8 +1280,8 @@ public class CLEmitter {
                 exceptionTable.add(c);
             }
 
-            // Convert Instruction objects to bytes.
-            ArrayList<Integer> byteCode = new ArrayList<Integer>();
+            // Convert Instruction objects to bytes; mPC is the exact size of the code.
+            CLByteBuffer byteCode = new CLByteBuffer(mPC);
             int maxLocals = mArgumentCount;
             for (CLInstruction instr : mCode) {
                 // Compute maxLocals.
@@ -1099,18 +1314,36 @@ public class CLEmitter {
 
                 // Resolve jump labels in flow control instructions.
                 if (instr instanceof CLFlowControlInstruction) {
-                    if (!((CLFlowControlInstruction) instr).resolveLabels(mLabels)) {
+                    if (!((CLFlowControlInstruction) instr).resolveLabels(mLabelPCs)) {
                         reportEmitterError("%s: Unable to resolve jump label(s)", eCurrentMethod);
                     }
                 }
 
-                byteCode.addAll(instr.toBytes());
+                instr.toBytes(byteCode);
             }
 
             // Code attribute; add only if method is neither native nor abstract.
             if (!((mAccessFlags & ACC_NATIVE) == ACC_NATIVE ||
                     (mAccessFlags & ACC_ABSTRACT) == ACC_ABSTRACT)) {
-                addMethodAttribute(codeAttribute(byteCode, exceptionTable, stackDepth(),
+                int stackDepth = stackDepth();
+                if (majorVersion >= FRAMES_MAJOR_VERSION && !errorHasOccurred) {
+                    // Compute the stack map frames, which the verifier checks the code against
+                    // (the jump labels must have been resolved for the code to be analyzed).
+                    CLFrameComputer frameComputer = new CLFrameComputer(mCode, byteCode,
+                            mPCToIndex, exceptionTable, constantPool, name, superClassName);
+                    ArrayList<CLStackMapFrame> frames = frameComputer.computeFrames(mAccessFlags,
+                            utf8(mNameIndex), utf8(mDescriptorIndex), maxLocals);
+                    if (frames == null) {
+                        reportEmitterError("%s: Unable to compute stack map frames",
+                                eCurrentMethod);
+                    } else if (frames.size() > 0) {
+                        addCodeAttribute(stackMapTableAttribute(frames));
+                    }
+                    if (frameComputer.replacedUnreachedCode()) {
+                        stackDepth = Math.max(stackDepth, 1);
+                    }
+                }
+                addMethodAttribute(codeAttribute(byteCode, exceptionTable, stackDepth,
                         maxLocals));
             }
 
@@ -1125,6 +1358,17 @@ public class CLEmitter {
             addClassAttribute(innerClassesAttribute());
         }
 
+        // Add the BootstrapMethods attribute if this class has invokedynamic call sites, in place
+        // of the one added when the previous method was closed.
+        if (bootstrapMethods.size() > 0) {
+            for (int i = attributes.size() - 1; i >= 0; i--) {
+                if (attributes.get(i) instanceof CLBootstrapMethodsAttribute) {
+                    attributes.remove(i);
+                }
+            }
+            addClassAttribute(bootstrapMethodsAttribute());
+        }
+
         // Set the members of the ClassFile structure to their appropriate values.
         clFile.constantPoolCount = constantPool.size() + 1;
         clFile.constantPool = constantPool;
@@ -1365,43 +1609,47 @@ public class CLEmitter {
         return false;
     }
 
-    // Returns the instruction with the specified pc within the code array of the current method
-    // being added, or null.
-    private CLInstruction instruction(int pc) {
-        for (CLInstruction instruction : mCode) {
-            if (instruction.pc() == pc) {
-                return instruction;
-            }
-        }
-        return null;
-    }
-
     // Returns the index of the instruction with the specified pc, within the code array of the
     // current method being added, or -1.
     private int instructionIndex(int pc) {
-        for (int i = 0; i < mCode.size(); i++) {
-            if (mCode.get(i).pc() == pc) {
-                return i;
-            }
-        }
-        return -1;
+        return (pc >= 0 && pc < mPCToIndex.length) ? mPCToIndex[pc] : -1;
     }
 
-    // Computes and returns the maximum depth of the operand stack for the method last added.
+    // Computes and returns the maximum depth of the operand stack for the method last added. The
+    // code is traversed from the first instruction and from each exception handler, using a
+    // worklist of instructions along with the depth of the stack before they are executed. An
+    // instruction is added to the worklist only the first time it is reached, so each
+    // instruction is visited at most once.
     private int stackDepth() {
-        CLBranchStack branchTargets = new CLBranchStack();
+        int n = mCode.size();
+
+        // Depth of the stack before each instruction is executed, or -1 if not reached yet.
+        int[] depthAt = new int[n];
+        Arrays.fill(depthAt, -1);
+
+        // Indices of instructions reached but not visited yet.
+        int[] worklist = new int[n];
+        int top = 0;
+
+        if (n > 0) {
+            depthAt[0] = 0;
+            worklist[top++] = 0;
+        }
         for (CLException e : mExceptionHandlers) {
-            CLInstruction h = instruction(e.handlerPC);
-            if (h != null) {
+            int h = instructionIndex(e.handlerPC);
+            if (h != -1 && depthAt[h] == -1) {
                 // 1 because the exception that is thrown is pushed on top of the operand stack.
-                branchTargets.push(h, 1);
+                depthAt[h] = 1;
+                worklist[top++] = h;
             }
         }
-        int stackDepth = 0, maxStackDepth = 0, c = 0;
-        CLInstruction instr = (mCode.size() == 0) ? null : mCode.get(c);
-        while (instr != null) {
+        int maxStackDepth = 0;
+        while (top > 0) {
+            int c = worklist[--top];
+            CLInstruction instr = mCode.get(c);
             int opcode = instr.opcode();
             int stackUnits = instr.stackUnits();
+            int stackDepth = depthAt[c];
             if (stackUnits == EMPTY_STACK) {
                 stackDepth = 0;
             } else if (stackUnits == UNIT_SIZE_STACK) {
@@ -1412,46 +1660,53 @@ public class CLEmitter {
             if (stackDepth > maxStackDepth) {
                 maxStackDepth = stackDepth;
             }
+
+            // Add the successors of the instruction to the worklist.
+            boolean fallsThrough = true;
             if (instr instanceof CLFlowControlInstruction) {
                 CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
-                int jumpToIndex = b.pc() + b.jumpToOffset();
-                CLInstruction instrAt = null;
                 switch (opcode) {
                     case JSR:
                     case JSR_W:
                     case RET:
-                        instr = null;
+                        fallsThrough = false;
+                        break;
+                    case TABLESWITCH:
+                    case LOOKUPSWITCH:
+                        fallsThrough = false;
+                        for (int offset : b.switchOffsets()) {
+                            top = reach(instructionIndex(b.pc() + offset), stackDepth, depthAt,
+                                    worklist, top);
+                        }
                         break;
                     case GOTO:
                     case GOTO_W:
-                        instr = null;
+                        fallsThrough = false;
                     default:
-                        instrAt = instruction(jumpToIndex);
-                        if (instrAt != null) {
-                            branchTargets.push(instrAt, stackDepth);
-                        }
+                        top = reach(instructionIndex(b.pc() + b.jumpToOffset()), stackDepth,
+                                depthAt, worklist, top);
                 }
-            } else {
-                if ((opcode == ATHROW) || ((opcode >= IRETURN) && (opcode <= RETURN))) {
-                    instr = null;
-                }
-            }
-            if (instr != null) {
-                c++;
-                instr = (c >= mCode.size()) ? null : mCode.get(c);
+            } else if ((opcode == ATHROW) || ((opcode >= IRETURN) && (opcode <= RETURN))) {
+                fallsThrough = false;
             }
-            if (instr == null) {
-                CLBranchTarget bt = branchTargets.pop();
-                if (bt != null) {
-                    instr = bt.target;
-                    stackDepth = bt.stackDepth;
-                    c = instructionIndex(instr.pc());
-                }
+            if (fallsThrough && c + 1 < n) {
+                top = reach(c + 1, stackDepth, depthAt, worklist, top);
             }
         }
         return maxStackDepth;
     }
 
+    // Records that the instruction at the specified index (if any) is reached with the specified
+    // stack depth, and adds it to the worklist if it was not reached before. Returns the new top
+    // of the worklist.
+    private int reach(int index, int stackDepth, int[] depthAt, int[] worklist, int top) {
+        if (index != -1 && depthAt[index] == -1) {
+            depthAt[index] = stackDepth;
+            worklist[top++] = index;
+        }
+        return top;
+    }
+
     // Adds LDC (LDC_W if index is wide) instruction.
     private void ldcInstruction(int index) {
         CLLoadStoreInstruction instr = index <= 255 ?
@@ -1480,7 +1735,7 @@ public class CLEmitter {
     // Constructs and returns a Code attribute given the list of bytes that make up the
     // instructions and their operands, exception table, maximum depth of operand stack, and
     // maximum number of local variables.
-    private CLCodeAttribute codeAttribute(ArrayList<Integer> byteCode,
+    private CLCodeAttribute codeAttribute(CLByteBuffer byteCode,
                                           ArrayList<CLExceptionInfo> exceptionTable, int stackDepth,
                                           int maxLocals) {
         int codeLength = byteCode.size();
@@ -1513,6 +1768,34 @@ public class CLEmitter {
                 innerClasses.size(), innerClasses);
     }
 
+    // Constructs and returns a StackMapTable attribute given the list of frames.
+    private CLStackMapTableAttribute stackMapTableAttribute(ArrayList<CLStackMapFrame> frames) {
+        int attributeNameIndex = constantPool.constantUtf8Info(ATT_STACK_MAP_TABLE);
+        long attributeLength = 2;
+        for (CLStackMapFrame frame : frames) {
+            attributeLength += frame.length();
+        }
+        return new CLStackMapTableAttribute(attributeNameIndex, attributeLength, frames.size(),
+                frames);
+    }
+
+    // Returns the string in the CONSTANT_Utf8_info item at the specified index in the constant
+    // pool.
+    private String utf8(int index) {
+        return new String(((CLConstantUtf8Info) constantPool.cpItem(index)).b);
+    }
+
+    // Constructs and returns a BootstrapMethods attribute.
+    private CLBootstrapMethodsAttribute bootstrapMethodsAttribute() {
+        int attributeNameIndex = constantPool.constantUtf8Info(ATT_BOOTSTRAP_METHODS);
+        long attributeLength = 2;
+        for (CLBootstrapMethodInfo info : bootstrapMethods) {
+            attributeLength += info.length();
+        }
+        return new CLBootstrapMethodsAttribute(attributeNameIndex, attributeLength,
+                bootstrapMethods.size(), bootstrapMethods);
+    }
+
     // Constructs and returns a Synthetic attribute.
     private CLAttributeInfo syntheticAttribute() {
         int attributeNameIndex = constantPool.constantUtf8Info(ATT_SYNTHETIC);
@@ -1532,8 +1815,7 @@ public class CLEmitter {
 
     // Used to report any error that occurs while creating/writing the class, to STDERR.
     private void reportEmitterError(String message, Object... args) {
-        System.err.printf(message, args);
-        System.err.println();
+        System.err.printf("%s%n", String.format(message, args));
         errorHasOccurred = true;
     }
 }
@@ -1544,14 +1826,14 @@ public class CLEmitter {
 class CLException {
     // The exception handler is active from this instruction in the code section of the current
     // method being added to ...
-    public String startLabel;
+    public int startLabel;
 
     // this instruction. Formally, the handler is active while the program counter is within the
     // interval [startPC, endPC).
-    public String endLabel;
+    public int endLabel;
 
     // Instruction after this label is first instruction of the handler.
-    public String handlerLabel;
+    public int handlerLabel;
 
     // The class of exceptions that this exception handler is designated to catch.
     public String catchType;
@@ -1578,7 +1860,7 @@ class CLException {
      * @param catchType    the exception type that this exception handler is designated to catch,
      *                     as a fully qualified name in internal form.
      */
-    public CLException(String startLabel, String endLabel, String handlerLabel, String catchType) {
+    public CLException(int startLabel, int endLabel, int handlerLabel, String catchType) {
         this.startLabel = startLabel;
         this.endLabel = endLabel;
         this.handlerLabel = handlerLabel;
@@ -1589,175 +1871,131 @@ class CLException {
      * Resolves the jump labels to the corresponding pc values using the given label to pc
      * mapping. If unable to resolve a label, the corresponding pc is set to 0.
      *
-     * @param labelToPC label to pc mapping.
+     * @param labelToPC label to pc mapping (-1 for labels that were not added).
      * @return true if all labels were resolved successfully, and false otherwise.
      */
-    public boolean resolveLabels(Hashtable<String, Integer> labelToPC) {
-        boolean allLabelsResolved = true;
-        if (labelToPC.containsKey(startLabel)) {
-            startPC = labelToPC.get(startLabel);
-        } else {
-            startPC = 0;
-            allLabelsResolved = false;
-        }
-        if (labelToPC.containsKey(endLabel)) {
-            endPC = labelToPC.get(endLabel);
-        } else {
-            endPC = 0;
-            allLabelsResolved = false;
-        }
-        if (labelToPC.containsKey(handlerLabel)) {
-            handlerPC = labelToPC.get(handlerLabel);
-        } else {
-            handlerPC = 0;
-            allLabelsResolved = false;
-        }
-        return allLabelsResolved;
+    public boolean resolveLabels(int[] labelToPC) {
+        startPC = Math.max(labelToPC[startLabel], 0);
+        endPC = Math.max(labelToPC[endLabel], 0);
+        handlerPC = Math.max(labelToPC[handlerLabel], 0);
+        return labelToPC[startLabel] >= 0 && labelToPC[endLabel] >= 0 &&
+                labelToPC[handlerLabel] >= 0;
     }
 }
 
 /**
- * Instances of this class form the elements of the CLBranchStack which is used for control flow
- * analysis to compute maximum depth of operand stack for a method.
+ * A growable buffer of (primitive) bytes. Instructions append their bytecode to a CLByteBuffer,
+ * which then serves as the code of a method, and a class file is serialized into one before it is
+ * written out or read back. Unlike java.io.ByteArrayOutputStream, the methods of this class are
+ * not synchronized.
  */
-class CLBranchTarget {
-    /**
-     * Target instruction.
-     */
-    public CLInstruction target;
+class CLByteBuffer extends OutputStream {
+    // The bytes in the buffer.
+    private byte[] bytes;
+
+    // Number of bytes in the buffer.
+    private int size;
 
     /**
-     * Depth of stack before the target instruction is executed.
+     * Constructs an empty CLByteBuffer.
      */
-    public int stackDepth;
+    public CLByteBuffer() {
+        this(256);
+    }
 
     /**
-     * Constructs a CLBranchTarget object.
+     * Constructs an empty CLByteBuffer with the specified initial capacity.
      *
-     * @param target     the target instruction.
-     * @param stackDepth depth of stack before the target instruction is executed.
+     * @param capacity initial capacity of the buffer.
      */
-    public CLBranchTarget(CLInstruction target, int stackDepth) {
-        this.target = target;
-        this.stackDepth = stackDepth;
+    public CLByteBuffer(int capacity) {
+        bytes = new byte[Math.max(capacity, 16)];
+        size = 0;
     }
-}
-
-/**
- * This class is used for control flow analysis to compute maximum depth of operand stack for a
- * method.
- */
-class CLBranchStack {
-    // Branch targets yet to visit.
-    private Stack<CLBranchTarget> branchTargets;
-
-    // Branch targets already visited.
-    private Hashtable<CLInstruction, CLBranchTarget> visitedTargets;
 
     /**
-     * Constructs a CLBranchStack object.
+     * Appends the lower order byte of the specified value to the buffer.
+     *
+     * @param b the byte to append.
      */
-    public CLBranchStack() {
-        this.branchTargets = new Stack<CLBranchTarget>();
-        this.visitedTargets = new Hashtable<CLInstruction, CLBranchTarget>();
+    public void add(int b) {
+        if (size == bytes.length) {
+            bytes = Arrays.copyOf(bytes, 2 * size);
+        }
+        bytes[size++] = (byte) b;
     }
 
     /**
-     * Pushes the specified information into the stack as a CLBranchTarget instance if the target
-     * has not been visited yet.
+     * Returns the (unsigned) byte at the specified index in the buffer.
      *
-     * @param target     the target instruction.
-     * @param stackDepth depth of stack before the target instruction is executed.
+     * @param i index of the byte.
+     * @return the (unsigned) byte at the specified index.
      */
-    public void push(CLInstruction target, int stackDepth) {
-        if (visited(target)) {
-            return;
+    public int get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
         }
-        branchTargets.push(visit(target, stackDepth));
+        return bytes[i] & 0xFF;
     }
 
     /**
-     * Pops and returns an element from the stack, or null.
+     * Sets the byte at the specified index in the buffer to the lower order byte of the specified
+     * value.
      *
-     * @return an element from the stack, or null.
+     * @param i index of the byte.
+     * @param b the byte to set.
      */
-    public CLBranchTarget pop() {
-        if (!branchTargets.empty()) {
-            CLBranchTarget bt = (CLBranchTarget) branchTargets.pop();
-            return bt;
+    public void set(int i, int b) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
         }
-        return null;
+        bytes[i] = (byte) b;
     }
 
-    // Returns an instance of CLBranchTarget with the specified information and records the
-    // target as visited.
-    private CLBranchTarget visit(CLInstruction target, int stackDepth) {
-        CLBranchTarget bt = new CLBranchTarget(target, stackDepth);
-        visitedTargets.put(target, bt);
-        return bt;
+    /**
+     * Returns the number of bytes in the buffer.
+     *
+     * @return the number of bytes in the buffer.
+     */
+    public int size() {
+        return size;
     }
 
-    // Returns true if the specified instruction has been visited, and false otherwise.
-    private boolean visited(CLInstruction target) {
-        return (visitedTargets.get(target) != null);
+    /**
+     * Returns a copy of the bytes in the buffer.
+     *
+     * @return a copy of the bytes in the buffer.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
     }
-}
-
-/**
- * A class loader to be able to load a class from a byte stream.
- */
-class ByteClassLoader extends ClassLoader {
-    // Bytes representing the class.
-    private byte[] bytes;
-
-    // Has a package been defined for this class loader?
-    private boolean pkgDefined = false;
 
     /**
-     * Sets the bytes representing the class.
+     * Writes the bytes in the buffer to the specified output stream.
      *
-     * @param bytes bytes representing the class.
+     * @param out output stream.
+     * @throws IOException if an error occurs while writing.
      */
-    public void setClassBytes(byte[] bytes) {
-        this.bytes = bytes;
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
     }
 
     /**
-     * Loads the class with the specified fully qualified name.
-     *
-     * @param name    the fully qualified name of the class.
-     * @param resolve if true then resolve the class.
-     * @throws ClassNotFoundException if the class could not be found.
+     * {@inheritDoc}
      */
-    public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        Class cls = findLoadedClass(name);
-        if (cls == null) {
-            try {
-                cls = findSystemClass(name);
-            } catch (Exception e) {
-                // Ignore these.
-            } catch (NoClassDefFoundError e) {
-                // If we get here we know the class exists, so change the name to its binary name
-                // as defined in the Java Language Specifications.
-                cls = findSystemClass(name.replace("/", "."));
-            }
-        }
-        if (cls == null) {
-            name = name.replace("/", ".");
-            String pkg = name.lastIndexOf('.') == -1 ? "" : name.substring(0,
-                    name.lastIndexOf('.'));
-            if (!pkgDefined) {
-                // Packages must be created before the class is defined, and package names must
-                // be unique within a class loader and cannot be redefined or changed once created.
-                definePackage(pkg, "", "", "", "", "", "", null);
-                pkgDefined = true;
-            }
-            cls = defineClass(name, bytes, 0, bytes.length);
-            if (resolve && cls != null) {
-                resolveClass(cls);
-            }
+    public void write(int b) {
+        add(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(byte[] b, int off, int len) {
+        if (size + len > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + len));
         }
-        return cls;
+        System.arraycopy(b, off, bytes, size, len);
+        size += len;
     }
 }
 
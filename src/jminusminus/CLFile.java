@@ -130,6 +130,16 @@ class CLFile {
         }
     }
 
+    /**
+     * Writes the contents of this class to the specified byte buffer.
+     *
+     * @param bytes byte buffer.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void write(CLByteBuffer bytes) throws IOException {
+        write(new CLOutputStream(bytes));
+    }
+
     /**
      * Returns a string identifying the inner class access permissions and properties contained in
      * the specified mask of flags.
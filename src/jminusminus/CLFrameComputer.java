@@ -0,0 +1,965 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * Computes the stack map frames for the code section of a method, which CLEmitter runs as the
+ * method is closed (when the class file is of version 50 or later), after the jump labels are
+ * resolved and the instructions are converted to bytes.
+ * <p>
+ * The computer infers the types of the local variables and of the operand stack items before each
+ * instruction, by a dataflow analysis over the instructions much like the one stackDepth() in
+ * CLEmitter does for the depth of the stack: at a point where control flows meet, the types are
+ * merged, a reference type with another one into their closest common superclass, and any other
+ * pair of different types into top. A frame is recorded for each instruction that is the target of
+ * a jump or the start of an exception handler, or that follows an instruction that doesn't fall
+ * through, and the frames are encoded in their most compact form.
+ * <p>
+ * Code that is never reached has no frame to check it against, so (as javac-compiled code never
+ * has any, but the j-- code generator may leave some) it is replaced by NOPs ending in an ATHROW,
+ * with a frame having no locals and a Throwable on the stack, and the exception handlers are made
+ * not to cover it.
+ * <p>
+ * The superclasses of a class are found from its symbols (see Type.loadType()), whether it is
+ * declared in the programs being compiled or is a library class; an interface, or a class that
+ * can't be found, is taken to have java.lang.Object for its only superclass.
+ */
+class CLFrameComputer {
+    // Types of values are represented by strings: "T" for top (which is also the type of the
+    // second word of a long or a double), "I", "F", "J" and "D" for the primitive types, "N" for
+    // null, "U" for the uninitialized this of a constructor, "U" followed by a pc for the object
+    // created but not initialized yet by the NEW instruction at that pc, and field descriptors
+    // (such as "Ljava/lang/String;" or "[I") for the reference types.
+    private static final String TOP = "T";
+    private static final String INT = "I";
+    private static final String FLOAT = "F";
+    private static final String LONG = "J";
+    private static final String DOUBLE = "D";
+    private static final String NULL = "N";
+    private static final String UNINITIALIZED_THIS = "U";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String THROWABLE = "Ljava/lang/Throwable;";
+
+    // Instructions of the code section.
+    private ArrayList<CLInstruction> code;
+
+    // The code section, as bytes.
+    private CLByteBuffer byteCode;
+
+    // Exception table of the code section.
+    private ArrayList<CLExceptionInfo> exceptionTable;
+
+    // Constant pool of the class.
+    private CLConstantPool constantPool;
+
+    // Fully qualified internal form of the names of the class and of its superclass.
+    private String className, superClassName;
+
+    // Maps the pc of each instruction to its index in code, or to -1.
+    private int[] pcToIndex;
+
+    // Types of the local variables and of the operand stack words before each instruction, or
+    // null if the instruction was not reached yet.
+    private String[][] localsAt, stackAt;
+
+    // Indices of the instructions whose types changed but that were not visited since.
+    private int[] worklist;
+    private int top;
+    private boolean[] inWorklist;
+
+    // Whether the code section can't be analyzed (it has a JSR or a RET instruction, or two paths
+    // meet with stacks of different heights).
+    private boolean failed;
+
+    // Whether unreached code was replaced.
+    private boolean replacedUnreachedCode;
+
+    /**
+     * Constructs a frame computer for the specified code section.
+     *
+     * @param code           instructions of the code section.
+     * @param byteCode       the code section, as bytes.
+     * @param pcToIndex      maps the pc of each instruction to its index in code, or to -1.
+     * @param exceptionTable exception table of the code section.
+     * @param constantPool   constant pool of the class; the classes that the frames refer to are
+     *                       added to it.
+     * @param className      fully qualified internal form of the name of the class.
+     * @param superClassName fully qualified internal form of the name of its superclass.
+     */
+    public CLFrameComputer(ArrayList<CLInstruction> code, CLByteBuffer byteCode, int[] pcToIndex,
+                           ArrayList<CLExceptionInfo> exceptionTable, CLConstantPool constantPool,
+                           String className, String superClassName) {
+        this.code = code;
+        this.byteCode = byteCode;
+        this.pcToIndex = pcToIndex;
+        this.exceptionTable = exceptionTable;
+        this.constantPool = constantPool;
+        this.className = className;
+        this.superClassName = superClassName;
+        int n = code.size();
+        localsAt = new String[n][];
+        stackAt = new String[n][];
+        worklist = new int[n];
+        inWorklist = new boolean[n];
+    }
+
+    /**
+     * Computes and returns the stack map frames for the code section (none for straight-line
+     * code), or null if it can't be analyzed. Unreached code in the code section is replaced, and
+     * the exception table is trimmed, as described above.
+     *
+     * @param accessFlags access flags of the method.
+     * @param name        name of the method.
+     * @param descriptor  descriptor of the method.
+     * @param maxLocals   number of local variables of the method.
+     * @return the stack map frames for the code section, or null.
+     */
+    public ArrayList<CLStackMapFrame> computeFrames(int accessFlags, String name,
+                                                    String descriptor, int maxLocals) {
+        String[] locals = entryLocals(accessFlags, name, descriptor, maxLocals);
+        analyze(locals);
+        return failed ? null : frames(locals);
+    }
+
+    /**
+     * Returns true if unreached code was replaced (by code that needs one word of operand stack),
+     * and false otherwise.
+     *
+     * @return true if unreached code was replaced, and false otherwise.
+     */
+    public boolean replacedUnreachedCode() {
+        return replacedUnreachedCode;
+    }
+
+    // Returns the types of the local variables on entry to the method: the uninitialized this (in
+    // a constructor) or the class (in any other instance method), followed by the parameters.
+    private String[] entryLocals(int accessFlags, String name, String descriptor, int maxLocals) {
+        ArrayList<String> words = new ArrayList<String>();
+        if ((accessFlags & ACC_STATIC) == 0) {
+            words.add(name.equals("<init>") && !className.equals("java/lang/Object") ?
+                    UNINITIALIZED_THIS : "L" + className + ";");
+        }
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int end = descriptorEnd(descriptor, i);
+            words.addAll(Arrays.asList(wordsOf(descriptor.substring(i, end))));
+            i = end;
+        }
+        String[] locals = new String[Math.max(maxLocals, words.size())];
+        Arrays.fill(locals, TOP);
+        for (int j = 0; j < words.size(); j++) {
+            locals[j] = words.get(j);
+        }
+        return locals;
+    }
+
+    // Runs the dataflow analysis from the entry to the method, with the specified types of the
+    // local variables.
+    private void analyze(String[] entryLocals) {
+        if (code.isEmpty()) {
+            return;
+        }
+        reach(0, entryLocals, new String[0]);
+        while (top > 0 && !failed) {
+            int c = worklist[--top];
+            inWorklist[c] = false;
+            CLInstruction instr = code.get(c);
+            String[] locals = localsAt[c].clone();
+            Stack stack = new Stack(stackAt[c]);
+            execute(instr, locals, stack);
+
+            // The exception handlers covering the instruction may be entered with the types of
+            // the locals before or after it.
+            for (CLExceptionInfo e : exceptionTable) {
+                if (e.startPC <= instr.pc() && instr.pc() < e.endPC) {
+                    String[] handlerStack = {e.catchType == 0 ?
+                            THROWABLE : descriptorOf(className(e.catchType))};
+                    reach(pcToIndex[e.handlerPC], localsAt[c], handlerStack);
+                    reach(pcToIndex[e.handlerPC], locals, handlerStack);
+                }
+            }
+
+            // Add the successors of the instruction to the worklist.
+            String[] words = stack.words();
+            if (instr instanceof CLFlowControlInstruction) {
+                CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
+                if (b.opcode() == TABLESWITCH || b.opcode() == LOOKUPSWITCH) {
+                    for (int offset : b.switchOffsets()) {
+                        reach(pcToIndex[b.pc() + offset], locals, words);
+                    }
+                } else {
+                    reach(pcToIndex[b.pc() + b.jumpToOffset()], locals, words);
+                }
+            }
+            if (fallsThrough(instr) && c + 1 < code.size()) {
+                reach(c + 1, locals, words);
+            }
+        }
+    }
+
+    // Merges the specified types into those before the instruction at index i, and adds the
+    // instruction to the worklist if they changed.
+    private void reach(int i, String[] locals, String[] stack) {
+        if (localsAt[i] == null) {
+            localsAt[i] = locals.clone();
+            stackAt[i] = stack.clone();
+        } else if (stackAt[i].length != stack.length) {
+            failed = true;
+            return;
+        } else {
+            boolean changed = false;
+            for (int j = 0; j < locals.length; j++) {
+                String type = merge(localsAt[i][j], locals[j]);
+                if (!type.equals(localsAt[i][j])) {
+                    localsAt[i][j] = type;
+                    changed = true;
+                }
+            }
+            for (int j = 0; j < stack.length; j++) {
+                String type = merge(stackAt[i][j], stack[j]);
+                if (!type.equals(stackAt[i][j])) {
+                    stackAt[i][j] = type;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return;
+            }
+        }
+        if (!inWorklist[i]) {
+            inWorklist[i] = true;
+            worklist[top++] = i;
+        }
+    }
+
+    // Updates the specified types of the locals and of the stack to those after the specified
+    // instruction.
+    private void execute(CLInstruction instr, String[] locals, Stack stack) {
+        int opcode = instr.opcode();
+        int pc = instr.pc();
+        String type;
+        switch (opcode) {
+            case NOP:
+            case WIDE:
+            case IINC:
+            case GOTO:
+            case GOTO_W:
+            case RETURN:
+                break;
+            case ACONST_NULL:
+                stack.push(NULL);
+                break;
+            case ICONST_M1:
+            case ICONST_0:
+            case ICONST_1:
+            case ICONST_2:
+            case ICONST_3:
+            case ICONST_4:
+            case ICONST_5:
+            case BIPUSH:
+            case SIPUSH:
+                stack.push(INT);
+                break;
+            case LCONST_0:
+            case LCONST_1:
+                stack.push(LONG);
+                break;
+            case FCONST_0:
+            case FCONST_1:
+            case FCONST_2:
+                stack.push(FLOAT);
+                break;
+            case DCONST_0:
+            case DCONST_1:
+                stack.push(DOUBLE);
+                break;
+            case LDC:
+                stack.push(constantType(byteCode.get(pc + 1)));
+                break;
+            case LDC_W:
+            case LDC2_W:
+                stack.push(constantType(operand(pc)));
+                break;
+            case ILOAD:
+            case ILOAD_0:
+            case ILOAD_1:
+            case ILOAD_2:
+            case ILOAD_3:
+                stack.push(INT);
+                break;
+            case LLOAD:
+            case LLOAD_0:
+            case LLOAD_1:
+            case LLOAD_2:
+            case LLOAD_3:
+                stack.push(LONG);
+                break;
+            case FLOAD:
+            case FLOAD_0:
+            case FLOAD_1:
+            case FLOAD_2:
+            case FLOAD_3:
+                stack.push(FLOAT);
+                break;
+            case DLOAD:
+            case DLOAD_0:
+            case DLOAD_1:
+            case DLOAD_2:
+            case DLOAD_3:
+                stack.push(DOUBLE);
+                break;
+            case ALOAD:
+            case ALOAD_0:
+            case ALOAD_1:
+            case ALOAD_2:
+            case ALOAD_3:
+                stack.push(locals[instr.localVariableIndex()]);
+                break;
+            case IALOAD:
+            case BALOAD:
+            case CALOAD:
+            case SALOAD:
+                stack.pop(2);
+                stack.push(INT);
+                break;
+            case LALOAD:
+                stack.pop(2);
+                stack.push(LONG);
+                break;
+            case FALOAD:
+                stack.pop(2);
+                stack.push(FLOAT);
+                break;
+            case DALOAD:
+                stack.pop(2);
+                stack.push(DOUBLE);
+                break;
+            case AALOAD:
+                stack.pop(1);
+                type = stack.pop();
+                stack.push(type.startsWith("[") ? type.substring(1) : type.equals(NULL) ?
+                        NULL : OBJECT);
+                break;
+            case ISTORE:
+            case LSTORE:
+            case FSTORE:
+            case DSTORE:
+            case ASTORE:
+            case ISTORE_0:
+            case ISTORE_1:
+            case ISTORE_2:
+            case ISTORE_3:
+            case LSTORE_0:
+            case LSTORE_1:
+            case LSTORE_2:
+            case LSTORE_3:
+            case FSTORE_0:
+            case FSTORE_1:
+            case FSTORE_2:
+            case FSTORE_3:
+            case DSTORE_0:
+            case DSTORE_1:
+            case DSTORE_2:
+            case DSTORE_3:
+            case ASTORE_0:
+            case ASTORE_1:
+            case ASTORE_2:
+            case ASTORE_3:
+                store(locals, instr.localVariableIndex(), stack.popValue());
+                break;
+            case IASTORE:
+            case FASTORE:
+            case AASTORE:
+            case BASTORE:
+            case CASTORE:
+            case SASTORE:
+                stack.pop(3);
+                break;
+            case LASTORE:
+            case DASTORE:
+                stack.pop(4);
+                break;
+            case POP:
+                stack.pop(1);
+                break;
+            case POP2:
+                stack.pop(2);
+                break;
+            case DUP:
+                stack.insert(0, stack.peek(0));
+                break;
+            case DUP_X1:
+                stack.insert(2, stack.peek(0));
+                break;
+            case DUP_X2:
+                stack.insert(3, stack.peek(0));
+                break;
+            case DUP2:
+                stack.insert(0, stack.peek(1));
+                stack.insert(0, stack.peek(1));
+                break;
+            case DUP2_X1:
+                stack.insert(3, stack.peek(1));
+                stack.insert(3, stack.peek(0));
+                break;
+            case DUP2_X2:
+                stack.insert(4, stack.peek(1));
+                stack.insert(4, stack.peek(0));
+                break;
+            case SWAP:
+                type = stack.pop();
+                stack.insert(1, type);
+                break;
+            case INEG:
+            case LNEG:
+            case FNEG:
+            case DNEG:
+            case I2B:
+            case I2C:
+            case I2S:
+                break;
+            case ISHL:
+            case LSHL:
+            case ISHR:
+            case LSHR:
+            case IUSHR:
+            case LUSHR:
+                stack.pop(1);
+                break;
+            case I2L:
+            case F2L:
+            case D2L:
+                stack.popValue();
+                stack.push(LONG);
+                break;
+            case I2F:
+            case L2F:
+            case D2F:
+                stack.popValue();
+                stack.push(FLOAT);
+                break;
+            case I2D:
+            case L2D:
+            case F2D:
+                stack.popValue();
+                stack.push(DOUBLE);
+                break;
+            case L2I:
+            case F2I:
+            case D2I:
+            case ARRAYLENGTH:
+            case INSTANCEOF:
+                stack.popValue();
+                stack.push(INT);
+                break;
+            case LCMP:
+            case FCMPL:
+            case FCMPG:
+            case DCMPL:
+            case DCMPG:
+                stack.popValue();
+                stack.popValue();
+                stack.push(INT);
+                break;
+            case IFEQ:
+            case IFNE:
+            case IFLT:
+            case IFGE:
+            case IFGT:
+            case IFLE:
+            case IFNULL:
+            case IFNONNULL:
+            case TABLESWITCH:
+            case LOOKUPSWITCH:
+            case IRETURN:
+            case FRETURN:
+            case ARETURN:
+            case ATHROW:
+            case MONITORENTER:
+            case MONITOREXIT:
+                stack.pop(1);
+                break;
+            case IF_ICMPEQ:
+            case IF_ICMPNE:
+            case IF_ICMPLT:
+            case IF_ICMPGE:
+            case IF_ICMPGT:
+            case IF_ICMPLE:
+            case IF_ACMPEQ:
+            case IF_ACMPNE:
+            case LRETURN:
+            case DRETURN:
+                stack.pop(2);
+                break;
+            case GETSTATIC:
+                stack.push(memberDescriptor(operand(pc)));
+                break;
+            case PUTSTATIC:
+                stack.popValue();
+                break;
+            case GETFIELD:
+                stack.pop(1);
+                stack.push(memberDescriptor(operand(pc)));
+                break;
+            case PUTFIELD:
+                stack.popValue();
+                stack.pop(1);
+                break;
+            case INVOKEVIRTUAL:
+            case INVOKESPECIAL:
+            case INVOKESTATIC:
+            case INVOKEINTERFACE:
+            case INVOKEDYNAMIC:
+                invoke(opcode, operand(pc), locals, stack);
+                break;
+            case NEW:
+                stack.push(UNINITIALIZED_THIS + pc);
+                break;
+            case NEWARRAY:
+                stack.pop(1);
+                stack.push("[" + "ZCFDBSIJ".charAt(byteCode.get(pc + 1) - 4));
+                break;
+            case ANEWARRAY:
+                stack.pop(1);
+                stack.push("[" + descriptorOf(className(operand(pc))));
+                break;
+            case CHECKCAST:
+                stack.pop(1);
+                stack.push(descriptorOf(className(operand(pc))));
+                break;
+            case MULTIANEWARRAY:
+                stack.pop(byteCode.get(pc + 3));
+                stack.push(descriptorOf(className(operand(pc))));
+                break;
+            case JSR:
+            case JSR_W:
+            case RET:
+                failed = true;
+                break;
+            default:
+                if (IADD <= opcode && opcode <= DREM || IAND <= opcode && opcode <= LXOR) {
+                    // Binary operations, whose operands and result are of the same type.
+                    type = stack.popValue();
+                    stack.popValue();
+                    stack.push(type);
+                }
+                break;
+        }
+    }
+
+    // Updates the specified types for the method invocation (by the specified opcode) whose
+    // constant pool item is at the specified index. A constructor invoked on an uninitialized
+    // object initializes every copy of it.
+    private void invoke(int opcode, int index, String[] locals, Stack stack) {
+        CLCPInfo item = constantPool.cpItem(index);
+        String name, descriptor;
+        if (opcode == INVOKEDYNAMIC) {
+            CLConstantNameAndTypeInfo nameAndType = (CLConstantNameAndTypeInfo)
+                    constantPool.cpItem(((CLConstantInvokeDynamicInfo) item).nameAndTypeIndex);
+            name = utf8(nameAndType.nameIndex);
+            descriptor = utf8(nameAndType.descriptorIndex);
+        } else {
+            CLConstantNameAndTypeInfo nameAndType = (CLConstantNameAndTypeInfo)
+                    constantPool.cpItem(((CLConstantMemberRefInfo) item).nameAndTypeIndex);
+            name = utf8(nameAndType.nameIndex);
+            descriptor = utf8(nameAndType.descriptorIndex);
+        }
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int end = descriptorEnd(descriptor, i);
+            stack.pop(wordsOf(descriptor.substring(i, end)).length);
+            i = end;
+        }
+        if (opcode != INVOKESTATIC && opcode != INVOKEDYNAMIC) {
+            String receiver = stack.pop();
+            if (opcode == INVOKESPECIAL && name.equals("<init>") &&
+                    receiver.startsWith(UNINITIALIZED_THIS)) {
+                String type = receiver.equals(UNINITIALIZED_THIS) ? "L" + className + ";" :
+                        descriptorOf(className(operand(Integer.parseInt(receiver.substring(1)))));
+                for (int j = 0; j < locals.length; j++) {
+                    if (locals[j].equals(receiver)) {
+                        locals[j] = type;
+                    }
+                }
+                stack.replace(receiver, type);
+            }
+        }
+        stack.push(descriptor.substring(i + 1));
+    }
+
+    // Stores a value of the specified type into the local variable at the specified index; a long
+    // or a double whose second word is overwritten is no longer a value.
+    private static void store(String[] locals, int index, String type) {
+        if (index > 0 && (locals[index - 1].equals(LONG) || locals[index - 1].equals(DOUBLE))) {
+            locals[index - 1] = TOP;
+        }
+        String[] words = wordsOf(type);
+        for (int i = 0; i < words.length; i++) {
+            locals[index + i] = words[i];
+        }
+    }
+
+    // Returns true if control can flow from the specified instruction to the one that follows
+    // it, and false otherwise.
+    private static boolean fallsThrough(CLInstruction instr) {
+        int opcode = instr.opcode();
+        return !(opcode == GOTO || opcode == GOTO_W || opcode == TABLESWITCH ||
+                opcode == LOOKUPSWITCH || opcode == ATHROW ||
+                IRETURN <= opcode && opcode <= RETURN);
+    }
+
+    // Returns the frames for the analyzed code section, replacing its unreached code, given the
+    // types of the locals on entry to the method.
+    private ArrayList<CLStackMapFrame> frames(String[] entryLocals) {
+        int n = code.size();
+        boolean[] isTarget = new boolean[n];
+        for (CLInstruction instr : code) {
+            if (instr instanceof CLFlowControlInstruction) {
+                CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
+                if (b.opcode() == TABLESWITCH || b.opcode() == LOOKUPSWITCH) {
+                    for (int offset : b.switchOffsets()) {
+                        isTarget[pcToIndex[b.pc() + offset]] = true;
+                    }
+                } else {
+                    isTarget[pcToIndex[b.pc() + b.jumpToOffset()]] = true;
+                }
+            }
+        }
+        for (CLExceptionInfo e : exceptionTable) {
+            isTarget[pcToIndex[e.handlerPC]] = true;
+        }
+
+        ArrayList<CLStackMapFrame> frames = new ArrayList<CLStackMapFrame>();
+        ArrayList<CLVerificationTypeInfo> previousLocals = localTypes(entryLocals);
+        int previousPC = -1;
+        for (int i = 0; i < n; i++) {
+            CLInstruction instr = code.get(i);
+            ArrayList<CLVerificationTypeInfo> locals, stack;
+            if (localsAt[i] == null) {
+                if (localsAt[i - 1] == null) {
+                    continue;
+                }
+                // The start of a run of unreached code.
+                int endPC = killUnreachedCode(i);
+                locals = new ArrayList<CLVerificationTypeInfo>();
+                stack = verificationTypes(new String[] {THROWABLE});
+                trimExceptionTable(instr.pc(), endPC);
+            } else if (isTarget[i] ||
+                    i > 0 && (localsAt[i - 1] == null || !fallsThrough(code.get(i - 1)))) {
+                locals = localTypes(localsAt[i]);
+                stack = verificationTypes(stackAt[i]);
+            } else {
+                continue;
+            }
+            frames.add(frame(instr.pc() - previousPC - 1, previousLocals, locals, stack));
+            previousLocals = locals;
+            previousPC = instr.pc();
+        }
+        return frames;
+    }
+
+    // Replaces the run of unreached instructions starting at index i by NOPs ending in an
+    // ATHROW, and returns the pc where the run ends.
+    private int killUnreachedCode(int i) {
+        int startPC = code.get(i).pc();
+        while (i < code.size() && localsAt[i] == null) {
+            i++;
+        }
+        int endPC = i < code.size() ? code.get(i).pc() : byteCode.size();
+        for (int pc = startPC; pc < endPC - 1; pc++) {
+            byteCode.set(pc, NOP);
+        }
+        byteCode.set(endPC - 1, ATHROW);
+        replacedUnreachedCode = true;
+        return endPC;
+    }
+
+    // Removes the range [startPC, endPC) from the ranges covered by the exception handlers.
+    private void trimExceptionTable(int startPC, int endPC) {
+        ArrayList<CLExceptionInfo> trimmed = new ArrayList<CLExceptionInfo>();
+        for (CLExceptionInfo e : exceptionTable) {
+            if (e.startPC < startPC) {
+                trimmed.add(new CLExceptionInfo(e.startPC, Math.min(e.endPC, startPC),
+                        e.handlerPC, e.catchType));
+            }
+            if (e.endPC > endPC) {
+                trimmed.add(new CLExceptionInfo(Math.max(e.startPC, endPC), e.endPC,
+                        e.handlerPC, e.catchType));
+            }
+        }
+        exceptionTable.clear();
+        exceptionTable.addAll(trimmed);
+    }
+
+    // Returns a frame with the specified locals and stack, encoded relative to the previous frame
+    // (with the specified locals) in the most compact form.
+    private static CLStackMapFrame frame(int offsetDelta,
+                                         ArrayList<CLVerificationTypeInfo> previousLocals,
+                                         ArrayList<CLVerificationTypeInfo> locals,
+                                         ArrayList<CLVerificationTypeInfo> stack) {
+        int frameType = FULL_FRAME;
+        int k = locals.size() - previousLocals.size();
+        if (stack.size() <= 1 && locals.equals(previousLocals)) {
+            if (stack.isEmpty()) {
+                frameType = offsetDelta < 64 ? offsetDelta : SAME_FRAME_EXTENDED;
+            } else {
+                frameType = offsetDelta < 64 ? 64 + offsetDelta : SAME_LOCALS_1_STACK_ITEM_EXTENDED;
+            }
+        } else if (stack.isEmpty() && -3 <= k && k < 0 &&
+                previousLocals.subList(0, locals.size()).equals(locals)) {
+            frameType = SAME_FRAME_EXTENDED + k;
+        } else if (stack.isEmpty() && 0 < k && k <= 3 &&
+                locals.subList(0, previousLocals.size()).equals(previousLocals)) {
+            frameType = SAME_FRAME_EXTENDED + k;
+            ArrayList<CLVerificationTypeInfo> appended = new ArrayList<CLVerificationTypeInfo>(
+                    locals.subList(previousLocals.size(), locals.size()));
+            return new CLStackMapFrame(frameType, offsetDelta, appended, stack);
+        }
+        return new CLStackMapFrame(frameType, offsetDelta, locals, stack);
+    }
+
+    // Returns the verification types for the specified types of local variables, leaving out the
+    // tops at the end.
+    private ArrayList<CLVerificationTypeInfo> localTypes(String[] locals) {
+        ArrayList<CLVerificationTypeInfo> types = verificationTypes(locals);
+        int size = types.size();
+        while (size > 0 && types.get(size - 1).tag == ITEM_Top) {
+            size--;
+        }
+        return new ArrayList<CLVerificationTypeInfo>(types.subList(0, size));
+    }
+
+    // Returns the verification types for the specified types of words (one for each long or
+    // double, whose second word is skipped).
+    private ArrayList<CLVerificationTypeInfo> verificationTypes(String[] words) {
+        ArrayList<CLVerificationTypeInfo> types = new ArrayList<CLVerificationTypeInfo>();
+        for (int i = 0; i < words.length; i++) {
+            String type = words[i];
+            int index = 0;
+            int tag;
+            if (type.equals(TOP)) {
+                tag = ITEM_Top;
+            } else if (type.equals(INT)) {
+                tag = ITEM_Integer;
+            } else if (type.equals(FLOAT)) {
+                tag = ITEM_Float;
+            } else if (type.equals(LONG)) {
+                tag = ITEM_Long;
+                i++;
+            } else if (type.equals(DOUBLE)) {
+                tag = ITEM_Double;
+                i++;
+            } else if (type.equals(NULL)) {
+                tag = ITEM_Null;
+            } else if (type.equals(UNINITIALIZED_THIS)) {
+                tag = ITEM_UninitializedThis;
+            } else if (type.startsWith(UNINITIALIZED_THIS)) {
+                tag = ITEM_Uninitialized;
+                index = Integer.parseInt(type.substring(1));
+            } else {
+                tag = ITEM_Object;
+                index = constantPool.constantClassInfo(type.startsWith("[") ?
+                        type : type.substring(1, type.length() - 1));
+            }
+            types.add(new CLVerificationTypeInfo(tag, index));
+        }
+        return types;
+    }
+
+    // Returns the type that values of both the specified types have.
+    private String merge(String a, String b) {
+        if (a.equals(b)) {
+            return a;
+        }
+        if (!isReference(a) || !isReference(b)) {
+            return TOP;
+        }
+        if (a.equals(NULL)) {
+            return b;
+        }
+        if (b.equals(NULL)) {
+            return a;
+        }
+        if (a.startsWith("[") && b.startsWith("[")) {
+            String componentA = a.substring(1);
+            String componentB = b.substring(1);
+            return isReference(componentA) && isReference(componentB) ?
+                    "[" + merge(componentA, componentB) : OBJECT;
+        }
+        if (a.startsWith("[") || b.startsWith("[")) {
+            return OBJECT;
+        }
+        ArrayList<String> superclassesA = superclasses(a.substring(1, a.length() - 1));
+        for (String c : superclasses(b.substring(1, b.length() - 1))) {
+            if (superclassesA.contains(c)) {
+                return "L" + c + ";";
+            }
+        }
+        return OBJECT;
+    }
+
+    // Returns true if the specified type is a reference type (or null), and false otherwise.
+    private static boolean isReference(String type) {
+        return type.startsWith("L") || type.startsWith("[") || type.equals(NULL);
+    }
+
+    // Returns the specified class followed by its superclasses, as fully qualified internal
+    // forms of their names.
+    private ArrayList<String> superclasses(String name) {
+        ArrayList<String> superclasses = new ArrayList<String>();
+        superclasses.add(name);
+        while (!name.equals("java/lang/Object")) {
+            if (name.equals(className)) {
+                name = superClassName;
+            } else {
+                Type type = Type.loadType(name);
+                Type superClass = type == null ? null : type.superClass();
+                name = superClass == null ? "java/lang/Object" : superClass.jvmName();
+            }
+            superclasses.add(name);
+        }
+        return superclasses;
+    }
+
+    // Returns the (two byte) constant pool index that is the operand of the instruction at the
+    // specified pc.
+    private int operand(int pc) {
+        return (byteCode.get(pc + 1) << 8) | byteCode.get(pc + 2);
+    }
+
+    // Returns the string in the CONSTANT_Utf8_info item at the specified index.
+    private String utf8(int index) {
+        return new String(((CLConstantUtf8Info) constantPool.cpItem(index)).b);
+    }
+
+    // Returns the name in the CONSTANT_Class_info item at the specified index.
+    private String className(int index) {
+        return utf8(((CLConstantClassInfo) constantPool.cpItem(index)).nameIndex);
+    }
+
+    // Returns the descriptor of the field or method referred to by the item at the specified
+    // index.
+    private String memberDescriptor(int index) {
+        CLConstantMemberRefInfo item = (CLConstantMemberRefInfo) constantPool.cpItem(index);
+        return utf8(((CLConstantNameAndTypeInfo) constantPool.cpItem(item.nameAndTypeIndex))
+                .descriptorIndex);
+    }
+
+    // Returns the type of the constant (loaded by LDC, LDC_W or LDC2_W) at the specified index.
+    private String constantType(int index) {
+        switch (constantPool.cpItem(index).tag) {
+            case CONSTANT_Integer:
+                return INT;
+            case CONSTANT_Float:
+                return FLOAT;
+            case CONSTANT_Long:
+                return LONG;
+            case CONSTANT_Double:
+                return DOUBLE;
+            case CONSTANT_String:
+                return "Ljava/lang/String;";
+            default:
+                return "Ljava/lang/Class;";
+        }
+    }
+
+    // Returns the field descriptor for a class given by the name in a CONSTANT_Class_info item
+    // (which is the descriptor itself for an array class).
+    private static String descriptorOf(String name) {
+        return name.startsWith("[") ? name : "L" + name + ";";
+    }
+
+    // Returns the index in the specified descriptor where the field descriptor starting at the
+    // specified index ends.
+    private static int descriptorEnd(String descriptor, int i) {
+        while (descriptor.charAt(i) == '[') {
+            i++;
+        }
+        return descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+    }
+
+    // Returns the types of the words taken by a value of the type with the specified field
+    // descriptor (none for V).
+    private static String[] wordsOf(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'V':
+                return new String[0];
+            case 'Z':
+            case 'B':
+            case 'C':
+            case 'S':
+            case 'I':
+                return new String[] {INT};
+            case 'J':
+                return new String[] {LONG, TOP};
+            case 'D':
+                return new String[] {DOUBLE, TOP};
+            default:
+                // F, and the types used in this class (which are their own words).
+                return new String[] {descriptor};
+        }
+    }
+
+    // The operand stack, as the types of the words in it.
+    private static class Stack {
+        // The words, from the bottom of the stack.
+        private ArrayList<String> words;
+
+        // Constructs a stack with the specified words.
+        public Stack(String[] words) {
+            this.words = new ArrayList<String>(Arrays.asList(words));
+        }
+
+        // Pushes a value of the specified type (one or two words).
+        public void push(String type) {
+            words.addAll(Arrays.asList(wordsOf(type)));
+        }
+
+        // Pops one word, and returns its type.
+        public String pop() {
+            return words.remove(words.size() - 1);
+        }
+
+        // Pops the specified number of words.
+        public void pop(int count) {
+            for (int i = 0; i < count; i++) {
+                pop();
+            }
+        }
+
+        // Pops a value (one or two words), and returns its type.
+        public String popValue() {
+            String type = pop();
+            return type.equals(TOP) ? pop() : type;
+        }
+
+        // Returns the type of the word that is the specified number of words below the top.
+        public String peek(int depth) {
+            return words.get(words.size() - 1 - depth);
+        }
+
+        // Inserts a word of the specified type below the specified number of words from the top.
+        public void insert(int depth, String type) {
+            words.add(words.size() - depth, type);
+        }
+
+        // Replaces every word of the specified type by one of the other specified type.
+        public void replace(String type, String newType) {
+            for (int i = 0; i < words.size(); i++) {
+                if (words.get(i).equals(type)) {
+                    words.set(i, newType);
+                }
+            }
+        }
+
+        // Returns the types of the words in the stack.
+        public String[] words() {
+            return words.toArray(new String[0]);
+        }
+    }
+}
@@ -3,7 +3,6 @@
 package jminusminus;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeMap;
@@ -244,7 +243,7 @@ abstract class CLInstruction {
             new CLInsInfo(INVOKESPECIAL, "invokespecial", 2, IRRELEVANT, DYNAMIC, METHOD1),
             new CLInsInfo(INVOKESTATIC, "invokestatic", 2, IRRELEVANT, DYNAMIC, METHOD1),
             new CLInsInfo(INVOKEINTERFACE, "invokeinterface", 4, IRRELEVANT, DYNAMIC, METHOD1),
-            new CLInsInfo(INVOKEDYNAMIC, "invokedynamic", 2, IRRELEVANT, DYNAMIC, METHOD1),
+            new CLInsInfo(INVOKEDYNAMIC, "invokedynamic", 4, IRRELEVANT, DYNAMIC, METHOD1),
             new CLInsInfo(NEW, "new", 2, IRRELEVANT, 1, OBJECT),
             new CLInsInfo(NEWARRAY, "newarray", 1, IRRELEVANT, 0, ARRAY1),
             new CLInsInfo(ANEWARRAY, "anewarray", 2, IRRELEVANT, 0, ARRAY1),
@@ -307,6 +306,16 @@ abstract class CLInstruction {
         return pc;
     }
 
+    /**
+     * Sets the pc for this instruction; used when the instructions of a method are moved (for
+     * example, by the peephole optimizer).
+     *
+     * @param pc the pc for this instruction.
+     */
+    public void setPC(int pc) {
+        this.pc = pc;
+    }
+
     /**
      * Returns the stack units for this instruction.
      *
@@ -326,11 +335,11 @@ abstract class CLInstruction {
     }
 
     /**
-     * Returns the bytecode for this instruction.
+     * Appends the bytecode for this instruction to the specified byte buffer.
      *
-     * @return the bytecode for this instruction.
+     * @param bytes byte buffer to append to.
      */
-    public abstract ArrayList<Integer> toBytes();
+    public abstract void toBytes(CLByteBuffer bytes);
 
     /**
      * Returns the byte from i at position byteNum.
@@ -386,12 +395,10 @@ class CLObjectInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         bytes.add(byteAt(index, 2));
         bytes.add(byteAt(index, 1));
-        return bytes;
     }
 }
 
@@ -425,12 +432,10 @@ class CLFieldInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         bytes.add(byteAt(index, 2));
         bytes.add(byteAt(index, 1));
-        return bytes;
     }
 }
 
@@ -491,8 +496,7 @@ class CLMethodInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         if (instructionInfo[opcode].category == METHOD1) {
             bytes.add(byteAt(index, 2));
@@ -504,8 +508,13 @@ class CLMethodInstruction extends CLInstruction {
                 bytes.add(byteAt(nArgs, 1));
                 bytes.add(0);
             }
+
+            // INVOKEDYNAMIC expects two more operands which must always be 0.
+            if (opcode == INVOKEDYNAMIC) {
+                bytes.add(0);
+                bytes.add(0);
+            }
         }
-        return bytes;
     }
 }
 
@@ -574,8 +583,7 @@ class CLArrayInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         switch (opcode) {
             case NEWARRAY:
@@ -591,7 +599,6 @@ class CLArrayInstruction extends CLInstruction {
                 bytes.add(byteAt(dim, 1));
                 break;
         }
-        return bytes;
     }
 }
 
@@ -645,8 +652,7 @@ class CLArithmeticInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         if (opcode == IINC) {
             if (isWidened) {
@@ -659,7 +665,6 @@ class CLArithmeticInstruction extends CLInstruction {
                 bytes.add(byteAt(constVal, 1));
             }
         }
-        return bytes;
     }
 }
 
@@ -685,10 +690,8 @@ class CLBitInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
-        return bytes;
     }
 }
 
@@ -714,10 +717,8 @@ class CLComparisonInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
-        return bytes;
     }
 }
 
@@ -743,10 +744,8 @@ class CLConversionInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
-        return bytes;
     }
 }
 
@@ -755,7 +754,7 @@ class CLConversionInstruction extends CLInstruction {
  */
 class CLFlowControlInstruction extends CLInstruction {
     // Jump label; this flow control instruction will jump to an instruction after this label.
-    private String jumpToLabel;
+    private int jumpToLabel;
 
     // jumpLabel is resolved to this offset.
     private int jumpToOffset;
@@ -771,7 +770,7 @@ class CLFlowControlInstruction extends CLInstruction {
     private int pad;
 
     // Jump label for default value for TABLESWITCH and LOOKUPSWITCH instructions.
-    private String defaultLabel;
+    private int defaultLabel;
 
     // defaultLabel is resolved to this offset.
     private int defaultOffset;
@@ -780,7 +779,7 @@ class CLFlowControlInstruction extends CLInstruction {
     private int numPairs;
 
     // Key and label table for LOOKUPSWITCH instruction.
-    private TreeMap<Integer, String> matchLabelPairs;
+    private TreeMap<Integer, Integer> matchLabelPairs;
 
     // Key and offset (resolved labels from matchLabelPairs) table for LOOKUPSWITCH instruction.
     private TreeMap<Integer, Integer> matchOffsetPairs;
@@ -793,7 +792,7 @@ class CLFlowControlInstruction extends CLInstruction {
 
     // List of jump labels for TABLESWITCH instruction for each index value from low to high, end
     // values included.
-    private ArrayList<String> labels;
+    private int[] labels;
 
     // List of offsets (resolved labels from labels) for TABLESWITCH instruction.
     private ArrayList<Integer> offsets;
@@ -806,7 +805,7 @@ class CLFlowControlInstruction extends CLInstruction {
      * @param pc          index of this instruction within the code array of a method.
      * @param jumpToLabel the label to jump to.
      */
-    public CLFlowControlInstruction(int opcode, int pc, String jumpToLabel) {
+    public CLFlowControlInstruction(int opcode, int pc, int jumpToLabel) {
         super.opcode = opcode;
         super.pc = pc;
         mnemonic = instructionInfo[opcode].mnemonic;
@@ -846,8 +845,8 @@ class CLFlowControlInstruction extends CLInstruction {
      * @param labels       list of jump labels for each index value from low to high, end
      *                     values included.
      */
-    public CLFlowControlInstruction(int opcode, int pc, String defaultLabel, int low, int high,
-                                    ArrayList<String> labels) {
+    public CLFlowControlInstruction(int opcode, int pc, int defaultLabel, int low, int high,
+                                    int[] labels) {
         super.opcode = opcode;
         super.pc = pc;
         mnemonic = instructionInfo[opcode].mnemonic;
@@ -861,7 +860,7 @@ class CLFlowControlInstruction extends CLInstruction {
         if (pad == 4) {
             pad = 0;
         }
-        operandCount = pad + 12 + 4 * labels.size();
+        operandCount = pad + 12 + 4 * labels.length;
     }
 
     /**
@@ -873,8 +872,8 @@ class CLFlowControlInstruction extends CLInstruction {
      * @param numPairs        number of pairs in the match table.
      * @param matchLabelPairs key match table.
      */
-    public CLFlowControlInstruction(int opcode, int pc, String defaultLabel, int numPairs,
-                                    TreeMap<Integer, String> matchLabelPairs) {
+    public CLFlowControlInstruction(int opcode, int pc, int defaultLabel, int numPairs,
+                                    TreeMap<Integer, Integer> matchLabelPairs) {
         super.opcode = opcode;
         super.pc = pc;
         mnemonic = instructionInfo[opcode].mnemonic;
@@ -890,55 +889,87 @@ class CLFlowControlInstruction extends CLInstruction {
         operandCount = pad + 8 + 8 * numPairs;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The padding of a TABLESWITCH or LOOKUPSWITCH instruction depends on its pc, so it is
+     * recomputed, and with it the operand count.
+     */
+    public void setPC(int pc) {
+        super.setPC(pc);
+        if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+            operandCount -= pad;
+            pad = 4 - ((pc + 1) % 4);
+            if (pad == 4) {
+                pad = 0;
+            }
+            operandCount += pad;
+        }
+    }
+
+    /**
+     * Returns the label this FLOW_CONTROL1 instruction jumps to.
+     *
+     * @return the label to jump to.
+     */
+    public int jumpToLabel() {
+        return jumpToLabel;
+    }
+
+    /**
+     * Sets the label this FLOW_CONTROL1 instruction jumps to.
+     *
+     * @param jumpToLabel the label to jump to.
+     */
+    public void setJumpToLabel(int jumpToLabel) {
+        this.jumpToLabel = jumpToLabel;
+    }
+
     /**
      * Resolves the jump labels to the corresponding offset values using the given label to pc
      * mapping. If unable to resolve a label, the offset is set such that the next instruction
      * will be executed.
      *
-     * @param labelToPC label to pc mapping.
+     * @param labelToPC label to pc mapping (-1 for labels that were not added).
      * @return true if all labels were resolved successfully, and false otherwise.
      */
-    public boolean resolveLabels(Hashtable<String, Integer> labelToPC) {
+    public boolean resolveLabels(int[] labelToPC) {
         boolean allLabelsResolved = true;
         if (instructionInfo[opcode].category == FLOW_CONTROL1) {
-            if (labelToPC.containsKey(jumpToLabel)) {
-                jumpToOffset = labelToPC.get(jumpToLabel) - pc;
+            if (labelToPC[jumpToLabel] >= 0) {
+                jumpToOffset = labelToPC[jumpToLabel] - pc;
             } else {
                 jumpToOffset = operandCount;
                 allLabelsResolved = false;
             }
         } else if (opcode == LOOKUPSWITCH) {
-            if (labelToPC.containsKey(defaultLabel)) {
-                defaultOffset = labelToPC.get(defaultLabel) - pc;
+            if (labelToPC[defaultLabel] >= 0) {
+                defaultOffset = labelToPC[defaultLabel] - pc;
             } else {
                 defaultOffset = operandCount;
                 allLabelsResolved = false;
             }
             matchOffsetPairs = new TreeMap<Integer, Integer>();
-            Set<Entry<Integer, String>> matches = matchLabelPairs.entrySet();
-            Iterator<Entry<Integer, String>> iter = matches.iterator();
-            while (iter.hasNext()) {
-                Entry<Integer, String> entry = iter.next();
-                int match = entry.getKey();
-                String label = entry.getValue();
-                if (labelToPC.containsKey(label)) {
-                    matchOffsetPairs.put(match, labelToPC.get(label) - pc);
+            for (Entry<Integer, Integer> entry : matchLabelPairs.entrySet()) {
+                int label = entry.getValue();
+                if (labelToPC[label] >= 0) {
+                    matchOffsetPairs.put(entry.getKey(), labelToPC[label] - pc);
                 } else {
-                    matchOffsetPairs.put(match, operandCount);
+                    matchOffsetPairs.put(entry.getKey(), operandCount);
                     allLabelsResolved = false;
                 }
             }
         } else if (opcode == TABLESWITCH) {
-            if (labelToPC.containsKey(defaultLabel)) {
-                defaultOffset = labelToPC.get(defaultLabel) - pc;
+            if (labelToPC[defaultLabel] >= 0) {
+                defaultOffset = labelToPC[defaultLabel] - pc;
             } else {
                 defaultOffset = operandCount;
                 allLabelsResolved = false;
             }
             offsets = new ArrayList<Integer>();
-            for (String label : labels) {
-                if (labelToPC.containsKey(label)) {
-                    offsets.add(labelToPC.get(label) - pc);
+            for (int label : labels) {
+                if (labelToPC[label] >= 0) {
+                    offsets.add(labelToPC[label] - pc);
                 } else {
                     offsets.add(operandCount);
                     allLabelsResolved = false;
@@ -957,11 +988,27 @@ class CLFlowControlInstruction extends CLInstruction {
         return jumpToOffset;
     }
 
+    /**
+     * Returns the offsets (relative to the pc of this instruction) of all the instructions this
+     * TABLESWITCH or LOOKUPSWITCH instruction may jump to, the default offset included.
+     *
+     * @return offsets to jump to.
+     */
+    public ArrayList<Integer> switchOffsets() {
+        ArrayList<Integer> switchOffsets = new ArrayList<Integer>();
+        switchOffsets.add(defaultOffset);
+        if (opcode == TABLESWITCH) {
+            switchOffsets.addAll(offsets);
+        } else if (opcode == LOOKUPSWITCH) {
+            switchOffsets.addAll(matchOffsetPairs.values());
+        }
+        return switchOffsets;
+    }
+
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         switch (opcode) {
             case RET:
@@ -1035,7 +1082,6 @@ class CLFlowControlInstruction extends CLInstruction {
                 bytes.add(byteAt(jumpToOffset, 2));
                 bytes.add(byteAt(jumpToOffset, 1));
         }
-        return bytes;
     }
 }
 
@@ -1107,8 +1153,7 @@ class CLLoadStoreInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
         if (instructionInfo[opcode].operandCount > 0) {
             if (localVariableIndex != IRRELEVANT) {
@@ -1130,7 +1175,6 @@ class CLLoadStoreInstruction extends CLInstruction {
                 }
             }
         }
-        return bytes;
     }
 }
 
@@ -1156,10 +1200,8 @@ class CLStackInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
-        return bytes;
     }
 }
 
@@ -1185,10 +1227,8 @@ class CLMiscInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
+    public void toBytes(CLByteBuffer bytes) {
         bytes.add(opcode);
-        return bytes;
     }
 }
 
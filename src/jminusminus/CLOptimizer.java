@@ -0,0 +1,261 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * A peephole optimizer for the code section of a method, which CLEmitter runs (when asked to) as
+ * the method is closed, before the jump labels are resolved to offsets.
+ * <p>
+ * The optimizer makes the following rewrites, over and over, until none applies:
+ * <ul>
+ *   <li>A branch to a GOTO is made to branch to the GOTO's target instead (so that chains of
+ *   jumps, as produced for nested loops and breaks, become single jumps).</li>
+ *
+ *   <li>A GOTO to the instruction that follows it is removed.</li>
+ *
+ *   <li>A conditional branch over a GOTO, that is, IFxx L1; GOTO L2; L1: is replaced by the
+ *   opposite conditional branch IFyy L2; L1:.</li>
+ *
+ *   <li>An instruction that only pushes a value (a constant, a local variable or a copy of the
+ *   top of the stack) followed by a POP (or POP2 for long and double values) is removed.</li>
+ *
+ *   <li>A load of a local variable followed by a store to the same variable is removed.</li>
+ * </ul>
+ * The second instruction of a pair that is rewritten must not be the target of a label, since
+ * the code jumping there would find a different operand stack. Labels on an instruction that is
+ * removed move to the instruction that follows it.
+ */
+class CLOptimizer {
+    // Instructions of the code section being optimized.
+    private ArrayList<CLInstruction> code;
+
+    // Maps each label to the index of the instruction it's on (code.size() for a label at the end
+    // of the code section), or to -1 if the label was not added.
+    private int[] labelIndex;
+
+    // Number of labels in labelIndex.
+    private int labelCount;
+
+    /**
+     * Optimizes the specified code section in place, and sets the pcs of its instructions and
+     * labels to their new values.
+     *
+     * @param code       instructions of the code section.
+     * @param labelPCs   maps each label to its pc (-1 if the label was not added); updated.
+     * @param labelCount number of labels in labelPCs.
+     * @return the size of the optimized code section, in bytes.
+     */
+    public static int optimize(ArrayList<CLInstruction> code, int[] labelPCs, int labelCount) {
+        CLOptimizer optimizer = new CLOptimizer(code, labelPCs, labelCount);
+        while (optimizer.rewrite()) {
+            // Rewrite until nothing changes.
+        }
+        return optimizer.relocate(labelPCs);
+    }
+
+    // Constructs an optimizer for the specified code section, mapping the labels from pcs to
+    // instruction indices.
+    private CLOptimizer(ArrayList<CLInstruction> code, int[] labelPCs, int labelCount) {
+        this.code = code;
+        this.labelCount = labelCount;
+        int size = 0;
+        for (CLInstruction instr : code) {
+            size = instr.pc() + instr.operandCount() + 1;
+        }
+        int[] pcToIndex = new int[size + 1];
+        for (int i = 0; i < code.size(); i++) {
+            pcToIndex[code.get(i).pc()] = i;
+        }
+        pcToIndex[size] = code.size();
+        labelIndex = new int[labelCount];
+        for (int label = 0; label < labelCount; label++) {
+            labelIndex[label] = labelPCs[label] < 0 ? -1 : pcToIndex[labelPCs[label]];
+        }
+    }
+
+    // Makes one pass of rewrites over the code, and returns true if anything was rewritten.
+    private boolean rewrite() {
+        int n = code.size();
+        boolean[] isLabeled = new boolean[n + 1];
+        for (int label = 0; label < labelCount; label++) {
+            if (labelIndex[label] >= 0) {
+                isLabeled[labelIndex[label]] = true;
+            }
+        }
+        boolean changed = false;
+
+        // Jumps to jumps.
+        for (CLInstruction instr : code) {
+            if (isBranch(instr)) {
+                CLFlowControlInstruction branch = (CLFlowControlInstruction) instr;
+                int target = finalTarget(branch.jumpToLabel());
+                if (target != branch.jumpToLabel()) {
+                    branch.setJumpToLabel(target);
+                    changed = true;
+                }
+            }
+        }
+
+        // Instruction sequences.
+        boolean[] isRemoved = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            CLInstruction instr = code.get(i);
+            CLInstruction next = i + 1 < n && !isLabeled[i + 1] ? code.get(i + 1) : null;
+            if (instr.opcode() == GOTO &&
+                    labelIndex[((CLFlowControlInstruction) instr).jumpToLabel()] == i + 1) {
+                isRemoved[i] = true;
+            } else if (isConditionalBranch(instr) && next != null && next.opcode() == GOTO &&
+                    labelIndex[((CLFlowControlInstruction) instr).jumpToLabel()] == i + 2) {
+                code.set(i, new CLFlowControlInstruction(oppositeOpcode(instr.opcode()),
+                        instr.pc(), ((CLFlowControlInstruction) next).jumpToLabel()));
+                isRemoved[++i] = true;
+            } else if (next != null && (i == 0 || code.get(i - 1).opcode() != WIDE) &&
+                    (next.opcode() == POP && pushesOneWord(instr) ||
+                            next.opcode() == POP2 && pushesTwoWords(instr) ||
+                            storesWhatIsLoaded(instr, next))) {
+                isRemoved[i] = true;
+                isRemoved[++i] = true;
+            } else {
+                continue;
+            }
+            changed = true;
+        }
+        if (!changed) {
+            return false;
+        }
+
+        // Drop the removed instructions, moving the labels on them to the instructions that
+        // follow.
+        int[] newIndex = new int[n + 1];
+        ArrayList<CLInstruction> kept = new ArrayList<CLInstruction>(n);
+        for (int i = 0; i < n; i++) {
+            newIndex[i] = kept.size();
+            if (!isRemoved[i]) {
+                kept.add(code.get(i));
+            }
+        }
+        newIndex[n] = kept.size();
+        code.clear();
+        code.addAll(kept);
+        for (int label = 0; label < labelCount; label++) {
+            if (labelIndex[label] >= 0) {
+                labelIndex[label] = newIndex[labelIndex[label]];
+            }
+        }
+        return true;
+    }
+
+    // Sets the pcs of the instructions and labels from their positions, and returns the size of
+    // the code section.
+    private int relocate(int[] labelPCs) {
+        int[] indexToPC = new int[code.size() + 1];
+        int pc = 0;
+        for (int i = 0; i < code.size(); i++) {
+            CLInstruction instr = code.get(i);
+            instr.setPC(pc);
+            indexToPC[i] = pc;
+            pc += instr.operandCount() + 1;
+        }
+        indexToPC[code.size()] = pc;
+        for (int label = 0; label < labelCount; label++) {
+            labelPCs[label] = labelIndex[label] < 0 ? -1 : indexToPC[labelIndex[label]];
+        }
+        return pc;
+    }
+
+    // Returns the label that a jump to the specified label ends up at, following GOTOs.
+    private int finalTarget(int label) {
+        for (int hops = 0; hops < code.size(); hops++) {
+            int i = labelIndex[label];
+            if (i < 0 || i >= code.size() || code.get(i).opcode() != GOTO) {
+                break;
+            }
+            int next = ((CLFlowControlInstruction) code.get(i)).jumpToLabel();
+            if (next == label) {
+                break;
+            }
+            label = next;
+        }
+        return label;
+    }
+
+    // Returns true if the specified instruction is a GOTO or a conditional branch, and false
+    // otherwise.
+    private static boolean isBranch(CLInstruction instr) {
+        return instr.opcode() == GOTO || isConditionalBranch(instr);
+    }
+
+    // Returns true if the specified instruction is a conditional branch, and false otherwise.
+    private static boolean isConditionalBranch(CLInstruction instr) {
+        int opcode = instr.opcode();
+        return IFEQ <= opcode && opcode <= IF_ACMPNE || opcode == IFNULL || opcode == IFNONNULL;
+    }
+
+    // Returns the opcode of the conditional branch that branches when the one with the specified
+    // opcode doesn't. The conditional branches come in pairs of opposites with consecutive opcodes
+    // (IFEQ and IFNE, IFLT and IFGE, ..., IFNULL and IFNONNULL).
+    private static int oppositeOpcode(int opcode) {
+        int first = opcode >= IFNULL ? IFNULL : IFEQ;
+        return first + ((opcode - first) ^ 1);
+    }
+
+    // Returns true if the specified instruction only pushes a one-word value onto the operand
+    // stack, and false otherwise.
+    private static boolean pushesOneWord(CLInstruction instr) {
+        int opcode = instr.opcode();
+        return ACONST_NULL <= opcode && opcode <= ICONST_5 ||
+                FCONST_0 <= opcode && opcode <= FCONST_2 || opcode == BIPUSH || opcode == SIPUSH ||
+                opcode == DUP || isLoad(opcode) && wordsOf(loadType(opcode)) == 1;
+    }
+
+    // Returns true if the specified instruction only pushes a two-word value onto the operand
+    // stack, and false otherwise.
+    private static boolean pushesTwoWords(CLInstruction instr) {
+        int opcode = instr.opcode();
+        return opcode == LCONST_0 || opcode == LCONST_1 || opcode == DCONST_0 ||
+                opcode == DCONST_1 || opcode == DUP2 ||
+                isLoad(opcode) && wordsOf(loadType(opcode)) == 2;
+    }
+
+    // Returns true if the first instruction loads a local variable and the second stores it
+    // back, and false otherwise.
+    private static boolean storesWhatIsLoaded(CLInstruction load, CLInstruction store) {
+        return isLoad(load.opcode()) && isStore(store.opcode()) &&
+                loadType(load.opcode()) == storeType(store.opcode()) &&
+                load.localVariableIndex() == store.localVariableIndex();
+    }
+
+    // Returns true if the specified opcode is that of a load from a local variable (ILOAD, ...,
+    // ALOAD_3), and false otherwise.
+    private static boolean isLoad(int opcode) {
+        return ILOAD <= opcode && opcode <= ALOAD_3;
+    }
+
+    // Returns true if the specified opcode is that of a store to a local variable (ISTORE, ...,
+    // ASTORE_3), and false otherwise.
+    private static boolean isStore(int opcode) {
+        return ISTORE <= opcode && opcode <= ASTORE_3;
+    }
+
+    // Returns the type (0 to 4, for int, long, float, double and reference) of the value loaded
+    // by the specified load opcode.
+    private static int loadType(int opcode) {
+        return opcode <= ALOAD ? opcode - ILOAD : (opcode - ILOAD_0) / 4;
+    }
+
+    // Returns the type (0 to 4, for int, long, float, double and reference) of the value stored
+    // by the specified store opcode.
+    private static int storeType(int opcode) {
+        return opcode <= ASTORE ? opcode - ISTORE : (opcode - ISTORE_0) / 4;
+    }
+
+    // Returns the number of words taken by a value of the specified type (as returned by
+    // loadType()).
+    private static int wordsOf(int type) {
+        return type == 1 || type == 3 ? 2 : 1;
+    }
+}
@@ -4,15 +4,28 @@ package jminusminus;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.StringTokenizer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * This class can be used to locate and load system, extension, and user-defined class files from
- * directories and zip (jar) files.
+ * directories and zip (jar) files. On a Java runtime that has no rt.jar, the system classes are
+ * not read from class files: they are in the runtime image, and are loaded (but not initialized)
+ * from it, through the modules of the boot layer, by loadRuntimeClass().
+ * <p>
+ * As with the Java class loaders, the system classes come first, and then the classes of the
+ * class path, in order; a class in one entry shadows a class of the same name in a later one.
+ * Each directory and zip file is looked in through its index (see CLPathEntry), which is kept for
+ * the session.
  */
 class CLPath {
+    // Maps the (internal forms of the) names of the packages that have been looked for in the
+    // runtime image to the modules they are in, or to null for those that are not in it.
+    private static HashMap<String, Module> runtimePackages = new HashMap<String, Module>();
+
     // Stores the individual directories, zip, and jar files from the class path.
     private ArrayList<String> dirs;
 
@@ -25,23 +38,24 @@ class CLPath {
     private ArrayList<String> loadClassPath(String classPath) {
         ArrayList<String> container = new ArrayList<String>();
 
-        // Add directories/jars/zips from the classpath.
-        StringTokenizer entries = new StringTokenizer(classPath, File.pathSeparator);
-        while (entries.hasMoreTokens()) {
-            container.add(entries.nextToken());
-        }
-
-        // Add system directories.
+        // Add system directories, which are searched first.
         if (System.getProperty("sun.boot.class.path") != null) {
-            entries = new StringTokenizer(System.getProperty("sun.boot.class.path"),
-                    File.pathSeparator);
+            StringTokenizer entries = new StringTokenizer(
+                    System.getProperty("sun.boot.class.path"), File.pathSeparator);
             while (entries.hasMoreTokens()) {
                 container.add(entries.nextToken());
             }
         } else {
-            String dir = System.getProperty("java.home") + File.separatorChar + "lib" +
-                    File.separatorChar + "rt.jar";
-            container.add(dir);
+            File rtJar = new File(new File(System.getProperty("java.home"), "lib"), "rt.jar");
+            if (rtJar.isFile()) {
+                container.add(rtJar.getPath());
+            }
+        }
+
+        // Add directories/jars/zips from the classpath.
+        StringTokenizer entries = new StringTokenizer(classPath, File.pathSeparator);
+        while (entries.hasMoreTokens()) {
+            container.add(entries.nextToken());
         }
         return container;
     }
@@ -92,42 +106,222 @@ class CLPath {
 
     /**
      * Returns a CLInputStream instance for the class with specified name (fully-qualified;
-     * tokens separated by '/') or null if the class was not found.
+     * tokens separated by '/') or null if the class was not found. A class of the runtime image
+     * (see loadRuntimeClass()) is never found.
      *
      * @param name the fully-qualified name of the class (eg, java/util/ArrayList).
      * @return a CLInputStream instance for the class with specified name or null if the class
      * was not found.
      */
     public CLInputStream loadClass(String name) {
-        CLInputStream reader = null;
-        for (int i = 0; i < dirs.size(); i++) {
-            String dir = dirs.get(i);
-            File file = new File(dir);
-            if (file.isDirectory()) {
-                File theClass = new File(dir, name.replace('/', File.separatorChar) + ".class");
-                if (theClass.canRead()) {
-                    try {
-                        reader = new CLInputStream(new BufferedInputStream(new
-                                FileInputStream(theClass)));
-                    } catch (FileNotFoundException e) {
-                        // Ignore
-                    }
+        if (isInRuntimeImage(name)) {
+            // A package of the runtime image can't be split with the class path.
+            return null;
+        }
+        for (String dir : dirs) {
+            InputStream in = CLPathEntry.forPath(dir).open(name);
+            if (in != null) {
+                return new CLInputStream(new BufferedInputStream(in));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the class with the specified name (fully-qualified; tokens separated by
+     * '/') is in a package of the Java runtime image, and false otherwise. Such a class is only
+     * looked for in the runtime image, so it is the same whatever the class path.
+     *
+     * @param name the fully-qualified name of the class (eg, java/util/ArrayList).
+     * @return true if the class is in a package of the runtime image, and false otherwise.
+     */
+    public static boolean isInRuntimeImage(String name) {
+        return name.lastIndexOf('/') != -1 &&
+                runtimeModule(name.substring(0, name.lastIndexOf('/'))) != null;
+    }
+
+    /**
+     * Loads, but does not initialize, the class with the specified name (fully-qualified; tokens
+     * separated by '/') from the runtime image, and returns it, or null if there is no such
+     * class.
+     *
+     * @param name the fully-qualified name of the class (eg, java/util/ArrayList).
+     * @return the class, or null.
+     */
+    public static Class<?> loadRuntimeClass(String name) {
+        Module module = runtimeModule(name.substring(0, name.lastIndexOf('/')));
+        return module == null ? null : Class.forName(module, name.replace('/', '.'));
+    }
+
+    // Returns the module of the boot layer that holds the package with the specified name (in
+    // internal form), or null if the package is not in the runtime image.
+    private static synchronized Module runtimeModule(String packageName) {
+        if (!runtimePackages.containsKey(packageName)) {
+            String name = packageName.replace('/', '.');
+            Module holder = null;
+            for (Module module : ModuleLayer.boot().modules()) {
+                if (module.getPackages().contains(name)) {
+                    holder = module;
+                    break;
                 }
-            } else if (file.isFile()) {
-                try {
-                    ZipFile zip = new ZipFile(dir);
-                    ZipEntry entry = zip.getEntry(name + ".class");
-                    if (entry != null) {
-                        reader = new CLInputStream(zip.getInputStream(entry));
+            }
+            runtimePackages.put(packageName, holder);
+        }
+        return runtimePackages.get(packageName);
+    }
+}
+
+/**
+ * This class provides the index of a directory or zip (jar) file of a class path. The indexes are
+ * kept for the session, keyed by the path of the entry, and an index is brought up to date when
+ * its entry is modified on disk, so a compile server indexes each entry once for all the requests
+ * that use it, and still sees the classes that are compiled in between.
+ * <p>
+ * A zip file is kept open, and is reopened when it is modified (when its time of last
+ * modification or its length changes). The class files in a directory are listed package by
+ * package, into hash sets, when a class of the package is first looked for; a listing is made
+ * again when the directory of the package is modified (when a file is added to it or removed from
+ * it).
+ */
+class CLPathEntry {
+    // Maps the (absolute) paths of the entries that have been looked in to their indexes.
+    private static HashMap<String, CLPathEntry> entries = new HashMap<String, CLPathEntry>();
+
+    // The directory or zip file.
+    private File file;
+
+    // The zip file, or null if the file is not a zip file, or has not been opened.
+    private ZipFile zip;
+
+    // Whether the file has been opened (as a zip file), and when it was last modified, and its
+    // length, at the time.
+    private boolean opened;
+    private long lastModified;
+    private long length;
+
+    // Maps the (internal forms of the) names of the packages that have been looked in, in a
+    // directory, to the listings of their directories.
+    private HashMap<String, Listing> listings;
+
+    /**
+     * The class files in the directory of a package, as of when the directory was listed.
+     */
+    private static class Listing {
+        // When the directory was last modified, and when it was listed.
+        private long lastModified;
+        private long listedAt;
+
+        // The names of the class files in the directory.
+        private HashSet<String> fileNames;
+
+        // Lists the class files in the specified directory, which was last modified at the
+        // specified time.
+        private Listing(File directory, long lastModified) {
+            this.lastModified = lastModified;
+            listedAt = System.currentTimeMillis();
+            fileNames = new HashSet<String>();
+            String[] names = directory.list();
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".class")) {
+                        fileNames.add(name);
                     }
-                } catch (IOException e) {
-                    // Ignore
                 }
+            }
+        }
+    }
+
+    // Constructs the index of the specified directory or zip file.
+    private CLPathEntry(File file) {
+        this.file = file;
+        listings = new HashMap<String, Listing>();
+    }
+
+    /**
+     * Returns the index of the class path entry (directory or zip file) with the specified path,
+     * creating it the first time it is asked for.
+     *
+     * @param path the path of the entry.
+     * @return the index of the entry.
+     */
+    public static synchronized CLPathEntry forPath(String path) {
+        File file = new File(path).getAbsoluteFile();
+        CLPathEntry entry = entries.get(file.getPath());
+        if (entry == null) {
+            entry = new CLPathEntry(file);
+            entries.put(file.getPath(), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns an input stream for the class file of the class with the specified name
+     * (fully-qualified; tokens separated by '/') in this entry, or null if the entry holds no such
+     * class.
+     *
+     * @param name the fully-qualified name of the class (eg, java/util/ArrayList).
+     * @return an input stream for the class file, or null.
+     */
+    public synchronized InputStream open(String name) {
+        try {
+            if (file.isDirectory()) {
+                return openInDirectory(name);
+            } else if (file.isFile()) {
+                return openInZip(name);
             } else {
                 // Bogus entry; ignore
+                return null;
             }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Returns an input stream for the class file of the class with the specified name in this
+    // directory, or null if there is no such class file.
+    private InputStream openInDirectory(String name) throws IOException {
+        int slash = name.lastIndexOf('/');
+        String packageName = slash == -1 ? "" : name.substring(0, slash);
+        File directory = slash == -1 ? file :
+                new File(file, packageName.replace('/', File.separatorChar));
+        long lastModified = directory.lastModified();
+        Listing listing = listings.get(packageName);
+
+        // A directory modified as recently as it was listed may have been modified again since,
+        // within the resolution of the time of last modification, so it is listed again.
+        if (listing == null || listing.lastModified != lastModified ||
+                listing.listedAt <= lastModified + 1000) {
+            listing = new Listing(directory, lastModified);
+            listings.put(packageName, listing);
+        }
+        String fileName = name.substring(slash + 1) + ".class";
+        return listing.fileNames.contains(fileName) ?
+                new FileInputStream(new File(directory, fileName)) : null;
+    }
+
+    // Returns an input stream for the class file of the class with the specified name in this
+    // zip file, or null if there is no such class file. The class file is read into memory, so
+    // that the zip file can be closed when it is modified.
+    private InputStream openInZip(String name) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (!opened || this.lastModified != lastModified || this.length != length) {
+            if (zip != null) {
+                zip.close();
+                zip = null;
+            }
+            opened = true;
+            this.lastModified = lastModified;
+            this.length = length;
+            zip = new ZipFile(file);
+        }
+        if (zip == null) {
+            // Not a zip file.
+            return null;
         }
-        return reader;
+        ZipEntry entry = zip.getEntry(name + ".class");
+        return entry == null ? null : new ByteArrayInputStream(
+                zip.getInputStream(entry).readAllBytes());
     }
 }
 
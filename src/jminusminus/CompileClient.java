@@ -0,0 +1,78 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A thin client for the j-- compile server (see CompileServer). It takes the same command-line
+ * arguments as Main, sends them to the server along with the working directory and class path,
+ * and prints the output of the compilation that the server sends back. If no server is running,
+ * the client compiles the program itself by running Main, so it can always be used in place of
+ * Main.
+ * <p>
+ * The client connects to the server's default socket, or to the one named by the
+ * jminusminus.socket system property.
+ */
+public class CompileClient {
+    /**
+     * Entry point.
+     *
+     * @param args the command-line arguments, as for Main.
+     */
+    public static void main(String[] args) {
+        String socketName = System.getProperty("jminusminus.socket");
+        Path socket = socketName == null ? CompileServer.socketPath() : Path.of(socketName);
+        SocketChannel server = null;
+        if (Files.exists(socket)) {
+            try {
+                server = SocketChannel.open(StandardProtocolFamily.UNIX);
+                server.connect(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                // A stale socket, left behind by a server that is no longer running.
+                server = null;
+            }
+        }
+        if (server == null) {
+            Main.main(args);
+            return;
+        }
+
+        try {
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(server));
+            request.writeUTF(System.getProperty("user.dir"));
+            request.writeUTF(System.getProperty("java.class.path"));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            DataInputStream reply = new DataInputStream(Channels.newInputStream(server));
+            System.out.write(readBytes(reply));
+            System.out.flush();
+            System.err.write(readBytes(reply));
+            System.err.flush();
+            server.close();
+        } catch (IOException e) {
+            System.err.println("Error: lost connection to the compile server: " + e.getMessage());
+        }
+    }
+
+    // Reads the length of a sequence of bytes, followed by the bytes, from the stream.
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,192 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A compile server (daemon) for j--. The server runs in a long-lived JVM, so that the compiler's
+ * classes are loaded (and compiled by the JIT) once, and the symbols of the library classes are
+ * kept from one compilation to the next. It listens on a Unix-domain socket for compile
+ * requests from CompileClient.
+ * <p>
+ * A request is the client's working directory and class path, followed by the command-line
+ * arguments for Main. The server resolves the source files, directories, and output directory
+ * named in the arguments against the client's working directory, runs Main on them, and sends
+ * back whatever Main wrote to STDOUT and STDERR, with the paths shown as the client gave them.
+ * Output files are written by the server, as they would be by Main.
+ * <p>
+ * The symbols of the library classes that the programs refer to are read from the client's class
+ * path (not the server's), so a program compiles the same whether or not the server is running.
+ * The symbols read from a class path are kept until a request comes with a different class path;
+ * those of the JDK classes, which come from the runtime image, are kept for good.
+ * <p>
+ * Requests are served one at a time, since Main reports to System.out and System.err, and keeps
+ * some of its state in static fields; Main resets that state at the start of each compilation.
+ * The compilation itself may use several threads (see Main).
+ */
+public class CompileServer {
+    // Class path of the last request (with its entries resolved against the client's working
+    // directory).
+    private static String classPath;
+
+    /**
+     * Entry point.
+     *
+     * @param args the command-line arguments: optionally, the path of the socket to listen on.
+     */
+    public static void main(String[] args) {
+        if (args.length > 1) {
+            System.out.println("Usage: j--d [<socket>]");
+            return;
+        }
+        Path socket = args.length == 1 ? Path.of(args[0]) : socketPath();
+        try {
+            Files.deleteIfExists(socket);
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            System.out.println("j-- compile server listening on " + socket);
+            while (true) {
+                SocketChannel client = server.accept();
+                try {
+                    serve(client);
+                } catch (IOException e) {
+                    System.err.println("Error: " + e.getMessage());
+                } finally {
+                    client.close();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: cannot listen on " + socket + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the path of the socket that the server listens on (and the client connects to) by
+     * default, which is private to the user.
+     *
+     * @return the path of the default socket.
+     */
+    public static Path socketPath() {
+        return Path.of(System.getProperty("java.io.tmpdir"),
+                "j--." + System.getProperty("user.name") + ".socket");
+    }
+
+    // Reads a compile request from the client, carries it out, and sends the client the output.
+    private static void serve(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+        String workingDir = in.readUTF();
+        String clientClassPath = in.readUTF();
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+        try {
+            setClassPath(clientClassPath, workingDir);
+            Main.main(resolve(args, workingDir));
+        } catch (Throwable e) {
+            // Don't let a crash in the compiler take down the server.
+            e.printStackTrace();
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+
+        DataOutputStream reply = new DataOutputStream(Channels.newOutputStream(client));
+        writeBytes(reply, relativize(out.toString(), workingDir));
+        writeBytes(reply, relativize(err.toString(), workingDir));
+        reply.flush();
+    }
+
+    // Makes the class path of a client with the specified working directory the class path for
+    // the library classes, unless it is that of the last request. The JDK classes come from the
+    // runtime image, as they do when Main is run in a JVM of its own.
+    private static void setClassPath(String clientClassPath, String workingDir) {
+        StringBuilder resolved = new StringBuilder();
+        for (String entry : clientClassPath.split(File.pathSeparator)) {
+            if (resolved.length() > 0) {
+                resolved.append(File.pathSeparator);
+            }
+            resolved.append(resolve(entry.isEmpty() ? "." : entry, workingDir));
+        }
+        if (!resolved.toString().equals(classPath)) {
+            classPath = resolved.toString();
+            Type.setLibraryClassPath(new CLPath(classPath, null));
+        }
+    }
+
+    // Returns a copy of the arguments for Main in which the source files, directories, and
+    // output directory are prefixed with the specified working directory. Main's default output
+    // directory (.) is made explicit.
+    private static String[] resolve(String[] args, String workingDir) {
+        String[] resolved = new String[args.length + 2];
+        boolean hasOutputDir = false;
+        int n = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("j--")) {
+                resolved[n++] = arg;
+            } else if (arg.endsWith(".java") ||
+                    new File(resolve(arg, workingDir)).isDirectory()) {
+                resolved[n++] = resolve(arg, workingDir);
+            } else if (arg.endsWith("-d") && (i + 1) < args.length) {
+                resolved[n++] = arg;
+                resolved[n++] = resolve(args[++i], workingDir);
+                hasOutputDir = true;
+            } else if ((arg.endsWith("-s") || arg.endsWith("-r")) && (i + 1) < args.length) {
+                resolved[n++] = arg;
+                resolved[n++] = args[++i];
+            } else {
+                resolved[n++] = arg;
+            }
+        }
+        if (!hasOutputDir) {
+            resolved[n++] = "-d";
+            resolved[n++] = resolve(".", workingDir);
+        }
+        String[] result = new String[n];
+        System.arraycopy(resolved, 0, result, 0, n);
+        return result;
+    }
+
+    // Returns the path prefixed with the working directory, unless it is absolute.
+    private static String resolve(String path, String workingDir) {
+        return new File(path).isAbsolute() ? path : workingDir + File.separator + path;
+    }
+
+    // Strips the working directory prefix (added by resolve()) from the paths in the output.
+    private static String relativize(String output, String workingDir) {
+        return output.replace(workingDir + File.separator, "");
+    }
+
+    // Writes the length of the string's bytes, followed by the bytes, to the stream.
+    private static void writeBytes(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -75,7 +75,7 @@ class Context {
      */
     public void addEntry(int line, String name, IDefn definition) {
         if (entries.containsKey(name)) {
-            JAST.compilationUnit.reportSemanticError(line, "redefining name: " + name);
+            JAST.compilationUnit().reportSemanticError(line, "redefining name: " + name);
         } else {
             entries.put(name, definition);
         }
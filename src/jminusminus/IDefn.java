@@ -59,6 +59,21 @@ class LocalVariableDefn implements IDefn {
     // Has this local variable been initialized?
     private boolean isInitialized;
 
+    // The (analyzed) initializer of this local variable in its declaration, if it has one.
+    private JExpression initializer;
+
+    // Number of assignments (by =, compound assignment operators, ++ and --) to this local
+    // variable, the one by its declaration included.
+    private int assignmentCount;
+
+    // Stands for the value of a local variable that is not a constant.
+    private static final Object NOT_CONSTANT = new Object();
+
+    // The value of this local variable if it is a constant, or NOT_CONSTANT if it is not; null
+    // until it is computed, which is done once the method declaring the variable has been
+    // analyzed (when the number of assignments to the variable is known).
+    private Object constantValue;
+
     /**
      * Constructs a local variable definition for a local variable.
      *
@@ -104,4 +119,38 @@ class LocalVariableDefn implements IDefn {
     public boolean isInitialized() {
         return isInitialized;
     }
+
+    /**
+     * Records the (analyzed) initializer of this local variable in its declaration.
+     *
+     * @param initializer the initializer.
+     */
+    public void setInitializer(JExpression initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * Records an assignment to this local variable.
+     */
+    public void recordAssignment() {
+        assignmentCount++;
+    }
+
+    /**
+     * Returns the value of this local variable if it is only assigned to by its declaration, with
+     * a constant, and null otherwise. Must not be called before the method declaring the variable
+     * has been analyzed.
+     *
+     * @return the value of this local variable if it is a constant, and null otherwise.
+     */
+    public Object constantValue() {
+        if (constantValue == null) {
+            // Set first, so that a variable whose initializer refers to itself is not a constant.
+            constantValue = NOT_CONSTANT;
+            Object value = initializer == null || assignmentCount != 1 ? null :
+                    initializer.constantValue();
+            constantValue = value == null ? NOT_CONSTANT : value;
+        }
+        return constantValue == NOT_CONSTANT ? null : constantValue;
+    }
 }
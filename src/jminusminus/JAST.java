@@ -8,10 +8,10 @@ import java.util.ArrayList;
  * JAST is the abstract superclass of all nodes in the abstract syntax tree (AST).
  */
 abstract class JAST {
-    /**
-     * Current compilation unit (set in JCompilationUnit()).
-     */
-    public static JCompilationUnit compilationUnit;
+    // Compilation unit being compiled by each thread (set in JCompilationUnit). Compilation
+    // units may be compiled in parallel, so this is kept per thread.
+    private static final ThreadLocal<JCompilationUnit> compilationUnit =
+            new ThreadLocal<JCompilationUnit>();
 
     /**
      * Line in which the source for the AST was found.
@@ -27,6 +27,24 @@ abstract class JAST {
         this.line = line;
     }
 
+    /**
+     * Returns the compilation unit being compiled by the calling thread.
+     *
+     * @return the compilation unit being compiled by the calling thread.
+     */
+    public static JCompilationUnit compilationUnit() {
+        return compilationUnit.get();
+    }
+
+    /**
+     * Makes the specified compilation unit the one being compiled by the calling thread.
+     *
+     * @param unit the compilation unit.
+     */
+    public static void setCompilationUnit(JCompilationUnit unit) {
+        compilationUnit.set(unit);
+    }
+
     /**
      * Returns the line in which the source for the AST was found.
      *
@@ -35,7 +35,8 @@ class JArrayExpression extends JExpression implements JLhs {
         theArray = (JExpression) theArray.analyze(context);
         indexExpr = (JExpression) indexExpr.analyze(context);
         if (!(theArray.type().isArray())) {
-            JAST.compilationUnit.reportSemanticError(line(), "attempt to index a non-array object");
+            JAST.compilationUnit().reportSemanticError(line(),
+                    "attempt to index a non-array object");
             this.type = Type.ANY;
         } else {
             this.type = theArray.type().componentType();
@@ -76,7 +77,7 @@ class JArrayExpression extends JExpression implements JLhs {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
         codegen(output);
         if (onTrue) {
             output.addBranchInstruction(IFNE, targetLabel);
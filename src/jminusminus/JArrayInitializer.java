@@ -32,8 +32,8 @@ class JArrayInitializer extends JExpression {
     public JExpression analyze(Context context) {
         type = type.resolve(context);
         if (!type.isArray()) {
-            JAST.compilationUnit.reportSemanticError(line, "Cannot initialize a " + type.toString()
-                    + " with an array sequence {...}");
+            JAST.compilationUnit().reportSemanticError(line,
+                    "Cannot initialize a " + type.toString() + " with an array sequence {...}");
             return this;
         }
         Type componentType = type.componentType();
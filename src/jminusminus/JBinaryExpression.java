@@ -86,15 +86,36 @@ class JMultiplyOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(), "Invalid operand types for *");
+            JAST.compilationUnit().reportSemanticError(line(), "Invalid operand types for *");
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (type == Type.INT) {
+            return (Integer) l * (Integer) r;
+        } else if (type == Type.DOUBLE) {
+            return (Double) l * (Double) r;
+        } else if (type == Type.LONG) {
+            return (Long) l * (Long) r;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (type == Type.INT) {
@@ -139,15 +160,36 @@ class JPlusOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(), "Invalid operand types for +");
+            JAST.compilationUnit().reportSemanticError(line(), "Invalid operand types for +");
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (type == Type.INT) {
+            return (Integer) l + (Integer) r;
+        } else if (type == Type.DOUBLE) {
+            return (Double) l + (Double) r;
+        } else if (type == Type.LONG) {
+            return (Long) l + (Long) r;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (type == Type.INT) {
@@ -190,15 +232,36 @@ class JSubtractOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(), "Invalid operand types for -");
+            JAST.compilationUnit().reportSemanticError(line(), "Invalid operand types for -");
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (type == Type.INT) {
+            return (Integer) l - (Integer) r;
+        } else if (type == Type.DOUBLE) {
+            return (Double) l - (Double) r;
+        } else if (type == Type.LONG) {
+            return (Long) l - (Long) r;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (type == Type.INT) {
@@ -241,15 +304,36 @@ class JDivideOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(), "Invalid operand types for *");
+            JAST.compilationUnit().reportSemanticError(line(), "Invalid operand types for *");
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (type == Type.INT && (Integer) r != 0) {
+            return (Integer) l / (Integer) r;
+        } else if (type == Type.DOUBLE) {
+            return (Double) l / (Double) r;
+        } else if (type == Type.LONG && (Long) r != 0L) {
+            return (Long) l / (Long) r;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (type == Type.INT) {
@@ -292,15 +376,36 @@ class JRemainderOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(), "Invalid operand types for %");
+            JAST.compilationUnit().reportSemanticError(line(), "Invalid operand types for %");
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (type == Type.INT && (Integer) r != 0) {
+            return (Integer) l % (Integer) r;
+        } else if (type == Type.DOUBLE) {
+            return (Double) l % (Double) r;
+        } else if (type == Type.LONG && (Long) r != 0L) {
+            return (Long) l % (Long) r;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (type == Type.INT) {
@@ -340,10 +445,22 @@ class JOrOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        return l == null || r == null ? null : (Integer) l | (Integer) r;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         output.addNoArgInstruction(IOR);
@@ -377,10 +494,22 @@ class JXorOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        return l == null || r == null ? null : (Integer) l ^ (Integer) r;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         output.addNoArgInstruction(IXOR);
@@ -414,10 +543,22 @@ class JAndOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        return l == null || r == null ? null : (Integer) l & (Integer) r;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         output.addNoArgInstruction(IAND);
@@ -451,10 +592,22 @@ class JALeftShiftOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        return l == null || r == null ? null : (Integer) l << (Integer) r;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         output.addNoArgInstruction(ISHL);
@@ -488,10 +641,22 @@ class JARightShiftOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        return l == null || r == null ? null : (Integer) l >> (Integer) r;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         output.addNoArgInstruction(ISHR);
@@ -525,10 +690,22 @@ class JLRightShiftOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        return l == null || r == null ? null : (Integer) l >>> (Integer) r;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         output.addNoArgInstruction(IUSHR);
@@ -53,9 +53,25 @@ class JBlock extends JStatement {
     public void codegen(CLEmitter output) {
         for (JStatement statement : statements) {
             statement.codegen(output);
+            if (!statement.canCompleteNormally()) {
+                // The statements that follow are unreachable.
+                break;
+            }
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        for (JStatement statement : statements) {
+            if (!statement.canCompleteNormally()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
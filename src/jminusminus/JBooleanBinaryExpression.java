@@ -26,8 +26,11 @@ abstract class JBooleanBinaryExpression extends JBinaryExpression {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String falseLabel = output.createLabel();
-        String trueLabel = output.createLabel();
+        if (codegenConstant(output)) {
+            return;
+        }
+        int falseLabel = output.newLabel();
+        int trueLabel = output.newLabel();
         this.codegen(output, falseLabel, false);
         output.addNoArgInstruction(ICONST_1); // true
         output.addBranchInstruction(GOTO, trueLabel);
@@ -35,6 +38,25 @@ abstract class JBooleanBinaryExpression extends JBinaryExpression {
         output.addNoArgInstruction(ICONST_0); // false
         output.addLabel(trueLabel);
     }
+
+    /**
+     * Returns whether the constant values of the operands are equal (following Java's rules for
+     * doubles, so 0.0 == -0.0 and NaN != NaN), or null if either operand is not a constant or
+     * the operands are references.
+     *
+     * @return whether the constant values of the operands are equal, or null.
+     */
+    protected Boolean constantOperandsEqual() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null || lhs.type().isReference()) {
+            return null;
+        } else if (l instanceof Double) {
+            return ((Double) l).doubleValue() == ((Double) r).doubleValue();
+        } else {
+            return l.equals(r);
+        }
+    }
 }
 
 /**
@@ -67,7 +89,17 @@ class JEqualOp extends JBooleanBinaryExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        return constantOperandsEqual();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (lhs.type().isReference()) {
@@ -108,9 +140,27 @@ class JLogicalAndOp extends JBooleanBinaryExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        if (l == null) {
+            return null;
+        } else if ((Boolean) l) {
+            return rhs.constantValue();
+        } else {
+            // The rhs is not evaluated.
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         if (onTrue) {
-            String falseLabel = output.createLabel();
+            int falseLabel = output.newLabel();
             lhs.codegen(output, falseLabel, false);
             rhs.codegen(output, targetLabel, true);
             output.addLabel(falseLabel);
@@ -151,12 +201,30 @@ class JLogicalOrOp extends JBooleanBinaryExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        if (l == null) {
+            return null;
+        } else if ((Boolean) l) {
+            // The rhs is not evaluated.
+            return true;
+        } else {
+            return rhs.constantValue();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         if (onTrue) {
             lhs.codegen(output, targetLabel, true);
             rhs.codegen(output, targetLabel, true);
         } else {
-            String skipLabel = output.createLabel();
+            int skipLabel = output.newLabel();
             lhs.codegen(output, skipLabel, true);
             rhs.codegen(output, targetLabel, false);
             output.addLabel(skipLabel);
@@ -194,7 +262,18 @@ class JNotEqualOp extends JBooleanBinaryExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Boolean equal = constantOperandsEqual();
+        return equal == null ? null : !equal;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (lhs.type().isReference()) {
@@ -24,7 +24,7 @@ public class JBreakStatement extends JStatement {
      * {@inheritDoc}
      */
     public JStatement analyze(Context context) {
-        enclosingStatement = JMember.enclosingStatement.peek();
+        enclosingStatement = JAST.compilationUnit().enclosingStatement().peek();
 
         if (enclosingStatement instanceof JDoStatement) {
             ((JDoStatement) enclosingStatement).hasBreak = true;
@@ -55,6 +55,17 @@ public class JBreakStatement extends JStatement {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        // Only a break out of a loop or switch jumps.
+        return !(enclosingStatement instanceof JDoStatement ||
+                enclosingStatement instanceof JWhileStatement ||
+                enclosingStatement instanceof JForStatement ||
+                enclosingStatement instanceof JSwitchStatement);
+    }
+
     /**
      * {@inheritDoc}
      */
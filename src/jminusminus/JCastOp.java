@@ -17,7 +17,7 @@ class JCastOp extends JExpression {
     private JExpression expr;
 
     // The conversions table.
-    private static Conversions conversions;
+    private static final Conversions conversions = new Conversions();
 
     // The converter to use for this cast.
     private Converter converter;
@@ -33,7 +33,6 @@ class JCastOp extends JExpression {
         super(line);
         this.cast = cast;
         this.expr = expr;
-        conversions = new Conversions();
     }
 
     /**
@@ -51,16 +50,43 @@ class JCastOp extends JExpression {
         } else if (conversions.get(expr.type(), cast) != null) {
             converter = conversions.get(expr.type(), cast);
         } else {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Cannot cast a " + expr.type().toString() + " to a " + cast.toString());
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object value = expr.constantValue();
+        if (value == null || cast.equals(expr.type())) {
+            return value;
+        } else if (!cast.isPrimitive() || !expr.type().isPrimitive() ||
+                value instanceof Boolean) {
+            return null;
+        }
+        Number n = value instanceof Character ? (int) (Character) value : (Number) value;
+        if (cast == Type.INT) {
+            return n.intValue();
+        } else if (cast == Type.LONG) {
+            return n.longValue();
+        } else if (cast == Type.DOUBLE) {
+            return n.doubleValue();
+        } else if (cast == Type.CHAR) {
+            return (char) n.intValue();
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         expr.codegen(output);
         converter.codegen(output);
     }
@@ -76,11 +76,11 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      * {@inheritDoc}
      */
     public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         CLEmitter partial = new CLEmitter(false);
         partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null, false);
-        thisType = Type.typeFor(partial.toClass());
+        thisType = Type.typeFor(partial.toSymbol());
         context.addType(line, thisType);
     }
 
@@ -94,20 +94,24 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         // Resolve superclass.
         superType = superType.resolve(this.context);
 
-        // Creating a partial class in memory can result in a java.lang.VerifyError if the
-        // semantics below are violated, so we can't defer these checks to analyze().
+        // The partial class would not be a valid class if the semantics below are violated, so
+        // we can't defer these checks to analyze(). A cycle in the superclasses is found when the
+        // last class in it is pre-analyzed, since the others extend their superclasses by then.
         thisType.checkAccess(line, superType);
         if (superType.isFinal()) {
-            JAST.compilationUnit.reportSemanticError(line, "Cannot extend a final type: %s",
+            JAST.compilationUnit().reportSemanticError(line, "Cannot extend a final type: %s",
                     superType.toString());
+        } else if (thisType.isJavaAssignableFrom(superType)) {
+            JAST.compilationUnit().reportSemanticError(line, "Cyclic inheritance involving %s",
+                    thisType.toString());
         }
 
         // Create the (partial) class.
         CLEmitter partial = new CLEmitter(false);
 
         // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         partial.addClass(mods, qualifiedName, superType.jvmName(), null, false);
 
         // Pre-analyze the members and add them to the partial class.
@@ -122,10 +126,10 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             codegenPartialImplicitConstructor(partial);
         }
 
-        // Get the ClassRep for the (partial) class and make it the representation for this type.
+        // Get the symbols of the (partial) class and make them the representation for this type.
         Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+        if (id != null && !JAST.compilationUnit().errorHasOccurred()) {
+            id.setSymbol(partial.toSymbol());
         }
     }
 
@@ -184,7 +188,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             for (Method method : thisType.abstractMethods()) {
                 methods += "\n" + method;
             }
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Class must be abstract since it defines abstract methods: %s", methods);
         }
         return this;
@@ -195,8 +199,8 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      */
     public void codegen(CLEmitter output) {
         // The class header.
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
 
         // Get every super interfaces name as strings
         ArrayList<String> interfaces = new ArrayList<>();
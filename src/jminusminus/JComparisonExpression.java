@@ -31,9 +31,8 @@ abstract class JComparisonExpression extends JBooleanBinaryExpression {
         if (lhsType == Type.INT || lhsType == Type.DOUBLE || lhsType == Type.LONG) {
             type = Type.BOOLEAN;
         } else {    // error
-            JAST.compilationUnit.reportSemanticError(line, "Operands to comparison must have an " +
-                    "LValue of " +
-                    "int, double, or long.");
+            JAST.compilationUnit().reportSemanticError(line,
+                    "Operands to comparison must have an LValue of int, double, or long.");
             type = Type.ANY;
         }
 
@@ -59,7 +58,27 @@ class JGreaterThanOp extends JComparisonExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (lhs.type() == Type.DOUBLE) {
+            return (Double) l > (Double) r;
+        } else if (lhs.type() == Type.LONG) {
+            return (Long) l > (Long) r;
+        } else {
+            return (Integer) l > (Integer) r;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (lhs.type() == Type.DOUBLE) {
@@ -93,7 +112,27 @@ class JLessEqualOp extends JComparisonExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (lhs.type() == Type.DOUBLE) {
+            return (Double) l <= (Double) r;
+        } else if (lhs.type() == Type.LONG) {
+            return (Long) l <= (Long) r;
+        } else {
+            return (Integer) l <= (Integer) r;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (lhs.type() == Type.DOUBLE) {
@@ -127,7 +166,27 @@ class JGreaterEqualOp extends JComparisonExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (lhs.type() == Type.DOUBLE) {
+            return (Double) l >= (Double) r;
+        } else if (lhs.type() == Type.LONG) {
+            return (Long) l >= (Long) r;
+        } else {
+            return (Integer) l >= (Integer) r;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (lhs.type() == Type.DOUBLE) {
@@ -160,7 +219,27 @@ class JLessThanOp extends JComparisonExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        } else if (lhs.type() == Type.DOUBLE) {
+            return (Double) l < (Double) r;
+        } else if (lhs.type() == Type.LONG) {
+            return (Long) l < (Long) r;
+        } else {
+            return (Integer) l < (Integer) r;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         lhs.codegen(output);
         rhs.codegen(output);
         if (lhs.type() == Type.DOUBLE) {
@@ -3,6 +3,7 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.Stack;
 
 /**
  * The abstract syntax tree (AST) node representing a compilation unit, and so the root of the AST.
@@ -50,6 +51,10 @@ class JCompilationUnit extends JAST {
     // Whether a semantic error has been found.
     private boolean isInError;
 
+    // Stack of statements (loops and switches) enclosing the statement being analyzed; used for
+    // resolving break and continue statements.
+    private Stack<JStatement> enclosingStatement;
+
     /**
      * Constructs an AST node for a compilation unit.
      *
@@ -67,7 +72,8 @@ class JCompilationUnit extends JAST {
         this.imports = imports;
         this.typeDeclarations = typeDeclarations;
         clFiles = new ArrayList<CLFile>();
-        compilationUnit = this;
+        enclosingStatement = new Stack<JStatement>();
+        setCompilationUnit(this);
     }
 
     /**
@@ -90,6 +96,25 @@ class JCompilationUnit extends JAST {
         return clFiles;
     }
 
+    /**
+     * Returns the name of the source file.
+     *
+     * @return the name of the source file.
+     */
+    public String fileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the stack of statements (loops and switches) enclosing the statement being
+     * analyzed.
+     *
+     * @return the stack of statements enclosing the statement being analyzed.
+     */
+    public Stack<JStatement> enclosingStatement() {
+        return enclosingStatement;
+    }
+
     /**
      * Returns true if a semantic error has occurred up to now, and false otherwise.
      *
@@ -108,9 +133,8 @@ class JCompilationUnit extends JAST {
      */
     public void reportSemanticError(int line, String message, Object... arguments) {
         isInError = true;
-        System.err.printf("%s:%d: error: ", fileName, line);
-        System.err.printf(message, arguments);
-        System.err.println();
+        System.err.printf("%s:%d: error: %s%n", fileName, line,
+                String.format(message, arguments));
     }
 
     /**
@@ -118,6 +142,17 @@ class JCompilationUnit extends JAST {
      * pre-analyzes the unit's type declarations, adding their types to the context.
      */
     public void preAnalyze() {
+        declareTypes();
+        preAnalyzeTypes();
+    }
+
+    /**
+     * Constructs a context for the compilation unit, initializing it with imported types, and
+     * declares the unit's type declarations in that context. When several compilation units are
+     * compiled together, this is done for all of them before any of them is pre-analyzed.
+     */
+    public void declareTypes() {
+        setCompilationUnit(this);
         context = new CompilationUnitContext();
 
         // Declare the two implicit types java.lang.Object and java.lang.String.
@@ -126,24 +161,115 @@ class JCompilationUnit extends JAST {
 
         // Declare any imported types.
         for (TypeName imported : imports) {
-            try {
-                Class<?> classRep = Class.forName(imported.toString());
-                context.addType(imported.line(), Type.typeFor(classRep));
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(imported.line(), "Unable to find %s",
+            Type type = Type.loadType(imported.toString());
+            if (type != null) {
+                context.addType(imported.line(), type);
+            } else {
+                JAST.compilationUnit().reportSemanticError(imported.line(), "Unable to find %s",
                         imported.toString());
             }
         }
 
         // Declare the locally declared type(s).
-        CLEmitter.initializeByteClassLoader();
         for (JAST typeDeclaration : typeDeclarations) {
             ((JTypeDecl) typeDeclaration).declareThisType(context);
         }
+    }
+
+    /**
+     * Declares, in this unit's context, the types declared by the specified compilation unit
+     * (which is being compiled along with this one) if it is in the same package as this unit,
+     * so that they can be referred to by their simple names.
+     *
+     * @param other the other compilation unit.
+     */
+    public void declareTypesOf(JCompilationUnit other) {
+        if (other == this) {
+            return;
+        }
+        for (Type type : other.declaredTypes()) {
+            declareType(type);
+        }
+    }
+
+    /**
+     * Declares, in this unit's context, the specified type that is declared elsewhere (for
+     * example, in a compilation unit whose class files are reused from a build cache) if it is in
+     * the same package as this unit, so that it can be referred to by its simple name.
+     *
+     * @param type the type.
+     */
+    public void declareType(Type type) {
+        String name = type.jvmName();
+        String typePackageName = name.lastIndexOf('/') == -1 ?
+                "" : name.substring(0, name.lastIndexOf('/'));
+        if (typePackageName.equals(packageName())) {
+            setCompilationUnit(this);
+            context.addType(line(), type);
+        }
+    }
+
+    /**
+     * Returns the types declared in this compilation unit, in the order of their declarations.
+     *
+     * @return the types declared in this compilation unit.
+     */
+    public ArrayList<Type> declaredTypes() {
+        ArrayList<Type> types = new ArrayList<Type>();
+        for (JAST typeDeclaration : typeDeclarations) {
+            types.add(((JTypeDecl) typeDeclaration).thisType());
+        }
+        return types;
+    }
 
-        // Pre-analyze the locally declared type(s). Generate (partial) Class instances,
-        // reflecting only the member declaration information.
-        CLEmitter.initializeByteClassLoader();
+    /**
+     * Returns the (JVM) names of the types that the types declared in this compilation unit
+     * directly extend or implement. Must be called after declareTypes() and before pre-analysis,
+     * which resolves these types.
+     *
+     * @return the names of the direct supertypes of the types declared in this compilation unit.
+     */
+    public ArrayList<String> superTypeNames() {
+        ArrayList<String> names = new ArrayList<String>();
+        for (JAST typeDeclaration : typeDeclarations) {
+            JTypeDecl decl = (JTypeDecl) typeDeclaration;
+            ArrayList<Type> superTypes = new ArrayList<Type>();
+            superTypes.add(decl.superType());
+            if (decl.superInterfaces() != null) {
+                superTypes.addAll(decl.superInterfaces());
+            }
+            for (Type superType : superTypes) {
+                Type type = context.lookupType(superType.toString());
+                names.add(type != null ? type.jvmName() : superType.jvmName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the types, other than its own, that this compilation unit refers to by name (the
+     * types in its context). Must be called after analysis.
+     *
+     * @return the types that this compilation unit refers to.
+     */
+    public ArrayList<Type> referencedTypes() {
+        ArrayList<Type> declared = declaredTypes();
+        ArrayList<Type> types = new ArrayList<Type>();
+        for (String name : context.names()) {
+            Type type = context.lookupType(name);
+            if (type != null && !declared.contains(type) && !types.contains(type)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Pre-analyzes the unit's type declarations, generating partial classes for them, reflecting
+     * only the member declaration information.
+     */
+    public void preAnalyzeTypes() {
+        setCompilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             ((JTypeDecl) typeDeclaration).preAnalyze(context);
         }
@@ -153,6 +279,7 @@ class JCompilationUnit extends JAST {
      * {@inheritDoc}
      */
     public JAST analyze(Context context) {
+        setCompilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             typeDeclaration.analyze(this.context);
         }
@@ -163,6 +290,7 @@ class JCompilationUnit extends JAST {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        setCompilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             typeDeclaration.codegen(output);
             output.write();
@@ -48,12 +48,27 @@ class JConditionalExpression extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Boolean value = (Boolean) condition.constantValue();
+        return value == null ? null : value ? thenPart.constantValue() : elsePart.constantValue();
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String elseLabel = output.createLabel();
-        String endLabel = output.createLabel();
+        // If the condition is a constant, only the part that is taken is generated.
+        Boolean value = (Boolean) condition.constantValue();
+        if (value != null) {
+            (value ? thenPart : elsePart).codegen(output);
+            return;
+        }
+
+        int elseLabel = output.newLabel();
+        int endLabel = output.newLabel();
 
         condition.codegen(output, elseLabel, false);
         thenPart.codegen(output);
@@ -41,9 +41,9 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
     public void preAnalyze(Context context, CLEmitter partial) {
         super.preAnalyze(context, partial);
         if (isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(), "Constructor cannot be static");
+            JAST.compilationUnit().reportSemanticError(line(), "Constructor cannot be static");
         } else if (isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(), "Constructor cannot be abstract");
+            JAST.compilationUnit().reportSemanticError(line(), "Constructor cannot be abstract");
         }
         if (body.statements().size() > 0 &&
                 body.statements().get(0) instanceof JStatementExpression) {
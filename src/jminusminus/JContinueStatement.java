@@ -24,7 +24,7 @@ public class JContinueStatement extends JStatement {
      * {@inheritDoc}
      */
     public JStatement analyze(Context context) {
-        enclosingStatement = JMember.enclosingStatement.peek();
+        enclosingStatement = JAST.compilationUnit().enclosingStatement().peek();
 
         if (enclosingStatement instanceof JDoStatement) {
             ((JDoStatement) enclosingStatement).hasContinue = true;
@@ -51,6 +51,16 @@ public class JContinueStatement extends JStatement {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        // Only a continue of a loop jumps.
+        return !(enclosingStatement instanceof JDoStatement ||
+                enclosingStatement instanceof JWhileStatement ||
+                enclosingStatement instanceof JForStatement);
+    }
+
     /**
      * {@inheritDoc}
      */
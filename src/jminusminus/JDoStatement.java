@@ -16,11 +16,11 @@ public class JDoStatement extends JStatement {
 
     // break;
     public boolean hasBreak;
-    public String breakLabel;
+    public int breakLabel;
 
     // continue;
     public boolean hasContinue;
-    public String continueLabel;
+    public int continueLabel;
 
     /**
      * Constructs an AST node for a do-statement.
@@ -40,13 +40,13 @@ public class JDoStatement extends JStatement {
      * {@inheritDoc}
      */
     public JStatement analyze(Context context) {
-        JMember.enclosingStatement.push(this);
+        JAST.compilationUnit().enclosingStatement().push(this);
 
         condition = (JExpression) condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.BOOLEAN);
         body = (JStatement) body.analyze(context);
 
-        JMember.enclosingStatement.pop();
+        JAST.compilationUnit().enclosingStatement().pop();
         return this;
     }
 
@@ -54,22 +54,33 @@ public class JDoStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String startDoLabel = output.createLabel();
-        breakLabel = output.createLabel();
-        continueLabel = output.createLabel();
+        int startDoLabel = output.newLabel();
+        breakLabel = output.newLabel();
+        continueLabel = output.newLabel();
 
         output.addLabel(startDoLabel);
         body.codegen(output);
         if (hasContinue) { // if body has continue, jump here out of body
             output.addLabel(continueLabel);
         }
-        condition.codegen(output, startDoLabel, true); // loop back to beginning if true condition
+        if (hasContinue || body.canCompleteNormally()) {
+            // Loop back to the beginning if the condition is true.
+            condition.codegen(output, startDoLabel, true);
+        }
 
         if (hasBreak) {
             output.addLabel(breakLabel); // outside do while
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        return hasBreak || (hasContinue || body.canCompleteNormally()) &&
+                !Boolean.TRUE.equals(condition.constantValue());
+    }
+
     /**
      * {@inheritDoc}
      */
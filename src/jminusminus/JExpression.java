@@ -2,6 +2,8 @@
 
 package jminusminus;
 
+import static jminusminus.CLConstants.*;
+
 /**
  * The AST node for an expression. The syntax says all expressions are statements, but a semantic
  * check throws some (those without a side-effect) out. Every expression has a type and a flag
@@ -18,6 +20,13 @@ abstract class JExpression extends JStatement {
      */
     protected boolean isStatementExpression;
 
+    // Stands for the value of an expression that is not a constant.
+    private static final Object NOT_CONSTANT = new Object();
+
+    // The value of this expression if it is a constant, or NOT_CONSTANT if it is not; null until
+    // it is computed.
+    private Object constantValue;
+
     /**
      * Constructs an AST node for an expression.
      *
@@ -62,10 +71,121 @@ abstract class JExpression extends JStatement {
      * @param targetLabel the label to which we should branch.
      * @param onTrue      do we branch on true?
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
         // We should never reach here, since all boolean (including identifier) expressions must
         // override this method.
         System.err.println("Error in short-circuit code generation");
     }
 
+    /**
+     * Returns the value of this expression if it is a constant, and null otherwise. Constants are
+     * the literals (other than null), the local variables that are only assigned to by their
+     * declarations, with constants, and the operations on constants whose results can be computed
+     * at compile time (following Java's rules; for example, an integer division by zero is left
+     * for run time). The value is an Integer, Long, Double, Character, Boolean or String,
+     * according to the type of the expression.
+     * <p>
+     * Whether a local variable is assigned to again is only known once its method has been
+     * analyzed, so this method must not be called before code generation. The value is computed
+     * (see computeConstantValue()) the first time it is asked for, and is kept, so that folding
+     * an expression, and generating code for its operands, doesn't compute the values of its
+     * operands over and over.
+     *
+     * @return the value of this expression if it is a constant, and null otherwise.
+     */
+    public final Object constantValue() {
+        if (constantValue == null) {
+            // An expression that (wrongly) depends on its own value is not a constant.
+            constantValue = NOT_CONSTANT;
+            Object value = computeConstantValue();
+            constantValue = value == null ? NOT_CONSTANT : value;
+        }
+        return constantValue == NOT_CONSTANT ? null : constantValue;
+    }
+
+    /**
+     * Computes the value of this expression if it is a constant (see constantValue()), from the
+     * values of its operands, and returns it, or null if the expression is not a constant.
+     *
+     * @return the value of this expression if it is a constant, and null otherwise.
+     */
+    protected Object computeConstantValue() {
+        return null;
+    }
+
+    /**
+     * Generates code that pushes the value of this expression onto the stack if the expression is
+     * a constant (in place of the code computing the value), given the code emitter.
+     *
+     * @param output the code emitter.
+     * @return true if the expression is a constant (and code was generated), and false otherwise.
+     */
+    protected boolean codegenConstant(CLEmitter output) {
+        Object value = constantValue();
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Long) {
+            long l = (Long) value;
+            if (l == 0L) {
+                output.addNoArgInstruction(LCONST_0);
+            } else if (l == 1L) {
+                output.addNoArgInstruction(LCONST_1);
+            } else {
+                output.addLDCInstruction(l);
+            }
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.doubleToLongBits(d) == 0L) {
+                // Not -0.0, which is equal to 0.0.
+                output.addNoArgInstruction(DCONST_0);
+            } else if (d == 1d) {
+                output.addNoArgInstruction(DCONST_1);
+            } else {
+                output.addLDCInstruction(d);
+            }
+        } else if (value instanceof String) {
+            output.addLDCInstruction((String) value);
+        } else {
+            int i;
+            if (value instanceof Boolean) {
+                i = (Boolean) value ? 1 : 0;
+            } else if (value instanceof Character) {
+                i = (Character) value;
+            } else {
+                i = (Integer) value;
+            }
+            if (i >= -1 && i <= 5) {
+                output.addNoArgInstruction(ICONST_0 + i);
+            } else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
+                output.addOneArgInstruction(BIPUSH, i);
+            } else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
+                output.addOneArgInstruction(SIPUSH, i);
+            } else {
+                output.addLDCInstruction(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Performs short-circuit code generation for this boolean expression if it is a constant
+     * (branching to the target label unconditionally, or not at all), given the code emitter, a
+     * target label, and whether we branch to that label on true or on false.
+     *
+     * @param output      the code emitter.
+     * @param targetLabel the label to which we should branch.
+     * @param onTrue      do we branch on true?
+     * @return true if the expression is a constant (and code was generated), and false otherwise.
+     */
+    protected boolean codegenConstant(CLEmitter output, int targetLabel, boolean onTrue) {
+        Object value = constantValue();
+        if (value == null) {
+            return false;
+        }
+        if ((Boolean) value == onTrue) {
+            output.addBranchInstruction(GOTO, targetLabel);
+        }
+        return true;
+    }
 }
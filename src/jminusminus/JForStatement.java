@@ -24,11 +24,11 @@ class JForStatement extends JStatement {
 
     // break;
     public boolean hasBreak;
-    public String breakLabel;
+    public int breakLabel;
 
     // continue;
     public boolean hasContinue;
-    public String continueLabel;
+    public int continueLabel;
 
     /**
      * Constructs an AST node for a for-statement.
@@ -53,7 +53,7 @@ class JForStatement extends JStatement {
      * {@inheritDoc}
      */
     public JForStatement analyze(Context context) {
-        JMember.enclosingStatement.push(this);
+        JAST.compilationUnit().enclosingStatement().push(this);
         LocalContext localContext = new LocalContext(context);
 
         // Analyze for init
@@ -86,7 +86,7 @@ class JForStatement extends JStatement {
             body = (JStatement) body.analyze(localContext);
         }
 
-        JMember.enclosingStatement.pop();
+        JAST.compilationUnit().enclosingStatement().pop();
         return this;
     }
 
@@ -95,10 +95,10 @@ class JForStatement extends JStatement {
      */
     public void codegen(CLEmitter output) {
         // create labels
-        String startForLabel = output.createLabel();
-        String exitLabel = output.createLabel();
-        breakLabel = output.createLabel();
-        continueLabel = output.createLabel();
+        int startForLabel = output.newLabel();
+        int exitLabel = output.newLabel();
+        breakLabel = output.newLabel();
+        continueLabel = output.newLabel();
 
         // generate initialize for loop vars
         if (init != null) {
@@ -107,6 +107,11 @@ class JForStatement extends JStatement {
             }
         }
 
+        // a loop whose condition is the constant false is not generated beyond its initialization
+        if (condition != null && Boolean.FALSE.equals(condition.constantValue())) {
+            return;
+        }
+
         // generate condition
         output.addLabel(startForLabel);
         if (condition != null) {
@@ -122,22 +127,29 @@ class JForStatement extends JStatement {
             output.addLabel(continueLabel);
         }
 
-        // generate update
-        if (update != null) {
-            for (JStatement u : update) {
-                u.codegen(output);
+        // generate update, and jump back to checking condition, unless they are unreachable
+        if (hasContinue || body == null || body.canCompleteNormally()) {
+            if (update != null) {
+                for (JStatement u : update) {
+                    u.codegen(output);
+                }
             }
+            output.addBranchInstruction(GOTO, startForLabel);
         }
 
-        // jump back to checking condition
-        output.addBranchInstruction(GOTO, startForLabel);
-
         output.addLabel(exitLabel); // exit for loop label
         if (hasBreak) {
             output.addLabel(breakLabel);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        return hasBreak || condition != null && !Boolean.TRUE.equals(condition.constantValue());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -49,11 +49,22 @@ class JIfStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String elseLabel = output.createLabel();
-        String endLabel = output.createLabel();
+        // If the condition is a constant, only the part that is taken is generated.
+        Boolean value = (Boolean) condition.constantValue();
+        if (value != null) {
+            if (value) {
+                thenPart.codegen(output);
+            } else if (elsePart != null) {
+                elsePart.codegen(output);
+            }
+            return;
+        }
+
+        int elseLabel = output.newLabel();
+        int endLabel = output.newLabel();
         condition.codegen(output, elseLabel, false);
         thenPart.codegen(output);
-        if (elsePart != null) {
+        if (elsePart != null && thenPart.canCompleteNormally()) {
             output.addBranchInstruction(GOTO, endLabel);
         }
         output.addLabel(elseLabel);
@@ -63,6 +74,19 @@ class JIfStatement extends JStatement {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        Boolean value = (Boolean) condition.constantValue();
+        if (value != null) {
+            return value ? thenPart.canCompleteNormally() :
+                    elsePart == null || elsePart.canCompleteNormally();
+        }
+        return elsePart == null || thenPart.canCompleteNormally() ||
+                elsePart.canCompleteNormally();
+    }
+
     /**
      * {@inheritDoc}
      */
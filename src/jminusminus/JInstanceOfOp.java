@@ -35,15 +35,15 @@ class JInstanceOfOp extends JExpression {
         expr = (JExpression) expr.analyze(context);
         typeSpec = typeSpec.resolve(context);
         if (!typeSpec.isReference()) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "RHS of instanceof must be a reference type");
         } else if (!(expr.type() == Type.NULLTYPE || expr.type() == Type.ANY ||
                 expr.type().isReference())) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "LHS of instanceof must be a reference type");
         } else if (expr.type().isReference() && !typeSpec.isJavaAssignableFrom(expr.type()) &&
                 !expr.type().isJavaAssignableFrom(typeSpec)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "It is impossible for the expression to be an instance of " +
                             typeSpec.toString());
         }
@@ -62,7 +62,7 @@ class JInstanceOfOp extends JExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
         codegen(output);
         if (onTrue) {
             output.addBranchInstruction(IFNE, targetLabel);
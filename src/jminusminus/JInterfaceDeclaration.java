@@ -59,11 +59,11 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
      * {@inheritDoc}
      */
     public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         CLEmitter partial = new CLEmitter(false);
         partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null, false);
-        thisType = Type.typeFor(partial.toClass());
+        thisType = Type.typeFor(partial.toSymbol());
         context.addType(line, thisType);
     }
 
@@ -78,8 +78,8 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
         CLEmitter partial = new CLEmitter(false);
 
         // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         partial.addClass(mods, qualifiedName, superType.jvmName(), null, false);
 
         // Pre-analyze the members and add them to the partial class.
@@ -87,10 +87,10 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
             member.preAnalyze(this.context, partial);
         }
 
-        // Get the ClassRep for the (partial) class and make it the representation for this type.
+        // Get the symbols of the (partial) class and make them the representation for this type.
         Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+        if (id != null && !JAST.compilationUnit().errorHasOccurred()) {
+            id.setSymbol(partial.toSymbol());
         }
     }
 
@@ -139,8 +139,8 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
      */
     public void codegen(CLEmitter output) {
         // The class header.
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
 
         // Get every super interfaces name as strings
         ArrayList<String> interfaces = new ArrayList<>();
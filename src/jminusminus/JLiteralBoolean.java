@@ -30,6 +30,13 @@ class JLiteralBoolean extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return text.equals("true");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -44,7 +51,7 @@ class JLiteralBoolean extends JExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
         if (text.equals("true")) {
             if (onTrue) {
                 output.addBranchInstruction(GOTO, targetLabel);
@@ -30,6 +30,13 @@ class JLiteralChar extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return JAST.unescape(text).charAt(1);
+    }
+
     /**
      * {@inheritDoc}
      */
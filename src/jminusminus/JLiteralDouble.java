@@ -30,6 +30,13 @@ class JLiteralDouble extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return Double.parseDouble(text);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -39,6 +39,13 @@ class JLiteralInt extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return toInt();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -30,6 +30,13 @@ class JLiteralLong extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return Long.parseLong(text.substring(0, text.length() - 1));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -28,6 +28,14 @@ class JLiteralString extends JExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        String s = JAST.unescape(text);
+        return s.substring(1, s.length() - 1);
+    }
+
     /**
      * {@inheritDoc}
      */
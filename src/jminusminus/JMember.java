@@ -2,15 +2,10 @@
 
 package jminusminus;
 
-import java.util.Stack;
-
 /**
  * An interface supported by all class (or later, interface) members.
  */
 interface JMember {
-
-    public static Stack<JStatement> enclosingStatement = new Stack<JStatement>();
-
     /**
      * Declares the member names in the specified (class) context and generates the member headers
      * in the partial class.
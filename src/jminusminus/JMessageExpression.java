@@ -72,7 +72,7 @@ class JMessageExpression extends JExpression {
                     target = expr;
                 } else {
                     // Can't even happen syntactically.
-                    JAST.compilationUnit.reportSemanticError(line(), "Badly formed suffix");
+                    JAST.compilationUnit().reportSemanticError(line(), "Badly formed suffix");
                 }
             }
         }
@@ -98,7 +98,7 @@ class JMessageExpression extends JExpression {
         } else {
             target = (JExpression) target.analyze(context);
             if (target.type().isPrimitive()) {
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                         "Cannot invoke a message on a primitive type: " + target.type());
             }
         }
@@ -106,7 +106,7 @@ class JMessageExpression extends JExpression {
         // Find appropriate Method for this message expression.
         method = target.type().methodFor(messageName, argTypes);
         if (method == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Cannot find method for: " + Type.signatureFor(messageName, argTypes));
             type = Type.ANY;
         } else {
@@ -117,7 +117,7 @@ class JMessageExpression extends JExpression {
             if (!method.isStatic()) {
                 if (target instanceof JVariable &&
                         ((JVariable) target).iDefn() instanceof TypeNameDefn) {
-                    JAST.compilationUnit.reportSemanticError(line(),
+                    JAST.compilationUnit().reportSemanticError(line(),
                             "Non-static method " + Type.signatureFor(messageName, argTypes) +
                                     " cannot be referenced from a static context");
                 }
@@ -149,7 +149,7 @@ class JMessageExpression extends JExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
         codegen(output);
         if (onTrue) {
             output.addBranchInstruction(IFNE, targetLabel);
@@ -107,14 +107,15 @@ class JMethodDeclaration extends JAST implements JMember {
 
         // Check proper local use of abstract
         if (isAbstract && body != null) {
-            JAST.compilationUnit.reportSemanticError(line(), "abstract method cannot have a body");
+            JAST.compilationUnit().reportSemanticError(line(),
+                    "abstract method cannot have a body");
         } else if (body == null && !isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Method without body must be abstract");
         } else if (isAbstract && isPrivate) {
-            JAST.compilationUnit.reportSemanticError(line(), "private method cannot be abstract");
+            JAST.compilationUnit().reportSemanticError(line(), "private method cannot be abstract");
         } else if (isAbstract && isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(), "static method cannot be abstract");
+            JAST.compilationUnit().reportSemanticError(line(), "static method cannot be abstract");
         }
 
         // Compute descriptor.
@@ -166,7 +167,7 @@ class JMethodDeclaration extends JAST implements JMember {
         if (body != null) {
             body = body.analyze(this.context);
             if (returnType != Type.VOID && !methodContext.methodHasReturn()) {
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                         "Non-void method must have a return statement");
             }
         }
@@ -205,7 +206,7 @@ class JMethodDeclaration extends JAST implements JMember {
         if (body != null) {
             body.codegen(output);
         }
-        if (returnType == Type.VOID) {
+        if (returnType == Type.VOID && (body == null || body.canCompleteNormally())) {
             output.addNoArgInstruction(RETURN);
         }
     }
@@ -14,4 +14,16 @@ abstract class JStatement extends JAST {
     protected JStatement(int line) {
         super(line);
     }
+
+    /**
+     * Returns true if this statement can complete normally (that is, if the code that follows it
+     * is reachable), and false if it cannot. The answer errs on the side of true, and takes
+     * constant conditions into account, so it must not be asked before the method declaring the
+     * statement has been analyzed.
+     *
+     * @return true if this statement can complete normally, and false otherwise.
+     */
+    public boolean canCompleteNormally() {
+        return true;
+    }
 }
@@ -2,12 +2,19 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+
 import static jminusminus.CLConstants.*;
 
 /**
  * The AST node for a string concatenation operation. Nodes of this type are not produced by the
  * parser, but by analysis of a + operation where the arguments are strings. Such operations are
  * rewritten to be string concatenation operations.
+ * <p>
+ * The concatenation is done with a StringBuilder, or, in class files of version
+ * INDY_MAJOR_VERSION and later, by a single invokedynamic instruction linked by
+ * java.lang.invoke.StringConcatFactory.makeConcatWithConstants(). The recipe passed to the
+ * latter has the constant operands in it, and a \1 for each of the others.
  */
 class JStringConcatenationOp extends JBinaryExpression {
     /**
@@ -29,10 +36,33 @@ class JStringConcatenationOp extends JBinaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object l = lhs.constantValue();
+        Object r = rhs.constantValue();
+        if (l == null || r == null) {
+            return null;
+        }
+        String s = String.valueOf(l) + String.valueOf(r);
+
+        // A string constant takes up to 3 bytes a character in the constant pool, where its size
+        // is limited to 65535 bytes.
+        return s.length() <= 65535 / 3 ? s : null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
+        if (output.majorVersion() >= INDY_MAJOR_VERSION && indyCodegen(output)) {
+            return;
+        }
+
         // Firstly, create a StringBuilder.
         output.addReferenceInstruction(NEW, "java/lang/StringBuilder");
         output.addNoArgInstruction(DUP);
@@ -47,11 +77,70 @@ class JStringConcatenationOp extends JBinaryExpression {
                 "()Ljava/lang/String;");
     }
 
+    // Generates code for the concatenation as an invokedynamic instruction, and returns true,
+    // unless the concatenation is too big for StringConcatFactory (it takes at most 200 argument
+    // slots and a recipe that fits in the constant pool), in which case no code is generated and
+    // false is returned.
+    private boolean indyCodegen(CLEmitter output) {
+        ArrayList<JExpression> operands = new ArrayList<JExpression>();
+        collectOperands(operands);
+        StringBuilder recipe = new StringBuilder();
+        ArrayList<String> constants = new ArrayList<String>();
+        String descriptor = "(";
+        int slots = 0;
+        for (JExpression operand : operands) {
+            Object value = operand.constantValue();
+            if (value == null) {
+                recipe.append('\1');
+                descriptor += operand.type().toDescriptor();
+                slots += operand.type() == Type.LONG || operand.type() == Type.DOUBLE ? 2 : 1;
+            } else if (String.valueOf(value).indexOf('\1') >= 0 ||
+                    String.valueOf(value).indexOf('\2') >= 0) {
+                // A constant with a tag character in it is passed separately.
+                recipe.append('\2');
+                constants.add(String.valueOf(value));
+            } else {
+                recipe.append(value);
+            }
+        }
+        if (slots > 200 || recipe.length() > 65535 / 3) {
+            return false;
+        }
+        for (JExpression operand : operands) {
+            if (operand.constantValue() == null) {
+                operand.codegen(output);
+            }
+        }
+        constants.add(0, recipe.toString());
+        output.addInvokeDynamicInstruction("makeConcatWithConstants",
+                descriptor + ")Ljava/lang/String;", "java/lang/invoke/StringConcatFactory",
+                "makeConcatWithConstants", "(Ljava/lang/invoke/MethodHandles$Lookup;" +
+                        "Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;" +
+                        "[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+                constants.toArray(new String[0]));
+        return true;
+    }
+
+    // Adds the operands of this concatenation, and those of the (non-constant) concatenations
+    // nested in it, in order, to the specified list.
+    private void collectOperands(ArrayList<JExpression> operands) {
+        if (lhs instanceof JStringConcatenationOp && lhs.constantValue() == null) {
+            ((JStringConcatenationOp) lhs).collectOperands(operands);
+        } else {
+            operands.add(lhs);
+        }
+        if (rhs instanceof JStringConcatenationOp && rhs.constantValue() == null) {
+            ((JStringConcatenationOp) rhs).collectOperands(operands);
+        } else {
+            operands.add(rhs);
+        }
+    }
+
     // Like codegen() method, but we needn't (and shouldn't) create a StringBuilder nor convert
     // the result to a String, as that will be done in a parent.
     private void nestedCodegen(CLEmitter output) {
         // Lhs.
-        if (lhs instanceof JStringConcatenationOp) {
+        if (lhs instanceof JStringConcatenationOp && lhs.constantValue() == null) {
             // This appends lhs
             ((JStringConcatenationOp) lhs).nestedCodegen(output);
         } else {
@@ -61,7 +150,7 @@ class JStringConcatenationOp extends JBinaryExpression {
         }
 
         // Rhs.
-        if (rhs instanceof JStringConcatenationOp) {
+        if (rhs instanceof JStringConcatenationOp && rhs.constantValue() == null) {
             // This appends rhs.
             ((JStringConcatenationOp) rhs).nestedCodegen(output);
         } else {
@@ -55,7 +55,7 @@ class JSuperConstruction extends JExpression {
         }
 
         if (!properUseOfConstructor) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "super" + Type.argTypesAsString(argTypes)
                     + " must be first statement in the constructor's body");
             return this;
@@ -64,13 +64,13 @@ class JSuperConstruction extends JExpression {
         // Get the Constructor super(...) refers to.
         Type superClass = ((JTypeDecl) context.classContext.definition()).thisType().superClass();
         if (superClass == null) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     ((JTypeDecl) context.classContext.definition()).thisType() +
                             " has no super class");
         }
         constructor = superClass.constructorFor(argTypes);
         if (constructor == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "No such constructor: super" + Type.argTypesAsString(argTypes));
         }
 
@@ -21,13 +21,13 @@ public class JSwitchStatement extends JStatement {
     // switch labels var to help calculate opcode
     private long hi;
     private long lo;
-    private ArrayList<String> labels;
-    private TreeMap<Integer, String> matchLabelPairs;
+    private ArrayList<Integer> labels;
+    private TreeMap<Integer, Integer> matchLabelPairs;
     private int nLabels; // count number of labels
 
     // break;
     public boolean hasBreak;
-    public String breakLabel;
+    public int breakLabel;
 
     /**
      * Constructs an AST node for a switch-statement.
@@ -48,7 +48,7 @@ public class JSwitchStatement extends JStatement {
      * {@inheritDoc}
      */
     public JStatement analyze(Context context) {
-        JMember.enclosingStatement.push(this);
+        JAST.compilationUnit().enclosingStatement().push(this);
 
         condition = (JExpression) condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.INT);
@@ -74,7 +74,7 @@ public class JSwitchStatement extends JStatement {
             }
         }
 
-        JMember.enclosingStatement.pop();
+        JAST.compilationUnit().enclosingStatement().pop();
         return this;
     }
 
@@ -88,14 +88,14 @@ public class JSwitchStatement extends JStatement {
         boolean hasDefault = false;
         hi = Long.MIN_VALUE;
         lo = Long.MAX_VALUE;
-        labels = new ArrayList<String>();
+        labels = new ArrayList<Integer>();
         nLabels = 0;
-        matchLabelPairs = new TreeMap<Integer, String>();
+        matchLabelPairs = new TreeMap<Integer, Integer>();
 
         // Initialize general use label
-        String defaultLabel = output.createLabel();
-        String exitLabel = output.createLabel();
-        breakLabel = output.createLabel();
+        int defaultLabel = output.newLabel();
+        int exitLabel = output.newLabel();
+        breakLabel = output.newLabel();
 
         // calculate values to figure the correct opCode
         for (SwitchStatementGroup group : stmtGroup) {
@@ -111,7 +111,7 @@ public class JSwitchStatement extends JStatement {
                     }
                     nLabels++;
 
-                    String labelStr = output.createLabel();
+                    int labelStr = output.newLabel();
                     labels.add(labelStr);
                     matchLabelPairs.put(value, labelStr);
                 } else {
@@ -131,7 +131,11 @@ public class JSwitchStatement extends JStatement {
 
         // generate the switch table
         if (opcode == TABLESWITCH) { // sequential label case
-            output.addTABLESWITCHInstruction(hasDefault? defaultLabel : exitLabel, (int)lo, 4, labels);
+            int[] tableLabels = new int[labels.size()];
+            for (int i = 0; i < tableLabels.length; i++) {
+                tableLabels[i] = labels.get(i);
+            }
+            output.addTABLESWITCHInstruction(hasDefault? defaultLabel : exitLabel, (int)lo, 4, tableLabels);
         } else { // sparse label case
             output.addLOOKUPSWITCHInstruction(hasDefault? defaultLabel : exitLabel, nLabels, matchLabelPairs);
         }
@@ -143,7 +147,7 @@ public class JSwitchStatement extends JStatement {
             for (JExpression label : group.switchLabels) {
                 if (label != null) {
                     int value = ((JLiteralInt) label).toInt();
-                    String labelStr = opcode == TABLESWITCH ?
+                    int labelStr = opcode == TABLESWITCH ?
                             labels.get(caseIndex++) : matchLabelPairs.get(value);
                     output.addLabel(labelStr);
                 } else {
@@ -154,6 +158,10 @@ public class JSwitchStatement extends JStatement {
             // Generate the code body for this statement group
             for (JStatement statement : group.block) {
                 statement.codegen(output);
+                if (!statement.canCompleteNormally()) {
+                    // The statements that follow in the group are unreachable.
+                    break;
+                }
             }
         }
 
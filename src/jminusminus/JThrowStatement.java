@@ -38,6 +38,13 @@ class JThrowStatement extends JStatement {
         output.addNoArgInstruction(ATHROW);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
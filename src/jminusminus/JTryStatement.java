@@ -86,14 +86,14 @@ class JTryStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String startTryLabel = output.createLabel();
-        String endTryLabel = output.createLabel();
-        String startFinallyLabel = output.createLabel();
-        String startFinallyPlusOneLabel = output.createLabel();
-        String endFinallyLabel = output.createLabel();
+        int startTryLabel = output.newLabel();
+        int endTryLabel = output.newLabel();
+        int startFinallyLabel = output.newLabel();
+        int startFinallyPlusOneLabel = output.newLabel();
+        int endFinallyLabel = output.newLabel();
 
-        ArrayList<String> startCatchLabels = new ArrayList<>();
-        ArrayList<String> endCatchLabels = new ArrayList<>();
+        ArrayList<Integer> startCatchLabels = new ArrayList<>();
+        ArrayList<Integer> endCatchLabels = new ArrayList<>();
 
         // generate try block
         output.addLabel(startTryLabel);
@@ -108,8 +108,8 @@ class JTryStatement extends JStatement {
 
         // generate catch blocks
         for (int i = 0; i < catchBlocks.size(); i++) {
-            String startCatchLabel = output.createLabel();
-            String endCatchLabel = output.createLabel();
+            int startCatchLabel = output.newLabel();
+            int endCatchLabel = output.newLabel();
 
             startCatchLabels.add(startCatchLabel);
             endCatchLabels.add(endCatchLabel);
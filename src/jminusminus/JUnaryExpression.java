@@ -70,12 +70,23 @@ class JLogicalNotOp extends JUnaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object value = operand.constantValue();
+        return value == null ? null : !(Boolean) value;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String falseLabel = output.createLabel();
-        String trueLabel = output.createLabel();
+        if (codegenConstant(output)) {
+            return;
+        }
+        int falseLabel = output.newLabel();
+        int trueLabel = output.newLabel();
         this.codegen(output, falseLabel, false);
         output.addNoArgInstruction(ICONST_1); // true
         output.addBranchInstruction(GOTO, trueLabel);
@@ -87,7 +98,7 @@ class JLogicalNotOp extends JUnaryExpression {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
         operand.codegen(output, targetLabel, !onTrue);
     }
 }
@@ -119,17 +130,37 @@ class JNegateOp extends JUnaryExpression {
         } else if (opType == Type.LONG) {
             type = Type.LONG;
         } else {    // error
-            JAST.compilationUnit.reportSemanticError(line, "Operand to - must have an LValue of " +
-                    "int, double, or long.");
+            JAST.compilationUnit().reportSemanticError(line,
+                    "Operand to - must have an LValue of int, double, or long.");
             type = Type.ANY;
         }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object value = operand.constantValue();
+        if (value == null) {
+            return null;
+        } else if (type == Type.INT) {
+            return -(Integer) value;
+        } else if (type == Type.DOUBLE) {
+            return -(Double) value;
+        } else if (type == Type.LONG) {
+            return -(Long) value;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         operand.codegen(output);
         if (type == Type.INT) {
             output.addNoArgInstruction(INEG);
@@ -153,6 +184,9 @@ class JPostDecrementOp extends JUnaryExpression {
      */
     public JPostDecrementOp(int line, JExpression operand) {
         super(line, "-- (post)", operand);
+        if (operand instanceof JVariable) {
+            ((JVariable) operand).markAssigned();
+        }
     }
 
     /**
@@ -160,7 +194,7 @@ class JPostDecrementOp extends JUnaryExpression {
      */
     public JExpression analyze(Context context) {
         if (!(operand instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line, "Operand to -- must have an LValue.");
+            JAST.compilationUnit().reportSemanticError(line, "Operand to -- must have an LValue.");
             type = Type.ANY;
         } else {
             operand = (JExpression) operand.analyze(context);
@@ -209,6 +243,9 @@ class JPreIncrementOp extends JUnaryExpression {
      */
     public JPreIncrementOp(int line, JExpression operand) {
         super(line, "++ (pre)", operand);
+        if (operand instanceof JVariable) {
+            ((JVariable) operand).markAssigned();
+        }
     }
 
     /**
@@ -216,7 +253,7 @@ class JPreIncrementOp extends JUnaryExpression {
      */
     public JExpression analyze(Context context) {
         if (!(operand instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line, "Operand to ++ must have an LValue.");
+            JAST.compilationUnit().reportSemanticError(line, "Operand to ++ must have an LValue.");
             type = Type.ANY;
         } else {
             operand = (JExpression) operand.analyze(context);
@@ -280,14 +317,21 @@ class JUnaryPlusOp extends JUnaryExpression {
         } else if (opType == Type.LONG) {
             type = Type.LONG;
         } else {    // error
-            JAST.compilationUnit.reportSemanticError(line, "Operand to - must have an LValue of " +
-                    "int, double, or long.");
+            JAST.compilationUnit().reportSemanticError(line,
+                    "Operand to - must have an LValue of int, double, or long.");
             type = Type.ANY;
         }
         return this;
 //        operand.type().mustMatchExpected(line(), Type.INT);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return operand.constantValue();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -321,10 +365,21 @@ class JComplementOp extends JUnaryExpression {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        Object value = operand.constantValue();
+        return value == null ? null : ~(Integer) value;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (codegenConstant(output)) {
+            return;
+        }
         operand.codegen(output);
         output.addNoArgInstruction(ICONST_1); // push 1 into the stack
         output.addNoArgInstruction(INEG); // pop 1 and push -1
@@ -344,6 +399,9 @@ class JPostIncrementOp extends JUnaryExpression {
      */
     public JPostIncrementOp(int line, JExpression operand) {
         super(line, "++ (post)", operand);
+        if (operand instanceof JVariable) {
+            ((JVariable) operand).markAssigned();
+        }
     }
 
     /**
@@ -351,7 +409,7 @@ class JPostIncrementOp extends JUnaryExpression {
      */
     public JExpression analyze(Context context) {
         if (!(operand instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line, "Operand to ++ must have an LValue.");
+            JAST.compilationUnit().reportSemanticError(line, "Operand to ++ must have an LValue.");
             type = Type.ANY;
         } else {
             operand = (JExpression) operand.analyze(context);
@@ -400,6 +458,9 @@ class JPreDecrementOp extends JUnaryExpression {
      */
     public JPreDecrementOp(int line, JExpression operand) {
         super(line, "-- (pre)", operand);
+        if (operand instanceof JVariable) {
+            ((JVariable) operand).markAssigned();
+        }
     }
 
     /**
@@ -407,7 +468,7 @@ class JPreDecrementOp extends JUnaryExpression {
      */
     public JExpression analyze(Context context) {
         if (!(operand instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line, "Operand to -- must have an LValue.");
+            JAST.compilationUnit().reportSemanticError(line, "Operand to -- must have an LValue.");
             type = Type.ANY;
         } else {
             operand = (JExpression) operand.analyze(context);
@@ -17,6 +17,10 @@ class JVariable extends JExpression implements JLhs {
     // Was analyzeLhs() done?
     private boolean analyzeLhs;
 
+    // Is the variable the target of an assignment (by =, a compound assignment operator, ++ or
+    // --)?
+    private boolean isAssigned;
+
     /**
      * Constructs the AST node for a variable.
      *
@@ -46,6 +50,14 @@ class JVariable extends JExpression implements JLhs {
         return iDefn;
     }
 
+    /**
+     * Marks this variable as the target of an assignment (by =, a compound assignment operator,
+     * ++ or --).
+     */
+    public void markAssigned() {
+        isAssigned = true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -57,7 +69,7 @@ class JVariable extends JExpression implements JLhs {
             Field field = definingType.fieldFor(name);
             if (field == null) {
                 type = Type.ANY;
-                JAST.compilationUnit.reportSemanticError(line, "Cannot find name: " + name);
+                JAST.compilationUnit().reportSemanticError(line, "Cannot find name: " + name);
             } else {
                 // Rewrite a variable denoting a field as an explicit field selection.
                 type = field.type();
@@ -71,9 +83,12 @@ class JVariable extends JExpression implements JLhs {
         } else {
             if (!analyzeLhs && iDefn instanceof LocalVariableDefn &&
                     !((LocalVariableDefn) iDefn).isInitialized()) {
-                JAST.compilationUnit.reportSemanticError(line, "Variable " + name +
+                JAST.compilationUnit().reportSemanticError(line, "Variable " + name +
                         " might not have been initialized");
             }
+            if (isAssigned && iDefn instanceof LocalVariableDefn) {
+                ((LocalVariableDefn) iDefn).recordAssignment();
+            }
             type = iDefn.type();
         }
         return this;
@@ -88,16 +103,28 @@ class JVariable extends JExpression implements JLhs {
         if (newTree instanceof JVariable) {
             // Could (now) be a JFieldSelection, but if it's (still) a JVariable...
             if (iDefn != null && !(iDefn instanceof LocalVariableDefn)) {
-                JAST.compilationUnit.reportSemanticError(line(), name + " is a bad LHS to a =");
+                JAST.compilationUnit().reportSemanticError(line(), name + " is a bad LHS to a =");
             }
         }
         return newTree;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object computeConstantValue() {
+        return iDefn instanceof LocalVariableDefn ?
+                ((LocalVariableDefn) iDefn).constantValue() : null;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        // A string is no cheaper to push than to load, so only primitive constants are propagated.
+        if (type.isPrimitive() && codegenConstant(output)) {
+            return;
+        }
         if (iDefn instanceof LocalVariableDefn) {
             int offset = ((LocalVariableDefn) iDefn).offset();
             if (type.isReference()) {
@@ -182,7 +209,10 @@ class JVariable extends JExpression implements JLhs {
     /**
      * {@inheritDoc}
      */
-    public void codegen(CLEmitter output, String targetLabel, boolean onTrue) {
+    public void codegen(CLEmitter output, int targetLabel, boolean onTrue) {
+        if (codegenConstant(output, targetLabel, onTrue)) {
+            return;
+        }
         if (iDefn instanceof LocalVariableDefn) {
             codegen(output);
             if (onTrue) {
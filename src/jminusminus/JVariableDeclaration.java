@@ -45,7 +45,7 @@ class JVariableDeclaration extends JStatement {
             // First, check for shadowing.
             IDefn previousDefn = context.lookup(decl.name());
             if (previousDefn != null && previousDefn instanceof LocalVariableDefn) {
-                JAST.compilationUnit.reportSemanticError(decl.line(),
+                JAST.compilationUnit().reportSemanticError(decl.line(),
                         "The name " + decl.name() + " overshadows another local variable");
             }
 
@@ -60,6 +60,7 @@ class JVariableDeclaration extends JStatement {
                 assignOp.isStatementExpression = true;
                 initializations.add(new JStatementExpression(decl.line(),
                         assignOp).analyze(context));
+                defn.setInitializer(assignOp.rhs);
             }
         }
         return this;
@@ -16,11 +16,11 @@ class JWhileStatement extends JStatement {
 
     // break;
     public boolean hasBreak;
-    public String breakLabel;
+    public int breakLabel;
 
     // continue;
     public boolean hasContinue;
-    public String continueLabel;
+    public int continueLabel;
 
     /**
      * Constructs an AST node for a while-statement.
@@ -40,13 +40,13 @@ class JWhileStatement extends JStatement {
      * {@inheritDoc}
      */
     public JWhileStatement analyze(Context context) {
-        JMember.enclosingStatement.push(this);
+        JAST.compilationUnit().enclosingStatement().push(this);
 
         condition = condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.BOOLEAN);
         body = (JStatement) body.analyze(context);
 
-        JMember.enclosingStatement.pop();
+        JAST.compilationUnit().enclosingStatement().pop();
         return this;
     }
 
@@ -54,10 +54,15 @@ class JWhileStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        String test = output.createLabel();
-        String out = output.createLabel();
-        breakLabel = output.createLabel();
-        continueLabel = output.createLabel();
+        // A loop whose condition is the constant false is not generated at all.
+        if (Boolean.FALSE.equals(condition.constantValue())) {
+            return;
+        }
+
+        int test = output.newLabel();
+        int out = output.newLabel();
+        breakLabel = output.newLabel();
+        continueLabel = output.newLabel();
 
 
 
@@ -67,7 +72,9 @@ class JWhileStatement extends JStatement {
         if (hasContinue) { // if body has continue, jump here out of body
             output.addLabel(continueLabel);
         }
-        output.addBranchInstruction(GOTO, test);
+        if (hasContinue || body.canCompleteNormally()) {
+            output.addBranchInstruction(GOTO, test);
+        }
         output.addLabel(out);
 
         if (hasBreak) {
@@ -75,6 +82,13 @@ class JWhileStatement extends JStatement {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCompleteNormally() {
+        return hasBreak || !Boolean.TRUE.equals(condition.constantValue());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -129,7 +129,7 @@ public class JavaCCMain {
 
         // Do pre-analysis.
         ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= JAST.compilationUnit().errorHasOccurred();
         if (debugOption.equals("-pa")) {
             JSONElement json = new JSONElement();
             ast.toJSON(json);
@@ -142,7 +142,7 @@ public class JavaCCMain {
 
         // Do analysis.
         ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= JAST.compilationUnit().errorHasOccurred();
         if (debugOption.equals("-a")) {
             JSONElement json = new JSONElement();
             ast.toJSON(json);
@@ -3,26 +3,39 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
-import java.util.Stack;
-import java.util.Vector;
 
 /**
  * A lexical analyzer for j-- that interfaces with the hand-written parser (Parser). It
  * provides a backtracking mechanism, and makes use of the underlying hand-written scanner
  * (Scanner).
+ * <p>
+ * Tokens are kept in a ring buffer, and are identified by their (absolute) positions in the
+ * input stream of tokens. Recording a position just pushes the current token's position on a
+ * stack, and returning to it pops it back, so looking ahead never copies tokens. Tokens are only
+ * dropped from the buffer once they can no longer be returned to, and the buffer grows (doubling
+ * in size) when it is full.
  */
 class LookaheadScanner {
     // The underlying hand-written scanner.
     private Scanner scanner;
 
-    // Backtracking queue.
-    private Vector<TokenInfo> backtrackingQueue;
+    // Ring buffer of scanned tokens; its size is a power of 2.
+    private TokenInfo[] tokens;
 
-    // Token queue.
-    private Vector<TokenInfo> nextQueue;
+    // Position of the oldest token in the buffer.
+    private int start;
 
-    // Stack of token queues for nested lookahead.
-    private Stack<Vector<TokenInfo>> queueStack;
+    // Position following that of the newest token in the buffer.
+    private int end;
+
+    // Position of the current token.
+    private int pos;
+
+    // Stack of recorded positions for nested lookahead.
+    private int[] marks;
+
+    // Number of recorded positions on the stack.
+    private int depth;
 
     // Whether we are looking ahead.
     public boolean isLookingAhead;
@@ -41,9 +54,12 @@ class LookaheadScanner {
      */
     public LookaheadScanner(String fileName) throws FileNotFoundException {
         scanner = new Scanner(fileName);
-        backtrackingQueue = new Vector<TokenInfo>();
-        nextQueue = new Vector<TokenInfo>();
-        queueStack = new Stack<Vector<TokenInfo>>();
+        tokens = new TokenInfo[64];
+        start = 0;
+        end = 0;
+        pos = -1;
+        marks = new int[8];
+        depth = 0;
         isLookingAhead = false;
     }
 
@@ -52,43 +68,47 @@ class LookaheadScanner {
      */
     public void next() {
         previousToken = token;
-        if (backtrackingQueue.size() == 0) {
-            token = scanner.getNextToken();
-        } else {
-            token = backtrackingQueue.remove(0);
-        }
-        if (isLookingAhead) {
-            nextQueue.add(token);
+        pos++;
+        if (pos == end) {
+            // Drop the tokens that can no longer be returned to: those before the previous token
+            // at the outermost recorded position (or at the current position).
+            int oldest = (depth == 0 ? pos : marks[0]) - 1;
+            while (start < oldest) {
+                tokens[start++ & (tokens.length - 1)] = null;
+            }
+            if (end - start == tokens.length) {
+                grow();
+            }
+            tokens[end++ & (tokens.length - 1)] = scanner.getNextToken();
         }
+        token = tokens[pos & (tokens.length - 1)];
     }
 
     /**
      * Records the current position in the input, so that we can start looking ahead in the input
-     * (and later return to this position) --- the current and subsequent tokens are queued until
+     * (and later return to this position) --- the current and subsequent tokens are kept until
      * returnToPosition() is invoked.
      */
     public void recordPosition() {
         isLookingAhead = true;
-        queueStack.push(nextQueue);
-        nextQueue = new Vector<TokenInfo>();
-        nextQueue.add(previousToken);
-        nextQueue.add(token);
+        if (depth == marks.length) {
+            int[] newMarks = new int[marks.length * 2];
+            System.arraycopy(marks, 0, newMarks, 0, depth);
+            marks = newMarks;
+        }
+        marks[depth++] = pos;
     }
 
     /**
      * Returns to the previously recorded position in the input stream of tokens.
      */
     public void returnToPosition() {
-        while (backtrackingQueue.size() > 0) {
-            nextQueue.add(backtrackingQueue.remove(0));
-        }
-        backtrackingQueue = nextQueue;
-        nextQueue = queueStack.pop();
-        isLookingAhead = !(queueStack.empty());
+        pos = marks[--depth];
+        isLookingAhead = depth > 0;
 
         // Restore previous and current tokens
-        previousToken = backtrackingQueue.remove(0);
-        token = backtrackingQueue.remove(0);
+        previousToken = pos > 0 ? tokens[(pos - 1) & (tokens.length - 1)] : null;
+        token = pos >= 0 ? tokens[pos & (tokens.length - 1)] : null;
     }
 
     /**
@@ -126,4 +146,13 @@ class LookaheadScanner {
     public String fileName() {
         return scanner.fileName();
     }
+
+    // Doubles the size of the token buffer, keeping the tokens at their positions.
+    private void grow() {
+        TokenInfo[] newTokens = new TokenInfo[tokens.length * 2];
+        for (int i = start; i < end; i++) {
+            newTokens[i & (newTokens.length - 1)] = tokens[i & (tokens.length - 1)];
+        }
+        tokens = newTokens;
+    }
 }
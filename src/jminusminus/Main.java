@@ -2,7 +2,16 @@
 
 package jminusminus;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static jminusminus.TokenKind.EOF;
 
@@ -30,10 +39,45 @@ import static jminusminus.TokenKind.EOF;
  *   codegen() recursively descends the tree, down to its leaves, generating JVM code for
  *   producing a .class or .s (SPIM) file for each defined type (class).</li>
  * </ol>
+ * <p>
+ * When given more than one source file (or a directory, which stands for all the source files
+ * under it), the compiler compiles the files together, so that they can refer to each other's
+ * types. Scanning and parsing, analysis, and JVM code generation are then done for the files in
+ * parallel, on a fork-join pool. Declaring and pre-analyzing the types of the files, which
+ * builds their partial classes, is done file by file, as is SPIM code generation; the types are
+ * pre-analyzed in an order in which the files declaring the supertypes of a type come before the
+ * file declaring it, whatever the order of the files on the command line.
+ * <p>
+ * With the -i option, the compiler compiles incrementally: it keeps the outputs for the source
+ * files in a build cache (see BuildCache), and a source file that has not changed since it was
+ * last compiled (and that doesn't depend on a type whose signature has changed) is not compiled
+ * again; its outputs are copied from the cache.
  */
 public class Main {
     // Whether an error occurred during compilation.
-    private static boolean errorHasOccurred;
+    private static volatile boolean errorHasOccurred;
+
+    // Phases of the compilation that are run for the source files in parallel.
+    private static final int PARSE = 0, ANALYZE = 1, CODEGEN = 2;
+
+    // Source files being compiled together, and their ASTs.
+    private static String[] sourceFiles;
+    private static JCompilationUnit[] asts;
+
+    // Build cache entries for the source files whose outputs are reused (null for the files
+    // being compiled).
+    private static BuildCache.Entry[] cacheEntries;
+
+    // Destination directory for the output files, and whether SPIM output was asked for.
+    private static String outputDir;
+    private static boolean spimOutput;
+
+    // Whether the JVM code is run through the peephole optimizer.
+    private static boolean optimize;
+
+    // Whether string concatenation is done by invokedynamic, in class files of version
+    // CLConstants.INDY_MAJOR_VERSION.
+    private static boolean indy;
 
     /**
      * Entry point.
@@ -42,20 +86,31 @@ public class Main {
      */
     public static void main(String args[]) {
         String caller = "java jminusminus.Main";
-        String sourceFile = "";
+        ArrayList<String> sources = new ArrayList<String>();
         String debugOption = "";
-        String outputDir = ".";
-        boolean spimOutput = false;
+        outputDir = ".";
+        spimOutput = false;
+        optimize = false;
+        indy = false;
         String registerAllocation = "";
-        errorHasOccurred = false;
+        boolean incremental = false;
+        resetState();
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("j--")) {
                 caller = "j--";
             } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
+                sources.add(args[i]);
+            } else if (new File(args[i]).isDirectory()) {
+                addSourceFiles(new File(args[i]), sources);
             } else if (args[i].equals("-t") || args[i].equals("-p") || args[i].equals("-pa") ||
                     args[i].equals("-a")) {
                 debugOption = args[i];
+            } else if (args[i].equals("-i")) {
+                incremental = true;
+            } else if (args[i].equals("-O")) {
+                optimize = true;
+            } else if (args[i].equals("-indy")) {
+                indy = true;
             } else if (args[i].endsWith("-d") && (i + 1) < args.length) {
                 outputDir = args[++i];
             } else if (args[i].endsWith("-s") && (i + 1) < args.length) {
@@ -74,10 +129,15 @@ public class Main {
                 return;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sources.size() == 0) {
             printUsage(caller);
             return;
         }
+        if (sources.size() > 1 || incremental) {
+            compileAll(sources, debugOption, registerAllocation, incremental);
+            return;
+        }
+        String sourceFile = sources.get(0);
 
         LookaheadScanner scanner = null;
         try {
@@ -116,7 +176,7 @@ public class Main {
 
         // Do pre-analysis.
         ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= JAST.compilationUnit().errorHasOccurred();
         if (debugOption.equals("-pa")) {
             JSONElement json = new JSONElement();
             ast.toJSON(json);
@@ -129,7 +189,7 @@ public class Main {
 
         // Do analysis.
         ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= JAST.compilationUnit().errorHasOccurred();
         if (debugOption.equals("-a")) {
             JSONElement json = new JSONElement();
             ast.toJSON(json);
@@ -143,6 +203,10 @@ public class Main {
         // Generate JVM code.
         CLEmitter clEmitter = new CLEmitter(!spimOutput);
         clEmitter.destinationDir(outputDir);
+        clEmitter.optimize(optimize);
+        if (indy && !spimOutput) {
+            clEmitter.majorVersion(CLConstants.INDY_MAJOR_VERSION);
+        }
         ast.codegen(clEmitter);
         errorHasOccurred |= clEmitter.errorHasOccurred();
         if (errorHasOccurred) {
@@ -159,10 +223,426 @@ public class Main {
         }
     }
 
+    /**
+     * Returns true if an error occurred in the last compilation, and false otherwise.
+     *
+     * @return true if an error occurred in the last compilation, and false otherwise.
+     */
+    public static boolean errorHasOccurred() {
+        return errorHasOccurred;
+    }
+
+    // Resets the state that a compilation leaves behind in static fields, so that the compiler
+    // can be run more than once in the same JVM (as it is by the compile server). The types
+    // representing library classes are kept, since they are the same from one compilation to
+    // the next.
+    private static void resetState() {
+        errorHasOccurred = false;
+        sourceFiles = null;
+        asts = null;
+        cacheEntries = null;
+        NPhysicalRegister.MAX_COUNT = 8;
+        Type.forgetDeclaredTypes();
+    }
+
+    // Compiles the specified source files together. This follows the same steps as compiling a
+    // single file, except that each step is taken for all the files before the next one.
+    private static void compileAll(ArrayList<String> sources, String debugOption,
+                                   String registerAllocation, boolean incremental) {
+        sourceFiles = sources.toArray(new String[0]);
+        asts = new JCompilationUnit[sourceFiles.length];
+        cacheEntries = new BuildCache.Entry[sourceFiles.length];
+
+        if (debugOption.equals("-t")) {
+            // Just tokenize input and print the tokens to STDOUT.
+            for (String sourceFile : sourceFiles) {
+                LookaheadScanner scanner = null;
+                try {
+                    scanner = new LookaheadScanner(sourceFile);
+                } catch (FileNotFoundException e) {
+                    System.err.println("Error: file " + sourceFile + " not found.");
+                    continue;
+                }
+                TokenInfo token;
+                do {
+                    scanner.next();
+                    token = scanner.token();
+                    System.out.printf("%d\t : %s = %s\n", token.line(), token.tokenRep(),
+                            token.image());
+                } while (token.kind() != EOF);
+                errorHasOccurred |= scanner.errorHasOccured();
+            }
+            return;
+        }
+
+        // When compiling incrementally, look the source files up in the build cache. The ones that
+        // are found are not compiled (unless they turn out to be out of date).
+        BuildCache cache = null;
+        if (incremental && debugOption.equals("")) {
+            String options = spimOutput ?
+                    "-s " + registerAllocation + " -r " + NPhysicalRegister.MAX_COUNT : "";
+            if (optimize) {
+                options += " -O";
+            }
+            if (indy && !spimOutput) {
+                options += " -indy";
+            }
+            cache = new BuildCache(outputDir, options);
+            for (int i = 0; i < sourceFiles.length; i++) {
+                cacheEntries[i] = cache.lookup(sourceFiles[i]);
+            }
+        }
+
+        // Parse input and do pre-analysis: declare the types of all the files before
+        // pre-analyzing any of them. This is done over if a file found in the build cache turns
+        // out to depend on a type whose signature has changed, so that it has to be compiled too.
+        while (true) {
+            inParallel(PARSE);
+            if (debugOption.equals("-p")) {
+                printASTs();
+                return;
+            }
+            if (errorHasOccurred) {
+                return;
+            }
+            if (preAnalyzeAll()) {
+                break;
+            }
+            Type.forgetDeclaredTypes();
+            for (int i = 0; i < asts.length; i++) {
+                if (cacheEntries[i] == null) {
+                    asts[i] = null;
+                }
+            }
+        }
+        if (debugOption.equals("-pa")) {
+            printASTs();
+            return;
+        }
+        if (errorHasOccurred) {
+            return;
+        }
+
+        // Do analysis.
+        inParallel(ANALYZE);
+        if (debugOption.equals("-a")) {
+            printASTs();
+            return;
+        }
+        if (errorHasOccurred) {
+            return;
+        }
+
+        // Generate JVM code.
+        inParallel(CODEGEN);
+        if (errorHasOccurred) {
+            return;
+        }
+
+        // If SPIM output was asked for, convert the in-memory JVM instructions to SPIM using the
+        // specified register allocation scheme.
+        if (spimOutput) {
+            for (int i = 0; i < asts.length; i++) {
+                if (cacheEntries[i] == null) {
+                    NEmitter nEmitter = new NEmitter(sourceFiles[i], asts[i].clFiles(),
+                            registerAllocation);
+                    nEmitter.destinationDir(outputDir);
+                    nEmitter.write();
+                    errorHasOccurred |= nEmitter.errorHasOccurred();
+                }
+            }
+        }
+        if (errorHasOccurred || cache == null) {
+            return;
+        }
+
+        // Copy the outputs of the files found in the build cache to the output directory, and
+        // add the files that were compiled to the cache.
+        HashMap<String, String> signatures = signatures();
+        for (int i = 0; i < sourceFiles.length; i++) {
+            if (cacheEntries[i] != null) {
+                if (!cache.restore(cacheEntries[i], spimOutput)) {
+                    System.err.println("Error: cannot write the output files for " +
+                            sourceFiles[i]);
+                    errorHasOccurred = true;
+                }
+                continue;
+            }
+            BuildCache.Entry entry = cache.newEntry(sourceFiles[i]);
+            if (entry == null) {
+                continue;
+            }
+            try {
+                ArrayList<Type> declaredTypes = asts[i].declaredTypes();
+                for (int j = 0; j < declaredTypes.size(); j++) {
+                    Type type = declaredTypes.get(j);
+                    CLByteBuffer classFile = new CLByteBuffer();
+                    asts[i].clFiles().get(j).write(classFile);
+                    entry.addDeclaredType(type, signatures.get(type.toString()),
+                            classFile.toByteArray());
+                }
+                for (Type type : asts[i].referencedTypes()) {
+                    String name = type.toString();
+                    String signature = signatures.get(name);
+                    entry.addDependency(name, signature != null ?
+                            signature : BuildCache.signature(type));
+                }
+                if (spimOutput) {
+                    entry.addSpimFile(cache.spimFile(sourceFiles[i]));
+                }
+                cache.store(sourceFiles[i], entry);
+            } catch (IOException e) {
+                // Don't cache the file; it will be compiled again the next time.
+            }
+        }
+    }
+
+    // Declares and pre-analyzes the types of the source files being compiled, in two passes (see
+    // JCompilationUnit). The types declared by the files whose outputs are reused from the build
+    // cache are read from their cached class files instead. Returns true if this succeeds, and
+    // false if some of the files found in the cache have to be compiled after all (because their
+    // class files can't be read, or they depend on a type whose signature has changed), in
+    // which case their cache entries are dropped.
+    private static boolean preAnalyzeAll() {
+        for (JCompilationUnit ast : asts) {
+            if (ast != null) {
+                ast.declareTypes();
+                errorHasOccurred |= ast.errorHasOccurred();
+            }
+        }
+        ArrayList<Type> cachedTypes = loadCachedTypes();
+        if (cachedTypes == null) {
+            return false;
+        }
+        for (JCompilationUnit ast : asts) {
+            if (ast != null) {
+                for (JCompilationUnit other : asts) {
+                    if (other != null) {
+                        ast.declareTypesOf(other);
+                    }
+                }
+                for (Type type : cachedTypes) {
+                    ast.declareType(type);
+                }
+            }
+        }
+        for (int i : preAnalysisOrder()) {
+            asts[i].preAnalyzeTypes();
+            errorHasOccurred |= asts[i].errorHasOccurred();
+        }
+        if (errorHasOccurred) {
+            // The errors are reported by the caller.
+            return true;
+        }
+
+        // Drop the cache entries of the files that depend on a type whose signature has changed.
+        boolean upToDate = true;
+        HashMap<String, String> signatures = signatures();
+        for (int i = 0; i < cacheEntries.length; i++) {
+            if (cacheEntries[i] == null) {
+                continue;
+            }
+            for (Map.Entry<String, String> type : cacheEntries[i].dependencies().entrySet()) {
+                String signature = signatures.get(type.getKey());
+                if (signature == null) {
+                    Type library = Type.loadType(type.getKey());
+                    if (library != null) {
+                        signature = BuildCache.signature(library);
+                    }
+                }
+                if (!type.getValue().equals(signature)) {
+                    cacheEntries[i] = null;
+                    upToDate = false;
+                    break;
+                }
+            }
+        }
+        return upToDate;
+    }
+
+    // Reads the types declared by the files whose outputs are reused from the build cache from
+    // their cached class files, and returns them. If some of the class files can't be read, the
+    // cache entries of the files declaring them are dropped, and null is returned.
+    private static ArrayList<Type> loadCachedTypes() {
+        ArrayList<Type> types = new ArrayList<Type>();
+        boolean loaded = true;
+        for (int i = 0; i < cacheEntries.length; i++) {
+            if (cacheEntries[i] == null) {
+                continue;
+            }
+            try {
+                for (byte[] classFile : cacheEntries[i].classFiles().values()) {
+                    types.add(Type.typeFor(new CLClassSymbol(classFile)));
+                }
+            } catch (IOException e) {
+                cacheEntries[i] = null;
+                loaded = false;
+            }
+        }
+        return loaded ? types : null;
+    }
+
+    // Returns a map from the (binary) names of the types declared by the source files to the
+    // hashes of their signatures.
+    private static HashMap<String, String> signatures() {
+        HashMap<String, String> signatures = new HashMap<String, String>();
+        for (int i = 0; i < asts.length; i++) {
+            if (cacheEntries[i] != null) {
+                signatures.putAll(cacheEntries[i].declaredTypes());
+            } else {
+                for (Type type : asts[i].declaredTypes()) {
+                    signatures.put(type.toString(), BuildCache.signature(type));
+                }
+            }
+        }
+        return signatures;
+    }
+
+    // Runs the specified phase of the compilation for all the source files in parallel, and
+    // waits for all of them to finish.
+    private static void inParallel(int phase) {
+        UnitTask[] tasks = new UnitTask[sourceFiles.length];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new UnitTask(phase, i);
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    // Returns the indices of the source files being compiled in the order in which their types are
+    // to be pre-analyzed: a file comes after the files that declare the types that its types
+    // extend or implement, since pre-analyzing a type looks at the partial classes of its
+    // supertypes (to check that the superclass is not final, for example).
+    private static ArrayList<Integer> preAnalysisOrder() {
+        HashMap<String, Integer> declaringFiles = new HashMap<String, Integer>();
+        for (int i = 0; i < asts.length; i++) {
+            if (asts[i] != null) {
+                for (Type type : asts[i].declaredTypes()) {
+                    declaringFiles.put(type.jvmName(), i);
+                }
+            }
+        }
+        ArrayList<Integer> order = new ArrayList<Integer>();
+        boolean[] visited = new boolean[asts.length];
+        for (int i = 0; i < asts.length; i++) {
+            addInPreAnalysisOrder(i, declaringFiles, visited, order);
+        }
+        return order;
+    }
+
+    // Adds the index of the i-th source file to the pre-analysis order, after those of the files
+    // that declare the supertypes of its types, unless it was added already. A cycle (cyclic
+    // inheritance, or files whose types extend each other's) is cut where it is found.
+    private static void addInPreAnalysisOrder(int i, HashMap<String, Integer> declaringFiles,
+                                              boolean[] visited, ArrayList<Integer> order) {
+        if (asts[i] == null || visited[i]) {
+            return;
+        }
+        visited[i] = true;
+        for (String name : asts[i].superTypeNames()) {
+            Integer j = declaringFiles.get(name);
+            if (j != null) {
+                addInPreAnalysisOrder(j, declaringFiles, visited, order);
+            }
+        }
+        order.add(i);
+    }
+
+    // Prints the ASTs of the source files to STDOUT.
+    private static void printASTs() {
+        for (JCompilationUnit ast : asts) {
+            if (ast != null) {
+                JSONElement json = new JSONElement();
+                ast.toJSON(json);
+                System.out.println(json.toString());
+            }
+        }
+    }
+
+    // Adds the source files under the specified directory to the specified list, in order.
+    private static void addSourceFiles(File dir, ArrayList<String> sources) {
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addSourceFiles(file, sources);
+            } else if (file.getName().endsWith(".java")) {
+                sources.add(file.getPath());
+            }
+        }
+    }
+
+    // A task that takes one of the source files through one phase of the compilation.
+    private static class UnitTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // The phase.
+        private int phase;
+
+        // Index of the source file.
+        private int i;
+
+        // Constructs a task that takes the i-th source file through the specified phase.
+        public UnitTask(int phase, int i) {
+            this.phase = phase;
+            this.i = i;
+        }
+
+        // Takes the source file through the phase. As in a single file compilation, an error
+        // that occurs is reported to STDERR and recorded.
+        protected void compute() {
+            if (cacheEntries[i] != null) {
+                // The source file's outputs are reused from the build cache.
+                return;
+            }
+            switch (phase) {
+                case PARSE:
+                    if (asts[i] != null) {
+                        return;
+                    }
+                    LookaheadScanner scanner = null;
+                    try {
+                        scanner = new LookaheadScanner(sourceFiles[i]);
+                    } catch (FileNotFoundException e) {
+                        System.err.println("Error: file " + sourceFiles[i] + " not found.");
+                        errorHasOccurred = true;
+                        return;
+                    }
+                    Parser parser = new Parser(scanner);
+                    asts[i] = parser.compilationUnit();
+                    if (parser.errorHasOccurred()) {
+                        errorHasOccurred = true;
+                    }
+                    break;
+                case ANALYZE:
+                    asts[i].analyze(null);
+                    if (asts[i].errorHasOccurred()) {
+                        errorHasOccurred = true;
+                    }
+                    break;
+                case CODEGEN:
+                    CLEmitter clEmitter = new CLEmitter(!spimOutput);
+                    clEmitter.destinationDir(outputDir);
+                    clEmitter.optimize(optimize);
+                    if (indy && !spimOutput) {
+                        clEmitter.majorVersion(CLConstants.INDY_MAJOR_VERSION);
+                    }
+                    asts[i].codegen(clEmitter);
+                    if (clEmitter.errorHasOccurred()) {
+                        errorHasOccurred = true;
+                    }
+                    break;
+            }
+        }
+    }
+
     // Prints command usage to STDOUT.
     private static void printUsage(String caller) {
         String usage = "Usage: " + caller
-                + " <options> <source file>\n"
+                + " <options> <source files or directories>\n"
                 + "Where possible options include:\n"
                 + "  -t  Only tokenize input and print tokens to STDOUT\n"
                 + "  -p  Only parse input and print AST to STDOUT\n"
@@ -170,7 +650,12 @@ public class Main {
                 + "  -a  Only parse, pre-analyze, and analyze input and print AST to STDOUT\n"
                 + "  -s  <naive|linear|graph> Generate SPIM code\n"
                 + "  -r  <num> Physical registers (1-18) available for allocation; default = 8\n"
-                + "  -d  <dir> Specify where to place output files; default = .";
+                + "  -d  <dir> Specify where to place output files; default = .\n"
+                + "  -i  Compile incrementally, reusing the output files of unchanged source "
+                + "files\n"
+                + "  -O  Optimize the JVM code with a peephole optimizer\n"
+                + "  -indy Concatenate strings with invokedynamic, in Java 9 (version 53) class "
+                + "files";
         System.out.println(usage);
     }
 }
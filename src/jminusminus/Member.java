@@ -2,18 +2,38 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+
 /**
  * This abstract base class provides a wrapper for class members (ie, fields, methods, and
- * constructors).
+ * constructors). A member is represented by its symbols, as read from the class file of the type
+ * that declares it (see CLClassSymbol).
  */
 abstract class Member {
+    // The type in which this member was declared.
+    private Type declaringType;
+
+    // Internal representation of this member.
+    private CLMemberSymbol symbol;
+
+    /**
+     * Constructs a member given the type that declares it and its internal representation.
+     *
+     * @param declaringType the type in which the member was declared.
+     * @param symbol        internal representation.
+     */
+    protected Member(Type declaringType, CLMemberSymbol symbol) {
+        this.declaringType = declaringType;
+        this.symbol = symbol;
+    }
+
     /**
      * Returns this member's (simple) name.
      *
      * @return this member's (simple) name.
      */
     public String name() {
-        return member().getName();
+        return symbol.name;
     }
 
     /**
@@ -22,7 +42,7 @@ abstract class Member {
      * @return the type in which this member was declared.
      */
     public Type declaringType() {
-        return Type.typeFor(member().getDeclaringClass());
+        return declaringType;
     }
 
     /**
@@ -31,7 +51,7 @@ abstract class Member {
      * @return true if this member is static, and false otherwise.
      */
     public boolean isStatic() {
-        return java.lang.reflect.Modifier.isStatic(member().getModifiers());
+        return (symbol.accessFlags & CLConstants.ACC_STATIC) != 0;
     }
 
     /**
@@ -40,7 +60,7 @@ abstract class Member {
      * @return true if this member is public, and false otherwise.
      */
     public boolean isPublic() {
-        return java.lang.reflect.Modifier.isPublic(member().getModifiers());
+        return (symbol.accessFlags & CLConstants.ACC_PUBLIC) != 0;
     }
 
     /**
@@ -49,7 +69,7 @@ abstract class Member {
      * @return true if this member is protected, and false otherwise.
      */
     public boolean isProtected() {
-        return java.lang.reflect.Modifier.isProtected(member().getModifiers());
+        return (symbol.accessFlags & CLConstants.ACC_PROTECTED) != 0;
     }
 
     /**
@@ -58,7 +78,7 @@ abstract class Member {
      * @return true if this member is private, and false otherwise.
      */
     public boolean isPrivate() {
-        return java.lang.reflect.Modifier.isPrivate(member().getModifiers());
+        return (symbol.accessFlags & CLConstants.ACC_PRIVATE) != 0;
     }
 
     /**
@@ -67,7 +87,7 @@ abstract class Member {
      * @return true if this member is abstract, and false otherwise.
      */
     public boolean isAbstract() {
-        return java.lang.reflect.Modifier.isAbstract(member().getModifiers());
+        return (symbol.accessFlags & CLConstants.ACC_ABSTRACT) != 0;
     }
 
     /**
@@ -76,7 +96,7 @@ abstract class Member {
      * @return true if this member is final, and false otherwise.
      */
     public boolean isFinal() {
-        return java.lang.reflect.Modifier.isFinal(member().getModifiers());
+        return (symbol.accessFlags & CLConstants.ACC_FINAL) != 0;
     }
 
     /**
@@ -84,49 +104,59 @@ abstract class Member {
      *
      * @return the JVM descriptor for this member.
      */
-    public abstract String toDescriptor();
+    public String toDescriptor() {
+        return symbol.descriptor;
+    }
 
     /**
-     * Returns this member's internal representation.
+     * Returns the types of the parameters in the specified method descriptor.
      *
-     * @return this member's internal representation.
-     */
-    protected abstract java.lang.reflect.Member member();
+     * @param descriptor the method descriptor.
+     * @return the types of the parameters.
+     */
+    protected static Type[] parameterTypesFor(String descriptor) {
+        ArrayList<Type> parameterTypes = new ArrayList<Type>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            parameterTypes.add(Type.typeForDescriptor(descriptor.substring(start, i)));
+        }
+        return parameterTypes.toArray(new Type[parameterTypes.size()]);
+    }
 }
 
 /**
  * This class provides a wrapper for constructors.
  */
 class Constructor extends Member {
-    // Internal representation of this constructor.
-    private java.lang.reflect.Constructor constructor;
+    // Parameter types of this constructor; null until they are first asked for.
+    private Type[] parameterTypes;
 
     /**
-     * Constructs a constructor given its internal representation.
+     * Constructs a constructor given the type that declares it and its internal representation.
      *
-     * @param constructor internal representation.
+     * @param declaringType the type in which the constructor was declared.
+     * @param symbol        internal representation.
      */
-    public Constructor(java.lang.reflect.Constructor constructor) {
-        this.constructor = constructor;
+    public Constructor(Type declaringType, CLMemberSymbol symbol) {
+        super(declaringType, symbol);
     }
 
     /**
-     * {@inheritDoc}
+     * Returns the parameter types of this constructor. The array is shared, and must not be
+     * modified.
+     *
+     * @return the parameter types of this constructor.
      */
-    public String toDescriptor() {
-        String descriptor = "(";
-        for (Class paramType : constructor.getParameterTypes()) {
-            descriptor += Type.typeFor(paramType).toDescriptor();
+    public Type[] parameterTypes() {
+        if (parameterTypes == null) {
+            parameterTypes = parameterTypesFor(toDescriptor());
         }
-        descriptor += ")V";
-        return descriptor;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    protected java.lang.reflect.Member member() {
-        return constructor;
+        return parameterTypes;
     }
 }
 
@@ -134,16 +164,14 @@ class Constructor extends Member {
  * This class provides a wrapper for fields.
  */
 class Field extends Member {
-    // Internal representation of this field.
-    private java.lang.reflect.Field field;
-
     /**
-     * Constructs a field given its internal representation.
+     * Constructs a field given the type that declares it and its internal representation.
      *
-     * @param field internal representation.
+     * @param declaringType the type in which the field was declared.
+     * @param symbol        internal representation.
      */
-    public Field(java.lang.reflect.Field field) {
-        this.field = field;
+    public Field(Type declaringType, CLMemberSymbol symbol) {
+        super(declaringType, symbol);
     }
 
     /**
@@ -152,21 +180,7 @@ class Field extends Member {
      * @return this field's type.
      */
     public Type type() {
-        return Type.typeFor(field.getType());
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String toDescriptor() {
-        return type().toDescriptor();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    protected java.lang.reflect.Member member() {
-        return field;
+        return Type.typeForDescriptor(toDescriptor());
     }
 }
 
@@ -174,43 +188,38 @@ class Field extends Member {
  * This class provides a wrapper for methods.
  */
 class Method extends Member {
-    // Internal representation of this method.
-    private java.lang.reflect.Method method;
+    // Parameter types of this method; null until they are first asked for.
+    private Type[] parameterTypes;
 
     /**
-     * Constructs a method given its internal representation.
+     * Constructs a method given the type that declares it and its internal representation.
      *
-     * @param method the internal representation.
+     * @param declaringType the type in which the method was declared.
+     * @param symbol        internal representation.
      */
-    public Method(java.lang.reflect.Method method) {
-        this.method = method;
+    public Method(Type declaringType, CLMemberSymbol symbol) {
+        super(declaringType, symbol);
     }
 
     /**
-     * Returns this method's return type.
+     * Returns the parameter types of this method. The array is shared, and must not be modified.
      *
-     * @return this method's return type.
+     * @return the parameter types of this method.
      */
-    public Type returnType() {
-        return Type.typeFor(method.getReturnType());
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String toDescriptor() {
-        String descriptor = "(";
-        for (Class paramType : method.getParameterTypes()) {
-            descriptor += Type.typeFor(paramType).toDescriptor();
+    public Type[] parameterTypes() {
+        if (parameterTypes == null) {
+            parameterTypes = parameterTypesFor(toDescriptor());
         }
-        descriptor += ")" + Type.typeFor(method.getReturnType()).toDescriptor();
-        return descriptor;
+        return parameterTypes;
     }
 
     /**
-     * {@inheritDoc}
+     * Returns this method's return type.
+     *
+     * @return this method's return type.
      */
-    protected java.lang.reflect.Member member() {
-        return method;
+    public Type returnType() {
+        String descriptor = toDescriptor();
+        return Type.typeForDescriptor(descriptor.substring(descriptor.indexOf(')') + 1));
     }
-}
\ No newline at end of file
+}
@@ -274,7 +274,8 @@ class NBasicBlock {
         s = "Locals: ";
         if (locals != null) {
             for (int i = 0; i < locals.length; i++) {
-                if (!(cfg.hirMap.get(locals[i]) instanceof NHIRLocal)) {
+                if (cfg.hirMap.get(locals[i]) != null &&
+                        !(cfg.hirMap.get(locals[i]) instanceof NHIRLocal)) {
                     s += cfg.hirMap.get(locals[i]).id() + " ";
                 }
             }
@@ -478,7 +479,7 @@ class NControlFlowGraph {
         desc = new String(((CLConstantUtf8Info) cp.cpItem(m.descriptorIndex)).b);
         basicBlocks = new ArrayList<NBasicBlock>();
         pcToBasicBlock = new HashMap<Integer, NBasicBlock>();
-        ArrayList<Integer> code = getByteCode();
+        CLByteBuffer code = getByteCode();
         ArrayList<NTuple> tuples = bytecodeToTuples(code);
         if (tuples.size() == 0) {
             return;
@@ -661,6 +662,23 @@ class NControlFlowGraph {
         }
     }
 
+    /**
+     * Computes the loop depth of each block in this cfg, ie, the number of loops the block is
+     * nested in. The body of a loop is made up of its head and the blocks from which a backward
+     * branch to the head can be reached without going through the head. This must be called
+     * after the loops and the dominators have been computed.
+     */
+    public void computeLoopDepths() {
+        for (NBasicBlock head : basicBlocks) {
+            if (!head.isLoopHead) {
+                continue;
+            }
+            for (NBasicBlock block : loopBody(head)) {
+                block.loopDepth++;
+            }
+        }
+    }
+
     /**
      * Converts tuples in each block to their high-level (HIR) representations.
      */
@@ -838,13 +856,14 @@ class NControlFlowGraph {
                         block.hir.add(ins.id);
                         break;
                     }
+                    case ICONST_M1:
                     case ICONST_0:
                     case ICONST_1:
                     case ICONST_2:
                     case ICONST_3:
                     case ICONST_4:
                     case ICONST_5: {
-                        ins = new NHIRIntConstant(block, hirId++, tuple.opcode - 3);
+                        ins = new NHIRIntConstant(block, hirId++, tuple.opcode - ICONST_0);
                         block.cfg.hirMap.put(ins.id, ins);
                         block.hir.add(ins.id);
                         operandStack.push(ins.id);
@@ -886,7 +905,7 @@ class NControlFlowGraph {
                     }
                     case BIPUSH: {
                         operandByte1 = tuple.operands.get(0);
-                        ins = new NHIRIntConstant(block, hirId++, operandByte1);
+                        ins = new NHIRIntConstant(block, hirId++, (byte) operandByte1);
                         block.cfg.hirMap.put(ins.id, ins);
                         block.hir.add(ins.id);
                         operandStack.push(ins.id);
@@ -905,11 +924,17 @@ class NControlFlowGraph {
                     case LDC: {
                         operandByte1 = tuple.operands.get(0);
 
-                        // Only allowing ldc of string constants for now.
-                        int stringIndex =
-                                ((CLConstantStringInfo) cp.cpItem(operandByte1)).stringIndex;
-                        String s = new String(((CLConstantUtf8Info) cp.cpItem(stringIndex)).b);
-                        ins = new NHIRStringConstant(block, hirId++, s);
+                        // Only allowing ldc of string and int constants (the latter for the int
+                        // values that don't fit in a short) for now.
+                        if (cp.cpItem(operandByte1) instanceof CLConstantIntegerInfo) {
+                            int i = ((CLConstantIntegerInfo) cp.cpItem(operandByte1)).i;
+                            ins = new NHIRIntConstant(block, hirId++, i);
+                        } else {
+                            int stringIndex =
+                                    ((CLConstantStringInfo) cp.cpItem(operandByte1)).stringIndex;
+                            String s = new String(((CLConstantUtf8Info) cp.cpItem(stringIndex)).b);
+                            ins = new NHIRStringConstant(block, hirId++, s);
+                        }
                         block.cfg.hirMap.put(ins.id, ins);
                         block.hir.add(ins.id);
                         operandStack.push(ins.id);
@@ -1051,10 +1076,37 @@ class NControlFlowGraph {
     }
 
     /**
-     * Carries out optimizations on the high-level instructions.
+     * Carries out optimizations on the high-level instructions, which are in SSA form: sparse
+     * conditional constant propagation (which also removes the branches that are never taken and
+     * the blocks that are never reached), copy propagation, global value numbering, and dead code
+     * elimination, as well as loop-invariant code motion and strength reduction of induction
+     * variables. As in eliminateRedundantPhiFunctions(), an instruction is replaced by another
+     * by mapping its id in hirMap to the other one, and removing the id from its block; when
+     * done, every id in hirMap is mapped to the instruction it stands for, and the instructions
+     * whose values are not needed are removed.
      */
     public void optimize() {
-        // Unsupported.
+        propagateConstants();
+        propagateCopies();
+        numberValues();
+        propagateCopies();
+        optimizeLoops();
+        eliminateDeadCode();
+    }
+
+    /**
+     * Returns the instruction the given HIR id stands for, following the replacements made in
+     * hirMap, or null if the instruction has been removed.
+     *
+     * @param id the HIR id.
+     * @return the instruction the given HIR id stands for, or null.
+     */
+    public NHIRInstruction resolve(int id) {
+        NHIRInstruction ins = hirMap.get(id);
+        while (ins != null && hirMap.get(ins.id) != ins) {
+            ins = hirMap.get(ins.id);
+        }
+        return ins;
     }
 
     /**
@@ -1098,6 +1150,14 @@ class NControlFlowGraph {
             registers.add(null);
         }
         pRegisters = new ArrayList<NPhysicalRegister>();
+
+        // The jumps are converted last, so that they end their blocks even if instructions with
+        // larger ids have been moved into the blocks (see optimizeLoops()).
+        for (int ins : hirMap.keySet()) {
+            if (!isHIRJmp(hirMap.get(ins))) {
+                hirMap.get(ins).toLir();
+            }
+        }
         for (int ins : hirMap.keySet()) {
             hirMap.get(ins).toLir();
         }
@@ -1117,29 +1177,51 @@ class NControlFlowGraph {
      * Resolves the phi functions in this cfg, i.e., for each x = phi(x1, x2, ..., xn) generate
      * an (LIR) move xi, x instruction at the end of the predecessor i of thte block defining the
      * phi function; if the instruction there is a branch, add the instruction prior to the branch.
+     * Since the phi functions of a block take their values at the same time, the moves for a
+     * predecessor are ordered (see sequentializeMoves()) so that none of them overwrites a value
+     * that another one still has to read.
      */
     public void resolvePhiFunctions() {
+        ArrayList<NBasicBlock> targetBlocks = new ArrayList<NBasicBlock>();
+        HashMap<NBasicBlock, ArrayList<NHIRPhiFunction>> phis =
+                new HashMap<NBasicBlock, ArrayList<NHIRPhiFunction>>();
+        HashMap<NBasicBlock, ArrayList<NRegister>> froms =
+                new HashMap<NBasicBlock, ArrayList<NRegister>>();
+        HashMap<NBasicBlock, ArrayList<NRegister>> tos =
+                new HashMap<NBasicBlock, ArrayList<NRegister>>();
         for (int ins1 : hirMap.keySet()) {
             NHIRInstruction hir = hirMap.get(ins1);
-            if (hir instanceof NHIRPhiFunction) {
+            if (hir instanceof NHIRPhiFunction && hir.id == ins1) {
                 NHIRPhiFunction phi = (NHIRPhiFunction) hir;
                 NBasicBlock block = phi.block;
                 for (int i = 0; i < phi.getArguments().size(); i++) {
                     NHIRInstruction arg = hirMap.get(phi.getArguments().get(i));
-                    if (arg.sType.equals("")) {
+                    if (arg.sType.equals("") || arg.lir.write == phi.lir.write) {
                         continue;
                     }
                     NBasicBlock targetBlock = block.predecessors.get(i);
-                    NLIRMove move = new NLIRMove(arg.block, lirId++, arg.lir, phi.lir);
-                    int len = targetBlock.hir.size();
-                    if (isHIRJmp(hirMap.get(targetBlock.hir.get(len - 1)))) {
-                        targetBlock.lir.add(len - 1, move);
-                    } else {
-                        targetBlock.lir.add(move);
+                    if (!targetBlocks.contains(targetBlock)) {
+                        targetBlocks.add(targetBlock);
+                        phis.put(targetBlock, new ArrayList<NHIRPhiFunction>());
+                        froms.put(targetBlock, new ArrayList<NRegister>());
+                        tos.put(targetBlock, new ArrayList<NRegister>());
                     }
+                    phis.get(targetBlock).add(phi);
+                    froms.get(targetBlock).add(arg.lir.write);
+                    tos.get(targetBlock).add(phi.lir.write);
                 }
             }
         }
+        for (NBasicBlock targetBlock : targetBlocks) {
+            ArrayList<NLIRMove> moves = sequentializeMoves(targetBlock, phis.get(targetBlock),
+                    froms.get(targetBlock), tos.get(targetBlock));
+            int len = targetBlock.hir.size();
+            if (len > 0 && isHIRJmp(hirMap.get(targetBlock.hir.get(len - 1)))) {
+                targetBlock.lir.addAll(targetBlock.lir.size() - 1, moves);
+            } else {
+                targetBlock.lir.addAll(moves);
+            }
+        }
     }
 
     /**
@@ -1341,6 +1423,514 @@ class NControlFlowGraph {
         return (instr instanceof NHIRGoto || instr instanceof NHIRConditionalJump);
     }
 
+    // Returns a sequence of (LIR) move instructions for the given block that has the effect of
+    // the moves froms[i] -> tos[i] (for phis[i]) done in parallel. A move is emitted once no other
+    // pending move reads its destination; when only cycles are left, the source of one move is
+    // first copied to a new virtual register, which the moves reading it read instead.
+    private ArrayList<NLIRMove> sequentializeMoves(NBasicBlock block,
+                                                   ArrayList<NHIRPhiFunction> phis,
+                                                   ArrayList<NRegister> froms,
+                                                   ArrayList<NRegister> tos) {
+        ArrayList<NLIRMove> moves = new ArrayList<NLIRMove>();
+        while (!tos.isEmpty()) {
+            boolean emitted = false;
+            for (int i = 0; i < tos.size(); i++) {
+                if (!froms.contains(tos.get(i))) {
+                    phis.remove(i);
+                    moves.add(new NLIRMove(block, lirId++, froms.remove(i), tos.remove(i)));
+                    emitted = true;
+                    break;
+                }
+            }
+            if (!emitted) {
+                NRegister from = froms.get(0);
+                NVirtualRegister temp = new NVirtualRegister(regId++, phis.get(0).sType,
+                        phis.get(0).lType);
+                registers.add(temp);
+                moves.add(new NLIRMove(block, lirId++, from, temp));
+                for (int i = 0; i < froms.size(); i++) {
+                    if (froms.get(i) == from) {
+                        froms.set(i, temp);
+                    }
+                }
+            }
+        }
+        return moves;
+    }
+
+    // Replaces the arithmetic instructions and phi functions that always compute the same value
+    // by constants, and the conditional jumps that always go the same way by gotos, using the
+    // facts found by NConstantPropagator. The edges that are never taken are removed from the
+    // cfg, along with the corresponding phi function arguments, and so are the blocks that are
+    // never reached (their instructions are removed by eliminateDeadCode()). The dominators
+    // computed earlier remain valid, since removing paths from the cfg cannot make one block stop
+    // dominating another.
+    private void propagateConstants() {
+        NConstantPropagator propagator = new NConstantPropagator(this);
+        ArrayList<NBasicBlock> unreachable = new ArrayList<NBasicBlock>();
+        for (NBasicBlock block : basicBlocks) {
+            if (!propagator.isReached(block)) {
+                unreachable.add(block);
+                continue;
+            }
+            for (int id : block.hir) {
+                NHIRInstruction ins = hirMap.get(id);
+                Integer value = propagator.valueOf(ins);
+                if ((ins instanceof NHIRArithmetic || ins instanceof NHIRPhiFunction) &&
+                        value != null) {
+                    hirMap.put(id, new NHIRIntConstant(block, id, value));
+                } else if (ins instanceof NHIRConditionalJump) {
+                    NHIRConditionalJump jump = (NHIRConditionalJump) ins;
+                    NBasicBlock onTrue = jump.getOnTrueDestination();
+                    NBasicBlock onFalse = jump.getOnFalseDestination();
+                    boolean isTaken = propagator.isExecutable(block, onTrue);
+                    if (onTrue != onFalse && isTaken != propagator.isExecutable(block, onFalse)) {
+                        hirMap.put(id, new NHIRGoto(block, id, isTaken ? onTrue : onFalse));
+                    }
+                }
+            }
+        }
+        for (NBasicBlock block : basicBlocks) {
+            if (!propagator.isReached(block)) {
+                continue;
+            }
+            for (int i = block.predecessors.size() - 1; i >= 0; i--) {
+                NBasicBlock pred = block.predecessors.get(i);
+                if (propagator.isExecutable(pred, block)) {
+                    continue;
+                }
+                block.predecessors.remove(i);
+                pred.successors.remove(block);
+                for (int id : block.hir) {
+                    if (hirMap.get(id) instanceof NHIRPhiFunction) {
+                        ((NHIRPhiFunction) hirMap.get(id)).getArguments().remove(i);
+                    }
+                }
+            }
+        }
+        for (NBasicBlock block : unreachable) {
+            basicBlocks.remove(block);
+        }
+    }
+
+    // Replaces each phi function that merges a single value (other than its own), ie, is of the
+    // form x = (y, x, y, ..., y), by that value, until there are no more such phi functions.
+    private void propagateCopies() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (NBasicBlock block : basicBlocks) {
+                for (int id : new ArrayList<Integer>(block.hir)) {
+                    if (!(hirMap.get(id) instanceof NHIRPhiFunction)) {
+                        continue;
+                    }
+                    NHIRInstruction value = null;
+                    boolean isCopy = true;
+                    for (int arg : ((NHIRPhiFunction) hirMap.get(id)).getArguments()) {
+                        NHIRInstruction ins = resolve(arg);
+                        if (ins.id == id || ins == value) {
+                            continue;
+                        }
+                        if (value != null) {
+                            isCopy = false;
+                            break;
+                        }
+                        value = ins;
+                    }
+                    if (isCopy && value != null) {
+                        hirMap.put(id, value);
+                        block.hir.remove((Integer) id);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Carries out global value numbering: walks the dominator tree in preorder, replacing each
+    // arithmetic instruction (or phi function) that computes the same value as one in a block
+    // that dominates it (or earlier in the same block) by that one. Constants are not shared,
+    // since loading a constant is as cheap as a move, and keeping it in a register is not.
+    private void numberValues() {
+        HashMap<NBasicBlock, ArrayList<NBasicBlock>> children =
+                new HashMap<NBasicBlock, ArrayList<NBasicBlock>>();
+        for (NBasicBlock block : basicBlocks) {
+            children.put(block, new ArrayList<NBasicBlock>());
+        }
+        for (NBasicBlock block : basicBlocks) {
+            if (block.dom != null) {
+                children.get(block.dom).add(block);
+            }
+        }
+        HashMap<String, NHIRInstruction> available = new HashMap<String, NHIRInstruction>();
+        Stack<NBasicBlock> blocks = new Stack<NBasicBlock>();
+        Stack<ArrayList<String>> added = new Stack<ArrayList<String>>();
+        blocks.push(basicBlocks.get(0));
+        added.push(null);
+        while (!blocks.empty()) {
+            NBasicBlock block = blocks.pop();
+            ArrayList<String> keys = added.pop();
+            if (keys != null) {
+                // Leaving the subtree: its values are no longer available.
+                for (String key : keys) {
+                    available.remove(key);
+                }
+                continue;
+            }
+            keys = new ArrayList<String>();
+            for (int id : new ArrayList<Integer>(block.hir)) {
+                NHIRInstruction ins = hirMap.get(id);
+                String key = valueKey(ins);
+                if (key == null) {
+                    continue;
+                }
+                if (available.containsKey(key)) {
+                    hirMap.put(id, available.get(key));
+                    block.hir.remove((Integer) id);
+                } else {
+                    available.put(key, ins);
+                    keys.add(key);
+                }
+            }
+            blocks.push(block);
+            added.push(keys);
+            for (NBasicBlock child : children.get(block)) {
+                blocks.push(child);
+                added.push(null);
+            }
+        }
+    }
+
+    // Returns a string that is the same for two instructions if they compute the same value, or
+    // null if the instruction is not subject to value numbering.
+    private String valueKey(NHIRInstruction ins) {
+        if (ins instanceof NHIRArithmetic) {
+            int opcode = ((NHIRArithmetic) ins).getOpcode();
+            int lhs = resolve(ins.operands().get(0)).id;
+            int rhs = resolve(ins.operands().get(1)).id;
+            if ((opcode == IADD || opcode == IMUL) && lhs > rhs) {
+                return opcode + " " + rhs + " " + lhs;
+            }
+            return opcode + " " + lhs + " " + rhs;
+        } else if (ins instanceof NHIRPhiFunction) {
+            String key = "B" + ins.block.id + " phi";
+            for (int arg : ins.operands()) {
+                key += " " + resolve(arg).id;
+            }
+            return key;
+        }
+        return null;
+    }
+
+    // Optimizes the loops in this cfg, innermost loops first (so that what is moved out of an
+    // inner loop may then be moved out of the enclosing one).
+    private void optimizeLoops() {
+        int maxDepth = 0;
+        for (NBasicBlock block : basicBlocks) {
+            maxDepth = Math.max(maxDepth, block.loopDepth);
+        }
+        for (int depth = maxDepth; depth > 0; depth--) {
+            for (NBasicBlock head : new ArrayList<NBasicBlock>(basicBlocks)) {
+                if (head.loopDepth != depth) {
+                    continue;
+                }
+                for (NBasicBlock pred : head.predecessors) {
+                    if (dominates(head, pred)) {
+                        optimizeLoop(head);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Moves the loop-invariant constants, arithmetic instructions and (unless the loop stores
+    // into fields or invokes methods) field loads of the loop with the given head out of the
+    // loop, into its preheader, ie, the block from which the loop is entered; if that block
+    // branches elsewhere too, a new block is made the preheader. An instruction is invariant if
+    // its operands are computed outside of the loop. The instructions moved cannot fail, so they
+    // may be moved out of blocks that are not run on every iteration. Then the strength of the
+    // multiplications of the induction variables is reduced (see reduceStrength()).
+    private void optimizeLoop(NBasicBlock head) {
+        ArrayList<NBasicBlock> body = loopBody(head);
+        NBasicBlock entry = null;
+        NBasicBlock latch = null;
+        int entries = 0;
+        int latches = 0;
+        for (NBasicBlock pred : head.predecessors) {
+            if (body.contains(pred)) {
+                latch = pred;
+                latches++;
+            } else {
+                entry = pred;
+                entries++;
+            }
+        }
+        if (entries != 1) {
+            return;
+        }
+        NBasicBlock preheader = entry;
+        if (entry.successors.size() > 1 || entry == basicBlocks.get(0)) {
+            // The begin block (B0) is left with just the loading of the formals.
+            if (entry.successors.size() > 1 && !(hirMap.get(entry.hir.get(entry.hir.size() -
+                    1)) instanceof NHIRConditionalJump)) {
+                return;
+            }
+            preheader = splitEdge(entry, head);
+        }
+        boolean writesFields = false;
+        for (NBasicBlock block : body) {
+            for (int id : block.hir) {
+                NHIRInstruction ins = hirMap.get(id);
+                writesFields |= ins instanceof NHIRPutField || ins instanceof NHIRInvoke;
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (NBasicBlock block : body) {
+                for (int id : new ArrayList<Integer>(block.hir)) {
+                    NHIRInstruction ins = hirMap.get(id);
+                    if (!(ins instanceof NHIRArithmetic ||
+                            ins instanceof NHIRGetField && !writesFields)) {
+                        continue;
+                    }
+                    boolean isInvariant = true;
+                    for (int operand : ins.operands()) {
+                        NHIRInstruction o = resolve(operand);
+                        isInvariant &= !body.contains(o.block) || o instanceof NHIRIntConstant;
+                    }
+                    if (isInvariant) {
+                        for (int operand : ins.operands()) {
+                            NHIRInstruction o = resolve(operand);
+                            if (body.contains(o.block)) {
+                                o.block.hir.remove((Integer) o.id);
+                                addBeforeJump(preheader, o);
+                            }
+                        }
+                        block.hir.remove((Integer) id);
+                        addBeforeJump(preheader, ins);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        if (latches == 1) {
+            reduceStrength(head, body, preheader, latch);
+        }
+    }
+
+    // Reduces the strength of the multiplications i * c in the body of the loop with the given
+    // head, preheader and latch (the only block that branches back to the head), where c is a
+    // constant and i is an induction variable, ie, a phi function in the head whose value from
+    // the latch is i + s or i - s for a constant s. The multiplications are replaced by a new
+    // induction variable j, which starts at i * c and is increased by s * c (or -s * c) in the
+    // latch, so that a multiplication on each iteration becomes an addition. This is only done
+    // if i is not used otherwise (eg, in the test of the loop), since both i and j would then be
+    // kept in registers, and the extra register costs more than the multiplications save.
+    private void reduceStrength(NBasicBlock head, ArrayList<NBasicBlock> body,
+                                NBasicBlock preheader, NBasicBlock latch) {
+        int entryIndex = head.predecessors.indexOf(preheader);
+        int latchIndex = head.predecessors.indexOf(latch);
+        for (int id : new ArrayList<Integer>(head.hir)) {
+            if (!(hirMap.get(id) instanceof NHIRPhiFunction) || !hirMap.get(id).sType.equals("I")) {
+                continue;
+            }
+            NHIRPhiFunction phi = (NHIRPhiFunction) hirMap.get(id);
+            NHIRInstruction init = resolve(phi.getArguments().get(entryIndex));
+            NHIRInstruction next = resolve(phi.getArguments().get(latchIndex));
+            Integer step = null;
+            if (next instanceof NHIRArithmetic && !(init instanceof NHIRLocal)) {
+                NHIRInstruction lhs = resolve(next.operands().get(0));
+                NHIRInstruction rhs = resolve(next.operands().get(1));
+                int opcode = ((NHIRArithmetic) next).getOpcode();
+                if (opcode == IADD && lhs == phi && rhs instanceof NHIRIntConstant) {
+                    step = ((NHIRIntConstant) rhs).getValue();
+                } else if (opcode == IADD && rhs == phi && lhs instanceof NHIRIntConstant) {
+                    step = ((NHIRIntConstant) lhs).getValue();
+                } else if (opcode == ISUB && lhs == phi && rhs instanceof NHIRIntConstant) {
+                    step = -((NHIRIntConstant) rhs).getValue();
+                }
+            }
+            if (step == null) {
+                continue;
+            }
+
+            // Find the multiplications of i by (the same) constant c, and make sure that i is
+            // not used otherwise.
+            ArrayList<NHIRInstruction> multiplications = new ArrayList<NHIRInstruction>();
+            Integer c = null;
+            boolean isReducible = true;
+            for (NBasicBlock block : basicBlocks) {
+                for (int id2 : block.hir) {
+                    NHIRInstruction ins = hirMap.get(id2);
+                    boolean usesI = false;
+                    for (int operand : ins.operands()) {
+                        usesI |= resolve(operand) == phi || resolve(operand) == next;
+                    }
+                    if (!usesI || ins == phi || ins == next) {
+                        continue;
+                    }
+                    NHIRInstruction factor = null;
+                    if (ins instanceof NHIRArithmetic &&
+                            ((NHIRArithmetic) ins).getOpcode() == IMUL && body.contains(block)) {
+                        NHIRInstruction lhs = resolve(ins.operands().get(0));
+                        NHIRInstruction rhs = resolve(ins.operands().get(1));
+                        factor = lhs == phi ? rhs : rhs == phi ? lhs : null;
+                    }
+                    if (!(factor instanceof NHIRIntConstant) || c != null &&
+                            c != ((NHIRIntConstant) factor).getValue()) {
+                        isReducible = false;
+                        break;
+                    }
+                    c = ((NHIRIntConstant) factor).getValue();
+                    multiplications.add(ins);
+                }
+            }
+            if (!isReducible || c == null) {
+                continue;
+            }
+            NHIRPhiFunction j = newInductionVariable(head, preheader, latch, init, c, step * c);
+            for (NHIRInstruction ins : multiplications) {
+                hirMap.put(ins.id, j);
+                ins.block.hir.remove((Integer) ins.id);
+            }
+        }
+    }
+
+    // Returns a new induction variable (phi function) in the given loop head, which starts at
+    // init * c (computed in the preheader), and is increased by step in the latch.
+    private NHIRPhiFunction newInductionVariable(NBasicBlock head, NBasicBlock preheader,
+                                                 NBasicBlock latch, NHIRInstruction init, int c,
+                                                 int step) {
+        NHIRInstruction start;
+        if (init instanceof NHIRIntConstant) {
+            start = new NHIRIntConstant(preheader, hirId++, ((NHIRIntConstant) init).getValue() *
+                    c);
+        } else {
+            NHIRInstruction factor = new NHIRIntConstant(preheader, hirId++, c);
+            addBeforeJump(preheader, factor);
+            start = new NHIRArithmetic(preheader, hirId++, IMUL, init.id, factor.id);
+        }
+        addBeforeJump(preheader, start);
+        NHIRInstruction increment = new NHIRIntConstant(latch, hirId++, step);
+        addBeforeJump(latch, increment);
+
+        // The phi function does not stand for a local variable.
+        ArrayList<Integer> args = new ArrayList<Integer>();
+        NHIRPhiFunction phi = new NHIRPhiFunction(head, hirId++, args, -1);
+        NHIRInstruction next = new NHIRArithmetic(latch, hirId++, IADD, phi.id, increment.id);
+        for (NBasicBlock pred : head.predecessors) {
+            args.add(pred == preheader ? start.id : next.id);
+        }
+        hirMap.put(phi.id, phi);
+        head.hir.add(0, phi.id);
+        phi.inferType();
+        addBeforeJump(latch, next);
+        return phi;
+    }
+
+    // Returns a new block on the edge from the block from (which either ends with a conditional
+    // jump, or falls through to the block to) to the block to, which jumps to the latter.
+    private NBasicBlock splitEdge(NBasicBlock from, NBasicBlock to) {
+        NBasicBlock block = new NBasicBlock(this, blockId++);
+        block.predecessors.add(from);
+        block.successors.add(to);
+        block.dom = from;
+        block.loopDepth = from.loopDepth;
+        from.successors.set(from.successors.indexOf(to), block);
+        to.predecessors.set(to.predecessors.indexOf(from), block);
+        to.dom = block;
+        if (from.successors.size() > 1) {
+            ((NHIRConditionalJump) hirMap.get(from.hir.get(from.hir.size() - 1)))
+                    .replaceDestination(to, block);
+        }
+        addBeforeJump(block, new NHIRGoto(block, hirId++, to));
+        basicBlocks.add(basicBlocks.indexOf(from) + 1, block);
+        return block;
+    }
+
+    // Moves the instruction into the given block (adding it to hirMap if it is new), before the
+    // jump that ends the block if there is one.
+    private void addBeforeJump(NBasicBlock block, NHIRInstruction ins) {
+        int len = block.hir.size();
+        if (len > 0 && isHIRJmp(hirMap.get(block.hir.get(len - 1)))) {
+            block.hir.add(len - 1, ins.id);
+        } else {
+            block.hir.add(ins.id);
+        }
+        ins.block = block;
+        hirMap.put(ins.id, ins);
+    }
+
+    // Returns the blocks making up the body of the loop with the given head: the head and the
+    // blocks from which a backward branch to the head can be reached without going through the
+    // head.
+    private ArrayList<NBasicBlock> loopBody(NBasicBlock head) {
+        ArrayList<NBasicBlock> body = new ArrayList<NBasicBlock>();
+        Stack<NBasicBlock> stack = new Stack<NBasicBlock>();
+        body.add(head);
+        for (NBasicBlock pred : head.predecessors) {
+            if (dominates(head, pred) && !body.contains(pred)) {
+                body.add(pred);
+                stack.push(pred);
+            }
+        }
+        while (!stack.empty()) {
+            for (NBasicBlock pred : stack.pop().predecessors) {
+                if (!body.contains(pred)) {
+                    body.add(pred);
+                    stack.push(pred);
+                }
+            }
+        }
+        return body;
+    }
+
+    // Removes the instructions whose values are not needed, ie, the constants, arithmetic
+    // instructions and phi functions that no other needed instruction uses; all other
+    // instructions are needed, either for their side effects (invocations, stores, jumps, ...)
+    // or because they may throw an exception. Also maps every id left in hirMap to the
+    // instruction it stands for.
+    private void eliminateDeadCode() {
+        BitSet needed = new BitSet();
+        Stack<NHIRInstruction> worklist = new Stack<NHIRInstruction>();
+        for (NBasicBlock block : basicBlocks) {
+            for (int id : block.hir) {
+                NHIRInstruction ins = hirMap.get(id);
+                if (!(ins instanceof NHIRIntConstant || ins instanceof NHIRStringConstant ||
+                        ins instanceof NHIRArithmetic || ins instanceof NHIRPhiFunction)) {
+                    needed.set(id);
+                    worklist.push(ins);
+                }
+            }
+        }
+        while (!worklist.empty()) {
+            for (int operand : worklist.pop().operands()) {
+                NHIRInstruction ins = resolve(operand);
+                if (!needed.get(ins.id)) {
+                    needed.set(ins.id);
+                    worklist.push(ins);
+                }
+            }
+        }
+        TreeMap<Integer, NHIRInstruction> resolved = new TreeMap<Integer, NHIRInstruction>();
+        for (int id : hirMap.keySet()) {
+            NHIRInstruction ins = resolve(id);
+            if (ins instanceof NHIRLocal || ins != null && needed.get(ins.id)) {
+                resolved.put(id, ins);
+            }
+        }
+        hirMap = resolved;
+        for (NBasicBlock block : basicBlocks) {
+            for (int id : new ArrayList<Integer>(block.hir)) {
+                if (!hirMap.containsKey(id)) {
+                    block.hir.remove((Integer) id);
+                }
+            }
+        }
+    }
+
     // Clears the visitation information in each block in this cfg.
     private void clearBlockVisitations() {
         for (NBasicBlock block : basicBlocks) {
@@ -1348,6 +1938,16 @@ class NControlFlowGraph {
         }
     }
 
+    // Returns true if block a dominates block b, and false otherwise.
+    private boolean dominates(NBasicBlock a, NBasicBlock b) {
+        for (NBasicBlock dom = b; dom != null; dom = dom.dom) {
+            if (dom == a) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Returns the common dominator of the given basic block and its predecessor.
     private NBasicBlock commonDom(NBasicBlock b, NBasicBlock pred) {
         NBasicBlock dom = b;
@@ -1390,7 +1990,7 @@ class NControlFlowGraph {
     }
 
     // Converts the bytecode in the specified list to their tuple representations.
-    private ArrayList<NTuple> bytecodeToTuples(ArrayList<Integer> code) {
+    private ArrayList<NTuple> bytecodeToTuples(CLByteBuffer code) {
         ArrayList<NTuple> tuples = new ArrayList<NTuple>();
         for (int i = 0; i < code.size(); i++) {
             int pc = i;
@@ -1402,28 +2002,28 @@ class NControlFlowGraph {
                 case 0:
                     break;
                 case 1:
-                    operandByte1 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.get(++i);
                     operands.add(operandByte1);
                     break;
                 case 2:
-                    operandByte1 = code.get(++i).shortValue();
-                    operandByte2 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.get(++i);
+                    operandByte2 = (short) code.get(++i);
                     operands.add(operandByte1);
                     operands.add(operandByte2);
                     break;
                 case 3:
-                    operandByte1 = code.get(++i).shortValue();
-                    operandByte2 = code.get(++i).shortValue();
-                    operandByte3 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.get(++i);
+                    operandByte2 = (short) code.get(++i);
+                    operandByte3 = (short) code.get(++i);
                     operands.add(operandByte1);
                     operands.add(operandByte2);
                     operands.add(operandByte3);
                     break;
                 case 4:
-                    operandByte1 = code.get(++i).shortValue();
-                    operandByte2 = code.get(++i).shortValue();
-                    operandByte3 = code.get(++i).shortValue();
-                    operandByte4 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.get(++i);
+                    operandByte2 = (short) code.get(++i);
+                    operandByte3 = (short) code.get(++i);
+                    operandByte4 = (short) code.get(++i);
                     operands.add(operandByte1);
                     operands.add(operandByte2);
                     operands.add(operandByte3);
@@ -1448,8 +2048,8 @@ class NControlFlowGraph {
     }
 
     // Extracts and returns the JVM bytecode for the method denoted by this cfg.
-    private ArrayList<Integer> getByteCode() {
-        ArrayList<Integer> code = null;
+    private CLByteBuffer getByteCode() {
+        CLByteBuffer code = null;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
                 code = ((CLCodeAttribute) info).code;
@@ -1484,7 +2084,7 @@ class NControlFlowGraph {
 
     // Returns the number of local variables in the method denoted by this cfg.
     private int numLocals() {
-        ArrayList<Integer> code = null;
+        CLByteBuffer code = null;
         int numLocals = 0;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
@@ -1567,3 +2167,241 @@ class NControlFlowGraph {
         return descriptor.substring(descriptor.lastIndexOf(")") + 1);
     }
 }
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over the HIR of a cfg. Each value
+ * (HIR instruction) is either not yet known to be computed, known to be a constant, or varying;
+ * each edge of the cfg is either executable or not. Starting with just the begin block reached,
+ * the instructions of the reached blocks are evaluated, with the phi functions merging only
+ * the values coming in along executable edges, and the conditional jumps making executable only
+ * the edges they can take, until nothing changes. The values of the instructions are only ever
+ * lowered, so this terminates.
+ */
+class NConstantPropagator {
+    // The cfg.
+    private NControlFlowGraph cfg;
+
+    // Maps the ids of the instructions known to be constants to their values.
+    private HashMap<Integer, Integer> constants;
+
+    // Ids of the instructions whose values vary.
+    private BitSet varying;
+
+    // Ids of the blocks reached.
+    private BitSet reached;
+
+    // Maps the id of a block to the ids of the predecessors along executable edges.
+    private HashMap<Integer, BitSet> executable;
+
+    // Maps the id of an instruction to the instructions that use its value.
+    private HashMap<Integer, ArrayList<NHIRInstruction>> users;
+
+    // Edges (pairs of blocks) that have become executable, but are yet to be processed.
+    private LinkedList<NBasicBlock[]> edges;
+
+    // Instructions whose operands have changed, but are yet to be evaluated again.
+    private LinkedList<NHIRInstruction> instructions;
+
+    /**
+     * Constructs an NConstantPropagator object, and propagates the constants in the given cfg.
+     *
+     * @param cfg the cfg.
+     */
+    public NConstantPropagator(NControlFlowGraph cfg) {
+        this.cfg = cfg;
+        constants = new HashMap<Integer, Integer>();
+        varying = new BitSet();
+        reached = new BitSet();
+        executable = new HashMap<Integer, BitSet>();
+        users = new HashMap<Integer, ArrayList<NHIRInstruction>>();
+        edges = new LinkedList<NBasicBlock[]>();
+        instructions = new LinkedList<NHIRInstruction>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            executable.put(block.id, new BitSet());
+            for (int id : block.hir) {
+                NHIRInstruction ins = cfg.hirMap.get(id);
+                for (int operand : ins.operands()) {
+                    int key = cfg.resolve(operand).id;
+                    if (!users.containsKey(key)) {
+                        users.put(key, new ArrayList<NHIRInstruction>());
+                    }
+                    users.get(key).add(ins);
+                }
+            }
+        }
+        reach(cfg.basicBlocks.get(0));
+        while (!edges.isEmpty() || !instructions.isEmpty()) {
+            if (!edges.isEmpty()) {
+                NBasicBlock[] edge = edges.removeFirst();
+                NBasicBlock pred = edge[0], block = edge[1];
+                if (executable.get(block.id).get(pred.id)) {
+                    continue;
+                }
+                executable.get(block.id).set(pred.id);
+                if (!reached.get(block.id)) {
+                    reach(block);
+                } else {
+                    for (int id : block.hir) {
+                        if (cfg.hirMap.get(id) instanceof NHIRPhiFunction) {
+                            evaluate(cfg.hirMap.get(id));
+                        }
+                    }
+                }
+            } else {
+                NHIRInstruction ins = instructions.removeFirst();
+                if (reached.get(ins.block.id)) {
+                    evaluate(ins);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given block can be reached, and false otherwise.
+     *
+     * @param block the block.
+     * @return true if the given block can be reached, and false otherwise.
+     */
+    public boolean isReached(NBasicBlock block) {
+        return reached.get(block.id);
+    }
+
+    /**
+     * Returns true if control can flow from the block pred to the block block, and false
+     * otherwise.
+     *
+     * @param pred  the predecessor block.
+     * @param block the block.
+     * @return true if control can flow from pred to block, and false otherwise.
+     */
+    public boolean isExecutable(NBasicBlock pred, NBasicBlock block) {
+        return executable.containsKey(block.id) && executable.get(block.id).get(pred.id);
+    }
+
+    /**
+     * Returns the constant value of the given instruction, or null if it is not a constant.
+     *
+     * @param ins the instruction.
+     * @return the constant value of the given instruction, or null.
+     */
+    public Integer valueOf(NHIRInstruction ins) {
+        return constants.get(ins.id);
+    }
+
+    // Marks the block as reached, and evaluates its instructions. Unless the block ends with a
+    // conditional jump, control can flow to all of its successors.
+    private void reach(NBasicBlock block) {
+        reached.set(block.id);
+        NHIRInstruction last = null;
+        for (int id : block.hir) {
+            last = cfg.hirMap.get(id);
+            evaluate(last);
+        }
+        if (!(last instanceof NHIRConditionalJump)) {
+            for (NBasicBlock succ : block.successors) {
+                edges.add(new NBasicBlock[]{block, succ});
+            }
+        }
+    }
+
+    // Evaluates the instruction, lowering its value (and making executable the edges a
+    // conditional jump can take) as the values of its operands dictate.
+    private void evaluate(NHIRInstruction ins) {
+        if (ins instanceof NHIRConditionalJump) {
+            NHIRConditionalJump jump = (NHIRConditionalJump) ins;
+            NHIRInstruction lhs = cfg.resolve(ins.operands().get(0));
+            NHIRInstruction rhs = cfg.resolve(ins.operands().get(1));
+            if (varying.get(lhs.id) || varying.get(rhs.id)) {
+                edges.add(new NBasicBlock[]{ins.block, jump.getOnTrueDestination()});
+                edges.add(new NBasicBlock[]{ins.block, jump.getOnFalseDestination()});
+            } else if (constants.containsKey(lhs.id) && constants.containsKey(rhs.id)) {
+                Boolean taken = compare(jump.getOpcode(), constants.get(lhs.id),
+                        constants.get(rhs.id));
+                if (taken == null || taken) {
+                    edges.add(new NBasicBlock[]{ins.block, jump.getOnTrueDestination()});
+                }
+                if (taken == null || !taken) {
+                    edges.add(new NBasicBlock[]{ins.block, jump.getOnFalseDestination()});
+                }
+            }
+        } else if (ins instanceof NHIRIntConstant) {
+            lower(ins, ((NHIRIntConstant) ins).getValue());
+        } else if (ins instanceof NHIRArithmetic) {
+            NHIRInstruction lhs = cfg.resolve(ins.operands().get(0));
+            NHIRInstruction rhs = cfg.resolve(ins.operands().get(1));
+            if (varying.get(lhs.id) || varying.get(rhs.id)) {
+                lower(ins, null);
+            } else if (constants.containsKey(lhs.id) && constants.containsKey(rhs.id)) {
+                lower(ins, compute(((NHIRArithmetic) ins).getOpcode(), constants.get(lhs.id),
+                        constants.get(rhs.id)));
+            }
+        } else if (ins instanceof NHIRPhiFunction) {
+            NBasicBlock block = ins.block;
+            ArrayList<Integer> args = ((NHIRPhiFunction) ins).getArguments();
+            for (int i = 0; i < args.size(); i++) {
+                if (!isExecutable(block.predecessors.get(i), block)) {
+                    continue;
+                }
+                NHIRInstruction arg = cfg.resolve(args.get(i));
+                if (arg.id == ins.id) {
+                    continue;
+                }
+                if (arg instanceof NHIRLocal || varying.get(arg.id)) {
+                    lower(ins, null);
+                } else if (constants.containsKey(arg.id)) {
+                    lower(ins, constants.get(arg.id));
+                }
+            }
+        } else {
+            lower(ins, null);
+        }
+    }
+
+    // Lowers the value of the instruction to the given constant (or to varying if the constant
+    // is null, or differs from the one the instruction is known to be), and if the value changes,
+    // schedules the instructions that use it for evaluation.
+    private void lower(NHIRInstruction ins, Integer value) {
+        if (varying.get(ins.id)) {
+            return;
+        }
+        if (value != null && !constants.containsKey(ins.id)) {
+            constants.put(ins.id, value);
+        } else if (value == null || !constants.get(ins.id).equals(value)) {
+            constants.remove(ins.id);
+            varying.set(ins.id);
+        } else {
+            return;
+        }
+        if (users.containsKey(ins.id)) {
+            instructions.addAll(users.get(ins.id));
+        }
+    }
+
+    // Returns the result of the arithmetic operation, or null if it is not known.
+    private Integer compute(int opcode, int lhs, int rhs) {
+        switch (opcode) {
+            case IADD:
+                return lhs + rhs;
+            case ISUB:
+                return lhs - rhs;
+            case IMUL:
+                return lhs * rhs;
+            default:
+                return null;
+        }
+    }
+
+    // Returns the outcome of the comparison, or null if it is not known.
+    private Boolean compare(int opcode, int lhs, int rhs) {
+        switch (opcode) {
+            case IF_ICMPNE:
+                return lhs != rhs;
+            case IF_ICMPGT:
+                return lhs > rhs;
+            case IF_ICMPLE:
+                return lhs <= rhs;
+            default:
+                return null;
+        }
+    }
+}
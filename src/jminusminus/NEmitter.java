@@ -68,6 +68,9 @@ public class NEmitter {
                 // Compute the dominator of each block in the cfg.
                 cfg.computeDominators(cfg.basicBlocks.get(0), null);
 
+                // Compute the loop depth of each block in the cfg.
+                cfg.computeLoopDepths();
+
                 // Convert the tuples in each block in the cfg to high-level (HIR) instructions.
                 cfg.tuplesToHir();
 
@@ -2,10 +2,59 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Stack;
+
+import static jminusminus.NPhysicalRegister.*;
+
 /**
- * Implements register allocation using graph coloring algorithm.
+ * Implements register allocation using graph coloring algorithm, after Chaitin and Briggs
+ * (Briggs, Cooper and Torczon, "Improvements to Graph Coloring Register Allocation", TOPLAS 1994).
+ * <p>
+ * An interference graph is built over the virtual registers from the global liveness information
+ * (the liveOut sets of the blocks), two registers interfering if one is written where the other
+ * is live. Registers connected by a move are coalesced when they do not interfere and the
+ * combined register has fewer than k neighbors of degree k or more (k being the number of
+ * registers available), so that coalescing can never make the graph uncolorable. The graph is
+ * then simplified, removing registers of degree less than k, and when there are none, the
+ * register with the least spill cost per neighbor (the spill cost being the number of its uses
+ * and definitions, each weighted by 10 to the loop depth of its block), which is still colored
+ * if a color is left for it (optimistic coloring). Registers that cannot be colored are spilled:
+ * each of their uses and definitions is rewritten to use a new register loaded from or stored to
+ * a stack slot, and the allocation is repeated on the rewritten code.
+ * <p>
+ * Finally, moves between registers that were coalesced (or happened to be colored the same) are
+ * removed.
  */
 public class NGraphRegisterAllocator extends NRegisterAllocator {
+    // Number of registers (starting at t0) available for allocation.
+    private int registerCount;
+
+    // Virtual registers that are never spilled: those holding values loaded from or stored to a
+    // spill slot, and those of the formal parameters fourth and above (which are in the caller's
+    // frame to begin with).
+    private BitSet noSpill;
+
+    // Virtual registers that are nodes in the interference graph.
+    private BitSet nodes;
+
+    // Maps each virtual register to the one it was coalesced with, or to itself.
+    private int[] alias;
+
+    // The registers each node interferes with.
+    private BitSet[] adjacent;
+
+    // Estimated cost of spilling each node.
+    private double[] spillCost;
+
+    // Moves between virtual registers.
+    private ArrayList<NLIRMove> moves;
+
+    // Color (index of the register starting at t0) of each node, or -1.
+    private int[] color;
+
     /**
      * Constructs an NGraphRegisterAllocator object.
      *
@@ -19,6 +68,335 @@ public class NGraphRegisterAllocator extends NRegisterAllocator {
      * {@inheritDoc}
      */
     public void allocation() {
+        registerCount = MAX_COUNT;
+        noSpill = new BitSet();
+
+        // Formal parameters fourth and above are loaded from the caller's frame wherever they are
+        // read.
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (NLIRInstruction lir : block.lir) {
+                if (lir instanceof NLIRLoadLocal && ((NLIRLoadLocal) lir).getLocal() >= 4) {
+                    noSpill.set(lir.write.number());
+                    rewrite(lir.write.number(), ((NLIRLoadLocal) lir).getLocal() - 3,
+                            OffsetFrom.FP);
+                }
+            }
+        }
+
+        // Build, coalesce and color the interference graph, spilling (or, if only registers that
+        // cannot be spilled are left uncolored, adding a register) until all nodes are colored.
+        while (true) {
+            buildIntervals();
+            buildInterferenceGraph();
+            coalesce();
+            ArrayList<Integer> spilled = new ArrayList<Integer>();
+            if (colorGraph(spilled)) {
+                break;
+            }
+            if (spilled.isEmpty()) {
+                registerCount++;
+            }
+            for (int node : spilled) {
+                int offset = cfg.offset++;
+                for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                    if (find(i) == node && !noSpill.get(i)) {
+                        rewrite(i, offset, OffsetFrom.SP);
+                    }
+                }
+            }
+        }
+
+        // Remove the moves whose source and destination got the same register.
+        HashMap<Integer, Integer> colors = new HashMap<Integer, Integer>();
+        for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+            colors.put(i, color[find(i)]);
+        }
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            for (NLIRInstruction lir : block.lir) {
+                if (!(lir instanceof NLIRMove) ||
+                        colors.get(lir.reads.get(0).number()) == null ||
+                        !colors.get(lir.reads.get(0).number()).equals(
+                                colors.get(lir.write.number()))) {
+                    newLir.add(lir);
+                }
+            }
+            block.lir = newLir;
+        }
+
+        // Build the intervals for the final code, and assign the registers to them.
         buildIntervals();
+        preprocess();
+        for (int i : colors.keySet()) {
+            NPhysicalRegister pRegister = regInfo[T0 + colors.get(i)];
+            cfg.intervals.get(i).pRegister = pRegister;
+            if (!cfg.pRegisters.contains(pRegister)) {
+                cfg.pRegisters.add(pRegister);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void buildIntervals() {
+        // The code may have been rewritten since the intervals were last built, so start afresh.
+        cfg.renumberLirInstructions();
+        cfg.intervals = new ArrayList<NInterval>();
+        for (int i = 0; i < cfg.registers.size(); i++) {
+            cfg.intervals.add(new NInterval(i, cfg));
+        }
+        cfg.maxIntervals = cfg.intervals.size();
+        super.buildIntervals();
+    }
+
+    // Builds the interference graph (and the spill costs and moves) for the current code, walking
+    // each block backwards from its liveOut set.
+    private void buildInterferenceGraph() {
+        int n = cfg.registers.size();
+        nodes = new BitSet(n);
+        alias = new int[n];
+        adjacent = new BitSet[n];
+        spillCost = new double[n];
+        moves = new ArrayList<NLIRMove>();
+        for (int i = 0; i < n; i++) {
+            alias[i] = i;
+            adjacent[i] = new BitSet(n);
+        }
+        for (NBasicBlock block : cfg.basicBlocks) {
+            BitSet live = (BitSet) block.liveOut.clone();
+            double weight = Math.pow(10, block.loopDepth);
+            for (int j = block.lir.size() - 1; j >= 0; j--) {
+                NLIRInstruction lir = block.lir.get(j);
+                boolean isMove = lir instanceof NLIRMove && lir.reads.get(0).number() >= 32;
+                if (lir.write != null && lir.write.number() >= 32) {
+                    int w = lir.write.number();
+                    nodes.set(w);
+                    spillCost[w] += weight;
+                    for (int l = live.nextSetBit(32); l >= 0; l = live.nextSetBit(l + 1)) {
+                        // The source of a move need not interfere with its destination, as they
+                        // hold the same value.
+                        if (l != w && !(isMove && l == lir.reads.get(0).number())) {
+                            adjacent[w].set(l);
+                            adjacent[l].set(w);
+                        }
+                    }
+                    if (isMove) {
+                        moves.add((NLIRMove) lir);
+                    }
+                }
+                if (lir.write != null) {
+                    live.clear(lir.write.number());
+                }
+                for (NRegister read : lir.reads) {
+                    if (read.number() >= 32) {
+                        nodes.set(read.number());
+                        spillCost[read.number()] += weight;
+                        live.set(read.number());
+                    }
+                }
+            }
+        }
+    }
+
+    // Coalesces the source and destination of each move that do not interfere, as long as the
+    // coalesced node has fewer than registerCount neighbors of significant degree (Briggs'
+    // conservative test).
+    private void coalesce() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (NLIRMove move : moves) {
+                int a = find(move.reads.get(0).number());
+                int b = find(move.write.number());
+                if (a == b || adjacent[a].get(b)) {
+                    continue;
+                }
+                BitSet neighbors = (BitSet) adjacent[a].clone();
+                neighbors.or(adjacent[b]);
+                int significant = 0;
+                for (int i = neighbors.nextSetBit(0); i >= 0; i = neighbors.nextSetBit(i + 1)) {
+                    if (adjacent[i].cardinality() >= registerCount) {
+                        significant++;
+                    }
+                }
+                if (significant < registerCount) {
+                    alias[b] = a;
+                    adjacent[a].or(adjacent[b]);
+                    for (int i = adjacent[b].nextSetBit(0); i >= 0;
+                         i = adjacent[b].nextSetBit(i + 1)) {
+                        adjacent[i].clear(b);
+                        adjacent[i].set(a);
+                    }
+                    adjacent[b].clear();
+                    spillCost[a] += spillCost[b];
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // Colors the nodes of the interference graph, and returns true if all of them were colored.
+    // Otherwise, the nodes that could not be colored and can be spilled are added to spilled.
+    private boolean colorGraph(ArrayList<Integer> spilled) {
+        // A (coalesced) node can be spilled if any of the registers it stands for can.
+        BitSet remaining = new BitSet();
+        BitSet spillable = new BitSet();
+        for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+            remaining.set(find(i));
+            if (!noSpill.get(i)) {
+                spillable.set(find(i));
+            }
+        }
+
+        // Simplify. The degrees of the remaining nodes are kept up to date as nodes are removed,
+        // along with the set of those of insignificant degree.
+        int[] degree = new int[cfg.registers.size()];
+        BitSet insignificant = new BitSet();
+        for (int i = remaining.nextSetBit(0); i >= 0; i = remaining.nextSetBit(i + 1)) {
+            degree[i] = degree(i, remaining);
+            if (degree[i] < registerCount) {
+                insignificant.set(i);
+            }
+        }
+        Stack<Integer> stack = new Stack<Integer>();
+        while (!remaining.isEmpty()) {
+            int chosen = insignificant.nextSetBit(0);
+            if (chosen == -1) {
+                // Push a spill candidate, in the hope that it can be colored all the same.
+                double cheapest = Double.MAX_VALUE;
+                for (int i = remaining.nextSetBit(0); i >= 0; i = remaining.nextSetBit(i + 1)) {
+                    if (spillable.get(i) && spillCost[i] / degree[i] < cheapest) {
+                        cheapest = spillCost[i] / degree[i];
+                        chosen = i;
+                    }
+                }
+                if (chosen == -1) {
+                    chosen = remaining.nextSetBit(0);
+                }
+            }
+            remaining.clear(chosen);
+            insignificant.clear(chosen);
+            for (int i = adjacent[chosen].nextSetBit(0); i >= 0;
+                 i = adjacent[chosen].nextSetBit(i + 1)) {
+                if (remaining.get(i) && --degree[i] == registerCount - 1) {
+                    insignificant.set(i);
+                }
+            }
+            stack.push(chosen);
+        }
+
+        // Select.
+        HashMap<Integer, ArrayList<Integer>> partners = new HashMap<Integer, ArrayList<Integer>>();
+        for (NLIRMove move : moves) {
+            int from = find(move.reads.get(0).number());
+            int to = find(move.write.number());
+            if (from != to) {
+                addPartner(partners, from, to);
+                addPartner(partners, to, from);
+            }
+        }
+        color = new int[cfg.registers.size()];
+        for (int i = 0; i < color.length; i++) {
+            color[i] = -1;
+        }
+        boolean colored = true;
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            BitSet used = new BitSet();
+            for (int i = adjacent[node].nextSetBit(0); i >= 0;
+                 i = adjacent[node].nextSetBit(i + 1)) {
+                if (color[i] >= 0) {
+                    used.set(color[i]);
+                }
+            }
+            int c = preferredColor(node, used, partners.get(node));
+            if (c < registerCount) {
+                color[node] = c;
+            } else {
+                colored = false;
+                if (spillable.get(node)) {
+                    spilled.add(node);
+                }
+            }
+        }
+        return colored;
+    }
+
+    // Returns the color for the given node: that of one of its partners (the nodes it is connected
+    // to by a move, or null if none) if that color is not used by its neighbors, and the lowest
+    // color not used otherwise.
+    private int preferredColor(int node, BitSet used, ArrayList<Integer> partners) {
+        if (partners != null) {
+            for (int partner : partners) {
+                if (color[partner] >= 0 && !used.get(color[partner])) {
+                    return color[partner];
+                }
+            }
+        }
+        return used.nextClearBit(0);
+    }
+
+    // Records that node is connected to partner by a move.
+    private void addPartner(HashMap<Integer, ArrayList<Integer>> partners, int node, int partner) {
+        if (!partners.containsKey(node)) {
+            partners.put(node, new ArrayList<Integer>());
+        }
+        partners.get(node).add(partner);
+    }
+
+    // Returns the number of neighbors the given node has among the remaining nodes.
+    private int degree(int node, BitSet remaining) {
+        BitSet neighbors = (BitSet) adjacent[node].clone();
+        neighbors.and(remaining);
+        return neighbors.cardinality();
+    }
+
+    // Returns the node the given register was coalesced into.
+    private int find(int register) {
+        while (alias[register] != register) {
+            register = alias[register];
+        }
+        return register;
+    }
+
+    // Rewrites the code so that the given virtual register lives in the stack slot at offset:
+    // each instruction reading the register reads a new register loaded from the slot just before
+    // it, and each instruction writing the register writes a new register stored to the slot just
+    // after it.
+    private void rewrite(int register, int offset, OffsetFrom offsetFrom) {
+        NVirtualRegister spilled = (NVirtualRegister) cfg.registers.get(register);
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            for (NLIRInstruction lir : block.lir) {
+                NVirtualRegister loaded = null;
+                for (int i = 0; i < lir.reads.size(); i++) {
+                    if (lir.reads.get(i).number() == register) {
+                        if (loaded == null) {
+                            loaded = newTemporary(spilled);
+                            newLir.add(new NLIRLoad(block, lir.id, offset, offsetFrom, loaded));
+                        }
+                        lir.reads.set(i, loaded);
+                    }
+                }
+                newLir.add(lir);
+                if (lir.write != null && lir.write.number() == register &&
+                        !(lir instanceof NLIRLoadLocal)) {
+                    NVirtualRegister stored = newTemporary(spilled);
+                    lir.write = stored;
+                    newLir.add(new NLIRStore(block, lir.id, offset, offsetFrom, stored));
+                }
+            }
+            block.lir = newLir;
+        }
+    }
+
+    // Returns a new virtual register of the same type as the given one, which is never spilled.
+    private NVirtualRegister newTemporary(NVirtualRegister register) {
+        NVirtualRegister temporary = new NVirtualRegister(NControlFlowGraph.regId++,
+                register.sType(), register.lType());
+        cfg.registers.add(temporary);
+        noSpill.set(temporary.number());
+        return temporary;
     }
 }
@@ -110,6 +110,15 @@ abstract class NHIRInstruction {
         return null;
     }
 
+    /**
+     * Returns the HIR ids of the operands of this instruction.
+     *
+     * @return the HIR ids of the operands of this instruction.
+     */
+    public ArrayList<Integer> operands() {
+        return new ArrayList<Integer>();
+    }
+
     /**
      * Returns the identifier of this instruction with the short type name prefix.
      *
@@ -158,6 +167,25 @@ class NHIRArithmetic extends NHIRInstruction {
         this.rhs = rhs;
     }
 
+    /**
+     * Returns the opcode for the arithmetic operator.
+     *
+     * @return the opcode for the arithmetic operator.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(lhs);
+        operands.add(rhs);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -200,6 +228,15 @@ class NHIRIntConstant extends NHIRInstruction {
         this.value = value;
     }
 
+    /**
+     * Returns the constant int value.
+     *
+     * @return the constant int value.
+     */
+    public int getValue() {
+        return value;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -301,6 +338,58 @@ class NHIRConditionalJump extends NHIRInstruction {
         this.onFalseDestination = onFalseDestination;
     }
 
+    /**
+     * Returns the opcode in the test.
+     *
+     * @return the opcode in the test.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Returns the block to jump to on true.
+     *
+     * @return the block to jump to on true.
+     */
+    public NBasicBlock getOnTrueDestination() {
+        return onTrueDestination;
+    }
+
+    /**
+     * Returns the block to jump to on false.
+     *
+     * @return the block to jump to on false.
+     */
+    public NBasicBlock getOnFalseDestination() {
+        return onFalseDestination;
+    }
+
+    /**
+     * Makes this jump go to the given new destination instead of the given old one.
+     *
+     * @param oldDestination the block jumped to now.
+     * @param newDestination the block to jump to instead.
+     */
+    public void replaceDestination(NBasicBlock oldDestination, NBasicBlock newDestination) {
+        if (onTrueDestination == oldDestination) {
+            onTrueDestination = newDestination;
+        }
+        if (onFalseDestination == oldDestination) {
+            onFalseDestination = newDestination;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(lhs);
+        operands.add(rhs);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -402,6 +491,13 @@ class NHIRInvoke extends NHIRInstruction {
         this.arguments = arguments;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        return new ArrayList<Integer>(arguments);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -511,6 +607,17 @@ class NHIRReturn extends NHIRInstruction {
         this.value = value;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        if (value != -1) {
+            operands.add(value);
+        }
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -580,6 +687,15 @@ class NHIRPutField extends NHIRInstruction {
         this.value = value;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(value);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -735,6 +851,16 @@ class NHIRALoad extends NHIRInstruction {
         this.index = index;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(arrayRef);
+        operands.add(index);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -796,6 +922,17 @@ class NHIRAStore extends NHIRInstruction {
         this.value = value;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(arrayRef);
+        operands.add(index);
+        operands.add(value);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -864,6 +1001,13 @@ class NHIRPhiFunction extends NHIRInstruction {
         return local;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ArrayList<Integer> operands() {
+        return new ArrayList<Integer>(arguments);
+    }
+
     /**
      * Infers type for this phi function, which is essentially the type of the arguments.
      */
@@ -3,6 +3,7 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.TreeMap;
 
 /**
@@ -202,12 +203,8 @@ class NInterval implements Comparable<NInterval> {
      * @return true if this virtual register is alive at a given index, and false otherwise.
      */
     public boolean isLiveAt(int atIndex) {
-        for (NRange r : ranges) {
-            if (atIndex >= r.start && atIndex < r.stop) {
-                return true;
-            }
-        }
-        return false;
+        int i = lastRangeStartingAt(atIndex);
+        return i >= 0 && atIndex < ranges.get(i).stop;
     }
 
     /**
@@ -219,12 +216,27 @@ class NInterval implements Comparable<NInterval> {
      * or null.
      */
     private NRange liveRangeAt(int id) {
-        for (NRange r : ranges) {
-            if (id >= r.start && id <= r.stop) {
-                return r;
+        int i = lastRangeStartingAt(id);
+        return i >= 0 && id <= ranges.get(i).stop ? ranges.get(i) : null;
+    }
+
+    // Returns the index of the last range in this interval that starts at or before the given
+    // position, or -1. Since the ranges are sorted and do not overlap, it is the only one that
+    // can contain the position.
+    private int lastRangeStartingAt(int position) {
+        int index = -1;
+        int lo = 0;
+        int hi = ranges.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ranges.get(mid).start <= position) {
+                index = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
             }
         }
-        return null;
+        return index;
     }
 
     /**
@@ -264,10 +276,12 @@ class NInterval implements Comparable<NInterval> {
             } else {
                 s += "-> None";
             }
-            if (offsetFrom == OffsetFrom.FP) {
-                s += " [frame:" + offset + "]";
-            } else {
-                s += " [stack:" + offset + "]";
+            if (spill) {
+                if (offsetFrom == OffsetFrom.FP) {
+                    s += " [frame:" + offset + "]";
+                } else {
+                    s += " [stack:" + offset + "]";
+                }
             }
             p.printf("%s\n", s);
             for (NInterval child : this.children) {
@@ -315,35 +329,29 @@ class NInterval implements Comparable<NInterval> {
     }
 
     /**
-     * Splits the current interval at the given index. Responsible for splitting a range if the
-     * index falls on one, moving remaining ranges over to child, and moving appropriate
-     * usePositions over to the child.
+     * Splits the current interval at the given position, which must fall between LIR
+     * instructions. The ranges (or parts of ranges) and the use positions at or after the
+     * position are moved over to a new child interval, so that the two intervals together cover
+     * exactly what this interval covered before.
      *
-     * @param idx the index at which this interval is to be split
-     * @return the child interval which is to be sorted onto unhandled. If there was no child
-     * created in the case of a pruning this interval is returned.
+     * @param idx the position at which this interval is to be split.
+     * @return the child interval which is to be sorted onto unhandled.
      */
     public NInterval splitAt(int idx) {
+        ArrayList<NRange> keptRanges = new ArrayList<NRange>();
         ArrayList<NRange> childsRanges = new ArrayList<NRange>();
-        if (this.isLiveAt(idx)) { // means split falls on a range
-            // Assumptions: if a range is LIVE on an index, then there exist usePositions at or
-            // before the index within this same range.
-            NRange liveRange = this.liveRangeAt(idx);
-            int splitTo = idx;
-            splitTo = usePositions.ceilingKey(idx);
-            childsRanges.add((liveRange.splitRange(splitTo, idx - 5)));
-        }
-
-        // The following two for loops take care of any untouched ranges which start after the
-        // split position and must be moved to the child interval.
         for (NRange r : ranges) {
-            if (r.start > idx) {
+            if (r.start >= idx) {
                 childsRanges.add(r);
+            } else {
+                keptRanges.add(r);
+                if (r.stop > idx) {
+                    // The split falls on this range.
+                    childsRanges.add(r.splitRange(idx, idx));
+                }
             }
         }
-        for (NRange r : childsRanges) {
-            ranges.remove(r);
-        }
+        ranges = keptRanges;
 
         NInterval child = new NInterval(cfg.maxIntervals++, cfg, childsRanges, getParent());
         cfg.registers.add(null); // expand size of cfg.registers to avoid NPE when printing
@@ -368,14 +376,15 @@ class NInterval implements Comparable<NInterval> {
     }
 
     /**
-     * Returns the child interval at the given instruction index.
+     * Returns the child interval at the given instruction index, ie, the one that holds the
+     * value when the instruction reads or writes it.
      *
      * @param idx the instruction index.
      * @return the child interval at the given instruction index.
      */
     public NInterval childAt(int idx) {
         for (NInterval child : children) {
-            if (child.isLiveAt(idx)) {
+            if (child.liveRangeAt(idx) != null) {
                 return child;
             }
         }
@@ -465,13 +474,19 @@ class NInterval implements Comparable<NInterval> {
 
     /**
      * Assigns an offset to this interval (if one hasn't been already assigned). Assigns that
-     * same offset to any (newly created) children.
+     * same offset to any (newly created) children. A child shares the offset of its parent, so
+     * that all the intervals split from a virtual register are spilled to the same place.
      */
     public void spill() {
         this.spill = true;
+        NInterval parent = getParent();
+        if (parent.offset == -1) {
+            parent.offset = cfg.offset++;
+            parent.offsetFrom = OffsetFrom.SP;
+        }
         if (this.offset == -1) {
-            this.offset = cfg.offset++;
-            this.offsetFrom = OffsetFrom.SP;
+            this.offset = parent.offset;
+            this.offsetFrom = parent.offsetFrom;
         }
         for (NInterval child : children) {
             if (child.offset == -1) {
@@ -582,3 +597,79 @@ class NRange implements Comparable<NRange> {
         return "[" + start + ", " + stop + "]";
     }
 }
+
+/**
+ * Builds the ranges of an interval when they are found from the last to the first, as when the
+ * LIR code is walked backwards (see NRegisterAllocator.buildIntervals()). Each range added starts
+ * no later than the ones added before it, and so either extends the first range so far or goes
+ * before it. The ranges are kept in reverse order so that both happen at the end of the list,
+ * and the list is reversed just once, when the ranges are asked for.
+ */
+class NRangeBuilder {
+    // The ranges so far, from the last to the first.
+    private ArrayList<NRange> ranges;
+
+    /**
+     * Constructs an NRangeBuilder object.
+     */
+    public NRangeBuilder() {
+        ranges = new ArrayList<NRange>();
+    }
+
+    /**
+     * Returns true if no ranges have been added, and false otherwise.
+     *
+     * @return true if no ranges have been added, and false otherwise.
+     */
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /**
+     * Returns the start position of the first range so far.
+     *
+     * @return the start position of the first range so far.
+     */
+    public int firstStart() {
+        return ranges.get(ranges.size() - 1).start;
+    }
+
+    /**
+     * Adds a range extending from start to stop, which must start no later than the ranges added
+     * so far. If it overlaps with or is adjacent to the first range so far, then that range is
+     * extended instead.
+     *
+     * @param start start position.
+     * @param stop  stop position.
+     */
+    public void add(int start, int stop) {
+        if (!ranges.isEmpty()) {
+            NRange first = ranges.get(ranges.size() - 1);
+            if (stop + 5 == first.start || first.start <= stop && start <= first.stop) {
+                first.start = start;
+                return;
+            }
+        }
+        ranges.add(new NRange(start, stop));
+    }
+
+    /**
+     * Sets the start position of the first range so far.
+     *
+     * @param start the new start position.
+     */
+    public void setFirstStart(int start) {
+        ranges.get(ranges.size() - 1).start = start;
+    }
+
+    /**
+     * Returns the ranges, sorted by their start positions.
+     *
+     * @return the ranges, sorted by their start positions.
+     */
+    public ArrayList<NRange> ranges() {
+        ArrayList<NRange> sorted = new ArrayList<NRange>(ranges);
+        Collections.reverse(sorted);
+        return sorted;
+    }
+}
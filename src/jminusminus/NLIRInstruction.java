@@ -306,6 +306,21 @@ class NLIRConditionalJump extends NLIRInstruction {
         this.onFalseDestination = onFalseDestination;
     }
 
+    /**
+     * Makes this jump go to the given new destination instead of the given old one.
+     *
+     * @param oldDestination the block jumped to now.
+     * @param newDestination the block to jump to instead.
+     */
+    public void replaceDestination(NBasicBlock oldDestination, NBasicBlock newDestination) {
+        if (onTrueDestination == oldDestination) {
+            onTrueDestination = newDestination;
+        }
+        if (onFalseDestination == oldDestination) {
+            onFalseDestination = newDestination;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -791,8 +806,12 @@ class NLIRMove extends NLIRInstruction {
     public void allocatePhysicalRegisters() {
         NInterval input = block.cfg.intervals.get(reads.get(0).number()).childAt(id);
         NInterval output = block.cfg.intervals.get(write.number()).childAt(id);
-        reads.set(0, input.pRegister);
-        write = output.pRegister;
+        if (input.vRegId >= 32) {
+            reads.set(0, input.pRegister);
+        }
+        if (output.vRegId >= 32) {
+            write = output.pRegister;
+        }
     }
 
     /**
@@ -865,9 +884,6 @@ class NLIRLoad extends NLIRInstruction {
     // Whether offset is relative to stack pointer (sp) or frame pointer (fp).
     private OffsetFrom offsetFrom;
 
-    // Register to load to.
-    private NRegister register;
-
     /**
      * Constructs an NLIRLoad object.
      *
@@ -882,7 +898,17 @@ class NLIRLoad extends NLIRInstruction {
         super(block, id);
         this.offset = offset;
         this.offsetFrom = offsetFrom;
-        this.register = register;
+        write = register;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void allocatePhysicalRegisters() {
+        NInterval output = block.cfg.intervals.get(write.number()).childAt(id);
+        if (output.vRegId >= 32) {
+            write = output.pRegister;
+        }
     }
 
     /**
@@ -890,9 +916,9 @@ class NLIRLoad extends NLIRInstruction {
      */
     public void toSpim(PrintWriter out) {
         if (offsetFrom == OffsetFrom.FP) {
-            out.printf("    lw %s,%d($fp)\n", register, offset * 4);
+            out.printf("    lw %s,%d($fp)\n", write, offset * 4);
         } else {
-            out.printf("    lw %s,%d($sp)\n", register, offset * 4);
+            out.printf("    lw %s,%d($sp)\n", write, offset * 4);
         }
     }
 
@@ -901,7 +927,7 @@ class NLIRLoad extends NLIRInstruction {
      */
     public String toString() {
         return id + ": LOAD " + (offsetFrom == OffsetFrom.FP ? "[frame:" : "[stack:") +
-                offset + "] " + register;
+                offset + "] " + write;
     }
 }
 
@@ -2,10 +2,51 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import static jminusminus.NPhysicalRegister.*;
+
 /**
- * Implements register allocation using linear scan algorithm.
+ * Implements register allocation using linear scan algorithm, after Wimmer and Mossenbock
+ * ("Optimized Interval Splitting in a Linear Scan Register Allocator", VEE 2005).
+ * <p>
+ * The intervals are allocated in the order of their start positions. An interval is assigned a
+ * register that is free for as long as possible, and is split where that register is needed by
+ * another interval. If no register is free, then either the interval, or the intervals holding
+ * the register whose next use is farthest away, are split and spilled up to just before their
+ * next use. Intervals are split in the gaps between LIR instructions (whose ids step by 5), and
+ * within the gap allowed, at the start of the block with the lowest loop depth, which keeps
+ * spill code out of loops.
+ * <p>
+ * Once all intervals are allocated, the data flow is resolved: moves, loads and stores are
+ * inserted where a split interval changes location within a block, and on the block edges where
+ * an interval's location at the end of the predecessor differs from that at the start of the
+ * successor. Critical edges that need such moves are split.
  */
 public class NLinearRegisterAllocator extends NRegisterAllocator {
+    // Intervals that are yet to be allocated, sorted by their start positions.
+    private PriorityQueue<NInterval> unhandled;
+
+    // Intervals that hold a register and are live at the current position.
+    private ArrayList<NInterval> active;
+
+    // Intervals that hold a register but are in a lifetime hole at the current position.
+    private ArrayList<NInterval> inactive;
+
+    // Number of registers (starting at t0) available for allocation.
+    private int registerCount;
+
+    // Maps the id of the first LIR instruction of each (non-empty) block to the block.
+    private TreeMap<Integer, NBasicBlock> blockAt;
+
+    // Maps the id of an LIR instruction to the instruction.
+    private HashMap<Integer, NLIRInstruction> lirAt;
+
     /**
      * Constructs an NLinearRegisterAllocator object.
      *
@@ -20,5 +61,530 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
      */
     public void allocation() {
         buildIntervals();
+        preprocess();
+        blockAt = new TreeMap<Integer, NBasicBlock>();
+        lirAt = new HashMap<Integer, NLIRInstruction>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (!block.lir.isEmpty()) {
+                blockAt.put(block.getFirstLIRInstId(), block);
+            }
+            for (NLIRInstruction lir : block.lir) {
+                lirAt.put(lir.id, lir);
+            }
+        }
+        registerCount = MAX_COUNT;
+        unhandled = new PriorityQueue<NInterval>();
+        active = new ArrayList<NInterval>();
+        inactive = new ArrayList<NInterval>();
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval interval = cfg.intervals.get(i);
+            if (!interval.ranges.isEmpty()) {
+                unhandled.add(interval);
+            }
+        }
+
+        while (!unhandled.isEmpty()) {
+            NInterval current = unhandled.poll();
+            int position = current.firstNRangeStart();
+
+            // Retire the intervals that end before the current position, and move the others
+            // between active and inactive as they enter and leave lifetime holes.
+            for (NInterval interval : new ArrayList<NInterval>(active)) {
+                if (interval.lastNRangeStop() <= position) {
+                    active.remove(interval);
+                } else if (!interval.isLiveAt(position)) {
+                    active.remove(interval);
+                    inactive.add(interval);
+                }
+            }
+            for (NInterval interval : new ArrayList<NInterval>(inactive)) {
+                if (interval.lastNRangeStop() <= position) {
+                    inactive.remove(interval);
+                } else if (interval.isLiveAt(position)) {
+                    inactive.remove(interval);
+                    active.add(interval);
+                }
+            }
+
+            if (current.spill && !current.isChild()) {
+                // A formal parameter beyond the fourth is in the caller's frame (see
+                // preprocess()), and stays there until just before it is first read.
+                Integer firstRead = current.usePositions.higherKey(position);
+                if (firstRead != null) {
+                    unhandled.add(current.splitAt(optimalSplitPosition(position,
+                            gapBefore(firstRead))));
+                }
+                continue;
+            }
+            if (!tryAllocateFreeRegister(current)) {
+                allocateBlockedRegister(current);
+            }
+            if (current.pRegister != null) {
+                active.add(current);
+            }
+        }
+
+        resolveDataFlow();
+    }
+
+    // Tries to assign current a register that is free at its start, splitting current where the
+    // register stops being free. Returns true if a register was assigned, and false otherwise.
+    private boolean tryAllocateFreeRegister(NInterval current) {
+        int position = current.firstNRangeStart();
+        int[] freeUntilPosition = new int[registerCount];
+        for (int i = 0; i < registerCount; i++) {
+            freeUntilPosition[i] = Integer.MAX_VALUE;
+        }
+        for (NInterval interval : active) {
+            freeUntilPosition[registerIndex(interval)] = 0;
+        }
+        for (NInterval interval : inactive) {
+            int intersection = interval.nextIntersection(current);
+            if (intersection >= 0) {
+                int i = registerIndex(interval);
+                freeUntilPosition[i] = Math.min(freeUntilPosition[i], intersection);
+            }
+        }
+
+        // Pick the register that is free the longest, but prefer the one the value is moved
+        // from (if it is free for the whole interval), so the move can be dropped.
+        int reg = 0;
+        for (int i = 1; i < registerCount; i++) {
+            if (freeUntilPosition[i] > freeUntilPosition[reg]) {
+                reg = i;
+            }
+        }
+        int hint = registerHint(current);
+        if (hint >= 0 && hint < registerCount &&
+                freeUntilPosition[hint] >= current.lastNRangeStop()) {
+            reg = hint;
+        }
+
+        if (freeUntilPosition[reg] >= current.lastNRangeStop()) {
+            // The register is free for all of current.
+            assignRegister(current, reg);
+            return true;
+        }
+        int splitPosition = optimalSplitPosition(position, gapBefore(freeUntilPosition[reg]));
+        if (splitPosition <= position) {
+            // The register is not free for any part of current.
+            return false;
+        }
+        assignRegister(current, reg);
+        unhandled.add(current.splitAt(splitPosition));
+        return true;
+    }
+
+    // Assigns current a register when none is free, by spilling either current or the intervals
+    // that hold the register that is used farthest away.
+    private void allocateBlockedRegister(NInterval current) {
+        int position = current.firstNRangeStart();
+        int[] nextUsePosition = new int[registerCount];
+        for (int i = 0; i < registerCount; i++) {
+            nextUsePosition[i] = Integer.MAX_VALUE;
+        }
+        for (NInterval interval : active) {
+            nextUsePosition[registerIndex(interval)] = nextUse(interval, position);
+        }
+        for (NInterval interval : inactive) {
+            if (interval.nextIntersection(current) >= 0) {
+                int i = registerIndex(interval);
+                nextUsePosition[i] = Math.min(nextUsePosition[i], nextUse(interval, position));
+            }
+        }
+        int reg = 0;
+        for (int i = 1; i < registerCount; i++) {
+            if (nextUsePosition[i] > nextUsePosition[reg]) {
+                reg = i;
+            }
+        }
+        int firstUse = nextUse(current, position);
+
+        if (firstUse > nextUsePosition[reg]) {
+            // All the other intervals are used before current, so spill current up to just
+            // before its first use.
+            current.spill();
+            if (firstUse != Integer.MAX_VALUE) {
+                unhandled.add(current.splitAt(optimalSplitPosition(position,
+                        gapBefore(firstUse))));
+            }
+            return;
+        }
+        if (nextUsePosition[reg] <= position ||
+                nextUsePosition[reg] == firstUse && gapBefore(firstUse) <= position) {
+            // The instruction at hand has more operands than there are registers, so none can
+            // be given up; use one more register.
+            assignRegister(current, registerCount++);
+            return;
+        }
+
+        // Take the register from the intervals that hold it.
+        assignRegister(current, reg);
+        for (NInterval interval : new ArrayList<NInterval>(active)) {
+            if (registerIndex(interval) == reg) {
+                active.remove(interval);
+                Integer lastUse = interval.usePositions.floorKey(gapBefore(position));
+                int splitPosition = optimalSplitPosition(lastUse == null ?
+                        interval.firstNRangeStart() : lastUse, gapBefore(position));
+                splitAndSpill(interval, splitPosition, position);
+            }
+        }
+        for (NInterval interval : new ArrayList<NInterval>(inactive)) {
+            if (registerIndex(interval) == reg && interval.nextIntersection(current) >= 0) {
+                inactive.remove(interval);
+                splitAndSpill(interval, position, position);
+            }
+        }
+    }
+
+    // Splits the interval at the given split position and spills the part after it up to just
+    // before its next use; the remainder is put back onto unhandled. The current position
+    // bounds where the remainder may start.
+    private void splitAndSpill(NInterval interval, int splitPosition, int position) {
+        NInterval spilled = interval;
+        if (interval.firstNRangeStart() < splitPosition) {
+            spilled = interval.splitAt(splitPosition);
+        } else {
+            interval.pRegister = null;
+        }
+        if (spilled.usePositions.isEmpty()) {
+            spilled.spill();
+            return;
+        }
+        int start = spilled.firstNRangeStart();
+        int reloadPosition = optimalSplitPosition(Math.max(start, position - 1),
+                gapBefore(spilled.usePositions.firstKey()));
+        if (reloadPosition <= start) {
+            // There is no room to spill the interval before it is used.
+            unhandled.add(spilled);
+            return;
+        }
+        spilled.spill();
+        unhandled.add(spilled.splitAt(reloadPosition));
+    }
+
+    // Returns the position, after minPosition and at or before maxPosition, at which to split an
+    // interval. That is the start of the block with the lowest loop depth in that range (the
+    // latest one if there are several), or maxPosition if no block starts at a lower loop depth.
+    private int optimalSplitPosition(int minPosition, int maxPosition) {
+        if (maxPosition <= minPosition) {
+            return maxPosition;
+        }
+        int optimalPosition = maxPosition;
+        int minLoopDepth = loopDepthAt(maxPosition);
+        for (NBasicBlock block : blockAt.subMap(minPosition + 1, false, maxPosition + 1,
+                false).descendingMap().values()) {
+            int depth = boundaryLoopDepth(block);
+            if (depth < minLoopDepth) {
+                optimalPosition = block.getFirstLIRInstId() - 1;
+                minLoopDepth = depth;
+            }
+        }
+        return optimalPosition;
+    }
+
+    // Returns the loop depth at the given gap position. At the start of a block, this is the
+    // lowest loop depth of the block and its predecessors, as any moves at that position end up
+    // on the edges into the block.
+    private int loopDepthAt(int position) {
+        if (blockAt.containsKey(position + 1)) {
+            return boundaryLoopDepth(blockAt.get(position + 1));
+        }
+        return blockAt.floorKey(position + 1) == null ? 0 :
+                blockAt.floorEntry(position + 1).getValue().loopDepth;
+    }
+
+    // Returns the loop depth for moves at the start of the given block.
+    private int boundaryLoopDepth(NBasicBlock block) {
+        int depth = block.loopDepth;
+        for (NBasicBlock pred : block.predecessors) {
+            depth = Math.min(depth, pred.loopDepth);
+        }
+        return depth;
+    }
+
+    // Returns the next use position of the interval at or after the given position, or
+    // Integer.MAX_VALUE if there is none.
+    private int nextUse(NInterval interval, int position) {
+        Integer use = interval.usePositions.ceilingKey(position);
+        return use == null ? Integer.MAX_VALUE : use;
+    }
+
+    // Returns the index of the register the interval is moved from when it is defined by a move,
+    // or -1.
+    private int registerHint(NInterval current) {
+        NLIRInstruction lir = lirAt.get(current.firstNRangeStart());
+        if (current.isChild() || !(lir instanceof NLIRMove) ||
+                lir.reads.get(0).number() < 32) {
+            return -1;
+        }
+        NInterval from = cfg.intervals.get(lir.reads.get(0).number()).childAt(lir.id);
+        return from.pRegister == null ? -1 : registerIndex(from);
+    }
+
+    // Assigns the register with the given index to the interval.
+    private void assignRegister(NInterval interval, int reg) {
+        NPhysicalRegister pRegister = regInfo[T0 + reg];
+        interval.pRegister = pRegister;
+        if (!cfg.pRegisters.contains(pRegister)) {
+            cfg.pRegisters.add(pRegister);
+        }
+    }
+
+    // Returns the index of the register assigned to the interval.
+    private int registerIndex(NInterval interval) {
+        return interval.pRegister.number() - T0;
+    }
+
+    // Returns the gap position just before the given position; positions in between LIR
+    // instructions are gap positions themselves.
+    private int gapBefore(int position) {
+        return position % 5 == 0 ? position - 1 : position;
+    }
+
+    // Inserts moves, loads and stores where the location of an interval changes: at split
+    // positions within blocks, and on the edges between blocks.
+    private void resolveDataFlow() {
+        HashMap<Integer, ArrayList<NMove>> movesBefore = new HashMap<Integer, ArrayList<NMove>>();
+        HashMap<NBasicBlock, ArrayList<NMove>> movesAtStart =
+                new HashMap<NBasicBlock, ArrayList<NMove>>();
+        HashMap<NBasicBlock, ArrayList<NMove>> movesAtEnd =
+                new HashMap<NBasicBlock, ArrayList<NMove>>();
+
+        // Moves between the children of an interval that is split within a block.
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval interval = cfg.intervals.get(i);
+            ArrayList<NInterval> children = new ArrayList<NInterval>(interval.children);
+            children.add(interval);
+            Collections.sort(children);
+            for (int j = 1; j < children.size(); j++) {
+                NInterval from = children.get(j - 1);
+                NInterval to = children.get(j);
+                int position = to.firstNRangeStart();
+                if (position == gapBefore(position) && from.lastNRangeStop() == position &&
+                        !blockAt.containsKey(position + 1)) {
+                    addMove(movesBefore, position + 1, from, to);
+                }
+            }
+        }
+
+        // Moves on the edges between blocks.
+        for (NBasicBlock block : new ArrayList<NBasicBlock>(cfg.basicBlocks)) {
+            Integer blockStart = blockAt.ceilingKey(startOf(block));
+            if (blockStart == null) {
+                continue;
+            }
+            for (NBasicBlock pred : new ArrayList<NBasicBlock>(block.predecessors)) {
+                if (pred.lir.isEmpty()) {
+                    // An empty block falls through to the next one, with no change of location.
+                    continue;
+                }
+                ArrayList<NMove> moves = new ArrayList<NMove>();
+                BitSet liveIn = block.liveIn;
+                for (int i = liveIn.nextSetBit(32); i >= 0; i = liveIn.nextSetBit(i + 1)) {
+                    NInterval from = cfg.intervals.get(i).childAt(pred.getLastLIRInstId());
+                    NInterval to = cfg.intervals.get(i).childAt(blockStart);
+                    if (from.pRegister != to.pRegister) {
+                        moves.add(new NMove(from, to));
+                    }
+                }
+                if (moves.isEmpty()) {
+                    continue;
+                }
+                NLIRInstruction last = pred.lir.get(pred.lir.size() - 1);
+                if (pred.successors.size() == 1 && !(last instanceof NLIRConditionalJump)) {
+                    addMoves(movesAtEnd, pred, moves);
+                } else if (block.predecessors.size() == 1) {
+                    addMoves(movesAtStart, block, moves);
+                } else {
+                    addMoves(movesAtStart, splitEdge(pred, block), moves);
+                }
+            }
+        }
+
+        // Insert the moves, and drop the moves whose source and destination ended up in the same
+        // register.
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            if (movesAtStart.containsKey(block)) {
+                insertMoves(block, newLir, movesAtStart.get(block));
+            }
+            for (NLIRInstruction lir : block.lir) {
+                if (movesBefore.containsKey(lir.id)) {
+                    insertMoves(block, newLir, movesBefore.get(lir.id));
+                }
+                if (lir == block.lir.get(block.lir.size() - 1) && movesAtEnd.containsKey(block) &&
+                        lir instanceof NLIRGoto) {
+                    insertMoves(block, newLir, movesAtEnd.remove(block));
+                }
+                if (!isRedundantMove(lir)) {
+                    newLir.add(lir);
+                }
+            }
+            if (movesAtEnd.containsKey(block)) {
+                insertMoves(block, newLir, movesAtEnd.get(block));
+            }
+            block.lir = newLir;
+        }
+    }
+
+    // Returns the position at which the given block starts. That of an empty block is the
+    // position of the next instruction in block order.
+    private int startOf(NBasicBlock block) {
+        for (int i = cfg.basicBlocks.indexOf(block); i < cfg.basicBlocks.size(); i++) {
+            if (!cfg.basicBlocks.get(i).lir.isEmpty()) {
+                return cfg.basicBlocks.get(i).getFirstLIRInstId();
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // Splits the (critical) edge from pred to succ by a new block, placed after pred, that jumps
+    // to succ, and returns the new block.
+    private NBasicBlock splitEdge(NBasicBlock pred, NBasicBlock succ) {
+        NBasicBlock block = new NBasicBlock(cfg, NControlFlowGraph.blockId++);
+        block.predecessors.add(pred);
+        block.successors.add(succ);
+        pred.successors.set(pred.successors.indexOf(succ), block);
+        succ.predecessors.set(succ.predecessors.indexOf(pred), block);
+        ((NLIRConditionalJump) pred.lir.get(pred.lir.size() - 1)).replaceDestination(succ, block);
+        // The jump is given the (gap) position after the last instruction of pred, rather than
+        // the position of that instruction, so that the moves to be inserted before the latter
+        // are not inserted before the jump as well.
+        block.lir.add(new NLIRGoto(block, pred.getLastLIRInstId() + 1, succ));
+        block.liveUse = new BitSet();
+        block.liveDef = new BitSet();
+        block.liveIn = (BitSet) succ.liveIn.clone();
+        block.liveOut = (BitSet) succ.liveIn.clone();
+        cfg.basicBlocks.add(cfg.basicBlocks.indexOf(pred) + 1, block);
+        return block;
+    }
+
+    // Records a move from one interval to another before the instruction with the given id.
+    private void addMove(HashMap<Integer, ArrayList<NMove>> moves, int id, NInterval from,
+                         NInterval to) {
+        if (!moves.containsKey(id)) {
+            moves.put(id, new ArrayList<NMove>());
+        }
+        moves.get(id).add(new NMove(from, to));
+    }
+
+    // Records moves on an edge at the start or end of the given block.
+    private void addMoves(HashMap<NBasicBlock, ArrayList<NMove>> moves, NBasicBlock block,
+                          ArrayList<NMove> edgeMoves) {
+        if (!moves.containsKey(block)) {
+            moves.put(block, new ArrayList<NMove>());
+        }
+        moves.get(block).addAll(edgeMoves);
+    }
+
+    // Appends LIR instructions that perform the given moves (all at once, in effect) to the
+    // given list of instructions. A move is done only once its destination register is no
+    // longer needed as the source of another move; moves that form a cycle are done by storing
+    // one of the registers to memory.
+    private void insertMoves(NBasicBlock block, ArrayList<NLIRInstruction> lir,
+                             ArrayList<NMove> moves) {
+        int id = lir.isEmpty() ? block.getFirstLIRInstId() : lir.get(lir.size() - 1).id;
+        ArrayList<NMove> pending = new ArrayList<NMove>();
+        for (NMove move : moves) {
+            if (move.fromRegister != move.toRegister) {
+                pending.add(move);
+            }
+        }
+        while (!pending.isEmpty()) {
+            NMove next = null;
+            for (NMove move : pending) {
+                boolean isSource = false;
+                for (NMove other : pending) {
+                    isSource |= move.toRegister != null && other.fromRegister == move.toRegister;
+                }
+                if (!isSource) {
+                    next = move;
+                    break;
+                }
+            }
+            if (next == null) {
+                // Break the cycle by moving through the stack.
+                next = pending.get(0);
+                NInterval parent = next.parent;
+                if (parent.offset == -1) {
+                    parent.offset = cfg.offset++;
+                    parent.offsetFrom = OffsetFrom.SP;
+                }
+                lir.add(new NLIRStore(block, id, parent.offset, parent.offsetFrom,
+                        next.fromRegister));
+                next.fromRegister = null;
+                next.offset = parent.offset;
+                next.offsetFrom = parent.offsetFrom;
+                continue;
+            }
+            pending.remove(next);
+            if (next.fromRegister == null) {
+                lir.add(new NLIRLoad(block, id, next.offset, next.offsetFrom, next.toRegister));
+            } else if (next.toRegister == null) {
+                lir.add(new NLIRStore(block, id, next.offset, next.offsetFrom,
+                        next.fromRegister));
+            } else {
+                lir.add(new NLIRMove(block, id, next.fromRegister, next.toRegister));
+            }
+        }
+    }
+
+    // Returns true if the instruction moves a virtual register into another that was allocated
+    // the same physical register, and false otherwise.
+    private boolean isRedundantMove(NLIRInstruction lir) {
+        if (!(lir instanceof NLIRMove) || lir.reads.get(0).number() < 32 ||
+                lir.write.number() < 32) {
+            return false;
+        }
+        NInterval from = cfg.intervals.get(lir.reads.get(0).number()).childAt(lir.id);
+        NInterval to = cfg.intervals.get(lir.write.number()).childAt(lir.id);
+        return from.pRegister != null && from.pRegister == to.pRegister;
+    }
+}
+
+/**
+ * A move of a value between the locations (register or stack slot) of two children of a split
+ * interval, which the linear scan register allocator inserts to resolve the data flow.
+ */
+class NMove {
+    /**
+     * The parent of the split interval.
+     */
+    public NInterval parent;
+
+    /**
+     * The register to move from, or null if the value is moved from the stack.
+     */
+    public NPhysicalRegister fromRegister;
+
+    /**
+     * The register to move to, or null if the value is moved to the stack.
+     */
+    public NPhysicalRegister toRegister;
+
+    /**
+     * Stack offset of the value, if it is moved from or to the stack.
+     */
+    public int offset;
+
+    /**
+     * Whether offset is relative to stack pointer (sp) or frame pointer (fp).
+     */
+    public OffsetFrom offsetFrom;
+
+    /**
+     * Constructs an NMove object.
+     *
+     * @param from the interval to move from.
+     * @param to   the interval to move to.
+     */
+    public NMove(NInterval from, NInterval to) {
+        parent = from.parent != null ? from.parent : from;
+        fromRegister = from.pRegister;
+        toRegister = to.pRegister;
+        NInterval spilled = from.pRegister == null ? from : to;
+        offset = spilled.offset;
+        offsetFrom = spilled.offsetFrom;
     }
 }
@@ -69,6 +69,24 @@ class NVirtualRegister extends NRegister {
         this.lType = lType;
     }
 
+    /**
+     * Returns the type (short name) of value in this register.
+     *
+     * @return the type (short name) of value in this register.
+     */
+    public String sType() {
+        return sType;
+    }
+
+    /**
+     * Returns the type (long name) of value in this register.
+     *
+     * @return the type (long name) of value in this register.
+     */
+    public String lType() {
+        return lType;
+    }
+
     /**
      * Returns a string representation of this virtual register.
      *
@@ -4,6 +4,8 @@ package jminusminus;
 
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.Stack;
 
 import static jminusminus.NPhysicalRegister.*;
 
@@ -37,6 +39,13 @@ public abstract class NRegisterAllocator {
     protected void buildIntervals() {
         this.computeLocalLiveSets();
         this.computeGlobalLiveSets();
+
+        // The code is walked backwards, so the ranges of each interval are found from the last to
+        // the first.
+        NRangeBuilder[] builders = new NRangeBuilder[cfg.intervals.size()];
+        for (int i = 0; i < builders.length; i++) {
+            builders[i] = new NRangeBuilder();
+        }
         for (int i = cfg.basicBlocks.size() - 1; i >= 0; i--) {
             NBasicBlock currBlock = cfg.basicBlocks.get(i);
             if (currBlock.lir.size() == 0) {
@@ -46,24 +55,35 @@ public abstract class NRegisterAllocator {
             int blockEnd = currBlock.lir.get(currBlock.lir.size() - 1).id;
             BitSet liveOut = currBlock.liveOut;
             for (int idx = liveOut.nextSetBit(0); idx >= 0; idx = liveOut.nextSetBit(idx + 1)) {
-                cfg.intervals.get(idx).addOrExtendNRange(new NRange(blockStart, blockEnd));
+                // A register live out of the block is live past its last instruction, up to
+                // where the next block would start.
+                builders[idx].add(blockStart, blockEnd + 5);
             }
             for (int j = currBlock.lir.size() - 1; j >= 0; j--) {
                 int currLIRid = currBlock.lir.get(j).id;
                 NRegister output = currBlock.lir.get(j).write;
                 if (output != null) {
-                    cfg.intervals.get(output.number).newFirstRangeStart(currLIRid);
+                    NRangeBuilder builder = builders[output.number];
+                    if (builder.isEmpty() || builder.firstStart() > currLIRid) {
+                        // The value is never used, but it still needs a register where it is
+                        // written.
+                        builder.add(currLIRid, currLIRid + 1);
+                    } else {
+                        builder.setFirstStart(currLIRid);
+                    }
                     cfg.intervals.get(output.number).addUsePosition(currLIRid,
                             InstructionType.write);
                 }
                 ArrayList<NRegister> inputs = currBlock.lir.get(j).reads;
                 for (NRegister reg : inputs) {
-                    cfg.intervals.get(reg.number).addOrExtendNRange(new NRange(blockStart,
-                            currLIRid));
+                    builders[reg.number].add(blockStart, currLIRid);
                     cfg.intervals.get(reg.number).addUsePosition(currLIRid, InstructionType.read);
                 }
             }
         }
+        for (int i = 0; i < builders.length; i++) {
+            cfg.intervals.get(i).ranges.addAll(builders[i].ranges());
+        }
     }
 
     /**
@@ -178,29 +198,75 @@ public abstract class NRegisterAllocator {
         }
     }
 
-    // Iterates through a list of basic blocks in reverse order, and sets their lliveIn and
-    // liveOut fields to reflect global use-def information.
+    // Sets the liveIn and liveOut fields of the blocks to reflect global use-def information, by
+    // solving liveOut = union of the successors' liveIn, and liveIn = liveUse + (liveOut - liveDef)
+    // with a worklist. The blocks start out on the worklist in postorder, so that (but for the
+    // back edges of loops) a block is visited after its successors, and a block is put back on
+    // the worklist only when the liveIn of one of its successors changes.
     private void computeGlobalLiveSets() {
-        boolean changed = false;
-        for (NBasicBlock b : cfg.basicBlocks) {
-            b.liveOut = new BitSet(cfg.registers.size());
+        int size = cfg.registers.size();
+        BitSet inCfg = new BitSet();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            block.liveIn = new BitSet(size);
+            block.liveOut = new BitSet(size);
+            inCfg.set(block.id);
         }
-        do {
-            changed = false;
-            for (int i = cfg.basicBlocks.size() - 1; i >= 0; i--) {
-                NBasicBlock currBlock = cfg.basicBlocks.get(i);
-                BitSet newLiveOut = new BitSet(cfg.registers.size());
-                for (NBasicBlock successor : currBlock.successors) {
-                    newLiveOut.or(successor.liveIn);
+        LinkedList<NBasicBlock> worklist = postorder();
+        BitSet onWorklist = (BitSet) inCfg.clone();
+        while (!worklist.isEmpty()) {
+            NBasicBlock block = worklist.removeFirst();
+            onWorklist.clear(block.id);
+            block.liveOut.clear();
+            for (NBasicBlock successor : block.successors) {
+                block.liveOut.or(successor.liveIn);
+            }
+            BitSet liveIn = (BitSet) block.liveOut.clone();
+            liveIn.andNot(block.liveDef);
+            liveIn.or(block.liveUse);
+            if (!liveIn.equals(block.liveIn)) {
+                block.liveIn = liveIn;
+                for (NBasicBlock predecessor : block.predecessors) {
+                    if (inCfg.get(predecessor.id) && !onWorklist.get(predecessor.id)) {
+                        worklist.addLast(predecessor);
+                        onWorklist.set(predecessor.id);
+                    }
                 }
-                if (!currBlock.liveOut.equals(newLiveOut)) {
-                    currBlock.liveOut = newLiveOut;
-                    changed = true;
+            }
+        }
+    }
+
+    // Returns the blocks of the cfg in postorder of a depth-first walk from the entry block,
+    // followed by any blocks that the walk does not reach.
+    private LinkedList<NBasicBlock> postorder() {
+        LinkedList<NBasicBlock> order = new LinkedList<NBasicBlock>();
+        BitSet visited = new BitSet();
+        Stack<NBasicBlock> blocks = new Stack<NBasicBlock>();
+        Stack<Integer> nextSuccessors = new Stack<Integer>();
+        NBasicBlock entry = cfg.basicBlocks.get(0);
+        visited.set(entry.id);
+        blocks.push(entry);
+        nextSuccessors.push(0);
+        while (!blocks.isEmpty()) {
+            NBasicBlock block = blocks.peek();
+            int i = nextSuccessors.pop();
+            if (i < block.successors.size()) {
+                nextSuccessors.push(i + 1);
+                NBasicBlock successor = block.successors.get(i);
+                if (!visited.get(successor.id)) {
+                    visited.set(successor.id);
+                    blocks.push(successor);
+                    nextSuccessors.push(0);
                 }
-                currBlock.liveIn = (BitSet) currBlock.liveOut.clone();
-                currBlock.liveIn.andNot(currBlock.liveDef);
-                currBlock.liveIn.or(currBlock.liveUse);
+            } else {
+                blocks.pop();
+                order.add(block);
             }
-        } while (changed);
+        }
+        for (int i = cfg.basicBlocks.size() - 1; i >= 0; i--) {
+            if (!visited.get(cfg.basicBlocks.get(i).id)) {
+                order.add(cfg.basicBlocks.get(i));
+            }
+        }
+        return order;
     }
 }
@@ -1671,9 +1671,8 @@ public class Parser {
     private void reportParserError(String message, Object... args) {
         isInError = true;
         isRecovered = false;
-        System.err.printf("%s:%d: error: ", scanner.fileName(), scanner.token().line());
-        System.err.printf(message, args);
-        System.err.println();
+        System.err.printf("%s:%d: error: %s%n", scanner.fileName(), scanner.token().line(),
+                String.format(message, args));
     }
 
     //////////////////////////////////////////////////
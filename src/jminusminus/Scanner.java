@@ -3,10 +3,14 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.util.Hashtable;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 
 import static jminusminus.TokenKind.*;
 
@@ -17,8 +21,29 @@ class Scanner {
     // End of file character.
     public final static char EOFCH = CharReader.EOFCH;
 
-    // Keywords in j--.
-    private Hashtable<String, TokenKind> reserved;
+    // Keywords in j--, grouped by their first letter ('a' to 'z'), for recognizing them with
+    // no more than a few comparisons.
+    private final static TokenKind[][] reserved;
+
+    static {
+        TokenKind[] keywords = { ABSTRACT, BOOLEAN, BREAK, CASE, CATCH, CHAR, CLASS, CONTINUE,
+                DEFLT, DO, DOUBLE, ELSE, EXTENDS, FALSE, FINALLY, FOR, IF, IMPLEMENTS, IMPORT,
+                INSTANCEOF, INT, INTERFACE, LONG, NEW, NULL, PACKAGE, PRIVATE, PROTECTED, PUBLIC,
+                RETURN, STATIC, SUPER, SWITCH, THIS, THROW, THROWS, TRUE, TRY, VOID, WHILE };
+        int[] counts = new int[26];
+        for (TokenKind keyword : keywords) {
+            counts[keyword.image().charAt(0) - 'a']++;
+        }
+        reserved = new TokenKind[26][];
+        for (int i = 0; i < 26; i++) {
+            reserved[i] = new TokenKind[counts[i]];
+            counts[i] = 0;
+        }
+        for (TokenKind keyword : keywords) {
+            int i = keyword.image().charAt(0) - 'a';
+            reserved[i][counts[i]++] = keyword;
+        }
+    }
 
     // Source characters.
     private CharReader input;
@@ -26,6 +51,12 @@ class Scanner {
     // Next unscanned character.
     private char ch;
 
+    // Offset of ch in the source buffer.
+    private int chOffset;
+
+    // Canonical strings for the identifiers scanned.
+    private IdentifierTable identifiers;
+
     // Whether a scanner error has been found.
     private boolean isInError;
 
@@ -45,49 +76,7 @@ class Scanner {
         this.input = new CharReader(fileName);
         this.fileName = fileName;
         isInError = false;
-
-        // Keywords in j--
-        reserved = new Hashtable<String, TokenKind>();
-        reserved.put(ABSTRACT.image(), ABSTRACT);
-        reserved.put(BOOLEAN.image(), BOOLEAN);
-        reserved.put(BREAK.image(), BREAK);
-        reserved.put(CASE.image(), CASE);
-        reserved.put(CATCH.image(), CATCH);
-        reserved.put(CHAR.image(), CHAR);
-        reserved.put(CLASS.image(), CLASS);
-        reserved.put(CONTINUE.image(), CONTINUE);
-        reserved.put(DEFLT.image(), DEFLT);
-        reserved.put(DO.image(), DO);
-        reserved.put(DOUBLE.image(), DOUBLE);
-        reserved.put(ELSE.image(), ELSE);
-        reserved.put(EXTENDS.image(), EXTENDS);
-        reserved.put(FALSE.image(), FALSE);
-        reserved.put(FINALLY.image(), FINALLY);
-        reserved.put(FOR.image(), FOR);
-        reserved.put(IF.image(), IF);
-        reserved.put(IMPLEMENTS.image(), IMPLEMENTS);
-        reserved.put(IMPORT.image(), IMPORT);
-        reserved.put(INSTANCEOF.image(), INSTANCEOF);
-        reserved.put(INT.image(), INT);
-        reserved.put(INTERFACE.image(), INTERFACE);
-        reserved.put(LONG.image(), LONG);
-        reserved.put(NEW.image(), NEW);
-        reserved.put(NULL.image(), NULL);
-        reserved.put(PACKAGE.image(), PACKAGE);
-        reserved.put(PRIVATE.image(), PRIVATE);
-        reserved.put(PROTECTED.image(), PROTECTED);
-        reserved.put(PUBLIC.image(), PUBLIC);
-        reserved.put(RETURN.image(), RETURN);
-        reserved.put(STATIC.image(), STATIC);
-        reserved.put(SUPER.image(), SUPER);
-        reserved.put(SWITCH.image(), SWITCH);
-        reserved.put(THIS.image(), THIS);
-        reserved.put(THROW.image(), THROW);
-        reserved.put(THROWS.image(), THROWS);
-        reserved.put(TRUE.image(), TRUE);
-        reserved.put(TRY.image(), TRY);
-        reserved.put(VOID.image(), VOID);
-        reserved.put(WHILE.image(), WHILE);
+        identifiers = new IdentifierTable();
 
         // Prime the pump.
         nextCh();
@@ -99,7 +88,7 @@ class Scanner {
      * @return the next scanned token.
      */
     public TokenInfo getNextToken() {
-        StringBuffer buffer;
+        StringBuilder buffer;
         boolean moreWhiteSpace = true;
         while (moreWhiteSpace) {
             while (isWhitespace(ch)) {
@@ -140,6 +129,7 @@ class Scanner {
             }
         }
         line = input.line();
+        int start = chOffset;
         switch (ch) {
             case ',':
                 nextCh();
@@ -147,27 +137,21 @@ class Scanner {
             case '.':
                 nextCh();
                 if (isDigit(ch)) { // double literal ex) .532
-                    buffer = new StringBuffer();
-                    buffer.append(".");
                     while (isDigit(ch)) { // collect all DIGITS
-                        buffer.append(ch);
                         nextCh();
                     }
 
                     // optional exponent
                     if (ch == 'E' || ch == 'e') { // ex) .532e
-                        buffer.append(ch); // append e | E
                         nextCh();
 
                         // optional + | -
                         if (ch == '+' || ch == '-') {
-                            buffer.append(ch); // append + | -
                             nextCh();
                         }
 
                         if (isDigit(ch)) { // expect digits here ex) .532e12
                             while (isDigit(ch)) { // collect all DIGITS
-                                buffer.append(ch);
                                 nextCh();
                             }
                         } else {
@@ -178,11 +162,10 @@ class Scanner {
 
                     // optional suffix
                     if (ch == 'D' || ch == 'd') { // ex) .532D
-                        buffer.append(ch); // append d | D
                         nextCh();
                     }
 
-                    return new TokenInfo(DOUBLE_LITERAL, buffer.toString(), line);
+                    return literal(DOUBLE_LITERAL, start);
                 } else {
                     return new TokenInfo(DOT, line);
                 }
@@ -350,7 +333,7 @@ class Scanner {
                 nextCh();
                 return new TokenInfo(COLON, line);
             case '\'':
-                buffer = new StringBuffer();
+                buffer = new StringBuilder();
                 buffer.append('\'');
                 nextCh();
                 if (ch == '\\') {
@@ -373,15 +356,23 @@ class Scanner {
                     return new TokenInfo(CHAR_LITERAL, buffer.toString(), line);
                 }
             case '"':
-                buffer = new StringBuffer();
-                buffer.append("\"");
+                // The image is a slice of the source buffer, unless the string has escapes (since
+                // escape() doesn't return them as they are); then it is built up from the first
+                // escape on.
+                buffer = null;
                 nextCh();
                 while (ch != '"' && ch != '\n' && ch != EOFCH) {
                     if (ch == '\\') {
+                        if (buffer == null) {
+                            buffer = new StringBuilder();
+                            buffer.append(input.buffer(), start, chOffset - start);
+                        }
                         nextCh();
                         buffer.append(escape());
                     } else {
-                        buffer.append(ch);
+                        if (buffer != null) {
+                            buffer.append(ch);
+                        }
                         nextCh();
                     }
                 }
@@ -392,7 +383,12 @@ class Scanner {
                 } else {
                     // Scan the closing "
                     nextCh();
-                    buffer.append("\"");
+                    if (buffer != null) {
+                        buffer.append("\"");
+                    }
+                }
+                if (buffer == null) {
+                    return literal(STRING_LITERAL, start);
                 }
                 return new TokenInfo(STRING_LITERAL, buffer.toString(), line);
             case EOFCH:
@@ -407,35 +403,28 @@ class Scanner {
             case '7':
             case '8':
             case '9':
-                buffer = new StringBuffer();
                 while (isDigit(ch)) {
-                    buffer.append(ch);
                     nextCh();
                 }
 
                 if (ch == '.') {
-                    buffer.append(ch);
                     nextCh();
 
                     // collect all optional DIGITS
                     while (isDigit(ch)) {
-                        buffer.append(ch);
                         nextCh();
                     }
 
                     // optional exponent
                     if (ch == 'e' || ch == 'E') {
-                        buffer.append(ch);
                         nextCh();
                         // optional + | -
                         if (ch == '+' || ch == '-') {
-                            buffer.append(ch); // append + | -
                             nextCh();
                         }
 
                         if (isDigit(ch)) { // expect digits here
                             while (isDigit(ch)) { // collect all DIGITS
-                                buffer.append(ch);
                                 nextCh();
                             }
                         } else {
@@ -446,59 +435,53 @@ class Scanner {
 
                     // optional suffix
                     if (ch == 'd' || ch == 'D') {
-                        buffer.append(ch);
                         nextCh();
                     }
-                    return new TokenInfo(DOUBLE_LITERAL, buffer.toString(), line);
+                    return literal(DOUBLE_LITERAL, start);
                 } else if (ch == 'e' || ch == 'E') {  // double literal with exponent ex) 5e7
-                    buffer.append(ch);
                     nextCh();
                     // optional + | -
                     if (ch == '+' || ch == '-') {
-                        buffer.append(ch); // append + | -
                         nextCh();
                     }
 
                     if (isDigit(ch)) { // expect digits here
                         while (isDigit(ch)) { // collect all DIGITS
-                            buffer.append(ch);
                             nextCh();
                         }
 
                         // optional suffix
                         if (ch == 'd' || ch == 'D') {
-                            buffer.append(ch);
                             nextCh();
                         }
-                        return new TokenInfo(DOUBLE_LITERAL, buffer.toString(), line);
+                        return literal(DOUBLE_LITERAL, start);
                     } else {
                         reportScannerError(ch + " found by scanner where digit(s) was" +
                                 "(were) expected");
                     }
 
                 } else if (ch == 'd' || ch == 'D') {  // double literal ex) 50d
-                    buffer.append(ch);
                     nextCh();
-                    return new TokenInfo(DOUBLE_LITERAL, buffer.toString(), line);
+                    return literal(DOUBLE_LITERAL, start);
                 } else if (ch == 'l' || ch == 'L') { // long literal ex) 50L
-                    buffer.append(ch);
                     nextCh();
-                    return new TokenInfo(LONG_LITERAL, buffer.toString(), line);
+                    return literal(LONG_LITERAL, start);
                 } else { // int literal
-                    return new TokenInfo(INT_LITERAL, buffer.toString(), line);
+                    return literal(INT_LITERAL, start);
                 }
             default:
                 if (isIdentifierStart(ch)) {
-                    buffer = new StringBuffer();
+                    // Not necessarily start, since a malformed number falls through to here.
+                    int offset = chOffset;
                     while (isIdentifierPart(ch)) {
-                        buffer.append(ch);
                         nextCh();
                     }
-                    String identifier = buffer.toString();
-                    if (reserved.containsKey(identifier)) {
-                        return new TokenInfo(reserved.get(identifier), line);
+                    TokenKind keyword = keyword(input.buffer(), offset, chOffset - offset);
+                    if (keyword != null) {
+                        return new TokenInfo(keyword, line);
                     } else {
-                        return new TokenInfo(IDENTIFIER, identifier, line);
+                        return new TokenInfo(IDENTIFIER, identifiers.intern(input.buffer(),
+                                offset, chOffset - offset), line);
                     }
                 } else {
                     reportScannerError("Unidentified input token: '%c'", ch);
@@ -526,6 +509,41 @@ class Scanner {
         return fileName;
     }
 
+    /**
+     * Returns the kind of the keyword made up of the specified slice of characters, or null if
+     * the characters don't form a keyword.
+     *
+     * @param chars  the characters.
+     * @param offset the offset of the word in chars.
+     * @param length the length of the word.
+     * @return the kind of the keyword, or null.
+     */
+    static TokenKind keyword(char[] chars, int offset, int length) {
+        int first = chars[offset] - 'a';
+        if (first < 0 || first >= 26) {
+            return null;
+        }
+        for (TokenKind keyword : reserved[first]) {
+            String image = keyword.image();
+            if (image.length() == length) {
+                int i = 1;
+                while (i < length && image.charAt(i) == chars[offset + i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return keyword;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns a token of the specified kind whose image is the source text from the specified
+    // offset up to (but not including) the current character.
+    private TokenInfo literal(TokenKind kind, int start) {
+        return new TokenInfo(kind, input.buffer(), start, chOffset - start, line);
+    }
+
     // Scans and returns an escaped character.
     private String escape() {
         switch (ch) {
@@ -563,6 +581,7 @@ class Scanner {
     // Advances ch to the next character from input, and updates the line number.
     private void nextCh() {
         line = input.line();
+        chOffset = input.offset();
         try {
             ch = input.nextChar();
         } catch (Exception e) {
@@ -574,9 +593,7 @@ class Scanner {
     // ascertained from the Scanner by sending it an errorHasOccurred message.
     private void reportScannerError(String message, Object... args) {
         isInError = true;
-        System.err.printf("%s:%d: error: ", fileName, line);
-        System.err.printf(message, args);
-        System.err.println();
+        System.err.printf("%s:%d: error: %s%n", fileName, line, String.format(message, args));
     }
 
     // Returns true if the specified character is a digit (0-9), and false otherwise.
@@ -602,15 +619,26 @@ class Scanner {
 }
 
 /**
- * A buffered character reader, which abstracts out differences between platforms, mapping all new
- * lines to '\n', and also keeps track of line numbers.
+ * A character reader, which abstracts out differences between platforms, mapping all new lines to
+ * '\n', and also keeps track of line numbers. The whole file is read, and decoded into a single
+ * array of characters, up front (the file is not kept open), so that reading a character is just
+ * an array access.
  */
 class CharReader {
     // Representation of the end of file as a character.
     public final static char EOFCH = (char) -1;
 
-    // The underlying reader records line numbers.
-    private LineNumberReader lineNumberReader;
+    // Characters of the file.
+    private char[] chars;
+
+    // Number of characters in the file.
+    private int length;
+
+    // Position of the next character to be read.
+    private int pos;
+
+    // Current line number (counting from 1).
+    private int line;
 
     // Name of the file that is being read.
     private String fileName;
@@ -619,10 +647,20 @@ class CharReader {
      * Constructs a CharReader from a file name.
      *
      * @param fileName the name of the input file.
-     * @throws FileNotFoundException if the file is not found.
+     * @throws FileNotFoundException if the file is not found (or can't be read).
      */
     public CharReader(String fileName) throws FileNotFoundException {
-        lineNumberReader = new LineNumberReader(new FileReader(fileName));
+        try {
+            byte[] bytes = Files.readAllBytes(Paths.get(fileName));
+            CharBuffer buffer = Charset.defaultCharset().decode(ByteBuffer.wrap(bytes));
+            chars = buffer.array();
+            length = buffer.limit();
+        } catch (IOException e) {
+            throw new FileNotFoundException(fileName);
+        } catch (InvalidPathException e) {
+            throw new FileNotFoundException(fileName);
+        }
+        line = 1;
         this.fileName = fileName;
     }
 
@@ -633,7 +671,27 @@ class CharReader {
      * @throws IOException if an I/O error occurs.
      */
     public char nextChar() throws IOException {
-        return (char) lineNumberReader.read();
+        if (pos >= length) {
+            // Like java.io.LineNumberReader, count a last line that isn't terminated by a new
+            // line when the end of the file is reached.
+            if (pos == length && length > 0 && chars[length - 1] != '\n' &&
+                    chars[length - 1] != '\r') {
+                line++;
+            }
+            pos = length + 1;
+            return EOFCH;
+        }
+        char c = chars[pos++];
+        if (c == '\r') {
+            if (pos < length && chars[pos] == '\n') {
+                pos++;
+            }
+            c = '\n';
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
     }
 
     /**
@@ -642,7 +700,26 @@ class CharReader {
      * @return the current line number in the source file.
      */
     public int line() {
-        return lineNumberReader.getLineNumber() + 1; // LineNumberReader counts lines from 0
+        return line;
+    }
+
+    /**
+     * Returns the offset, in the buffer, of the next character to be read (the length of the
+     * buffer at the end of the file).
+     *
+     * @return the offset of the next character to be read.
+     */
+    public int offset() {
+        return pos < length ? pos : length;
+    }
+
+    /**
+     * Returns the buffer holding the characters of the file.
+     *
+     * @return the buffer holding the characters of the file.
+     */
+    public char[] buffer() {
+        return chars;
     }
 
     /**
@@ -660,6 +737,94 @@ class CharReader {
      * @throws IOException if an I/O error occurs.
      */
     public void close() throws IOException {
-        lineNumberReader.close();
+        chars = null;
+        length = 0;
+    }
+}
+
+/**
+ * A table of identifiers, which hands out one canonical String for each identifier name. Names
+ * are looked up by a slice of the source buffer, so a name that has been seen before is found
+ * without creating a String for it. The table is an open addressing hash table (with linear
+ * probing), using the same hash function as String.
+ */
+class IdentifierTable {
+    // The names in the table (null for empty slots).
+    private String[] names;
+
+    // Number of names in the table.
+    private int size;
+
+    /**
+     * Constructs an empty IdentifierTable.
+     */
+    public IdentifierTable() {
+        names = new String[256];
+        size = 0;
+    }
+
+    /**
+     * Returns the canonical String for the name formed by the specified slice of characters,
+     * adding it to the table if it is not already there.
+     *
+     * @param chars  the characters.
+     * @param offset the offset of the name in chars.
+     * @param length the length of the name.
+     * @return the canonical String for the name.
+     */
+    public String intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = names.length - 1;
+        int i = spread(hash) & mask;
+        for (String name = names[i]; name != null; name = names[i]) {
+            if (name.hashCode() == hash && matches(name, chars, offset, length)) {
+                return name;
+            }
+            i = (i + 1) & mask;
+        }
+        String name = new String(chars, offset, length);
+        names[i] = name;
+        if (++size * 2 > names.length) {
+            grow();
+        }
+        return name;
+    }
+
+    // Returns true if the specified name is made up of the specified slice of characters, and
+    // false otherwise.
+    private boolean matches(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Doubles the size of the table.
+    private void grow() {
+        String[] oldNames = names;
+        names = new String[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (String name : oldNames) {
+            if (name != null) {
+                int i = spread(name.hashCode()) & mask;
+                while (names[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                names[i] = name;
+            }
+        }
+    }
+
+    // Mixes the high bits of a hash code into the low ones, which are used to index the table.
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
     }
 }
@@ -82,7 +82,9 @@ enum TokenKind {
 /**
  * A representation of tokens returned by the Scanner method getNextToken(). A token has a kind
  * identifying what kind of token it is, an image for providing any semantic text, and the line in
- * which it occurred in the source file.
+ * which it occurred in the source file. A literal token may instead be given as a slice (offset
+ * and length) of the scanner's source buffer, in which case its image is only created if (and
+ * when) it is asked for.
  */
 public class TokenInfo {
     // Token kind.
@@ -96,6 +98,17 @@ public class TokenInfo {
     // Line in which the token occurs in the source file.
     private int line;
 
+    // Source buffer that the token's image is a slice of, until the image is created; null
+    // otherwise.
+    private char[] source;
+
+    // Offset of the token's image in the source buffer, or -1 if the token was not given as a
+    // slice of the buffer.
+    private int offset;
+
+    // Length of the token's image in the source buffer.
+    private int length;
+
     /**
      * Constructs a TokenInfo object given its kind, the semantic text forming the token, and its
      * line number.
@@ -108,6 +121,25 @@ public class TokenInfo {
         this.kind = kind;
         this.image = image;
         this.line = line;
+        this.offset = -1;
+    }
+
+    /**
+     * Constructs a TokenInfo object given its kind, the slice of the source buffer forming the
+     * token, and its line number.
+     *
+     * @param kind   the token's kind.
+     * @param source the source buffer.
+     * @param offset the offset of the token in the source buffer.
+     * @param length the length of the token.
+     * @param line   the line in which the token occurs in the source file.
+     */
+    public TokenInfo(TokenKind kind, char[] source, int offset, int length, int line) {
+        this.kind = kind;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.line = line;
     }
 
     /**
@@ -154,6 +186,10 @@ public class TokenInfo {
      * @return the token's image.
      */
     public String image() {
+        if (image == null) {
+            image = new String(source, offset, length);
+            source = null;
+        }
         return image;
     }
 }
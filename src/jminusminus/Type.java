@@ -2,17 +2,22 @@
 
 package jminusminus;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Modifier;
-
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static jminusminus.CLConstants.*;
 
 /**
- * A class for representing j-- types. All types are represented underneath (in the classRep
- * field) by Java objects of type Class. These objects represent types in Java, so this should
- * ease our interfacing with existing Java classes.
+ * A class for representing j-- types. All types are represented underneath by their JVM
+ * descriptors, and class types also by the symbols of their classes (see CLClassSymbol): those of
+ * a library class are read from its class file, on the library class path, when they are first
+ * needed, and those of a class declared in the programs being compiled are read from its partial
+ * class. No class from the class path is loaded into the compiler's JVM, and no class is
+ * initialized in it: only the JDK classes are loaded, to take their symbols from them.
  * <p>
  * Class types (reference types that are represented by the identifiers introduced in class
  * declarations) are represented using TypeName. So for now, every TypeName represents a class.
@@ -22,81 +27,103 @@ import java.util.Hashtable;
  * to the same Type object. The resolve() method does this.
  */
 class Type {
-    // The Type's internal (Java) representation.
-    private Class<?> classRep;
+    // The Type's JVM descriptor; null for the ANY and CONSTRUCTOR markers.
+    private String descriptor;
+
+    // The symbols of the class that this type denotes; null for primitive and array types, and for
+    // a class that is not found. They are read when they are first needed.
+    private volatile CLClassSymbol symbol;
+
+    // Whether the class file of this type has been looked for.
+    private volatile boolean symbolLookedUp;
+
+    // Whether this type is declared in the programs being compiled (rather than a library class).
+    private volatile boolean declared;
+
+    // Index of the members of this type (and its superclasses), built when it is first needed and
+    // dropped when the symbols of this type or of another type are replaced.
+    private volatile MemberIndex members;
+
+    // Maps type descriptors to their Type representations. Shared by the compilation units that
+    // are compiled together (possibly in parallel), so that they can refer to each other's types.
+    private static ConcurrentHashMap<String, Type> types = new ConcurrentHashMap<String, Type>();
+
+    // Class path for the library classes, ie, those not declared in the programs being compiled.
+    private static CLPath libraryClassPath = new CLPath();
 
-    // Maps type names to their Type representations.
-    private static Hashtable<String, Type> types = new Hashtable<String, Type>();
+    // Fully qualified names for which no class could be found in the current compilation, so
+    // that resolving them again fails without searching for the class again.
+    private static Set<String> unresolvableNames = ConcurrentHashMap.newKeySet();
 
     /**
      * The int type.
      */
-    public final static Type INT = typeFor(int.class);
+    public final static Type INT = typeForDescriptor("I");
 
     /**
      * The double type.
      */
-    public final static Type DOUBLE = typeFor(double.class);
+    public final static Type DOUBLE = typeForDescriptor("D");
 
     /**
      * The long type.
      */
-    public final static Type LONG = typeFor(long.class);
+    public final static Type LONG = typeForDescriptor("J");
 
     /**
      * The char type.
      */
-    public final static Type CHAR = typeFor(char.class);
+    public final static Type CHAR = typeForDescriptor("C");
 
     /**
      * The boolean type.
      */
-    public final static Type BOOLEAN = typeFor(boolean.class);
+    public final static Type BOOLEAN = typeForDescriptor("Z");
 
     /**
      * The java.lang.Integer type.
      */
-    public final static Type BOXED_INT = typeFor(java.lang.Integer.class);
+    public final static Type BOXED_INT = typeForDescriptor("Ljava/lang/Integer;");
 
     /**
      * The java.lang.Double type.
      */
-    public final static Type BOXED_DOUBLE = typeFor(java.lang.Double.class);
+    public final static Type BOXED_DOUBLE = typeForDescriptor("Ljava/lang/Double;");
 
     /**
      * The java.lang.Long type.
      */
-    public final static Type BOXED_LONG= typeFor(java.lang.Long.class);
+    public final static Type BOXED_LONG= typeForDescriptor("Ljava/lang/Long;");
 
     /**
      * The java.lang.Character type.
      */
-    public final static Type BOXED_CHAR = typeFor(java.lang.Character.class);
+    public final static Type BOXED_CHAR = typeForDescriptor("Ljava/lang/Character;");
 
     /**
      * The java.lang.Boolean type.
      */
-    public final static Type BOXED_BOOLEAN = typeFor(java.lang.Boolean.class);
+    public final static Type BOXED_BOOLEAN = typeForDescriptor("Ljava/lang/Boolean;");
 
     /**
      * The java.lang.String type.
      */
-    public static Type STRING = typeFor(java.lang.String.class);
+    public static Type STRING = typeForDescriptor("Ljava/lang/String;");
 
     /**
      * The java.lang.Object type.
      */
-    public static Type OBJECT = typeFor(java.lang.Object.class);
+    public static Type OBJECT = typeForDescriptor("Ljava/lang/Object;");
 
     /**
      * The void type.
      */
-    public final static Type VOID = typeFor(void.class);
+    public final static Type VOID = typeForDescriptor("V");
 
     /**
      * The null type.
      */
-    public final static Type NULLTYPE = new Type(java.lang.Object.class);
+    public final static Type NULLTYPE = new Type("Ljava/lang/Object;");
 
     /**
      * The "any" type (denotes wild expressions).
@@ -116,35 +143,149 @@ class Type {
     }
 
     /**
-     * Constructs and returns a representation for a type from its (Java) class representation,
-     * making sure there is a unique representation for each unique type.
+     * Constructs and returns a representation for a type from its JVM descriptor, making sure
+     * there is a unique representation for each unique type. The symbols of a class type are not
+     * read until they are needed.
      *
-     * @param classRep the Java class representation.
-     * @return a type representation of classRep.
+     * @param descriptor the JVM descriptor of the type.
+     * @return a type representation of descriptor.
+     */
+    public static Type typeForDescriptor(String descriptor) {
+        Type type = types.get(descriptor);
+        if (type == null) {
+            types.putIfAbsent(descriptor, new Type(descriptor));
+            type = types.get(descriptor);
+        }
+        return type;
+    }
+
+    /**
+     * Constructs and returns a representation for a type declared in the programs being compiled,
+     * from the symbols of its (partial) class, making sure there is a unique representation for
+     * each unique type.
+     *
+     * @param symbol the symbols of the class.
+     * @return a type representation of the class.
+     */
+    public static Type typeFor(CLClassSymbol symbol) {
+        Type type = typeForDescriptor("L" + symbol.name + ";");
+        type.setSymbol(symbol);
+        return type;
+    }
+
+    /**
+     * Forgets the representations of the types declared in the programs compiled so far, and
+     * which classes could not be found, so that they don't leak into the next compilation.
      */
-    public static Type typeFor(Class<?> classRep) {
-        if (types.get(descriptorFor(classRep)) == null) {
-            types.put(descriptorFor(classRep), new Type(classRep));
+    public static void forgetDeclaredTypes() {
+        unresolvableNames.clear();
+        Iterator<Type> i = types.values().iterator();
+        while (i.hasNext()) {
+            Type type = i.next();
+            if (type.declared) {
+                i.remove();
+            } else if (type.symbol == null) {
+                type.symbolLookedUp = false;
+            }
         }
-        return types.get(descriptorFor(classRep));
     }
 
     /**
-     * Returns the class representation for this type.
+     * Returns the class path for the library classes, ie, those not declared in the programs
+     * being compiled. This is the compiler's own class path, unless another was set.
      *
-     * @return the class representation for this type.
+     * @return the class path for the library classes.
      */
-    public Class<?> classRep() {
-        return classRep;
+    public static CLPath libraryClassPath() {
+        return libraryClassPath;
     }
 
     /**
-     * Sets the class representation of this type to the specified partial class.
+     * Sets the class path for the library classes (for example, the class path of a compile
+     * request made to the compile server). The symbols of the library classes that were read
+     * from the current one are forgotten, so that they are read again from the new one, except
+     * for those of the classes in the Java runtime image, which are the same whatever the class
+     * path.
      *
-     * @param classRep the partial class.
+     * @param classPath the class path for the library classes.
      */
-    public void setClassRep(Class<?> classRep) {
-        this.classRep = classRep;
+    public static void setLibraryClassPath(CLPath classPath) {
+        libraryClassPath = classPath;
+        for (Type type : types.values()) {
+            type.forgetLibrarySymbol();
+        }
+        NULLTYPE.forgetLibrarySymbol();
+    }
+
+    /**
+     * Returns the representation for the type with the specified fully qualified name: the one
+     * for a type declared in the programs being compiled if there is one, or else one for the
+     * library class of that name. Returns null if there is no such class; this is remembered for
+     * the rest of the compilation.
+     * <p>
+     * The class is not initialized: the symbols of a library class are read from its class file
+     * (or taken from the loaded class, for a JDK class).
+     *
+     * @param name fully qualified name of the type.
+     * @return the representation for the type, or null.
+     */
+    public static Type loadType(String name) {
+        String jvmName = name.replace('.', '/');
+        Type type = types.get("L" + jvmName + ";");
+        if (type == null) {
+            if (unresolvableNames.contains(name)) {
+                return null;
+            }
+
+            // Read the symbols before there is a Type for the name, so that a name that doesn't
+            // denote a class doesn't get one.
+            CLClassSymbol symbol = CLClassSymbol.read(libraryClassPath, jvmName);
+            if (symbol == null) {
+                unresolvableNames.add(name);
+                return null;
+            }
+            type = typeForDescriptor("L" + jvmName + ";");
+            type.setLibrarySymbol(symbol);
+        }
+        return type.symbol() == null ? null : type;
+    }
+
+    /**
+     * Returns the symbols of the class that this type denotes, reading them (see CLClassSymbol)
+     * if they haven't been read yet, or null if this is not a class type, or the class is not
+     * found.
+     *
+     * @return the symbols of the class that this type denotes, or null.
+     */
+    public CLClassSymbol symbol() {
+        CLClassSymbol symbol = this.symbol;
+        if (symbol == null && !symbolLookedUp) {
+            String descriptor = toDescriptor();
+            if (descriptor.startsWith("L")) {
+                symbol = CLClassSymbol.read(libraryClassPath,
+                        descriptor.substring(1, descriptor.length() - 1));
+                this.symbol = symbol;
+            }
+            symbolLookedUp = true;
+        }
+        return symbol;
+    }
+
+    /**
+     * Sets the symbols of this type to those of the specified partial class, declared in the
+     * programs being compiled.
+     *
+     * @param symbol the symbols of the partial class.
+     */
+    public void setSymbol(CLClassSymbol symbol) {
+        this.symbol = symbol;
+        symbolLookedUp = true;
+        declared = true;
+
+        // The index of the members of a subclass of this type holds this type's members too.
+        for (Type type : types.values()) {
+            type.members = null;
+        }
     }
 
     /**
@@ -163,7 +304,7 @@ class Type {
      * @return true if this is an array type, and false otherwise.
      */
     public boolean isArray() {
-        return classRep.isArray();
+        return toDescriptor().startsWith("[");
     }
 
     /**
@@ -172,7 +313,7 @@ class Type {
      * @return an array type's component type.
      */
     public Type componentType() {
-        return typeFor(classRep.getComponentType());
+        return typeForDescriptor(toDescriptor().substring(1));
     }
 
     /**
@@ -181,8 +322,12 @@ class Type {
      * @return this type's super type, or null.
      */
     public Type superClass() {
-        return classRep == null || classRep.getSuperclass() == null ? null :
-                typeFor(classRep.getSuperclass());
+        if (isArray()) {
+            return OBJECT;
+        }
+        CLClassSymbol symbol = symbol();
+        return symbol == null || symbol.superName == null || isInterface() ? null :
+                typeForDescriptor("L" + symbol.superName + ";");
     }
 
     /**
@@ -191,7 +336,7 @@ class Type {
      * @return true if this is a primitive type, and false otherwise.
      */
     public boolean isPrimitive() {
-        return classRep.isPrimitive();
+        return descriptor != null && descriptor.length() == 1;
     }
 
     /**
@@ -200,7 +345,7 @@ class Type {
      * @return true if this is an interface type, and false otherwise.
      */
     public boolean isInterface() {
-        return classRep.isInterface();
+        return (accessFlags() & ACC_INTERFACE) != 0;
     }
 
     /**
@@ -218,7 +363,7 @@ class Type {
      * @return true of this type is declared final, and false otherwise.
      */
     public boolean isFinal() {
-        return Modifier.isFinal(classRep.getModifiers());
+        return (accessFlags() & ACC_FINAL) != 0;
     }
 
     /**
@@ -227,7 +372,7 @@ class Type {
      * @return true of this type is declared abstract, and false otherwise.
      */
     public boolean isAbstract() {
-        return Modifier.isAbstract(classRep.getModifiers());
+        return (accessFlags() & ACC_ABSTRACT) != 0;
     }
 
     /**
@@ -237,7 +382,24 @@ class Type {
      * @return true if this is a supertype of other, and false otherwise.
      */
     public boolean isJavaAssignableFrom(Type that) {
-        return this.classRep.isAssignableFrom(that.classRep);
+        if (this.equals(that)) {
+            return true;
+        } else if (this.isPrimitive() || that.isPrimitive()) {
+            return false;
+        } else if (that.isArray()) {
+            if (this.isArray()) {
+                Type component = this.componentType();
+                Type thatComponent = that.componentType();
+                return component.isReference() && thatComponent.isReference() &&
+                        component.isJavaAssignableFrom(thatComponent);
+            }
+            String name = this.jvmName();
+            return name.equals("java/lang/Object") || name.equals("java/lang/Cloneable") ||
+                    name.equals("java/io/Serializable");
+        } else if (this.isArray()) {
+            return false;
+        }
+        return this.equals(OBJECT) || that.isSubtypeOf(this);
     }
 
     /**
@@ -274,9 +436,9 @@ class Type {
      */
     private ArrayList<Method> declaredAbstractMethods() {
         ArrayList<Method> declaredAbstractMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
-                declaredAbstractMethods.add(new Method(method));
+        for (Method method : declaredMethods()) {
+            if (method.isAbstract()) {
+                declaredAbstractMethods.add(method);
             }
         }
         return declaredAbstractMethods;
@@ -289,9 +451,9 @@ class Type {
      */
     private ArrayList<Method> declaredConcreteMethods() {
         ArrayList<Method> declaredConcreteMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (!Modifier.isAbstract(method.getModifiers())) {
-                declaredConcreteMethods.add(new Method(method));
+        for (Method method : declaredMethods()) {
+            if (!method.isAbstract()) {
+                declaredConcreteMethods.add(method);
             }
         }
         return declaredConcreteMethods;
@@ -313,7 +475,7 @@ class Type {
                 return;
             }
         }
-        JAST.compilationUnit.reportSemanticError(line,
+        JAST.compilationUnit().reportSemanticError(line,
                 "Type %s doesn't match any of the expected types %s", this,
                 Arrays.toString(expectedTypes));
     }
@@ -327,7 +489,7 @@ class Type {
      */
     public void mustMatchExpected(int line, Type expectedType) {
         if (!matchesExpected(expectedType)) {
-            JAST.compilationUnit.reportSemanticError(line, "Type %s doesn't match type %s", this,
+            JAST.compilationUnit().reportSemanticError(line, "Type %s doesn't match type %s", this,
                     expectedType);
         }
     }
@@ -346,16 +508,17 @@ class Type {
     /**
      * Returns true if the argument types match, and false otherwise.
      *
-     * @param argTypes1 arguments (classReps) of one method.
-     * @param argTypes2 arguments (classReps) of another method.
+     * @param argTypes1 arguments of one method.
+     * @param argTypes2 arguments of another method.
      * @return true if the argument types match, and false otherwise.
      */
-    public static boolean argTypesMatch(Class<?>[] argTypes1, Class<?>[] argTypes2) {
+    public static boolean argTypesMatch(Type[] argTypes1, Type[] argTypes2) {
         if (argTypes1.length != argTypes2.length) {
             return false;
         }
         for (int i = 0; i < argTypes1.length; i++) {
-            if (!Type.descriptorFor(argTypes1[i]).equals(Type.descriptorFor(argTypes2[i]))) {
+            if (argTypes1[i] != argTypes2[i] &&
+                    !argTypes1[i].toDescriptor().equals(argTypes2[i].toDescriptor())) {
                 return false;
             }
         }
@@ -368,7 +531,11 @@ class Type {
      * @return the simple (unqualified) name of this type.
      */
     public String simpleName() {
-        return classRep.getSimpleName();
+        if (isArray()) {
+            return componentType().simpleName() + "[]";
+        }
+        String name = toString();
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
     }
 
     /**
@@ -377,7 +544,7 @@ class Type {
      * @return a string representation of this type.
      */
     public String toString() {
-        return toJava(this.classRep);
+        return toJava(toDescriptor());
     }
 
     /**
@@ -386,7 +553,7 @@ class Type {
      * @return the JVM descriptor of this type.
      */
     public String toDescriptor() {
-        return descriptorFor(classRep);
+        return descriptor == null ? "V" : descriptor;
     }
 
     /**
@@ -395,8 +562,9 @@ class Type {
      * @return the JVM representation of this type's name.
      */
     public String jvmName() {
-        return this.isArray() || this.isPrimitive() ?
-                this.toDescriptor() : classRep.getName().replace('.', '/');
+        String descriptor = toDescriptor();
+        return descriptor.startsWith("L") ?
+                descriptor.substring(1, descriptor.length() - 1) : descriptor;
     }
 
     /**
@@ -427,24 +595,17 @@ class Type {
      * @return a method in this type having the given name and argument types, or null.
      */
     public Method methodFor(String name, Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-        Class cls = classRep;
-
-        // Search this class and all superclasses.
-        while (cls != null) {
-            java.lang.reflect.Method[] methods = cls.getDeclaredMethods();
-            for (java.lang.reflect.Method method : methods) {
-                if (method.getName().equals(name) && Type.argTypesMatch(classes,
-                        method.getParameterTypes())) {
-                    return new Method(method);
-                }
-            }
-            cls = cls.getSuperclass();
+        ArrayList<Method> overloads = members().methods(name);
+        if (overloads == null) {
+            return null;
         }
 
+        // The overloads are those of this class followed by those of its superclasses.
+        for (Method method : overloads) {
+            if (Type.argTypesMatch(argTypes, method.parameterTypes())) {
+                return method;
+            }
+        }
         return null;
     }
 
@@ -455,19 +616,12 @@ class Type {
      * @return a constructor in this type having the given argument types, or null.
      */
     public Constructor constructorFor(Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-
         // Search only this class (we don't inherit constructors).
-        java.lang.reflect.Constructor[] constructors = classRep.getDeclaredConstructors();
-        for (java.lang.reflect.Constructor constructor : constructors) {
-            if (argTypesMatch(classes, constructor.getParameterTypes())) {
-                return new Constructor(constructor);
+        for (Constructor constructor : members().constructors()) {
+            if (argTypesMatch(argTypes, constructor.parameterTypes())) {
+                return constructor;
             }
         }
-
         return null;
     }
 
@@ -478,17 +632,7 @@ class Type {
      * @return a field in this type having the given name, or null.
      */
     public Field fieldFor(String name) {
-        Class<?> cls = classRep;
-        while (cls != null) {
-            java.lang.reflect.Field[] fields = cls.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getName().equals(name)) {
-                    return new Field(field);
-                }
-            }
-            cls = cls.getSuperclass();
-        }
-        return null;
+        return members().field(name);
     }
 
     /**
@@ -518,36 +662,30 @@ class Type {
      * @return true if the member is accessible from this type, and false otherwise.
      */
     public boolean checkAccess(int line, Member member) {
-        if (!checkAccess(line, classRep, member.declaringType().classRep)) {
+        if (!checkAccess(line, this, member.declaringType())) {
             return false;
         }
         // The member must be either public, protected, or private.
         if (member.isPublic()) {
             return true;
         }
-        java.lang.Package p1 = classRep.getPackage();
-        java.lang.Package p2 = member.declaringType().classRep.getPackage();
-        if ((p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2.getName()))) {
+        if (packageOf(this).equals(packageOf(member.declaringType()))) {
             return true;
         }
         if (member.isProtected()) {
-            if (classRep.getPackage().getName().equals(
-                    member.declaringType().classRep.getPackage().getName())
-                    || typeFor(member.getClass().getDeclaringClass())
-                    .isJavaAssignableFrom(this)) {
+            if (member.declaringType().isJavaAssignableFrom(this)) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The protected member, " + member.name() + ", is not accessible.");
                 return false;
             }
         }
         if (member.isPrivate()) {
-            if (descriptorFor(classRep).equals(
-                    descriptorFor(member.member().getDeclaringClass()))) {
+            if (toDescriptor().equals(member.declaringType().toDescriptor())) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The private member, " + member.name() + ", is not accessible.");
                 return false;
             }
@@ -557,7 +695,7 @@ class Type {
         if (packageName().equals(member.declaringType().packageName())) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The member, " + member.name() +
+            JAST.compilationUnit().reportSemanticError(line, "The member, " + member.name() +
                     ", is not accessible because it's in a different package.");
             return false;
         }
@@ -577,7 +715,7 @@ class Type {
         if (targetType.isArray()) {
             return this.checkAccess(line, targetType.componentType());
         }
-        return checkAccess(line, classRep, targetType.classRep);
+        return checkAccess(line, this, targetType);
     }
 
     /**
@@ -590,15 +728,13 @@ class Type {
      * @return true if the referenced type is accessible from the referencing type, and false
      * otherwise.
      */
-    public static boolean checkAccess(int line, Class referencingType, Class type) {
-        java.lang.Package p1 = referencingType.getPackage();
-        java.lang.Package p2 = type.getPackage();
-        if (Modifier.isPublic(type.getModifiers()) ||
-                (p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2.getName()))) {
+    public static boolean checkAccess(int line, Type referencingType, Type type) {
+        if ((type.accessFlags() & ACC_PUBLIC) != 0 ||
+                packageOf(referencingType).equals(packageOf(type))) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The type, " + type.getCanonicalName() +
-                    ", is not accessible from " + referencingType.getCanonicalName());
+            JAST.compilationUnit().reportSemanticError(line, "The type, " + type.toString() +
+                    ", is not accessible from " + referencingType.toString());
             return false;
         }
     }
@@ -632,27 +768,210 @@ class Type {
         return signature;
     }
 
-    // Constructs a representation for a type from its Java (Class) representation. Use typeFor()
-    // that maps types having like classReps to like Types.
-    private Type(Class<?> classRep) {
-        this.classRep = classRep;
+    // Returns the index of the members of this type, building it if necessary.
+    private MemberIndex members() {
+        MemberIndex index = members;
+        if (index == null) {
+            index = new MemberIndex(this);
+            members = index;
+        }
+        return index;
     }
 
-    // Returns the JVM descriptor of a type's class representation.
-    private static String descriptorFor(Class<?> classRep) {
-        return classRep == null ? "V" : classRep == void.class ? "V"
-                : classRep.isArray() ? "[" + descriptorFor(classRep.getComponentType())
-                : classRep.isPrimitive() ? (classRep == int.class ? "I"
-                : classRep == double.class ? "D"
-                : classRep == long.class ? "J"
-                : classRep == char.class ? "C"
-                : classRep == boolean.class ? "Z" : "?")
-                : "L" + classRep.getName().replace('.', '/') + ";";
+    // Returns the methods (other than the constructors and the class initializer) declared in
+    // this type.
+    private ArrayList<Method> declaredMethods() {
+        ArrayList<Method> declaredMethods = new ArrayList<Method>();
+        CLClassSymbol symbol = symbol();
+        if (symbol != null) {
+            for (CLMemberSymbol method : symbol.methods()) {
+                if (!method.name.startsWith("<")) {
+                    declaredMethods.add(new Method(this, method));
+                }
+            }
+        }
+        return declaredMethods;
+    }
+
+    // Returns the access flags of this type. Primitive and array types are public, final, and
+    // abstract (as they are in java.lang.Class), and nothing is known about a class that is not
+    // found, other than that it must be public for it to be referred to.
+    private int accessFlags() {
+        if (isPrimitive() || isArray()) {
+            return ACC_PUBLIC | ACC_FINAL | ACC_ABSTRACT;
+        }
+        CLClassSymbol symbol = symbol();
+        return symbol == null ? ACC_PUBLIC : symbol.accessFlags;
+    }
+
+    // Returns true if this (class or interface) type is the specified type, or extends or
+    // implements it directly or indirectly, and false otherwise.
+    private boolean isSubtypeOf(Type type) {
+        if (this.equals(type)) {
+            return true;
+        }
+        CLClassSymbol symbol = symbol();
+        if (symbol == null) {
+            return false;
+        }
+        if (symbol.superName != null &&
+                typeForDescriptor("L" + symbol.superName + ";").isSubtypeOf(type)) {
+            return true;
+        }
+        for (String interfaceName : symbol.interfaceNames) {
+            if (typeForDescriptor("L" + interfaceName + ";").isSubtypeOf(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Forgets the symbols of this type if they were read from the library class path (rather than
+    // the runtime image), and the index of its members.
+    private void forgetLibrarySymbol() {
+        if (!declared && !CLPath.isInRuntimeImage(jvmName())) {
+            symbol = null;
+            symbolLookedUp = false;
+        }
+        members = null;
+    }
+
+    // Sets the symbols of this (library class) type to the specified ones, read from the library
+    // class path, unless they have been read already.
+    private synchronized void setLibrarySymbol(CLClassSymbol symbol) {
+        if (!symbolLookedUp) {
+            this.symbol = symbol;
+            symbolLookedUp = true;
+        }
+    }
+
+    // Constructs a representation for a type from its JVM descriptor. Use typeForDescriptor()
+    // that maps like descriptors to like Types.
+    private Type(String descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    // Returns the package of the specified type, as the internal form of its name.
+    private static String packageOf(Type type) {
+        String name = type.jvmName();
+        return name.lastIndexOf('/') == -1 ? "" : name.substring(0, name.lastIndexOf('/'));
+    }
+
+    // Returns the Java (and so j--) denotation for the type having the specified descriptor.
+    private static String toJava(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'I':
+                return "int";
+            case 'D':
+                return "double";
+            case 'J':
+                return "long";
+            case 'C':
+                return "char";
+            case 'Z':
+                return "boolean";
+            case 'V':
+                return "void";
+            case 'B':
+                return "byte";
+            case 'S':
+                return "short";
+            case 'F':
+                return "float";
+            case '[':
+                return toJava(descriptor.substring(1)) + "[]";
+            default:
+                return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+        }
+    }
+}
+
+/**
+ * An index of the members of a class and its superclasses, for looking up fields and methods by
+ * name, and constructors, without searching the symbols of the classes each time. An index
+ * reflects particular symbols, so a Type drops its index when the symbols of a class are replaced
+ * (for example, by those of a partial class during pre-analysis).
+ */
+class MemberIndex {
+    // Maps method names to the methods (overloads) of the class having that name, those declared
+    // in the class first, followed by those of its superclasses (nearest first).
+    private HashMap<String, ArrayList<Method>> methods;
+
+    // Maps field names to the fields of the class having that name; a field declared in the class
+    // hides those of its superclasses.
+    private HashMap<String, Field> fields;
+
+    // The constructors declared in the class.
+    private ArrayList<Constructor> constructors;
+
+    /**
+     * Constructs an index of the members of the specified type (which may have none).
+     *
+     * @param type the type.
+     */
+    public MemberIndex(Type type) {
+        methods = new HashMap<String, ArrayList<Method>>();
+        fields = new HashMap<String, Field>();
+        constructors = new ArrayList<Constructor>();
+        if (type.symbol() != null) {
+            for (CLMemberSymbol method : type.symbol().methods()) {
+                if (method.name.equals("<init>")) {
+                    constructors.add(new Constructor(type, method));
+                }
+            }
+        }
+        for (Type t = type; t != null; t = t.superClass()) {
+            CLClassSymbol symbol = t.symbol();
+            if (symbol == null) {
+                continue;
+            }
+            for (CLMemberSymbol method : symbol.methods()) {
+                if (method.name.startsWith("<") || (method.accessFlags & ACC_SYNTHETIC) != 0) {
+                    // A constructor or the class initializer, or a bridge method.
+                    continue;
+                }
+                ArrayList<Method> overloads = methods.get(method.name);
+                if (overloads == null) {
+                    overloads = new ArrayList<Method>();
+                    methods.put(method.name, overloads);
+                }
+                overloads.add(new Method(t, method));
+            }
+            for (CLMemberSymbol field : symbol.fields()) {
+                if (!fields.containsKey(field.name)) {
+                    fields.put(field.name, new Field(t, field));
+                }
+            }
+        }
     }
 
-    // Returns the Java (and so j--) denotation for the specified type.
-    private static String toJava(Class classRep) {
-        return classRep.isArray() ? toJava(classRep.getComponentType()) + "[]" : classRep.getName();
+    /**
+     * Returns the methods having the specified name, or null if there are none.
+     *
+     * @param name the method name.
+     * @return the methods having the specified name, or null.
+     */
+    public ArrayList<Method> methods(String name) {
+        return methods.get(name);
+    }
+
+    /**
+     * Returns the field having the specified name, or null if there is none.
+     *
+     * @param name the field name.
+     * @return the field having the specified name, or null.
+     */
+    public Field field(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Returns the constructors declared in the class.
+     *
+     * @return the constructors declared in the class.
+     */
+    public ArrayList<Constructor> constructors() {
+        return constructors;
     }
 }
 
@@ -720,12 +1039,13 @@ class TypeName extends Type {
     public Type resolve(Context context) {
         Type resolvedType = context.lookupType(name);
         if (resolvedType == null) {
-            // Try loading a type with the given fullname.
-            try {
-                resolvedType = typeFor(Class.forName(name));
+            // Try a type with the given fullname, declared in another compilation unit that is
+            // being compiled along with this one, or else loading one.
+            resolvedType = loadType(name);
+            if (resolvedType != null) {
                 context.addType(line, resolvedType);
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(line, "Unable to locate %s", name);
+            } else {
+                JAST.compilationUnit().reportSemanticError(line, "Unable to locate %s", name);
                 resolvedType = Type.ANY;
             }
         }
@@ -735,8 +1055,8 @@ class TypeName extends Type {
 
 /**
  * A representation of an array type. It is built by the Parser to stand in for a Type until the
- * analyze() phase, at which point it is resolved to an actual Type object (having a Class that
- * identifies it).
+ * analyze() phase, at which point it is resolved to an actual Type object (having a descriptor
+ * that identifies it).
  */
 class ArrayTypeName extends Type {
     // The array's base or component type.
@@ -777,7 +1097,6 @@ class ArrayTypeName extends Type {
      */
     public Type resolve(Context context) {
         componentType = componentType.resolve(context);
-        Class classRep = Array.newInstance(componentType().classRep(), 0).getClass();
-        return Type.typeFor(classRep);
+        return Type.typeForDescriptor("[" + componentType.toDescriptor());
     }
 }
@@ -0,0 +1,65 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.util.ArrayList;
+
+import jminusminus.CLEmitter;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class measures how long CLEmitter takes to build (in memory) classes whose constant pools
+ * hold a large number of items. Each generated class has methods of the form:
+ *
+ * <pre>
+ * public static void m0() {
+ *     "s0"; 100000; Object.f0; Object.m0();
+ *     "s1"; 100001; Object.f1; Object.m1();
+ *     ...
+ * }
+ * </pre>
+ *
+ * so that every statement adds a string, an integer, a field reference and a method reference
+ * (plus their class, name-and-type, and utf8 items) to the constant pool. Run it as follows:
+ *
+ * <pre>
+ *   $ bash ./bin/clemitter tests/bench/ConstantPoolBenchmark.java [constants] [rounds]
+ * </pre>
+ */
+public class ConstantPoolBenchmark {
+    public static void main(String[] args) {
+        int constants = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            emit(constants);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("round %d: %d statements in %.1f ms\n", round, constants,
+                    elapsed / 1e6);
+        }
+    }
+
+    // Emits (in memory) a class with the specified number of statements, spread across as many
+    // methods as needed to stay well within the code size limit of a method.
+    private static void emit(int constants) {
+        CLEmitter e = new CLEmitter(false);
+        ArrayList<String> modifiers = new ArrayList<String>();
+        modifiers.add("public");
+        e.addClass(modifiers, "ManyConstants", "java/lang/Object", null, true);
+        modifiers.add("static");
+        int perMethod = 1000;
+        for (int m = 0; m * perMethod < constants; m++) {
+            e.addMethod(modifiers, "m" + m, "()V", null, true);
+            for (int i = m * perMethod; i < Math.min(constants, (m + 1) * perMethod); i++) {
+                e.addLDCInstruction("s" + i);
+                e.addNoArgInstruction(POP);
+                e.addLDCInstruction(100000 + i);
+                e.addNoArgInstruction(POP);
+                e.addMemberAccessInstruction(GETSTATIC, "java/lang/Object", "f" + i, "I");
+                e.addNoArgInstruction(POP);
+                e.addMemberAccessInstruction(INVOKESTATIC, "java/lang/Object", "m" + i, "()V");
+            }
+            e.addNoArgInstruction(RETURN);
+        }
+        e.clFile();
+    }
+}
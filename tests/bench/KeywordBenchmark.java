@@ -0,0 +1,139 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+package jminusminus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import java.util.Hashtable;
+
+import static jminusminus.TokenKind.*;
+
+/**
+ * This class measures the cost of recognizing keywords. It generates a keyword-heavy j-- source
+ * file of the specified size (in MB), collects the words (keywords and identifiers) in it, and
+ * then, for each round, times:
+ * <ul>
+ *   <li>looking each word up by creating a String for it and getting its kind from a
+ *   java.util.Hashtable of the keywords (as Scanner used to),</li>
+ *
+ *   <li>looking each word up with Scanner.keyword(), which works on the characters directly,
+ *   and</li>
+ *
+ *   <li>tokenizing the whole file with Scanner.</li>
+ * </ul>
+ * Since the class accesses the (package-private) scanner classes, it is in the jminusminus
+ * package, and is compiled and run against the j-- classes as follows:
+ *
+ * <pre>
+ *   $ javac -cp lib/j--.jar -d /tmp/bench tests/bench/KeywordBenchmark.java
+ *   $ java -cp /tmp/bench:lib/j--.jar jminusminus.KeywordBenchmark [MB] [rounds]
+ * </pre>
+ */
+public class KeywordBenchmark {
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File file = File.createTempFile("KeywordBenchmark", ".java");
+        file.deleteOnExit();
+        generate(file, megabytes);
+        double size = file.length() / 1e6;
+
+        // Offsets and lengths of the words in the file.
+        CharReader in = new CharReader(file.getPath());
+        char[] chars = in.buffer();
+        int[] offsets = new int[chars.length / 2];
+        int[] lengths = new int[chars.length / 2];
+        int words = 0;
+        for (int i = 0; i < chars.length; ) {
+            if (Character.isJavaIdentifierStart(chars[i])) {
+                int start = i;
+                while (i < chars.length && Character.isJavaIdentifierPart(chars[i])) {
+                    i++;
+                }
+                offsets[words] = start;
+                lengths[words++] = i - start;
+            } else {
+                i++;
+            }
+        }
+
+        Hashtable<String, TokenKind> table = new Hashtable<String, TokenKind>();
+        for (TokenKind kind : TokenKind.values()) {
+            if (kind.compareTo(ABSTRACT) >= 0 && kind.compareTo(WHILE) <= 0 || kind == FALSE ||
+                    kind == NULL || kind == TRUE) {
+                table.put(kind.image(), kind);
+            }
+        }
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            int hashtableKeywords = 0;
+            for (int i = 0; i < words; i++) {
+                if (table.get(new String(chars, offsets[i], lengths[i])) != null) {
+                    hashtableKeywords++;
+                }
+            }
+            double hashtable = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            int scannerKeywords = 0;
+            for (int i = 0; i < words; i++) {
+                if (Scanner.keyword(chars, offsets[i], lengths[i]) != null) {
+                    scannerKeywords++;
+                }
+            }
+            double keyword = (System.nanoTime() - start) / 1e9;
+            if (scannerKeywords != hashtableKeywords) {
+                throw new IllegalStateException("keyword counts differ: " + hashtableKeywords +
+                        " and " + scannerKeywords);
+            }
+
+            start = System.nanoTime();
+            int tokens = tokenize(file);
+            double scanner = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("round %d: %d words (%d keywords), %d tokens; Hashtable %.1f " +
+                            "Mwords/s, Scanner.keyword %.1f Mwords/s, Scanner %.1f MB/s\n",
+                    round, words, scannerKeywords, tokens, words / hashtable / 1e6,
+                    words / keyword / 1e6, size / scanner);
+        }
+    }
+
+    // Writes copies of a keyword-heavy class to the file until it is the specified size (in MB).
+    private static void generate(File file, int megabytes) throws IOException {
+        PrintWriter out = new PrintWriter(file);
+        long size = 0;
+        for (int i = 0; size < megabytes * 1000000L; i++) {
+            String s = String.format(
+                    "public abstract class K%d extends Object implements I {\n" +
+                    "    protected static final boolean flag = true;\n" +
+                    "    private static int count = 0;\n" +
+                    "    public static void main(String[] args) throws Exception {\n" +
+                    "        for (int i = 0; i < 10; i++) {\n" +
+                    "            if (flag instanceof Object) { continue; } else { break; }\n" +
+                    "        }\n" +
+                    "        while (false) { do { return; } while (true); }\n" +
+                    "        switch (count) { case 0: break; default: break; }\n" +
+                    "        try { throw new Exception(); } catch (Exception e) { }\n" +
+                    "        finally { this.count = super.count; }\n" +
+                    "        char c = 'c'; long l = 0L; double d = 0.0; Object o = null;\n" +
+                    "    }\n" +
+                    "}\n\n", i);
+            out.print(s);
+            size += s.length();
+        }
+        out.close();
+    }
+
+    // Tokenizes the file with a Scanner, and returns the number of tokens.
+    private static int tokenize(File file) throws IOException {
+        Scanner scanner = new Scanner(file.getPath());
+        int tokens = 0;
+        while (scanner.getNextToken().kind() != EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+}
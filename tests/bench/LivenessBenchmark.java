@@ -0,0 +1,151 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+package jminusminus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * This class measures how the time taken by liveness analysis and register allocation grows with
+ * the size of a method. For each of a number of sizes, it generates a j-- method made up of that
+ * many statements over 64 local variables, every fourth of them an if-else statement (so the
+ * method has thousands of virtual registers and basic blocks for the larger sizes), translates
+ * it to LIR as NEmitter does, and then times (for the given number of rounds each):
+ * <ul>
+ *   <li>computing the liveness sets and building the intervals (buildIntervals()),</li>
+ *
+ *   <li>the linear scan register allocation, and</li>
+ *
+ *   <li>the graph coloring register allocation.</li>
+ * </ul>
+ * The best time of each is reported, along with the time per virtual register, which stays about
+ * the same across sizes when the time grows linearly. Since the class uses the (package-private)
+ * compiler classes, it is in the jminusminus package, and is compiled and run against the j--
+ * classes as follows:
+ *
+ * <pre>
+ *   $ javac -cp lib/j--.jar -d /tmp/bench tests/bench/LivenessBenchmark.java
+ *   $ java -cp /tmp/bench:lib/j--.jar jminusminus.LivenessBenchmark [rounds] [statements ...]
+ * </pre>
+ */
+public class LivenessBenchmark {
+    // Number of local variables in the generated method.
+    private static final int LOCALS = 64;
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] sizes = {500, 1000, 2000, 4000};
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%10s %10s %8s %10s  %-16s %-16s %-16s\n", "statements", "registers",
+                "blocks", "LIR", "liveness (us/reg)", "linear (us/reg)", "graph (us/reg)");
+        for (int size : sizes) {
+            CLFile clFile = compile(size);
+            NControlFlowGraph cfg = lir(clFile);
+            int registers = cfg.registers.size();
+            int instructions = 0;
+            for (NBasicBlock block : cfg.basicBlocks) {
+                instructions += block.lir.size();
+            }
+            double liveness = time(clFile, "liveness", rounds);
+            double linear = time(clFile, "linear", rounds);
+            double graph = time(clFile, "graph", rounds);
+            System.out.printf("%10d %10d %8d %10d  %-16s %-16s %-16s\n", size, registers,
+                    cfg.basicBlocks.size(), instructions, format(liveness, registers),
+                    format(linear, registers), format(graph, registers));
+        }
+    }
+
+    // Returns the best time (in ms) over the given number of rounds of computing the liveness sets
+    // and intervals, or of the linear or graph register allocation, for the method f() of the
+    // class.
+    private static double time(CLFile clFile, String what, int rounds) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            NControlFlowGraph cfg = lir(clFile);
+            long start = System.nanoTime();
+            if (what.equals("liveness")) {
+                new NNaiveRegisterAllocator(cfg).buildIntervals();
+            } else if (what.equals("linear")) {
+                new NLinearRegisterAllocator(cfg).allocation();
+            } else {
+                new NGraphRegisterAllocator(cfg).allocation();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+    // Returns the time (in ms) followed by the time per register (in us).
+    private static String format(double time, int registers) {
+        return String.format("%.1f (%.2f)", time, time * 1000 / registers);
+    }
+
+    // Generates a class whose method f() has the given number of statements, compiles it to JVM
+    // code, and returns the class.
+    private static CLFile compile(int statements) throws IOException {
+        File file = File.createTempFile("LivenessBenchmark", ".java");
+        file.deleteOnExit();
+        PrintWriter out = new PrintWriter(file);
+        out.println("public class Synthetic {");
+        out.println("    public static int f(int n) {");
+        for (int i = 0; i < LOCALS; i++) {
+            out.printf("        int a%d = n + %d;\n", i, i);
+        }
+        for (int k = 0; k < statements; k++) {
+            int i = k % LOCALS;
+            int x = (k * 7 + 1) % LOCALS;
+            int y = (k * 13 + 5) % LOCALS;
+            if (k % 4 == 0) {
+                out.printf("        if (a%d > a%d) { a%d = a%d - a%d; } else { a%d = a%d + %d; }\n",
+                        x, y, i, x, y, i, y, k);
+            } else {
+                out.printf("        a%d = a%d + a%d;\n", i, x, y);
+            }
+        }
+        out.print("        return a0");
+        for (int i = 1; i < LOCALS; i++) {
+            out.printf(" + a%d", i);
+        }
+        out.println(";");
+        out.println("    }");
+        out.println("}");
+        out.close();
+
+        Parser parser = new Parser(new LookaheadScanner(file.getPath()));
+        JCompilationUnit ast = parser.compilationUnit();
+        ast.preAnalyze();
+        ast.analyze(null);
+        ast.codegen(new CLEmitter(false));
+        return ast.clFiles().get(0);
+    }
+
+    // Translates the method f() of the class to LIR (as NEmitter does), and returns its cfg.
+    private static NControlFlowGraph lir(CLFile clFile) {
+        for (int i = 0; i < clFile.methodsCount; i++) {
+            NControlFlowGraph cfg = new NControlFlowGraph(clFile.constantPool,
+                    clFile.methods.get(i));
+            if (!cfg.name.equals("f")) {
+                continue;
+            }
+            cfg.detectLoops(cfg.basicBlocks.get(0), null);
+            cfg.removeUnreachableBlocks();
+            cfg.computeDominators(cfg.basicBlocks.get(0), null);
+            cfg.computeLoopDepths();
+            cfg.tuplesToHir();
+            cfg.eliminateRedundantPhiFunctions();
+            cfg.optimize();
+            cfg.hirToLir();
+            cfg.resolvePhiFunctions();
+            cfg.orderBlocks();
+            cfg.renumberLirInstructions();
+            return cfg;
+        }
+        return null;
+    }
+}
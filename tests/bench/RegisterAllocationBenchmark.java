@@ -0,0 +1,328 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+package jminusminus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class compares the register allocators of the SPIM back end. It compiles each of the
+ * programs in tests/spim with each allocator (naive, linear, ...) for each of a number of
+ * physical registers (the -r option), and for each combination reports:
+ * <ul>
+ *   <li>the number of loads and stores in the methods' code (ie, spill code and stack arguments,
+ *   but not the saving and restoring of registers in the prologues and epilogues),</li>
+ *
+ *   <li>the number of instructions executed when the program is run, and how many of those are
+ *   loads and stores, and</li>
+ *
+ *   <li>whether the program printed what it did when compiled with the first allocator and the
+ *   most registers.</li>
+ * </ul>
+ * The programs are run by a small interpreter for the subset of the MIPS instructions that the
+ * compiler (and SPIM.s) emits, so SPIM is not needed. Since the class uses the (package-private)
+ * compiler classes, it is in the jminusminus package, and is compiled and run against the j--
+ * classes as follows (from the root of the j-- tree, with the environment variable j set as for
+ * compiling to SPIM):
+ *
+ * <pre>
+ *   $ javac -cp lib/j--.jar -d /tmp/bench tests/bench/RegisterAllocationBenchmark.java
+ *   $ java -cp /tmp/bench:lib/j--.jar jminusminus.RegisterAllocationBenchmark [registers ...]
+ * </pre>
+ */
+public class RegisterAllocationBenchmark {
+    // The allocators compared.
+    private static final String[] ALLOCATORS = {"naive", "linear", "graph"};
+
+    public static void main(String[] args) throws IOException {
+        int[] registers = {3, 4, 6, 8, 18};
+        if (args.length > 0) {
+            registers = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                registers[i] = Integer.parseInt(args[i]);
+            }
+        }
+        File[] programs = new File("tests/spim").listFiles();
+        Arrays.sort(programs);
+        File dir = Files.createTempDirectory("RegisterAllocationBenchmark").toFile();
+        System.out.printf("%-12s %-8s %3s %12s %12s %12s  %s\n", "program", "alloc", "-r",
+                "loads/stores", "executed", "(lw/sw)", "output");
+        for (File program : programs) {
+            String expected = null;
+            for (String allocator : ALLOCATORS) {
+                for (int i = registers.length - 1; i >= 0; i--) {
+                    File s = compile(program, allocator, registers[i], dir);
+                    Machine machine = new Machine(s);
+                    String output = machine.run();
+                    if (expected == null) {
+                        expected = output;
+                    }
+                    System.out.printf("%-12s %-8s %3d %12d %12d %12d  %s\n",
+                            program.getName().replace(".java", ""), allocator, registers[i],
+                            machine.memoryInstructions, machine.executed,
+                            machine.executedMemoryInstructions,
+                            output.equals(expected) ? "ok" : "DIFFERS: " +
+                                    output.replace("\n", "\\n"));
+                    s.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    // Compiles the program to SPIM with the given allocator and number of registers, and returns
+    // the SPIM file.
+    private static File compile(File program, String allocator, int registers, File dir) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+                // Drop the compiler's listings.
+            }
+        }));
+        try {
+            Main.main(new String[]{"-s", allocator, "-r", String.valueOf(registers), "-d",
+                    dir.getPath(), program.getPath()});
+        } finally {
+            System.setOut(out);
+        }
+        return new File(dir, program.getName().replace(".java", ".s"));
+    }
+
+    // An interpreter for the MIPS code in a SPIM file.
+    private static class Machine {
+        // Address of the data segment.
+        private static final int DATA = 0x10010000;
+
+        // Return address given to main; jumping to it ends the program.
+        private static final int EXIT = -1;
+
+        // Number of instructions after which the program is stopped.
+        private static final long LIMIT = 10000000;
+
+        // Register names, by number.
+        private static final String[] NAMES = {"$zero", "$at", "$v0", "$v1", "$a0", "$a1", "$a2",
+                "$a3", "$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7", "$s0", "$s1",
+                "$s2", "$s3", "$s4", "$s5", "$s6", "$s7", "$t8", "$t9", "$k0", "$k1", "$gp",
+                "$sp", "$fp", "$ra"};
+
+        // The instructions (opcode followed by operands).
+        private ArrayList<String[]> text = new ArrayList<String[]>();
+
+        // Maps code labels to instruction indices, and data labels to addresses.
+        private HashMap<String, Integer> labels = new HashMap<String, Integer>();
+
+        // The data segment.
+        private byte[] data = new byte[0];
+
+        // Memory outside the data segment (the stack), by word address.
+        private HashMap<Integer, Integer> memory = new HashMap<Integer, Integer>();
+
+        // Registers.
+        private int[] registers = new int[32];
+
+        // Number of loads and stores in the methods' code.
+        public int memoryInstructions;
+
+        // Number of instructions executed, and how many of them are loads and stores.
+        public long executed, executedMemoryInstructions;
+
+        // Loads the SPIM file.
+        public Machine(File file) throws IOException {
+            BufferedReader in = new BufferedReader(new FileReader(file));
+            boolean runtime = false;
+            boolean isData = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                runtime |= line.startsWith("# SPIM Runtime");
+                String comment = line.indexOf('#') < 0 ? "" : line.substring(line.indexOf('#'));
+                line = line.trim();
+                if (line.startsWith(".asciiz")) {
+                    // The string may contain (unescaped) newlines.
+                    while (line.indexOf('"') == line.lastIndexOf('"')) {
+                        line += "\n" + in.readLine();
+                    }
+                    String s = line.substring(line.indexOf('"') + 1, line.lastIndexOf('"'));
+                    s = s.replace("\\n", "\n").replace("\\t", "\t").replace("\\\"", "\"")
+                            .replace("\\\\", "\\");
+                    for (char c : s.toCharArray()) {
+                        append((byte) c);
+                    }
+                    append((byte) 0);
+                    continue;
+                }
+                if (line.indexOf('#') >= 0) {
+                    line = line.substring(0, line.indexOf('#')).trim();
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals(".data")) {
+                    isData = true;
+                } else if (line.equals(".text")) {
+                    isData = false;
+                } else if (line.endsWith(":")) {
+                    String label = line.substring(0, line.length() - 1);
+                    labels.put(label, isData ? DATA + data.length : text.size());
+                } else if (line.startsWith(".word")) {
+                    int value = Integer.parseInt(line.substring(5).trim());
+                    for (int i = 0; i < 4; i++) {
+                        append((byte) (value >> (8 * i)));
+                    }
+                } else if (line.startsWith(".align")) {
+                    int alignment = 1 << Integer.parseInt(line.substring(6).trim());
+                    while (data.length % alignment != 0) {
+                        append((byte) 0);
+                    }
+                } else {
+                    String[] parts = line.split("\\s+", 2);
+                    String[] operands = parts.length > 1 ? parts[1].split(",") : new String[0];
+                    String[] instruction = new String[operands.length + 1];
+                    instruction[0] = parts[0];
+                    for (int i = 0; i < operands.length; i++) {
+                        instruction[i + 1] = operands[i].trim();
+                    }
+                    text.add(instruction);
+                    if (!runtime && isMemoryInstruction(instruction) &&
+                            !comment.contains("Save") && !comment.contains("Restore")) {
+                        memoryInstructions++;
+                    }
+                }
+            }
+            in.close();
+        }
+
+        // Runs the program from main, and returns what it printed (followed by a note if it did
+        // not end).
+        public String run() {
+            StringBuilder output = new StringBuilder();
+            registers[29] = 0x7ffffffc;
+            registers[31] = EXIT;
+            int pc = labels.get("main");
+            while (pc != EXIT) {
+                if (executed == LIMIT) {
+                    return output + "... (stopped after " + LIMIT + " instructions)";
+                }
+                String[] instruction = text.get(pc++);
+                executed++;
+                if (isMemoryInstruction(instruction)) {
+                    executedMemoryInstructions++;
+                }
+                String op = instruction[0];
+                if (op.equals("li")) {
+                    set(instruction[1], Integer.parseInt(instruction[2]));
+                } else if (op.equals("la")) {
+                    String[] address = instruction[2].split("\\+");
+                    set(instruction[1], labels.get(address[0]) +
+                            (address.length > 1 ? Integer.parseInt(address[1]) : 0));
+                } else if (op.equals("move")) {
+                    set(instruction[1], get(instruction[2]));
+                } else if (op.equals("add") || op.equals("addu") || op.equals("addiu")) {
+                    set(instruction[1], get(instruction[2]) + operand(instruction[3]));
+                } else if (op.equals("sub") || op.equals("subu")) {
+                    set(instruction[1], get(instruction[2]) - operand(instruction[3]));
+                } else if (op.equals("mul")) {
+                    set(instruction[1], get(instruction[2]) * operand(instruction[3]));
+                } else if (op.equals("div")) {
+                    set(instruction[1], get(instruction[2]) / operand(instruction[3]));
+                } else if (op.equals("rem")) {
+                    set(instruction[1], get(instruction[2]) % operand(instruction[3]));
+                } else if (op.equals("lw")) {
+                    set(instruction[1], load(address(instruction[2])));
+                } else if (op.equals("sw")) {
+                    memory.put(address(instruction[2]), get(instruction[1]));
+                } else if (op.equals("j")) {
+                    pc = labels.get(instruction[1]);
+                } else if (op.equals("jal")) {
+                    registers[31] = pc;
+                    pc = labels.get(instruction[1]);
+                } else if (op.equals("jr")) {
+                    pc = get(instruction[1]);
+                } else if (op.startsWith("b")) {
+                    int a = get(instruction[1]);
+                    int b = operand(instruction[2]);
+                    boolean taken = op.equals("beq") ? a == b : op.equals("bne") ? a != b :
+                            op.equals("blt") ? a < b : op.equals("ble") ? a <= b :
+                                    op.equals("bgt") ? a > b : a >= b;
+                    if (taken) {
+                        pc = labels.get(instruction[3]);
+                    }
+                } else if (op.equals("syscall")) {
+                    int a0 = registers[4];
+                    switch (registers[2]) {
+                        case 1:
+                            output.append(a0);
+                            break;
+                        case 4:
+                            for (int i = a0 - DATA; data[i] != 0; i++) {
+                                output.append((char) data[i]);
+                            }
+                            break;
+                        case 11:
+                            output.append((char) a0);
+                            break;
+                        case 10:
+                        case 17:
+                            pc = EXIT;
+                            break;
+                        default:
+                            registers[2] = 0;
+                            break;
+                    }
+                } else if (!op.equals("nop")) {
+                    throw new IllegalStateException("Unknown instruction " + op);
+                }
+            }
+            return output.toString();
+        }
+
+        // Returns true if the instruction is a load or a store, and false otherwise.
+        private static boolean isMemoryInstruction(String[] instruction) {
+            return instruction[0].equals("lw") || instruction[0].equals("sw");
+        }
+
+        // Appends a byte to the data segment.
+        private void append(byte b) {
+            data = Arrays.copyOf(data, data.length + 1);
+            data[data.length - 1] = b;
+        }
+
+        // Returns the value of the named register.
+        private int get(String register) {
+            return registers[Arrays.asList(NAMES).indexOf(register)];
+        }
+
+        // Sets the value of the named register.
+        private void set(String register, int value) {
+            int i = Arrays.asList(NAMES).indexOf(register);
+            if (i > 0) {
+                registers[i] = value;
+            }
+        }
+
+        // Returns the value of an operand that is either a register or an immediate value.
+        private int operand(String operand) {
+            return operand.startsWith("$") ? get(operand) : Integer.parseInt(operand);
+        }
+
+        // Returns the address denoted by an operand of the form offset($register).
+        private int address(String operand) {
+            int i = operand.indexOf('(');
+            return Integer.parseInt(operand.substring(0, i)) +
+                    get(operand.substring(i + 1, operand.length() - 1));
+        }
+
+        // Returns the word at the given address.
+        private int load(int address) {
+            Integer value = memory.get(address);
+            return value == null ? 0 : value;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.PrintWriter;
+
+import static jminusminus.TokenKind.EOF;
+
+/**
+ * This class measures the throughput of reading and tokenizing a large j-- source file. It
+ * generates a source file of the specified size (in MB) made up of copies of a class with
+ * comments, identifiers, keywords, literals and operators, and then, for each round, times:
+ * <ul>
+ *   <li>reading the file one character at a time with a java.io.LineNumberReader (as CharReader
+ *   used to),</li>
+ *
+ *   <li>reading it one character at a time with CharReader, and</li>
+ *
+ *   <li>tokenizing it with Scanner.</li>
+ * </ul>
+ * Since the class accesses the (package-private) scanner classes, it is in the jminusminus
+ * package, and is compiled and run against the j-- classes as follows:
+ *
+ * <pre>
+ *   $ javac -cp lib/j--.jar -d /tmp/bench tests/bench/ScannerBenchmark.java
+ *   $ java -cp /tmp/bench:lib/j--.jar jminusminus.ScannerBenchmark [MB] [rounds]
+ * </pre>
+ */
+public class ScannerBenchmark {
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File file = File.createTempFile("ScannerBenchmark", ".java");
+        file.deleteOnExit();
+        generate(file, megabytes);
+        double size = file.length() / 1e6;
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            int chars = readWithLineNumberReader(file);
+            double lineNumberReader = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            readWithCharReader(file);
+            double charReader = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            int tokens = tokenize(file);
+            double scanner = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("round %d: %d chars, %d tokens; LineNumberReader %.1f MB/s, " +
+                            "CharReader %.1f MB/s, Scanner %.1f MB/s\n", round, chars, tokens,
+                    size / lineNumberReader, size / charReader, size / scanner);
+        }
+    }
+
+    // Writes copies of a class to the file until it is the specified size (in MB).
+    private static void generate(File file, int megabytes) throws IOException {
+        PrintWriter out = new PrintWriter(file);
+        long size = 0;
+        for (int i = 0; size < megabytes * 1000000L; i++) {
+            String s = String.format(
+                    "/**\n * Class number %d.\n */\n" +
+                    "class C%d extends Object {\n" +
+                    "    private int count%d = 0;\n\n" +
+                    "    // Returns a value computed from the argument.\n" +
+                    "    public static int compute(int n, double d) {\n" +
+                    "        int result = n * 31 + %d;\n" +
+                    "        while (result > 100 && !(d >= 1.5e3)) {\n" +
+                    "            result = result - 7;\n" +
+                    "        }\n" +
+                    "        String message = \"computed: \\t\" + result;\n" +
+                    "        char c = 'x';\n" +
+                    "        return result == 0 ? n : result;\n" +
+                    "    }\n" +
+                    "}\n\n", i, i, i, i);
+            out.print(s);
+            size += s.length();
+        }
+        out.close();
+    }
+
+    // Reads the file a character at a time with a LineNumberReader, and returns the number of
+    // characters read.
+    private static int readWithLineNumberReader(File file) throws IOException {
+        LineNumberReader in = new LineNumberReader(new FileReader(file));
+        int chars = 0;
+        while ((char) in.read() != CharReader.EOFCH) {
+            chars++;
+        }
+        in.close();
+        return chars;
+    }
+
+    // Reads the file a character at a time with a CharReader, and returns the number of
+    // characters read.
+    private static int readWithCharReader(File file) throws IOException {
+        CharReader in = new CharReader(file.getPath());
+        int chars = 0;
+        while (in.nextChar() != CharReader.EOFCH) {
+            chars++;
+        }
+        in.close();
+        return chars;
+    }
+
+    // Tokenizes the file with a Scanner, and returns the number of tokens.
+    private static int tokenize(File file) throws IOException {
+        Scanner scanner = new Scanner(file.getPath());
+        int tokens = 0;
+        while (scanner.getNextToken().kind() != EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,19 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Tests compiling several files together, where a class extends a class declared in a file that
+// is given (or, in a directory, sorted) after its own.
+
+import java.lang.System;
+
+public class Apple extends Zebra {
+    public String name() {
+        return "Apple";
+    }
+
+    public static void main(String[] args) {
+        Zebra zebra = new Zebra();
+        Apple apple = new Apple();
+        System.out.println(zebra.greeting());
+        System.out.println(apple.greeting());
+    }
+}
@@ -0,0 +1,13 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// The superclass for Apple.java.
+
+public class Zebra {
+    public String name() {
+        return "Zebra";
+    }
+
+    public String greeting() {
+        return "Hello from " + name();
+    }
+}
@@ -0,0 +1,110 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Tests the optimizations of the high-level instructions: constant propagation, the removal of
+// branches that are never taken, common subexpression elimination, dead code elimination, moving
+// loop-invariant code out of loops, and strength reduction.
+
+import jminusminus.SPIM;
+
+public class Redundancy {
+    // Entry point.
+    public static void main(String[] args) {
+        SPIM.printInt(Redundancy.folded(5));
+        SPIM.printChar('\n');
+        SPIM.printInt(Redundancy.redundant(3, 4, 10));
+        SPIM.printChar('\n');
+        SPIM.printInt(Redundancy.loop(20));
+        SPIM.printChar('\n');
+        SPIM.printInt(Redundancy.dead(7));
+        SPIM.printChar('\n');
+        SPIM.printInt(Redundancy.nested(6));
+        SPIM.printChar('\n');
+        SPIM.printInt(Redundancy.scaled(10));
+        SPIM.printChar('\n');
+    }
+
+    // Returns n + 13, computed with conditions that are known at compile time.
+    public static int folded(int n) {
+        int k = 3;
+        int m = k * 4 - 2;
+        int r = 0;
+        if (m > 9) {
+            r = n + m;
+        } else {
+            r = n - m;
+        }
+        if (k <= 2) {
+            r = r * 100;
+        }
+        return r + k;
+    }
+
+    // Returns a value computed with a * b (or b * a) in several places.
+    public static int redundant(int a, int b, int n) {
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            int x = a * b + i;
+            if (i > 4) {
+                s = s + a * b;
+            } else {
+                s = s - (b * a + i);
+            }
+            s = s + x;
+            i = i + 1;
+        }
+        return s + a * b;
+    }
+
+    // Returns 10 * n, computed in a loop with values that do not change.
+    public static int loop(int n) {
+        int i = 0;
+        int one = 1;
+        int c = 5;
+        int t = 0;
+        while (n > i) {
+            t = t + c * 2;
+            c = 5;
+            i = i + one;
+        }
+        return t;
+    }
+
+    // Returns n + 2; the other values are not needed.
+    public static int dead(int n) {
+        int a = n * n;
+        int b = a + 1;
+        int c = b * 2;
+        a = n + 2;
+        return a;
+    }
+
+    // Returns 0 + 1 + ... + (n - 1), computed in nested loops.
+    public static int nested(int n) {
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            int j = 0;
+            while (i > j) {
+                s = s + i * j - j * i + 1;
+                j = j + 1;
+            }
+            i = i + 1;
+        }
+        return s;
+    }
+
+    // Returns 3 * (0 + 1 + ... + (n - 1)), computed with a multiplication of a variable that is
+    // increased on each iteration.
+    public static int scaled(int n) {
+        int s = 0;
+        int i = 0;
+        int k = n;
+        while (k > 0) {
+            s = s + i * 3;
+            i = i + 1;
+            k = k - 1;
+        }
+        return s;
+    }
+}